@@ -0,0 +1,292 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Build-time template compiler. This runs during the Maven generate-sources phase (see the exec-maven-plugin
+ * execution in pom.xml) using the single-file source launcher, so it is not part of the application itself.
+ *
+ * Every src/main/resources/templates/*.html file becomes a class in the template.generated package with a single
+ * static render method. The static HTML is stored as constants that are UTF-8 encoded once when the class loads, so
+ * rendering only copies bytes for the markup and escapes the values spliced in. Each placeholder becomes a parameter:
+ * - {{name}}    → String parameter, HTML-escaped as element text or as an attribute value depending on where it sits
+ * - {{{name}}}  → template.Fragment parameter, written as raw markup (used for nested templates like table rows)
+ * - {{> name}}  → the partial templates/_name.html inlined at compile time (partials do not get their own class)
+ *
+ * Any mistake in a template (unterminated placeholder, bad name, placeholder in an unquoted attribute, ...) is
+ * reported with the file and line number and fails the build instead of a request.
+ */
+public class TemplateCompiler {
+
+    private static final String PACKAGE = "template.generated";
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: java TemplateCompiler.java <template dir> <output source dir>");
+            System.exit(2);
+        }
+        Path templateDir = Path.of(args[0]);
+        Path outputDir = Path.of(args[1]).resolve(PACKAGE.replace('.', '/'));
+        Files.createDirectories(outputDir);
+
+        List<String> errors = new ArrayList<>();
+        List<Path> templates;
+        try (Stream<Path> files = Files.list(templateDir)) {
+            templates = files.filter(p -> p.getFileName().toString().endsWith(".html"))
+                    .filter(p -> !p.getFileName().toString().startsWith("_"))
+                    .sorted()
+                    .toList();
+        }
+
+        for (Path template : templates) {
+            try {
+                String className = toClassName(template.getFileName().toString());
+                String source = new TemplateCompiler(templateDir).compile(template, className);
+                Files.writeString(outputDir.resolve(className + ".java"), source, StandardCharsets.UTF_8);
+            } catch (TemplateException e) {
+                errors.add(e.getMessage());
+            }
+        }
+
+        if (!errors.isEmpty()) {
+            errors.forEach(System.err::println);
+            System.exit(1);
+        }
+        System.out.println("Compiled " + templates.size() + " templates into " + outputDir);
+    }
+
+    static class TemplateException extends Exception {
+        TemplateException(Path file, int line, String message) {
+            super(file.getFileName() + ":" + line + ": " + message);
+        }
+    }
+
+    private enum Kind { TEXT, ATTRIBUTE, RAW }
+
+    private record Part(String literal, String name, Kind kind) { }
+
+    private final Path templateDir;
+    private final List<Part> parts = new ArrayList<>();
+    private final Map<String, Kind> parameters = new LinkedHashMap<>();
+    private final StringBuilder pending = new StringBuilder();
+
+    // Tracks where we are in the markup so placeholders can pick the right escaping
+    private boolean inTag;
+    private char quote;
+
+    private TemplateCompiler(Path templateDir) {
+        this.templateDir = templateDir;
+    }
+
+    private String compile(Path template, String className) throws TemplateException, IOException {
+        scan(template, Files.readString(template, StandardCharsets.UTF_8), 0);
+        if (inTag) {
+            throw new TemplateException(template, 0, "template ends inside a tag");
+        }
+        flushLiteral();
+        return generate(template, className);
+    }
+
+    private void scan(Path file, String text, int depth) throws TemplateException, IOException {
+        int line = 1;
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (c == '{' && text.startsWith("{{", i)) {
+                boolean raw = text.startsWith("{{{", i);
+                String close = raw ? "}}}" : "}}";
+                int start = i + (raw ? 3 : 2);
+                int end = text.indexOf(close, start);
+                int newline = text.indexOf('\n', start);
+                if (end < 0 || (newline >= 0 && newline < end)) {
+                    throw new TemplateException(file, line, "unterminated placeholder");
+                }
+                String name = text.substring(start, end).trim();
+                if (!raw && name.startsWith(">")) {
+                    include(file, line, name.substring(1).trim(), depth);
+                } else {
+                    placeholder(file, line, name, raw);
+                }
+                i = end + close.length();
+                continue;
+            }
+            if (c == '}' && text.startsWith("}}", i)) {
+                throw new TemplateException(file, line, "unmatched '}}'");
+            }
+            if (c == '\n') {
+                line++;
+            }
+            track(c);
+            pending.append(c);
+            i++;
+        }
+    }
+
+    private void include(Path file, int line, String name, int depth) throws TemplateException, IOException {
+        if (!isIdentifier(name.replace('-', '_'))) {
+            throw new TemplateException(file, line, "invalid partial name '" + name + "'");
+        }
+        if (depth > 8) {
+            throw new TemplateException(file, line, "partials nested too deeply (recursive include?)");
+        }
+        Path partial = templateDir.resolve("_" + name + ".html");
+        if (!Files.exists(partial)) {
+            throw new TemplateException(file, line, "partial '" + partial.getFileName() + "' not found");
+        }
+        String text = Files.readString(partial, StandardCharsets.UTF_8);
+        // The include tag sits on its own line, so drop the partial's final newline to avoid a blank line
+        scan(partial, text.endsWith("\n") ? text.substring(0, text.length() - 1) : text, depth + 1);
+    }
+
+    private void placeholder(Path file, int line, String name, boolean raw) throws TemplateException {
+        if (!isIdentifier(name)) {
+            throw new TemplateException(file, line, "invalid placeholder name '" + name + "'");
+        }
+        Kind kind;
+        if (raw) {
+            if (inTag) {
+                throw new TemplateException(file, line, "raw placeholder {{{" + name + "}}} cannot appear inside a tag");
+            }
+            kind = Kind.RAW;
+        } else if (inTag) {
+            if (quote == 0) {
+                throw new TemplateException(file, line, "placeholder {{" + name + "}} must be inside a quoted attribute");
+            }
+            kind = Kind.ATTRIBUTE;
+        } else {
+            kind = Kind.TEXT;
+        }
+
+        Kind previous = parameters.get(name);
+        if (previous != null && (previous == Kind.RAW) != (kind == Kind.RAW)) {
+            throw new TemplateException(file, line, "'" + name + "' is used both as a raw and an escaped placeholder");
+        }
+        parameters.putIfAbsent(name, kind);
+
+        flushLiteral();
+        parts.add(new Part(null, name, kind));
+    }
+
+    private void track(char c) {
+        if (!inTag) {
+            if (c == '<') {
+                inTag = true;
+            }
+        } else if (quote != 0) {
+            if (c == quote) {
+                quote = 0;
+            }
+        } else if (c == '"' || c == '\'') {
+            quote = c;
+        } else if (c == '>') {
+            inTag = false;
+        }
+    }
+
+    private void flushLiteral() {
+        if (!pending.isEmpty()) {
+            parts.add(new Part(pending.toString(), null, null));
+            pending.setLength(0);
+        }
+    }
+
+    private String generate(Path template, String className) {
+        StringBuilder src = new StringBuilder();
+        src.append("package ").append(PACKAGE).append(";\n\n");
+        if (parameters.containsValue(Kind.RAW)) {
+            src.append("import template.Fragment;\n");
+        }
+        src.append("import template.TemplateOutput;\n\n");
+        src.append("import java.nio.charset.StandardCharsets;\n\n");
+        src.append("/**\n * Generated from templates/").append(template.getFileName())
+                .append(" by TemplateCompiler. Do not edit.\n */\n");
+        src.append("public final class ").append(className).append(" {\n\n");
+
+        int segment = 0;
+        for (Part part : parts) {
+            if (part.literal() != null) {
+                src.append("    private static final byte[] S").append(segment++).append(" = ")
+                        .append(javaString(part.literal())).append(".getBytes(StandardCharsets.UTF_8);\n");
+            }
+        }
+
+        src.append("\n    private ").append(className).append("() {\n    }\n\n");
+        src.append("    public static void render(TemplateOutput out");
+        for (Map.Entry<String, Kind> parameter : parameters.entrySet()) {
+            src.append(", ").append(parameter.getValue() == Kind.RAW ? "Fragment " : "String ").append(parameter.getKey());
+        }
+        src.append(") {\n");
+
+        segment = 0;
+        for (Part part : parts) {
+            if (part.literal() != null) {
+                src.append("        out.write(S").append(segment++).append(");\n");
+            } else {
+                switch (part.kind()) {
+                    case TEXT -> src.append("        out.writeText(").append(part.name()).append(");\n");
+                    case ATTRIBUTE -> src.append("        out.writeAttribute(").append(part.name()).append(");\n");
+                    case RAW -> src.append("        ").append(part.name()).append(".writeTo(out);\n");
+                }
+            }
+        }
+        src.append("    }\n}\n");
+        return src.toString();
+    }
+
+    private static String javaString(String text) {
+        StringBuilder literal = new StringBuilder("\"");
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"' -> literal.append("\\\"");
+                case '\\' -> literal.append("\\\\");
+                case '\n' -> literal.append("\\n");
+                case '\r' -> literal.append("\\r");
+                case '\t' -> literal.append("\\t");
+                default -> {
+                    if (c < 0x20 || c > 0x7e) {
+                        literal.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        literal.append(c);
+                    }
+                }
+            }
+        }
+        return literal.append('"').toString();
+    }
+
+    private static boolean isIdentifier(String name) {
+        if (name.isEmpty() || !Character.isJavaIdentifierStart(name.charAt(0))) {
+            return false;
+        }
+        for (int i = 1; i < name.length(); i++) {
+            if (!Character.isJavaIdentifierPart(name.charAt(i))) {
+                return false;
+            }
+        }
+        return !name.equals("out");
+    }
+
+    // person-list.html → PersonListTemplate
+    private static String toClassName(String fileName) {
+        StringBuilder name = new StringBuilder();
+        boolean upper = true;
+        for (char c : fileName.substring(0, fileName.length() - ".html".length()).toCharArray()) {
+            if (c == '-' || c == '_' || c == '.') {
+                upper = true;
+            } else if (upper) {
+                name.append(Character.toUpperCase(c));
+                upper = false;
+            } else {
+                name.append(c);
+            }
+        }
+        return name.append("Template").toString();
+    }
+}
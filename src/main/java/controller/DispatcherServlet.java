@@ -2,9 +2,11 @@ package controller;
 
 import http.HttpRequest;
 import http.HttpResponse;
+import template.Utf8HtmlWriter;
 import util.PathParser;
 import view.View;
 
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -17,6 +19,12 @@ public class DispatcherServlet {
     private Map<String, Object> controllers;
     private ViewResolver viewResolver;
 
+    // Static parts of the fallback error page, encoded once; only the escaped message is written per error
+    private static final byte[] ERROR_PAGE_START =
+            "<!DOCTYPE html><html><head><title>Error</title></head><body><h1>Error</h1><p>"
+                    .getBytes(StandardCharsets.UTF_8);
+    private static final byte[] ERROR_PAGE_END = "</p></body></html>".getBytes(StandardCharsets.UTF_8);
+
     public DispatcherServlet() {
         this.controllers = new HashMap<>();
         this.viewResolver = new ViewResolver();
@@ -73,8 +81,11 @@ public class DispatcherServlet {
     }
 
     private HttpResponse createErrorResponse(int statusCode, String message) {
+        Utf8HtmlWriter out = Utf8HtmlWriter.acquire();
+        writeErrorPageHtml(out, message);
+
         HttpResponse response = new HttpResponse(statusCode, getStatusMessage(statusCode));
-        response.setBody(createErrorPageHtml(message));
+        response.setBody(out);
         return response;
     }
 
@@ -86,8 +97,9 @@ public class DispatcherServlet {
         }
     }
 
-    private String createErrorPageHtml(String message) {
-        return "<!DOCTYPE html><html><head><title>Error</title></head>" +
-                "<body><h1>Error</h1><p>" + message + "</p></body></html>";
+    private void writeErrorPageHtml(Utf8HtmlWriter out, String message) {
+        out.write(ERROR_PAGE_START);
+        out.writeText(message);
+        out.write(ERROR_PAGE_END);
     }
 }
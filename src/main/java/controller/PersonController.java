@@ -1,13 +1,29 @@
 package controller;
 
+import dto.ImportResult;
 import dto.PersonDTO;
 import http.HttpRequest;
 import model.Person;
+import repository.VersionConflictException;
+import service.ChangeFeed;
 import service.PersonService;
+import service.RegistrationAggregates;
+import util.CsvReader;
 import util.FormParser;
 import util.PathParser;
-
+import util.PersonFormDecoder;
+import view.ExportView;
+import view.StatsView;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 /**
@@ -18,6 +34,10 @@ public class PersonController {
 
     private PersonService personService;
 
+    // Rows validated before they are handed to the service as one batch
+    private static final int IMPORT_BATCH_SIZE = 1000;
+    private static final int MAX_TOP_DOMAINS = 100;
+
     public PersonController(PersonService personService) {
         this.personService = personService;
     }
@@ -59,6 +79,14 @@ public class PersonController {
                 return showPerson(pathInfo.getId());
             case "edit":
                 return showEditForm(pathInfo.getId());
+            case "search":
+                return searchPeople(request);
+            case "export":
+                return exportPeople(request);
+            case "events":
+                return streamChanges(request);
+            case "stats":
+                return showStats(request);
             default:
                 return showAllPeople();
         }
@@ -73,6 +101,8 @@ public class PersonController {
                 return updatePerson(request, pathInfo.getId());
             case "delete":
                 return deletePerson(pathInfo.getId());
+            case "import":
+                return importPeople(request);
             default:
                 return ModelAndView.error("Unknown action: " + pathInfo.getAction());
         }
@@ -106,6 +136,134 @@ public class PersonController {
         }
     }
 
+    /**
+     * Search registrations. Supported query parameters (first one present wins): q (free text over names and email
+     * fragments, ranked), email (exact, case-insensitive), name (prefix), minAge/maxAge (inclusive range; either may
+     * be left out)
+     */
+    private ModelAndView searchPeople(HttpRequest request) {
+        Map<String, String> query = request.getQueryParams();
+        String text = blankToNull(query.get("q"));
+        String email = blankToNull(query.get("email"));
+        String name = blankToNull(query.get("name"));
+        String minAge = blankToNull(query.get("minAge"));
+        String maxAge = blankToNull(query.get("maxAge"));
+
+        try {
+            List<Person> people;
+            String description;
+            if (text != null) {
+                people = personService.searchPersons(text);
+                description = "matching \"" + text + "\"";
+            } else if (email != null) {
+                Person person = personService.findPersonByEmail(email);
+                people = person != null ? List.of(person) : List.of();
+                description = "with email " + email;
+            } else if (name != null) {
+                people = personService.findPersonsByNamePrefix(name);
+                description = "with a name starting with \"" + name + "\"";
+            } else if (minAge != null || maxAge != null) {
+                int min = minAge != null ? Integer.parseInt(minAge) : 0;
+                int max = maxAge != null ? Integer.parseInt(maxAge) : Integer.MAX_VALUE;
+                people = personService.findPersonsByAgeRange(min, max);
+                description = "aged " + (minAge != null ? min : "any") + " to " + (maxAge != null ? max : "any");
+            } else {
+                return showAllPeople();
+            }
+
+            return new ModelAndView("personList")
+                    .addObject("people", people)
+                    .addObject("title", "Baylor Sports Updates Registration")
+                    .addObject("successMessage", people.size() + " registration(s) " + description)
+                    .addObject("totalPeople", people.size());
+
+        } catch (NumberFormatException e) {
+            return ModelAndView.error("Age must be a valid number");
+        } catch (Exception e) {
+            return ModelAndView.error("Failed to search people: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Download every registration: format=csv (default) or format=ndjson. The body is gzipped when the client sends
+     * Accept-Encoding: gzip or asks with gzip=true (gzip=false turns it off).
+     */
+    private ModelAndView exportPeople(HttpRequest request) {
+        Map<String, String> query = request.getQueryParams();
+        String format = blankToNull(query.get("format"));
+        format = format != null ? format.toLowerCase(Locale.ROOT) : ExportView.CSV;
+        if (!format.equals(ExportView.CSV) && !format.equals(ExportView.NDJSON)) {
+            return ModelAndView.error("Unsupported export format: " + format);
+        }
+
+        String gzipParam = blankToNull(query.get("gzip"));
+        String acceptEncoding = request.getHeaders().get("accept-encoding");
+        boolean gzip = gzipParam != null
+                ? Boolean.parseBoolean(gzipParam)
+                : acceptEncoding != null && acceptEncoding.toLowerCase(Locale.ROOT).contains("gzip");
+
+        try {
+            // One consistent version: writes made while the download runs are not part of it
+            List<Person> people = personService.findAllPersons();
+
+            return new ModelAndView("export")
+                    .addObject("people", people)
+                    .addObject("format", format)
+                    .addObject("gzip", gzip);
+
+        } catch (Exception e) {
+            return ModelAndView.error("Failed to export people: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Registration figures (totals, age brackets, top email domains) as a page, or as JSON with format=json.
+     * top=N asks for the N most common domains (default 10, at most 100).
+     */
+    private ModelAndView showStats(HttpRequest request) {
+        Map<String, String> query = request.getQueryParams();
+        String format = blankToNull(query.get("format"));
+        format = format != null ? format.toLowerCase(Locale.ROOT) : StatsView.HTML;
+        if (!format.equals(StatsView.HTML) && !format.equals(StatsView.JSON)) {
+            return ModelAndView.error("Unsupported stats format: " + format);
+        }
+
+        int top = RegistrationAggregates.DEFAULT_TOP_DOMAINS;
+        String topParam = blankToNull(query.get("top"));
+        if (topParam != null) {
+            try {
+                top = Integer.parseInt(topParam.trim());
+            } catch (NumberFormatException e) {
+                return ModelAndView.error("top must be a number");
+            }
+            if (top < 0 || top > MAX_TOP_DOMAINS) {
+                return ModelAndView.error("top must be between 0 and " + MAX_TOP_DOMAINS);
+            }
+        }
+
+        return new ModelAndView("stats")
+                .addObject("stats", personService.getStats(top))
+                .addObject("format", format);
+    }
+
+    /**
+     * Live feed of creates, updates and deletes as Server-Sent Events. A reconnecting browser sends Last-Event-ID and
+     * picks up right after the last change it saw. When the feed already has as many subscribers as it allows, the
+     * view answers 503 instead (no subscription in the model).
+     */
+    private ModelAndView streamChanges(HttpRequest request) {
+        ChangeFeed feed = personService.getChangeFeed();
+        ChangeFeed.Subscription subscription = feed.subscribe(request.getHeaders().get("last-event-id"));
+
+        return new ModelAndView("events")
+                .addObject("changeFeed", feed)
+                .addObject("subscription", subscription);
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+
     private ModelAndView showPerson(Integer id) {
         if (id == null) {
             return ModelAndView.error("Person ID required");
@@ -149,33 +307,155 @@ public class PersonController {
 
     private ModelAndView createPerson(HttpRequest request) {
         try {
-            Map<String, String> formData = FormParser.parseFormData(request.getBody());
-            PersonDTO personDTO = FormParser.createPersonDTOFromForm(formData);
+            PersonFormDecoder.Result form = PersonFormDecoder.decode(request.getBodyBytes());
+            if (!form.isValid()) {
+                return showCreateError(form.getErrorMessage());
+            }
 
-            Person createdPerson = personService.createPerson(personDTO);
+            Person createdPerson = personService.createPerson(form.getPersonDTO());
 
             return ModelAndView.redirect("/person");
 
         } catch (IllegalArgumentException e) {
-            List<Person> people = personService.findAllPersons();
-            return new ModelAndView("personList")
-                    .addObject("people", people)
-                    .addObject("errorMessage", "Validation Error: " + e.getMessage())
-                    .addObject("title", "Baylor Sports Updates Registration");
+            return showCreateError(e.getMessage());
         } catch (Exception e) {
             return ModelAndView.error("Failed to create person: " + e.getMessage());
         }
     }
 
+    /**
+     * Bulk import from a CSV upload (e.g. curl --data-binary @signups.csv http://localhost:8088/person/import).
+     * Columns are name,email,age; a first row naming those columns may put them in any order. The body is read as it
+     * arrives, every row is validated with the same rules as the registration form, and valid rows are created in
+     * batches of IMPORT_BATCH_SIZE. Rows that fail are reported by line number and do not stop the import; malformed
+     * CSV, a broken upload or a batch that cannot be saved does, keeping the rows saved before it.
+     */
+    private ModelAndView importPeople(HttpRequest request) {
+        Reader body = request.getBodyStream() != null
+                ? new InputStreamReader(request.getBodyStream(), StandardCharsets.UTF_8)
+                : new StringReader(request.getBody());
+        CsvReader csv = new CsvReader(body);
+        ImportResult result = new ImportResult();
+        List<PersonDTO> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+        List<Integer> batchLines = new ArrayList<>(IMPORT_BATCH_SIZE);
+
+        String[] columns = {"name", "email", "age"};
+        List<String> record = readRecord(csv, result);
+        if (record != null && isImportHeader(record)) {
+            columns = new String[record.size()];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = record.get(i).trim().toLowerCase(Locale.ROOT);
+            }
+            record = readRecord(csv, result);
+        }
+
+        Map<String, String> row = new HashMap<>();
+        for (; record != null; record = readRecord(csv, result)) {
+            row.clear();
+            for (int i = 0; i < columns.length && i < record.size(); i++) {
+                row.put(columns[i], record.get(i));
+            }
+            try {
+                batch.add(FormParser.createPersonDTOFromForm(row));
+                batchLines.add(csv.getRecordLine());
+            } catch (IllegalArgumentException e) {
+                result.addError(csv.getRecordLine(), e.getMessage());
+            }
+            if (batch.size() == IMPORT_BATCH_SIZE && !importBatch(batch, batchLines, result)) {
+                break;
+            }
+        }
+        // The last, partly filled batch; also when the CSV broke off, so the rows read before that are kept
+        importBatch(batch, batchLines, result);
+
+        return new ModelAndView("importResult")
+                .addObject("importResult", result)
+                .addObject("title", "Import Results");
+    }
+
+    private static boolean isImportHeader(List<String> record) {
+        for (String field : record) {
+            String column = field.trim().toLowerCase(Locale.ROOT);
+            if (column.equals("name") || column.equals("email") || column.equals("age")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // The next CSV record, or null at the end of the upload or when it cannot be read any further (malformed CSV, a
+    // broken connection), which is recorded as the reason the import stopped
+    private static List<String> readRecord(CsvReader csv, ImportResult result) {
+        try {
+            return csv.next();
+        } catch (IllegalArgumentException e) {
+            result.setAbortMessage(e.getMessage());
+        } catch (IOException e) {
+            result.setAbortMessage("Upload interrupted: " + e.getMessage());
+        }
+        return null;
+    }
+
+    // Save the batch and empty it. Returns false if it could not be saved at all; the import stops there, and the
+    // batch is not retried
+    private boolean importBatch(List<PersonDTO> batch, List<Integer> batchLines, ImportResult result) {
+        if (batch.isEmpty()) {
+            return true;
+        }
+        try {
+            List<String> rejections = personService.createPersons(batch);
+            int imported = 0;
+            for (int i = 0; i < rejections.size(); i++) {
+                if (rejections.get(i) == null) {
+                    imported++;
+                } else {
+                    result.addError(batchLines.get(i), rejections.get(i));
+                }
+            }
+            result.addImported(imported);
+            return true;
+        } catch (RuntimeException e) {
+            result.setAbortMessage("Could not save the rows from line " + batchLines.get(0) + " on: " + e.getMessage());
+            return false;
+        } finally {
+            batch.clear();
+            batchLines.clear();
+        }
+    }
+
+    // The list page again, with the message above the form
+    private ModelAndView showCreateError(String message) {
+        List<Person> people = personService.findAllPersons();
+        return new ModelAndView("personList")
+                .addObject("people", people)
+                .addObject("errorMessage", "Validation Error: " + message)
+                .addObject("title", "Baylor Sports Updates Registration");
+    }
+
     private ModelAndView updatePerson(HttpRequest request, Integer id) {
         try {
-            Map<String, String> formData = FormParser.parseFormData(request.getBody());
-            PersonDTO personDTO = FormParser.createPersonDTOFromForm(formData);
+            PersonFormDecoder.Result form = PersonFormDecoder.decode(request.getBodyBytes());
+            if (!form.isValid()) {
+                return ModelAndView.error("Validation Error: " + form.getErrorMessage());
+            }
 
-            Person updatedPerson = personService.updatePerson(id, personDTO);
+            Person updatedPerson = personService.updatePerson(id, form.getPersonDTO());
+            if (updatedPerson == null) {
+                return ModelAndView.error("Person not found");
+            }
 
             return ModelAndView.redirect("/person");
 
+        } catch (VersionConflictException e) {
+            // Someone saved a change after this form was loaded: show theirs instead of overwriting it
+            Person current = e.getCurrent();
+            return new ModelAndView("personEdit")
+                    .addObject("person", current)
+                    .addObject("title", "Edit Person: " + current.getName())
+                    .addObject("isEdit", true)
+                    .addObject("conflict", true)
+                    .addObject("errorMessage", "This person was changed by someone else while you were editing."
+                            + " The form now shows the latest details; make your changes again and resubmit.");
         } catch (IllegalArgumentException e) {
             return ModelAndView.error("Validation Error: " + e.getMessage());
         } catch (Exception e) {
@@ -4,18 +4,22 @@ import http.HttpResponse;
 
 import java.util.Map;
 
+/**
+ * A redirect never depends on the model, so the whole 302 response is built and encoded once when the view is
+ * created, and every render returns that same immutable response. ViewResolver keeps one RedirectView per target URL.
+ */
 public class RedirectView implements view.View{
 
-    private String redirectUrl;
+    private final HttpResponse response;
 
     public RedirectView(String redirectUrl) {
-        this.redirectUrl = redirectUrl;
+        HttpResponse response = new HttpResponse(302, "Found");
+        response.addHeader("Location", redirectUrl);
+        this.response = response.shared();
     }
 
     @Override
     public HttpResponse render(Map<String, Object> model) {
-        HttpResponse response = new HttpResponse(302, "Found");
-        response.addHeader("Location", redirectUrl);
         return response;
     }
 }
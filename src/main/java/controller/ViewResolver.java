@@ -1,10 +1,14 @@
 package controller;
 
+import view.EventStreamView;
+import view.ExportView;
 import view.PersonView;
+import view.StatsView;
 import view.View;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * ViewResolver maps view names to actual View implementations.
@@ -16,6 +20,10 @@ public class ViewResolver {
     // Map of view names and views
     private Map<String, View> views;
 
+    // Redirect targets are a handful of fixed URLs, so their (pre-encoded) views are built once and shared
+    private final Map<String, RedirectView> redirectViews = new ConcurrentHashMap<>();
+    private static final int MAX_CACHED_REDIRECTS = 128;
+
     public ViewResolver() {
         this.views = new HashMap<>();
         registerDefaultViews();
@@ -30,6 +38,10 @@ public class ViewResolver {
         views.put("personList", personView);
         views.put("personDetail", personView);
         views.put("personEdit", personView);
+        views.put("importResult", personView);
+        views.put("export", new ExportView());
+        views.put("events", new EventStreamView());
+        views.put("stats", new StatsView());
         views.put("error", personView);
 
     }
@@ -39,7 +51,7 @@ public class ViewResolver {
      */
     public View resolveView(String viewName) {
         if (viewName.startsWith("redirect:")) {
-            return new RedirectView(viewName.substring(9));
+            return resolveRedirect(viewName.substring(9));
         }
 
         // Look up registered views
@@ -51,6 +63,17 @@ public class ViewResolver {
         return views.get("personList");
     }
 
+    private RedirectView resolveRedirect(String url) {
+        RedirectView view = redirectViews.get(url);
+        if (view == null) {
+            view = new RedirectView(url);
+            if (redirectViews.size() < MAX_CACHED_REDIRECTS) {
+                redirectViews.putIfAbsent(url, view);
+            }
+        }
+        return view;
+    }
+
     public void registerView(String viewName, View view) {
         views.put(viewName, view);
     }
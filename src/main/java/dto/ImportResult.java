@@ -0,0 +1,66 @@
+package dto;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Outcome of a bulk import: how many rows were imported and why the others were not. Only the first
+ * MAX_REPORTED_ERRORS errors are kept with their row; the rest are only counted, so a badly broken upload cannot
+ * grow the report without limit.
+ */
+public class ImportResult {
+
+    public static final int MAX_REPORTED_ERRORS = 1000;
+
+    /**
+     * A rejected row: its line number in the upload and the validation message
+     */
+    public static class RowError {
+        private final int line;
+        private final String message;
+
+        public RowError(int line, String message) {
+            this.line = line;
+            this.message = message;
+        }
+
+        public int getLine() { return line; }
+        public String getMessage() { return message; }
+    }
+
+    private int imported;
+    private int rejected;
+    private final List<RowError> errors = new ArrayList<>();
+    private String abortMessage;
+
+    public void addImported(int count) {
+        imported += count;
+    }
+
+    public void addError(int line, String message) {
+        rejected++;
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            errors.add(new RowError(line, message));
+        }
+    }
+
+    public int getImported() { return imported; }
+    public int getRejected() { return rejected; }
+    /**
+     * The reported errors in line order (rows rejected by the repository are only known after their batch is saved)
+     */
+    public List<RowError> getErrors() {
+        List<RowError> sorted = new ArrayList<>(errors);
+        sorted.sort(Comparator.comparingInt(RowError::getLine));
+        return Collections.unmodifiableList(sorted);
+    }
+
+    /**
+     * Why the import stopped before the end of the upload (malformed CSV, or a batch that could not be saved), or null
+     * if every row was read and saved or rejected
+     */
+    public String getAbortMessage() { return abortMessage; }
+    public void setAbortMessage(String abortMessage) { this.abortMessage = abortMessage; }
+}
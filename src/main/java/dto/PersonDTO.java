@@ -9,6 +9,16 @@ public class PersonDTO {
     private String name;
     private String email;
     private int age;
+    // Version of the person the edit form was filled from; 0 when not given (creates)
+    private int version;
+
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
 
     public int getAge() {
         return age;
@@ -0,0 +1,57 @@
+package dto;
+
+import java.util.List;
+
+/**
+ * Point-in-time figures for the stats page and /person/stats?format=json: how many people are registered, how many
+ * creates, updates and deletes there have been since startup, how the ages are spread over brackets, and the most
+ * common email domains.
+ */
+public class RegistrationStats {
+
+    /**
+     * A labelled count: an age bracket ("18-24") or an email domain ("baylor.edu")
+     */
+    public static class Count {
+        private final String label;
+        private final long count;
+
+        public Count(String label, long count) {
+            this.label = label;
+            this.count = count;
+        }
+
+        public String getLabel() { return label; }
+        public long getCount() { return count; }
+    }
+
+    private final long total;
+    private final long created;
+    private final long updated;
+    private final long deleted;
+    private final List<Count> ageBrackets;
+    private final List<Count> topEmailDomains;
+
+    public RegistrationStats(long total, long created, long updated, long deleted, List<Count> ageBrackets,
+                             List<Count> topEmailDomains) {
+        this.total = total;
+        this.created = created;
+        this.updated = updated;
+        this.deleted = deleted;
+        this.ageBrackets = List.copyOf(ageBrackets);
+        this.topEmailDomains = List.copyOf(topEmailDomains);
+    }
+
+    public long getTotal() { return total; }
+    public long getCreated() { return created; }
+    public long getUpdated() { return updated; }
+    public long getDeleted() { return deleted; }
+    /**
+     * Every bracket, youngest first, including empty ones
+     */
+    public List<Count> getAgeBrackets() { return ageBrackets; }
+    /**
+     * Most registrations first
+     */
+    public List<Count> getTopEmailDomains() { return topEmailDomains; }
+}
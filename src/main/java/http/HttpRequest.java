@@ -1,5 +1,7 @@
 package http;
 
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -10,6 +12,10 @@ public class HttpRequest {
     private String method;
     private String path;
     private String body;
+    // The body as received; body is only decoded from it when someone asks for the text
+    private byte[] bodyBytes;
+    // Set instead of body for routes that stream their upload (see BaylorSportsHttpServer.isStreamingUpload)
+    private InputStream bodyStream;
     private Map<String, String> headers;
     private Map<String, String> queryParams;
 
@@ -37,8 +43,33 @@ public class HttpRequest {
         queryParams.put(key, value);
     }
 
-    public String getBody() { return body; }
-    public void setBody(String body) { this.body = body; }
+    public String getBody() {
+        if (body == null) {
+            body = new String(bodyBytes, StandardCharsets.UTF_8);
+        }
+        return body;
+    }
+    public void setBody(String body) {
+        this.body = body;
+        this.bodyBytes = null;
+    }
+
+    /**
+     * The body as raw bytes, for decoders that work on them directly (PersonFormDecoder)
+     */
+    public byte[] getBodyBytes() {
+        if (bodyBytes == null) {
+            bodyBytes = body.getBytes(StandardCharsets.UTF_8);
+        }
+        return bodyBytes;
+    }
+    public void setBody(byte[] bodyBytes) {
+        this.bodyBytes = bodyBytes;
+        this.body = null;
+    }
+
+    public InputStream getBodyStream() { return bodyStream; }
+    public void setBodyStream(InputStream bodyStream) { this.bodyStream = bodyStream; }
 
 
 }
@@ -1,57 +1,254 @@
 package http;
 
+import template.Utf8HtmlWriter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Class to contain the details of an HTTP Response
+ *
+ * The body is kept as UTF-8 bytes: either a fixed byte[] or the pooled Utf8HtmlWriter the page was rendered into.
+ * writeTo streams the head and body straight to the socket, and release() hands a pooled writer back afterwards.
+ *
+ * Responses that only use the default headers reuse a pre-encoded status line and header block per status, so only
+ * Content-Length is formatted per response. Fully static responses (redirects) are built once and frozen with
+ * shared(): the frozen response is encoded up front, cannot be changed, and the same instance is handed to every
+ * request.
+ *
+ * A StreamingBody is written while the response is sent instead, in chunks of CHUNK_SIZE bytes with
+ * Transfer-Encoding: chunked (optionally gzipped), so memory use does not depend on how big the body gets. Whatever
+ * the body holds on to while it is sent (a change feed subscription) is registered with closeOnRelease(), so it is let
+ * go by release() even if the client disconnects before the body is written.
  */
 public class HttpResponse {
 
     private int statusCode;
     private String statusMessage;
     private Map<String, String> headers;
-    private String body;
+    private byte[] body;
+    private Utf8HtmlWriter bodyWriter;
+    private boolean customHeaders;
+    private byte[] encoded;
+    private StreamingBody streamingBody;
+    private boolean gzip;
+    private Closeable resource;
+
+    private static final int CHUNK_SIZE = 16 * 1024;
+
+    // "404 Not Found" → "HTTP/1.1 404 Not Found\r\nContent-Type: ...\r\nConnection: close\r\n" encoded once
+    private static final Map<String, byte[]> DEFAULT_HEADS = new ConcurrentHashMap<>();
+    private static final int MAX_CACHED_HEADS = 64;
+
+    private HttpResponse(int statusCode, String statusMessage, Map<String, String> headers, byte[] encoded) {
+        this.statusCode = statusCode;
+        this.statusMessage = statusMessage;
+        this.headers = headers;
+        this.body = new byte[0];
+        this.encoded = encoded;
+    }
 
     public HttpResponse(int statusCode, String statusMessage) {
         this.statusCode = statusCode;
         this.statusMessage = statusMessage;
         this.headers = new HashMap<>();
-        this.body = "";
+        this.body = new byte[0];
 
         headers.put("Content-Type", "text/html; charset=UTF-8");
         headers.put("Connection", "close");
     }
 
     public int getStatusCode() { return statusCode; }
-    public void setStatusCode(int statusCode) { this.statusCode = statusCode; }
+    public void setStatusCode(int statusCode) {
+        checkNotShared();
+        this.statusCode = statusCode;
+    }
 
     public String getStatusMessage() { return statusMessage; }
-    public void setStatusMessage(String statusMessage) { this.statusMessage = statusMessage; }
+    public void setStatusMessage(String statusMessage) {
+        checkNotShared();
+        this.statusMessage = statusMessage;
+    }
 
     public Map<String, String> getHeaders() { return headers; }
     public void addHeader(String key, String value) {
+        checkNotShared();
         headers.put(key, value);
+        customHeaders = true;
     }
 
-    public String getBody() { return body; }
-    public void setBody(String body) { this.body = body; }
+    public void setBody(String body) {
+        checkNotShared();
+        releaseBody();
+        this.body = body.getBytes(StandardCharsets.UTF_8);
+    }
 
-    public String toHttpString() {
-        StringBuilder response = new StringBuilder();
-        response.append("HTTP/1.1 ").append(statusCode).append(" ").append(statusMessage).append("\r\n");
+    /**
+     * Use a rendered page as the body. The response takes ownership of the writer until release() is called.
+     */
+    public void setBody(Utf8HtmlWriter writer) {
+        checkNotShared();
+        releaseBody();
+        this.body = null;
+        this.bodyWriter = writer;
+    }
+
+    /**
+     * Produce the body while the response is sent, as chunks, gzip-compressed if gzip is true
+     */
+    public void setStreamingBody(StreamingBody streamingBody, boolean gzip) {
+        checkNotShared();
+        releaseBody();
+        this.body = new byte[0];
+        this.streamingBody = streamingBody;
+        this.gzip = gzip;
+        addHeader("Transfer-Encoding", "chunked");
+        if (gzip) {
+            addHeader("Content-Encoding", "gzip");
+        }
+    }
 
-        headers.put("Content-Length", String.valueOf(body.getBytes().length));
+    /**
+     * Close resource when this response is released, whether or not the body was ever written
+     */
+    public void closeOnRelease(Closeable resource) {
+        checkNotShared();
+        this.resource = resource;
+    }
 
-        for (Map.Entry<String, String> header : headers.entrySet()) {
-            response.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+    /**
+     * Body size in bytes, or -1 for a streaming body whose size is not known until it has been sent
+     */
+    public int getContentLength() {
+        if (streamingBody != null) {
+            return -1;
+        }
+        return bodyWriter != null ? bodyWriter.size() : body.length;
+    }
+
+    /**
+     * A frozen copy of this response, encoded once, for a response that never changes (a redirect). It is immutable,
+     * so one instance can be returned to every request on every thread; its setters throw
+     * UnsupportedOperationException.
+     */
+    public HttpResponse shared() {
+        return new HttpResponse(statusCode, statusMessage, Map.copyOf(headers), encode());
+    }
+
+    /**
+     * Encode this whole response, so a response that never changes can be built once and sent many times
+     */
+    public byte[] encode() {
+        if (encoded != null) {
+            return encoded.clone();
         }
+        if (bodyWriter != null || streamingBody != null) {
+            throw new IllegalStateException("Pooled bodies cannot be pre-encoded");
+        }
+        byte[] head = encodeHead();
+        byte[] bytes = new byte[head.length + body.length];
+        System.arraycopy(head, 0, bytes, 0, head.length);
+        System.arraycopy(body, 0, bytes, head.length, body.length);
+        return bytes;
+    }
+
+    private void checkNotShared() {
+        if (encoded != null) {
+            throw new UnsupportedOperationException("A shared response cannot be changed");
+        }
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        if (encoded != null) {
+            out.write(encoded);
+            out.flush();
+            return;
+        }
+
+        out.write(encodeHead());
 
-        response.append("\r\n");
-        response.append(body);
+        if (streamingBody != null) {
+            ChunkedOutputStream chunked = new ChunkedOutputStream(out, CHUNK_SIZE);
+            OutputStream bodyOut = gzip ? new GZIPOutputStream(chunked, CHUNK_SIZE) : chunked;
+            streamingBody.writeTo(bodyOut);
+            // Finishes the gzip stream (if any) and writes the last chunk; the socket stays open
+            bodyOut.close();
+            return;
+        }
 
-        return response.toString();
+        if (bodyWriter != null) {
+            bodyWriter.writeTo(out);
+        } else {
+            out.write(body);
+        }
+        out.flush();
     }
 
+    private byte[] encodeHead() {
+        String contentLength = streamingBody != null
+                ? "\r\n"
+                : "Content-Length: " + getContentLength() + "\r\n\r\n";
+
+        if (!customHeaders) {
+            byte[] prefix = defaultHead(statusCode, statusMessage);
+            byte[] suffix = contentLength.getBytes(StandardCharsets.ISO_8859_1);
+            byte[] head = new byte[prefix.length + suffix.length];
+            System.arraycopy(prefix, 0, head, 0, prefix.length);
+            System.arraycopy(suffix, 0, head, prefix.length, suffix.length);
+            return head;
+        }
 
+        StringBuilder head = new StringBuilder(256);
+        head.append("HTTP/1.1 ").append(statusCode).append(" ").append(statusMessage).append("\r\n");
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            head.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+        }
+        head.append(contentLength);
+        return head.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static byte[] defaultHead(int statusCode, String statusMessage) {
+        String key = statusCode + " " + statusMessage;
+        byte[] head = DEFAULT_HEADS.get(key);
+        if (head == null) {
+            head = ("HTTP/1.1 " + key + "\r\n"
+                    + "Content-Type: text/html; charset=UTF-8\r\n"
+                    + "Connection: close\r\n").getBytes(StandardCharsets.ISO_8859_1);
+            if (DEFAULT_HEADS.size() < MAX_CACHED_HEADS) {
+                DEFAULT_HEADS.put(key, head);
+            }
+        }
+        return head;
+    }
+
+    /**
+     * Give a pooled body writer back and close the registered resource once the response has been sent (or failed to)
+     */
+    public void release() {
+        releaseBody();
+        if (resource != null) {
+            Closeable closing = resource;
+            resource = null;
+            try {
+                closing.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private void releaseBody() {
+        if (bodyWriter != null) {
+            bodyWriter.release();
+            bodyWriter = null;
+            body = new byte[0];
+        }
+    }
 }
@@ -0,0 +1,14 @@
+package http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A response body produced while it is being sent, for responses too big to build in memory first. HttpResponse
+ * sends it with chunked transfer encoding (and gzip if asked), so the size does not have to be known up front.
+ */
+@FunctionalInterface
+public interface StreamingBody {
+
+    void writeTo(OutputStream out) throws IOException;
+}
@@ -6,12 +6,15 @@ public class Person {
     private String name;
     private int age;
     private String email;
+    // Bumped on every update, so an edit made from an out-of-date form can be detected (optimistic concurrency)
+    private int version;
 
     private Person(PersonBuilder builder) {
         this.id = builder.id;
         this.name = builder.name;
         this.email = builder.email;
         this.age = builder.age;
+        this.version = builder.version;
     }
 
     /**
@@ -26,6 +29,7 @@ public class Person {
 
         private String email;
         private int age;
+        private int version = 1;
 
         public PersonBuilder(int id, String name) {
             this.id = id;
@@ -42,6 +46,11 @@ public class Person {
             return this;
         }
 
+        public PersonBuilder version(int version) {
+            this.version = version;
+            return this;
+        }
+
         public Person build() {
             return new Person(this);
         }
@@ -78,4 +87,12 @@ public class Person {
     public void setEmail(String email) {
         this.email = email;
     }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
 }
@@ -0,0 +1,81 @@
+package repository;
+
+import model.Person;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntFunction;
+
+/**
+ * Sorted index on age for range queries such as "ages 18-25". Each age keeps the ids of its people in id order;
+ * the people themselves are read through the PersonStore when a query returns them.
+ * Not thread-safe; PersonIndexes guards it.
+ */
+class AgeIndex {
+
+    private final IntFunction<Person> people;
+    private final TreeMap<Integer, SortedIdList> byAge = new TreeMap<>();
+
+    AgeIndex(IntFunction<Person> people) {
+        this.people = people;
+    }
+
+    void add(int id, Person person) {
+        byAge.computeIfAbsent(person.getAge(), age -> new SortedIdList()).add(id, entry -> Integer.compare(entry, id));
+    }
+
+    void remove(int id, Person person) {
+        SortedIdList ids = byAge.get(person.getAge());
+        if (ids != null && ids.remove(id, entry -> Integer.compare(entry, id)) && ids.size() == 0) {
+            byAge.remove(person.getAge());
+        }
+    }
+
+    /**
+     * Replace the index with everyone in people, which is in id order
+     */
+    void load(List<Person> everyone) {
+        Map<Integer, int[]> idsByAge = new HashMap<>();
+        Map<Integer, Integer> counts = new HashMap<>();
+        for (Person person : everyone) {
+            int count = counts.getOrDefault(person.getAge(), 0);
+            int[] ids = idsByAge.get(person.getAge());
+            if (ids == null || ids.length == count) {
+                ids = ids == null ? new int[16] : Arrays.copyOf(ids, count * 2);
+                idsByAge.put(person.getAge(), ids);
+            }
+            ids[count] = person.getId();
+            counts.put(person.getAge(), count + 1);
+        }
+        byAge.clear();
+        idsByAge.forEach((age, ids) -> {
+            SortedIdList list = new SortedIdList();
+            list.load(ids, counts.get(age));
+            byAge.put(age, list);
+        });
+    }
+
+    /**
+     * Up to limit people with minAge <= age <= maxAge, youngest first
+     */
+    List<Person> between(int minAge, int maxAge, int limit) {
+        List<Person> matches = new ArrayList<>();
+        if (minAge > maxAge || limit <= 0) {
+            return matches;
+        }
+        for (SortedIdList ids : byAge.subMap(minAge, true, maxAge, true).values()) {
+            ids.forEachFrom(entry -> 0, entry -> {
+                matches.add(people.apply(entry));
+                return matches.size() < limit;
+            });
+            if (matches.size() == limit) {
+                break;
+            }
+        }
+        return matches;
+    }
+}
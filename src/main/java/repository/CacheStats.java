@@ -0,0 +1,51 @@
+package repository;
+
+/**
+ * Point-in-time counters of a CachingPersonRepository
+ */
+public final class CacheStats {
+
+    private final long hits;
+    private final long misses;
+    private final long loads;
+    private final long collapsedLoads;
+    private final long evictions;
+    private final int size;
+    private final int maximumSize;
+
+    CacheStats(long hits, long misses, long loads, long collapsedLoads, long evictions, int size, int maximumSize) {
+        this.hits = hits;
+        this.misses = misses;
+        this.loads = loads;
+        this.collapsedLoads = collapsedLoads;
+        this.evictions = evictions;
+        this.size = size;
+        this.maximumSize = maximumSize;
+    }
+
+    public long getHits() { return hits; }
+    public long getMisses() { return misses; }
+
+    /**
+     * Misses that went to the store; the rest waited for a load of the same id that was already running
+     */
+    public long getLoads() { return loads; }
+    public long getCollapsedLoads() { return collapsedLoads; }
+    public long getEvictions() { return evictions; }
+    public int getSize() { return size; }
+    public int getMaximumSize() { return maximumSize; }
+
+    /**
+     * Fraction of lookups answered from the cache, 0 when there were none
+     */
+    public double getHitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hits=%d misses=%d hitRate=%.3f loads=%d collapsedLoads=%d evictions=%d size=%d/%d",
+                hits, misses, getHitRate(), loads, collapsedLoads, evictions, size, maximumSize);
+    }
+}
@@ -0,0 +1,160 @@
+package repository;
+
+import model.Person;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+
+/**
+ * Read-through / write-through cache of people by id in front of another PersonRepository, for backends where a
+ * lookup is not just a map read (JdbcPersonRepository). This is the Identity Map the comment on
+ * InMemoryPersonRepository talks about: findById() answers from a bounded TinyLfuCache and only goes to the
+ * repository behind it on a miss.
+ *
+ * - Read-through: concurrent misses on the same id are collapsed into a single load; the other callers wait for its
+ *   result instead of all querying the store.
+ * - Write-through: every write goes to the repository behind, which reports each applied change to this cache
+ *   through its ChangeListener. The cache is updated from there, so it sees changes in the order the store applied
+ *   them, and the change is then passed on to whoever registered a listener here.
+ *
+ * Other queries (email, name prefix, age range, findAll) go straight through, since their results are not keyed by
+ * id. Absent ids are not cached.
+ */
+public class CachingPersonRepository implements PersonRepository {
+
+    private final PersonRepository delegate;
+    private final TinyLfuCache<Integer, Person> cache;
+    private final ConcurrentHashMap<Integer, CompletableFuture<Person>> loading = new ConcurrentHashMap<>();
+    private volatile ChangeListener changeListener;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder collapsedLoads = new LongAdder();
+
+    public CachingPersonRepository(PersonRepository delegate, int maximumSize) {
+        this.delegate = delegate;
+        this.cache = new TinyLfuCache<>(maximumSize);
+        delegate.setChangeListener(this::changed);
+    }
+
+    private void changed(Person previous, Person current) {
+        if (current != null) {
+            cache.put(current.getId(), current);
+        } else {
+            cache.invalidate(previous.getId());
+        }
+        ChangeListener listener = changeListener;
+        if (listener != null) {
+            listener.changed(previous, current);
+        }
+    }
+
+    @Override
+    public Person findById(int id) {
+        Person person = cache.get(id);
+        if (person != null) {
+            hits.increment();
+            return person;
+        }
+        misses.increment();
+
+        CompletableFuture<Person> load = new CompletableFuture<>();
+        CompletableFuture<Person> running = loading.putIfAbsent(id, load);
+        if (running != null) {
+            collapsedLoads.increment();
+            return running.join();
+        }
+        loads.increment();
+        try {
+            long stamp = cache.stamp();
+            person = delegate.findById(id);
+            if (person != null) {
+                cache.putIfUnchanged(id, person, stamp);
+            }
+            load.complete(person);
+            return person;
+        } catch (RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(id, load);
+        }
+    }
+
+    public CacheStats getStats() {
+        return new CacheStats(hits.sum(), misses.sum(), loads.sum(), collapsedLoads.sum(), cache.evictionCount(),
+                cache.size(), cache.maximumSize());
+    }
+
+    @Override
+    public void save(int id, Person person) {
+        delegate.save(id, person);
+    }
+
+    @Override
+    public List<String> saveAll(List<Person> people) {
+        return delegate.saveAll(people);
+    }
+
+    @Override
+    public boolean delete(int id) {
+        return delegate.delete(id);
+    }
+
+    @Override
+    public boolean update(int id, int expectedVersion, Person person) {
+        return delegate.update(id, expectedVersion, person);
+    }
+
+    @Override
+    public void writeBatch(Runnable writes) {
+        delegate.writeBatch(writes);
+    }
+
+    @Override
+    public Person findByEmail(String email) {
+        return delegate.findByEmail(email);
+    }
+
+    @Override
+    public List<Person> findByNamePrefix(String prefix, int limit) {
+        return delegate.findByNamePrefix(prefix, limit);
+    }
+
+    @Override
+    public List<Person> findByAgeRange(int minAge, int maxAge, int limit) {
+        return delegate.findByAgeRange(minAge, maxAge, limit);
+    }
+
+    @Override
+    public List<Person> findAll() {
+        return delegate.findAll();
+    }
+
+    @Override
+    public <A> A aggregate(Supplier<A> supplier, BiConsumer<A, Person> accumulator, BinaryOperator<A> combiner) {
+        return delegate.aggregate(supplier, accumulator, combiner);
+    }
+
+    @Override
+    public int getHighestId() {
+        return delegate.getHighestId();
+    }
+
+    @Override
+    public void setChangeListener(ChangeListener changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+}
@@ -0,0 +1,489 @@
+package repository;
+
+import model.Person;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Struct-of-arrays store: instead of one Person object (plus two String objects) per registration, every field is
+ * a column. People are kept in leaves of 32 consecutive ids, each leaf an int[] column of ages and one of versions
+ * and a long[] column each for names and emails. Names and emails are UTF-8 bytes appended to one shared byte[] arena,
+ * and the long packs where one starts and how long it is. Person objects are only created when something is read.
+ *
+ * The leaves hang off a 32-way radix trie indexed by the id, the same shape as PersonSnapshot, and every version of
+ * it is immutable: a write copies the one leaf it changes and the few branches above it and publishes the new root.
+ * findAll() hands out the current version as it is and get() reads it without a lock; only writers lock.
+ *
+ * Updated or deleted strings leave dead bytes in the arena; once more than half of it is dead the live strings are
+ * copied into a fresh arena and the leaves are rebuilt to point into it. The arena is one array, so it holds at most
+ * about 2 GiB of names and emails; a write past that fails with an IllegalStateException and leaves the store as it
+ * was. Bytes already in an arena are never overwritten (growing or compacting it copies into a new array), so an
+ * older version keeps reading the arena it was made from.
+ */
+public class ColumnarPersonStore implements PersonStore {
+
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    private static final int INITIAL_ARENA = 64 * 1024;
+    // Largest array length every JVM allocates
+    private static final int MAX_ARRAY = Integer.MAX_VALUE - 8;
+
+    // A null string is stored as this reference; real references pack the offset above the low 24 bits of length
+    private static final long NULL_REF = -1L;
+    private static final int LENGTH_BITS = 24;
+    private static final long LENGTH_MASK = (1L << LENGTH_BITS) - 1;
+
+    private final Object writeLock = new Object();
+
+    private volatile Columns current;
+
+    // Guarded by writeLock: the arena the next version will use, how much of it is taken and how much of that is dead
+    private byte[] arena = new byte[INITIAL_ARENA];
+    private int arenaSize;
+    private int deadBytes;
+
+    public ColumnarPersonStore() {
+        current = new Columns(null, 0, 0, arena);
+    }
+
+    @Override
+    public void put(int id, Person person) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Person id cannot be negative: " + id);
+        }
+        byte[] name = encode(person.getName());
+        byte[] email = encode(person.getEmail());
+        synchronized (writeLock) {
+            // Anything that can fail happens before the version is touched
+            reserve((long) length(name) + length(email));
+            Columns version = current;
+            Leaf leaf = version.leaf(id);
+            boolean stored = leaf != null && leaf.has(id & MASK);
+            if (stored) {
+                release(leaf.names[id & MASK]);
+                release(leaf.emails[id & MASK]);
+            }
+            Leaf changed = Leaf.with(leaf, id, person.getAge(), person.getVersion(), store(name), store(email));
+            current = version.with(id, changed, stored ? version.size : version.size + 1, arena);
+            compactIfNeeded();
+        }
+    }
+
+    @Override
+    public Person get(int id) {
+        return current.find(id);
+    }
+
+    @Override
+    public boolean replace(int id, Person person) {
+        byte[] name = encode(person.getName());
+        byte[] email = encode(person.getEmail());
+        synchronized (writeLock) {
+            if (current.find(id) == null) {
+                return false;
+            }
+            reserve((long) length(name) + length(email));
+            Columns version = current;
+            Leaf leaf = version.leaf(id);
+            release(leaf.names[id & MASK]);
+            release(leaf.emails[id & MASK]);
+            Leaf changed = Leaf.with(leaf, id, person.getAge(), person.getVersion(), store(name), store(email));
+            current = version.with(id, changed, version.size, arena);
+            compactIfNeeded();
+            return true;
+        }
+    }
+
+    @Override
+    public boolean remove(int id) {
+        synchronized (writeLock) {
+            Columns version = current;
+            Leaf leaf = version.leaf(id);
+            if (leaf == null || !leaf.has(id & MASK)) {
+                return false;
+            }
+            release(leaf.names[id & MASK]);
+            release(leaf.emails[id & MASK]);
+            current = version.with(id, leaf.without(id & MASK), version.size - 1, arena);
+            compactIfNeeded();
+            return true;
+        }
+    }
+
+    /**
+     * Everyone in id order: the current version, handed out as it is (nothing is copied). No Person or String is
+     * held; each one is built when its element is read.
+     */
+    @Override
+    public List<Person> findAll() {
+        return current;
+    }
+
+    @Override
+    public boolean hasImmutableVersions() {
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return current.size;
+    }
+
+    // Up to 32 people with consecutive ids from base: bit i of present says whether base + i is stored, and its
+    // fields are element i of each column. Never changed once built; a write builds a copy.
+    private static final class Leaf {
+        final int base;
+        final int present;
+        final int[] ages;
+        final int[] versions;
+        final long[] names;
+        final long[] emails;
+
+        Leaf(int base, int present, int[] ages, int[] versions, long[] names, long[] emails) {
+            this.base = base;
+            this.present = present;
+            this.ages = ages;
+            this.versions = versions;
+            this.names = names;
+            this.emails = emails;
+        }
+
+        boolean has(int slot) {
+            return (present & (1 << slot)) != 0;
+        }
+
+        // Copy of leaf (a new leaf if it is null) with id's fields set
+        static Leaf with(Leaf leaf, int id, int age, int version, long name, long email) {
+            int slot = id & MASK;
+            int[] ages = leaf != null ? leaf.ages.clone() : new int[WIDTH];
+            int[] versions = leaf != null ? leaf.versions.clone() : new int[WIDTH];
+            long[] names = leaf != null ? leaf.names.clone() : new long[WIDTH];
+            long[] emails = leaf != null ? leaf.emails.clone() : new long[WIDTH];
+            ages[slot] = age;
+            versions[slot] = version;
+            names[slot] = name;
+            emails[slot] = email;
+            int present = leaf != null ? leaf.present : 0;
+            return new Leaf(id & ~MASK, present | (1 << slot), ages, versions, names, emails);
+        }
+
+        // This leaf without slot's person, or null if nobody is left; the columns are shared, slot is just not present
+        Leaf without(int slot) {
+            int remaining = present & ~(1 << slot);
+            return remaining == 0 ? null : new Leaf(base, remaining, ages, versions, names, emails);
+        }
+
+        Person person(int slot, byte[] arena) {
+            return new Person.PersonBuilder(base + slot, load(arena, names[slot]))
+                    .age(ages[slot])
+                    .email(load(arena, emails[slot]))
+                    .version(versions[slot])
+                    .build();
+        }
+    }
+
+    // Interior node: a Leaf or Branch per child (null where nobody is stored) and the number of people beneath
+    private static final class Branch {
+        final Object[] children;
+        final int count;
+
+        Branch(Object[] children, int count) {
+            this.children = children;
+            this.count = count;
+        }
+    }
+
+    // One immutable version: the trie's root (a Leaf when shift is 0, otherwise a Branch), the number of people in it
+    // and the arena their strings are in. It is also the read-only list findAll() hands out: get(i) walks one path
+    // down by the branch counts (O(log n)) and iteration walks the leaves once, so it is not RandomAccess.
+    private static final class Columns extends AbstractList<Person> {
+        final Object root;
+        final int shift;
+        final int size;
+        final byte[] arena;
+
+        Columns(Object root, int shift, int size, byte[] arena) {
+            this.root = root;
+            this.shift = shift;
+            this.size = size;
+            this.arena = arena;
+        }
+
+        // The leaf id belongs to, or null if nobody in its range is stored
+        Leaf leaf(int id) {
+            if (root == null || id < 0 || !fits(id, shift)) {
+                return null;
+            }
+            Object node = root;
+            for (int level = shift; level > 0; level -= BITS) {
+                node = ((Branch) node).children[(id >>> level) & MASK];
+                if (node == null) {
+                    return null;
+                }
+            }
+            return (Leaf) node;
+        }
+
+        Person find(int id) {
+            Leaf leaf = leaf(id);
+            return leaf != null && leaf.has(id & MASK) ? leaf.person(id & MASK, arena) : null;
+        }
+
+        // Next version, with leaf (null to drop it) in place of the one id belongs to
+        Columns with(int id, Leaf leaf, int size, byte[] arena) {
+            Object newRoot = root;
+            int newShift = shift;
+            while (!fits(id, newShift)) {
+                if (newRoot != null) {
+                    Object[] children = new Object[WIDTH];
+                    children[0] = newRoot;
+                    newRoot = new Branch(children, count(newRoot));
+                }
+                newShift += BITS;
+            }
+            newRoot = place(newRoot, newShift, id, leaf);
+            return new Columns(newRoot, newRoot == null ? 0 : newShift, size, arena);
+        }
+
+        @Override
+        public Person get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            // Skip whole subtrees by their counts on the way down, then take the index-th present slot of the leaf
+            Object node = root;
+            for (int level = shift; level > 0; level -= BITS) {
+                for (Object child : ((Branch) node).children) {
+                    if (child == null) {
+                        continue;
+                    }
+                    int count = count(child);
+                    if (index < count) {
+                        node = child;
+                        break;
+                    }
+                    index -= count;
+                }
+            }
+            Leaf leaf = (Leaf) node;
+            int present = leaf.present;
+            for (int i = 0; i < index; i++) {
+                present &= present - 1;
+            }
+            return leaf.person(Integer.numberOfTrailingZeros(present), arena);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Iterator<Person> iterator() {
+            return new ColumnsIterator();
+        }
+
+        // Depth-first walk to each leaf in turn using a small explicit stack (at most 7 levels), then its present slots
+        private final class ColumnsIterator implements Iterator<Person> {
+            private final Object[] nodes = new Object[8];
+            private final int[] positions = new int[8];
+            private int depth;
+            private Leaf leaf;
+            private int remaining;
+
+            ColumnsIterator() {
+                if (root != null) {
+                    nodes[0] = root;
+                    depth = 0;
+                } else {
+                    depth = -1;
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                while (remaining == 0) {
+                    if (!nextLeaf()) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            private boolean nextLeaf() {
+                while (depth >= 0) {
+                    Object node = nodes[depth];
+                    if (node instanceof Leaf next) {
+                        depth--;
+                        leaf = next;
+                        remaining = next.present;
+                        return true;
+                    }
+                    if (positions[depth] == WIDTH) {
+                        depth--;
+                        continue;
+                    }
+                    Object child = ((Branch) node).children[positions[depth]++];
+                    if (child != null) {
+                        depth++;
+                        nodes[depth] = child;
+                        positions[depth] = 0;
+                    }
+                }
+                return false;
+            }
+
+            @Override
+            public Person next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int slot = Integer.numberOfTrailingZeros(remaining);
+                remaining &= remaining - 1;
+                return leaf.person(slot, arena);
+            }
+        }
+    }
+
+    // Path copy down to id's leaf and put leaf there; a branch left with nobody beneath it becomes null
+    private static Object place(Object node, int level, int id, Leaf leaf) {
+        if (level == 0) {
+            return leaf;
+        }
+        Object[] children = node != null ? ((Branch) node).children.clone() : new Object[WIDTH];
+        int index = (id >>> level) & MASK;
+        children[index] = place(children[index], level - BITS, id, leaf);
+        int count = 0;
+        for (Object child : children) {
+            if (child != null) {
+                count += count(child);
+            }
+        }
+        return count == 0 ? null : new Branch(children, count);
+    }
+
+    private static int count(Object node) {
+        return node instanceof Leaf leaf ? Integer.bitCount(leaf.present) : ((Branch) node).count;
+    }
+
+    private static boolean fits(int id, int shift) {
+        int bits = shift + BITS;
+        return bits >= 31 || (id >>> bits) == 0;
+    }
+
+    private static byte[] encode(String value) {
+        if (value == null) {
+            return null;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > LENGTH_MASK) {
+            throw new IllegalArgumentException("Value too long to store: " + bytes.length + " bytes");
+        }
+        return bytes;
+    }
+
+    private static int length(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    // Make room for bytes more in the arena. Sizes are worked out in long arithmetic, since doubling an arena past
+    // 1 GiB overflows an int, and growth stops at the largest array the JVM allocates.
+    private void reserve(long bytes) {
+        if (arenaSize + bytes <= arena.length) {
+            return;
+        }
+        if (arenaSize + bytes > MAX_ARRAY && deadBytes > 0) {
+            compact();
+        }
+        long needed = arenaSize + bytes;
+        if (needed > MAX_ARRAY) {
+            throw new IllegalStateException("The columnar store's string arena is full (" + arenaSize
+                    + " bytes of names and emails); use the offheap store for this many people");
+        }
+        if (needed > arena.length) {
+            arena = Arrays.copyOf(arena, (int) Math.min(MAX_ARRAY, Math.max(2L * arena.length, needed)));
+        }
+    }
+
+    // Only called once reserve() has made room
+    private long store(byte[] bytes) {
+        if (bytes == null) {
+            return NULL_REF;
+        }
+        System.arraycopy(bytes, 0, arena, arenaSize, bytes.length);
+        long ref = ((long) arenaSize << LENGTH_BITS) | bytes.length;
+        arenaSize += bytes.length;
+        return ref;
+    }
+
+    private static String load(byte[] arena, long ref) {
+        if (ref == NULL_REF) {
+            return null;
+        }
+        return new String(arena, (int) (ref >>> LENGTH_BITS), (int) (ref & LENGTH_MASK), StandardCharsets.UTF_8);
+    }
+
+    private void release(long ref) {
+        if (ref != NULL_REF) {
+            deadBytes += (int) (ref & LENGTH_MASK);
+        }
+    }
+
+    // Copy the live strings into a fresh arena once at least half of the current one is dead
+    private void compactIfNeeded() {
+        if (deadBytes >= INITIAL_ARENA && 2L * deadBytes >= arenaSize) {
+            compact();
+        }
+    }
+
+    private void compact() {
+        Columns version = current;
+        byte[] old = arena;
+        arena = new byte[(int) Math.min(MAX_ARRAY, Math.max(INITIAL_ARENA, 2L * (arenaSize - deadBytes)))];
+        arenaSize = 0;
+        deadBytes = 0;
+        current = new Columns(relocate(version.root, old), version.shift, version.size, arena);
+    }
+
+    // Copy of node whose strings have been appended from old to the new arena. Ages and versions are shared, since
+    // no leaf's columns change once it is built.
+    private Object relocate(Object node, byte[] old) {
+        if (node == null) {
+            return null;
+        }
+        if (node instanceof Branch branch) {
+            Object[] children = new Object[WIDTH];
+            for (int i = 0; i < WIDTH; i++) {
+                children[i] = relocate(branch.children[i], old);
+            }
+            return new Branch(children, branch.count);
+        }
+        Leaf leaf = (Leaf) node;
+        long[] names = new long[WIDTH];
+        long[] emails = new long[WIDTH];
+        for (int present = leaf.present; present != 0; present &= present - 1) {
+            int slot = Integer.numberOfTrailingZeros(present);
+            names[slot] = moveFrom(old, leaf.names[slot]);
+            emails[slot] = moveFrom(old, leaf.emails[slot]);
+        }
+        return new Leaf(leaf.base, leaf.present, leaf.ages, leaf.versions, names, emails);
+    }
+
+    private long moveFrom(byte[] old, long ref) {
+        if (ref == NULL_REF) {
+            return NULL_REF;
+        }
+        int length = (int) (ref & LENGTH_MASK);
+        System.arraycopy(old, (int) (ref >>> LENGTH_BITS), arena, arenaSize, length);
+        long moved = ((long) arenaSize << LENGTH_BITS) | length;
+        arenaSize += length;
+        return moved;
+    }
+}
@@ -0,0 +1,146 @@
+package repository;
+
+import model.Person;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.function.IntFunction;
+
+/**
+ * Unique hash index on email. Emails are normalized (trimmed, lower case) so "Fan@Baylor.edu " and "fan@baylor.edu"
+ * count as the same address.
+ *
+ * An open-addressing table of two parallel int arrays, the email's hash and the owner's id, with linear probing.
+ * Emails are not kept: on a hash match the owner is read through the PersonStore and its email compared. Deletes
+ * shift the following entries back instead of leaving tombstones, so lookups never slow down after many deletes.
+ * Not thread-safe; PersonIndexes guards it.
+ */
+class EmailIndex {
+
+    private static final int EMPTY = Integer.MIN_VALUE;
+
+    private final IntFunction<Person> people;
+    private int[] hashes = new int[16];
+    private int[] ids = newIds(16);
+    private int count;
+
+    EmailIndex(IntFunction<Person> people) {
+        this.people = people;
+    }
+
+    static String normalize(String email) {
+        return email == null ? null : email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    Person get(String email) {
+        String key = normalize(email);
+        if (key == null) {
+            return null;
+        }
+        int hash = hash(key);
+        int mask = ids.length - 1;
+        for (int slot = hash & mask; ids[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (hashes[slot] == hash) {
+                Person owner = people.apply(ids[slot]);
+                if (key.equals(normalize(owner.getEmail()))) {
+                    return owner;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * True if the email belongs to someone other than the given id
+     */
+    boolean isTakenByOther(String email, int id) {
+        Person owner = get(email);
+        return owner != null && owner.getId() != id;
+    }
+
+    void add(int id, Person person) {
+        String key = normalize(person.getEmail());
+        if (key == null) {
+            return;
+        }
+        if ((count + 1) * 2 > ids.length) {
+            resize(ids.length * 2);
+        }
+        insert(hash(key), id);
+        count++;
+    }
+
+    /**
+     * Drops the entry for person's email if it belongs to id. Matched by id, not by object: store engines that rebuild
+     * a Person on every get() hand out a different object than the one that was added.
+     */
+    void remove(int id, Person person) {
+        String key = normalize(person.getEmail());
+        if (key == null) {
+            return;
+        }
+        int hash = hash(key);
+        int mask = ids.length - 1;
+        for (int slot = hash & mask; ids[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (ids[slot] == id && hashes[slot] == hash) {
+                deleteSlot(slot);
+                count--;
+                return;
+            }
+        }
+    }
+
+    void clear() {
+        hashes = new int[16];
+        ids = newIds(16);
+        count = 0;
+    }
+
+    // Backward-shift deletion: move later entries of the probe run into the hole while their home slot allows it
+    private void deleteSlot(int hole) {
+        int mask = ids.length - 1;
+        for (int slot = (hole + 1) & mask; ids[slot] != EMPTY; slot = (slot + 1) & mask) {
+            int home = hashes[slot] & mask;
+            boolean homeAfterHole = hole <= slot ? (home > hole && home <= slot) : (home > hole || home <= slot);
+            if (!homeAfterHole) {
+                ids[hole] = ids[slot];
+                hashes[hole] = hashes[slot];
+                hole = slot;
+            }
+        }
+        ids[hole] = EMPTY;
+    }
+
+    private void insert(int hash, int id) {
+        int mask = ids.length - 1;
+        int slot = hash & mask;
+        while (ids[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        hashes[slot] = hash;
+        ids[slot] = id;
+    }
+
+    private void resize(int capacity) {
+        int[] oldHashes = hashes;
+        int[] oldIds = ids;
+        hashes = new int[capacity];
+        ids = newIds(capacity);
+        for (int slot = 0; slot < oldIds.length; slot++) {
+            if (oldIds[slot] != EMPTY) {
+                insert(oldHashes[slot], oldIds[slot]);
+            }
+        }
+    }
+
+    private static int[] newIds(int capacity) {
+        int[] ids = new int[capacity];
+        Arrays.fill(ids, EMPTY);
+        return ids;
+    }
+
+    private static int hash(String key) {
+        int hash = key.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+}
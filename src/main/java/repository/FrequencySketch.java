@@ -0,0 +1,83 @@
+package repository;
+
+/**
+ * Approximate access counts for TinyLfuCache: a count-min sketch of 4-bit counters (at most 15), sixteen to a long.
+ * Each key bumps one counter in each of four hashed positions and its frequency is the smallest of the four, so
+ * collisions can only overestimate. After sampleSize increments every counter is halved, so the counts describe
+ * recent popularity rather than all-time totals.
+ * Not thread-safe; TinyLfuCache guards it with its lock.
+ */
+final class FrequencySketch {
+
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final int MAX_COUNT = 15;
+
+    private final long[] table;
+    private final int counterMask;
+    private final int sampleSize;
+    private int size;
+
+    /**
+     * Sized for a cache holding up to maximum entries: one long (sixteen counters) per entry, rounded up to a power
+     * of two, which keeps collisions rare
+     */
+    FrequencySketch(int maximum) {
+        int words = Integer.highestOneBit(Math.max(2, Math.min(maximum, 1 << 26) - 1)) << 1;
+        this.table = new long[words];
+        this.counterMask = words * 16 - 1;
+        this.sampleSize = 10 * Math.max(maximum, 16);
+    }
+
+    int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < SEEDS.length; i++) {
+            int slot = slot(hash, i);
+            frequency = Math.min(frequency, (int) ((table[slot >>> 4] >>> shift(slot)) & 0xf));
+        }
+        return frequency;
+    }
+
+    void increment(Object key) {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int i = 0; i < SEEDS.length; i++) {
+            int slot = slot(hash, i);
+            int word = slot >>> 4;
+            int shift = shift(slot);
+            if (((table[word] >>> shift) & 0xf) < MAX_COUNT) {
+                table[word] += 1L << shift;
+                added = true;
+            }
+        }
+        if (added && ++size >= sampleSize) {
+            reset();
+        }
+    }
+
+    // Halve every counter (the mask drops the bit shifted in from the neighbouring counter)
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size /= 2;
+    }
+
+    private int slot(int hash, int i) {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        h += h >>> 32;
+        return (int) h & counterMask;
+    }
+
+    private static int shift(int slot) {
+        return (slot & 15) << 2;
+    }
+
+    private static int spread(int hash) {
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        return (hash >>> 16) ^ hash;
+    }
+}
@@ -0,0 +1,457 @@
+package repository;
+
+
+import model.Person;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * My "repository" stores Person objects in the Application's scope (no persistent storage to a database) Note that
+ * this also SOMEWHAT acts as an Identity Map. In the real Identity Map pattern, this would connect to a database and the
+ * identity map class would contain a Map (like below) to store and reuse any data retrieved from the database.
+ * The Identity map would first check its own map for the requested item and provide it if it has it. Otherwise, it
+ * retrieves the requested data from the database. However, this class is already using a Map for storage, so there is
+ * no real need to create an additional identity map on top of it.
+ *
+ * The actual storage is a PersonStore engine. The default SnapshotPersonStore uses multi-version concurrency control,
+ * so list renders read one consistent version without locking. update() only replaces an existing entry, so an edit
+ * racing with a delete cannot bring the deleted person back.
+ *
+ * Lookups other than by id go through PersonIndexes (unique email, name prefix, age range), which keep person ids and
+ * read the people from the store, so the store is written through them. Writes are serialized by writeLock so that the
+ * store change, the email uniqueness check and the index updates happen as one step; reads by id and findAll() still
+ * go straight to the store without locking. Writers run concurrently by striping whole repositories instead:
+ * PartitionedPersonRepository (the server's default backend) runs one of these, with its own writeLock, per partition.
+ *
+ * With a WriteAheadLog, every change is appended to the log (inside writeLock, so the log order is the order the
+ * changes were applied in) and the log is replayed into the store when the repository is created. Waiting for
+ * the record to reach the disk happens after writeLock is released, which lets concurrent writers share an fsync.
+ *
+ * The ChangeListener (search index, email filter, stats, live feed) is not called inside writeLock. Each change is
+ * queued there instead, in the order it was applied, and handed to the listener once it is durable: after waiting for
+ * the log, a writer publishes the queue up to and including its own change, one publisher at a time. The log is
+ * sequential, so everything queued before a durable change is durable too. A writer therefore returns only once its
+ * change has reached the listener, and nothing reaches it that the log could still lose; if the log fails, the
+ * changes it could not make durable are never published. Slow listeners hold up publishing but not other writers.
+ *
+ * snapshot() writes everything stored into a SnapshotFile next to the log, so startup loads the newest snapshot and
+ * replays only the log written after it. Only the cut is taken under writeLock: the highest id and a log roll-over,
+ * plus the current version from SnapshotPersonStore, which hands out an immutable one without copying. The file is
+ * written afterwards while writers carry on. The other stores are not copied: the snapshot reads them id by id, so a
+ * person changed after the cut may be written with the newer value. That change is also in the log from the cut on,
+ * and replaying a put or delete over its own result changes nothing, so recovery still ends in the same state.
+ */
+public class InMemoryPersonRepository implements PersonRepository {
+
+    private final PersonStore personRepository;
+    private final PersonIndexes indexes;
+    private final Object writeLock = new Object();
+    private final WriteAheadLog log;
+    // Only one snapshot is written at a time
+    private final Object snapshotLock = new Object();
+    private ScheduledExecutorService snapshotter;
+    private volatile ChangeListener changeListener;
+    // Changes applied but not yet handed to the listener, in the order they were applied; added under writeLock
+    private final Queue<Change> unpublished = new ConcurrentLinkedQueue<>();
+    // Number of changes ever queued (guarded by writeLock) and ever published (guarded by publishLock)
+    private long queued;
+    private volatile long published;
+    private final Object publishLock = new Object();
+    // Log sequence of the newest record appended; guarded by writeLock
+    private long appendedSequence;
+    // Set on the thread running writeBatch(): its writes only record the log sequence and the change to wait for,
+    // which the batch waits for and publishes at the end
+    private final ThreadLocal<long[]> deferred = new ThreadLocal<>();
+    // Highest id ever stored, including deleted ones; guarded by writeLock
+    private int highestId;
+
+    private record Change(Person previous, Person current) {
+    }
+
+    public InMemoryPersonRepository() {
+        this(new SnapshotPersonStore());
+    }
+
+    public InMemoryPersonRepository(PersonStore store) {
+        this(store, null);
+    }
+
+    /**
+     * Repository whose changes are recorded in the given log (may be null). The newest snapshot in the log's directory
+     * and the log records written after it are loaded first.
+     */
+    public InMemoryPersonRepository(PersonStore store, WriteAheadLog log) {
+        personRepository = store;
+        indexes = new PersonIndexes(store);
+        this.log = log;
+        if (log != null) {
+            recover(log);
+        }
+    }
+
+    private void recover(WriteAheadLog log) {
+        long start = System.nanoTime();
+        try {
+            // Straight into the store; the indexes are built once at the end, which is far cheaper than per record
+            long generation = SnapshotFile.latestGeneration(log.getDirectory());
+            if (generation > 0) {
+                highestId = SnapshotFile.read(log.getDirectory(), generation,
+                        person -> personRepository.put(person.getId(), person));
+            }
+            int records = log.replay(generation, new WriteAheadLog.Replayer() {
+                @Override
+                public void put(Person person) {
+                    personRepository.put(person.getId(), person);
+                    highestId = Math.max(highestId, person.getId());
+                }
+
+                @Override
+                public void delete(int id) {
+                    personRepository.remove(id);
+                }
+            });
+            indexes.rebuild();
+            System.out.println("Recovered " + personRepository.size() + " people from "
+                    + (generation > 0 ? "snapshot " + generation + " and " : "") + records + " log records in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to recover from " + log.getDirectory(), e);
+        }
+    }
+
+    /**
+     * Write a snapshot of everything stored and drop the log segments and snapshots it makes obsolete. Returns false
+     * (and does nothing) without a log, or if nothing was logged since the last snapshot.
+     */
+    public boolean snapshot() throws IOException {
+        if (log == null) {
+            return false;
+        }
+        synchronized (snapshotLock) {
+            Iterable<Person> people;
+            int highest;
+            long generation;
+            synchronized (writeLock) {
+                if (!log.hasRecordsSinceRollOver()) {
+                    return false;
+                }
+                highest = highestId;
+                people = personRepository.hasImmutableVersions() ? personRepository.findAll() : scan(highest);
+                generation = log.rollOver();
+            }
+            long start = System.nanoTime();
+            // Returns once the snapshot and its directory entry are on disk, so nothing it replaces is needed any more.
+            // The log is flushed before the rename: a scanned snapshot may hold changes made after the cut, and must
+            // not be installed while their log records could still be lost.
+            int count = SnapshotFile.write(log.getDirectory(), generation, highest, people, log::flush);
+            log.deleteSegmentsBefore(generation);
+            SnapshotFile.deleteBefore(log.getDirectory(), generation);
+            System.out.println("Snapshot " + generation + " of " + count + " people written in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+            return true;
+        }
+    }
+
+    // Everyone stored with an id up to highest, read one at a time from the store while writers carry on
+    private Iterable<Person> scan(int highest) {
+        return () -> IntStream.rangeClosed(1, highest).mapToObj(personRepository::get).filter(Objects::nonNull)
+                .iterator();
+    }
+
+    /**
+     * Take a snapshot every intervalMillis on a background thread, until close()
+     */
+    public synchronized void scheduleSnapshots(long intervalMillis) {
+        if (log == null || snapshotter != null) {
+            return;
+        }
+        snapshotter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "person-snapshotter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotter.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot();
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Snapshot failed: " + e.getMessage());
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Throws IllegalArgumentException if the email already belongs to someone else
+     */
+    @Override
+    public void save(int id, Person person) {
+        long sequence;
+        long change;
+        synchronized (writeLock) {
+            checkEmailAvailable(id, person);
+            sequence = appendPut(person);
+            Person previous = applySave(id, person);
+            change = queueChange(previous, person);
+        }
+        complete(sequence, change);
+    }
+
+    /**
+     * Save a batch with one acquisition of writeLock and one wait for the log, for bulk imports. Each person is
+     * checked against everyone saved before it, including earlier people in the same batch. Returns one entry per
+     * person, in order: null if it was saved, otherwise why it was rejected.
+     */
+    @Override
+    public List<String> saveAll(List<Person> people) {
+        List<String> rejections = new ArrayList<>(people.size());
+        long sequence = 0;
+        long change = 0;
+        synchronized (writeLock) {
+            for (Person person : people) {
+                if (indexes.isEmailTakenByOther(person.getEmail(), person.getId())) {
+                    rejections.add(emailTakenMessage(person));
+                    continue;
+                }
+                sequence = appendPut(person);
+                Person previous = applySave(person.getId(), person);
+                change = queueChange(previous, person);
+                rejections.add(null);
+            }
+        }
+        complete(sequence, change);
+        return rejections;
+    }
+
+    // Callers hold writeLock
+    private Person applySave(int id, Person person) {
+        Person previous = personRepository.get(id);
+        indexes.put(id, previous, person);
+        highestId = Math.max(highestId, id);
+        return previous;
+    }
+
+    // Returns the person that was deleted, or null if there was none
+    private Person applyDelete(int id) {
+        Person previous = personRepository.get(id);
+        if (previous == null) {
+            return null;
+        }
+        indexes.remove(id, previous);
+        return previous;
+    }
+
+    // Callers hold writeLock. Returns the log sequence of the record, or 0 without a log.
+    private long appendPut(Person person) {
+        if (log != null) {
+            appendedSequence = log.appendPut(person);
+        }
+        return appendedSequence;
+    }
+
+    private long appendDelete(int id) {
+        if (log != null) {
+            appendedSequence = log.appendDelete(id);
+        }
+        return appendedSequence;
+    }
+
+    // Callers hold writeLock. Returns the change's number, to publish up to once it is durable.
+    private long queueChange(Person previous, Person current) {
+        if (changeListener != null) {
+            unpublished.add(new Change(previous, current));
+            queued++;
+        }
+        return queued;
+    }
+
+    // Wait until the log holds sequence, then hand the listener every queued change up to number change
+    private void complete(long sequence, long change) {
+        long[] batch = deferred.get();
+        if (batch != null) {
+            batch[0] = Math.max(batch[0], sequence);
+            batch[1] = Math.max(batch[1], change);
+            return;
+        }
+        if (log != null && sequence > 0) {
+            log.await(sequence);
+        }
+        publishUpTo(change);
+    }
+
+    private void publishUpTo(long change) {
+        if (published >= change) {
+            return;
+        }
+        synchronized (publishLock) {
+            while (published < change) {
+                Change next = unpublished.poll();
+                ChangeListener listener = changeListener;
+                try {
+                    if (listener != null) {
+                        listener.changed(next.previous(), next.current());
+                    }
+                } finally {
+                    // Only now, so a writer that finds its change published knows the listener is done with it
+                    published++;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void setChangeListener(ChangeListener changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    /**
+     * Holds writeLock for the whole batch and waits for the log once, after releasing it, for the last record the
+     * batch appended. Before the batch's writes run, every earlier change is made durable and published, so what the
+     * batch reads back (e.g. to rebuild the email filter) agrees with what the listener has been told.
+     */
+    @Override
+    public void writeBatch(Runnable writes) {
+        long[] batch = {0, 0};
+        deferred.set(batch);
+        try {
+            synchronized (writeLock) {
+                if (published < queued) {
+                    if (log != null && appendedSequence > 0) {
+                        log.await(appendedSequence);
+                    }
+                    publishUpTo(queued);
+                }
+                writes.run();
+            }
+        } finally {
+            deferred.remove();
+        }
+        complete(batch[0], batch[1]);
+    }
+
+    @Override
+    public Person findById(int id) {
+        return personRepository.get(id);
+    }
+
+    @Override
+    public boolean delete(int id){
+        long sequence;
+        long change;
+        synchronized (writeLock) {
+            if (personRepository.get(id) == null) {
+                return false;
+            }
+            sequence = appendDelete(id);
+            change = queueChange(applyDelete(id), null);
+        }
+        complete(sequence, change);
+        return true;
+    }
+
+    /**
+     * Replace the person, but only if the stored version is still expectedVersion (compare-and-set), so an edit made
+     * from an out-of-date form cannot silently overwrite someone else's change. The new person should carry
+     * expectedVersion + 1. Returns false if there is no such person.
+     * Throws VersionConflictException if the stored version is different, and IllegalArgumentException if the email
+     * already belongs to someone else.
+     */
+    @Override
+    public boolean update(int id, int expectedVersion, Person person){
+        long sequence;
+        long change;
+        synchronized (writeLock) {
+            Person previous = personRepository.get(id);
+            if (previous == null) {
+                return false;
+            }
+            if (previous.getVersion() != expectedVersion) {
+                throw new VersionConflictException(previous, expectedVersion);
+            }
+            checkEmailAvailable(id, person);
+            sequence = appendPut(person);
+            indexes.replace(id, previous, person);
+            change = queueChange(previous, person);
+        }
+        complete(sequence, change);
+        return true;
+    }
+
+    private void checkEmailAvailable(int id, Person person) {
+        if (indexes.isEmailTakenByOther(person.getEmail(), id)) {
+            throw new IllegalArgumentException(emailTakenMessage(person));
+        }
+    }
+
+    private static String emailTakenMessage(Person person) {
+        return "Email is already registered: " + person.getEmail();
+    }
+
+    @Override
+    public Person findByEmail(String email) {
+        return indexes.findByEmail(email);
+    }
+
+    @Override
+    public List<Person> findByNamePrefix(String prefix, int limit) {
+        return indexes.findByNamePrefix(prefix, limit);
+    }
+
+    @Override
+    public List<Person> findByAgeRange(int minAge, int maxAge, int limit) {
+        return indexes.findByAgeRange(minAge, maxAge, limit);
+    }
+
+    /**
+     * Highest id that has ever been stored (0 if none), so id allocation can continue after a restart
+     */
+    @Override
+    public int getHighestId() {
+        synchronized (writeLock) {
+            return highestId;
+        }
+    }
+
+    /**
+     * Stop taking snapshots, flush and close the log, if there is one, and close the store (freeing an off-heap
+     * store's memory)
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (snapshotter != null) {
+                snapshotter.shutdown();
+            }
+        }
+        try {
+            if (log != null) {
+                log.close();
+            }
+        } finally {
+            // Not while a snapshot is still reading the store, nor under a write
+            synchronized (snapshotLock) {
+                synchronized (writeLock) {
+                    personRepository.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Everyone currently stored, in id order, as an immutable list. Nothing is copied per call: the default store
+     * returns a view of its current version and the others share one list until the next write. Later writes do not
+     * show up in a list that has already been returned.
+     */
+    @Override
+    public List<Person> findAll(){
+        return personRepository.findAll();
+    }
+}
@@ -0,0 +1,297 @@
+package repository;
+
+import model.Person;
+
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Store keyed by primitive int using open addressing: ids live in an int[] and people in a parallel Person[], so
+ * there is no boxed Integer key and no per-entry node object like a HashMap has. Slots are found by linear probing
+ * from a Fibonacci hash of the id. Ids are stored as id + 1 so that 0 (the default array value) means "empty".
+ *
+ * Growing never rehashes the whole table at once. When the table passes its load factor a table twice the size is
+ * started and every following write moves a small batch of entries across, so no single request pays for the full
+ * rehash. Until the move finishes, lookups check the new table and then the old one.
+ *
+ * Writers take a StampedLock write lock. findById uses an optimistic read (just a version check, no lock and no
+ * allocation) and only falls back to a read lock if a write happened at the same time.
+ *
+ * Alongside the table, every write also updates a PersonSnapshot holding the same people, so findAll() hands out an
+ * id-ordered version without collecting or sorting anything. That costs a few path-copied trie nodes per write and
+ * about 5 bytes per person for the trie's leaves; the Persons themselves are shared.
+ */
+public class IntHashPersonStore implements PersonStore {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    // Entries moved from the old table on every write while a resize is in progress
+    private static final int MIGRATION_STEP = 64;
+
+    private static final class Table {
+        final int[] keys;
+        final Person[] values;
+        final int mask;
+        final int shift;
+
+        Table(int capacity) {
+            keys = new int[capacity];
+            values = new Person[capacity];
+            mask = capacity - 1;
+            shift = 32 - Integer.numberOfTrailingZeros(capacity);
+        }
+
+        int slot(int key) {
+            return (key * 0x9E3779B9) >>> shift;
+        }
+
+        // Index holding key, or -1
+        int find(int key) {
+            int index = slot(key);
+            for (int probes = 0; probes <= mask; probes++) {
+                int k = keys[index];
+                if (k == key) {
+                    return index;
+                }
+                if (k == 0) {
+                    return -1;
+                }
+                index = (index + 1) & mask;
+            }
+            return -1;
+        }
+    }
+
+    private final StampedLock lock = new StampedLock();
+
+    // The same people in id order, replaced by every write
+    private volatile PersonSnapshot allById = PersonSnapshot.EMPTY;
+
+    private volatile Table table = new Table(INITIAL_CAPACITY);
+    // Table being drained into `table` during a resize, otherwise null
+    private volatile Table previous;
+    private int migrated;
+    private int tableCount;
+    private int size;
+
+    @Override
+    public Person get(int id) {
+        long stamp = lock.tryOptimisticRead();
+        Person person = lookup(id);
+        if (lock.validate(stamp)) {
+            return person;
+        }
+        stamp = lock.readLock();
+        try {
+            return lookup(id);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private Person lookup(int id) {
+        int key = id + 1;
+        Table current = table;
+        int index = current.find(key);
+        if (index >= 0) {
+            return current.values[index];
+        }
+        Table old = previous;
+        if (old != null) {
+            index = old.find(key);
+            // Entries already moved or deleted during the resize are left behind with a null value
+            if (index >= 0) {
+                return old.values[index];
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void put(int id, Person person) {
+        checkId(id);
+        long stamp = lock.writeLock();
+        try {
+            migrateStep();
+            int key = id + 1;
+            boolean existed = removeFromPrevious(key);
+            if (insert(table, key, person)) {
+                tableCount++;
+                if (!existed) {
+                    size++;
+                }
+            }
+            allById = allById.with(id, person);
+            growIfNeeded();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean replace(int id, Person person) {
+        if (id < 0) {
+            return false;
+        }
+        long stamp = lock.writeLock();
+        try {
+            migrateStep();
+            int key = id + 1;
+            int index = table.find(key);
+            if (index >= 0) {
+                table.values[index] = person;
+                allById = allById.with(id, person);
+                return true;
+            }
+            if (!removeFromPrevious(key)) {
+                return false;
+            }
+            insert(table, key, person);
+            tableCount++;
+            allById = allById.with(id, person);
+            growIfNeeded();
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean remove(int id) {
+        if (id < 0) {
+            return false;
+        }
+        long stamp = lock.writeLock();
+        try {
+            migrateStep();
+            int key = id + 1;
+            boolean removed = removeFromPrevious(key);
+            if (delete(table, key)) {
+                tableCount--;
+                removed = true;
+            }
+            if (removed) {
+                size--;
+                allById = allById.without(id);
+            }
+            return removed;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Everyone in id order: the PersonSnapshot kept up to date by the writes, handed out as it is (nothing is copied)
+     */
+    @Override
+    public List<Person> findAll() {
+        return allById.values();
+    }
+
+    @Override
+    public boolean hasImmutableVersions() {
+        return true;
+    }
+
+    @Override
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Returns true if a new slot was used, false if an existing entry was overwritten
+    private static boolean insert(Table target, int key, Person person) {
+        int index = target.slot(key);
+        while (true) {
+            int k = target.keys[index];
+            if (k == key) {
+                target.values[index] = person;
+                return false;
+            }
+            if (k == 0) {
+                target.values[index] = person;
+                target.keys[index] = key;
+                return true;
+            }
+            index = (index + 1) & target.mask;
+        }
+    }
+
+    // Backward-shift deletion, so the table never fills up with tombstones
+    private static boolean delete(Table target, int key) {
+        int index = target.find(key);
+        if (index < 0) {
+            return false;
+        }
+        int hole = index;
+        int next = (hole + 1) & target.mask;
+        while (target.keys[next] != 0) {
+            int home = target.slot(target.keys[next]);
+            // Move the entry back if the hole lies on its probe path from home
+            if (((next - home) & target.mask) >= ((next - hole) & target.mask)) {
+                target.keys[hole] = target.keys[next];
+                target.values[hole] = target.values[next];
+                hole = next;
+            }
+            next = (next + 1) & target.mask;
+        }
+        target.keys[hole] = 0;
+        target.values[hole] = null;
+        return true;
+    }
+
+    // The old table is only read and drained, never reshuffled, so clearing the value is enough to remove an entry
+    private boolean removeFromPrevious(int key) {
+        Table old = previous;
+        if (old == null) {
+            return false;
+        }
+        int index = old.find(key);
+        if (index < 0 || old.values[index] == null) {
+            return false;
+        }
+        old.values[index] = null;
+        return true;
+    }
+
+    private void growIfNeeded() {
+        if (previous == null && tableCount > table.keys.length * LOAD_FACTOR) {
+            previous = table;
+            migrated = 0;
+            table = new Table(table.keys.length * 2);
+            tableCount = 0;
+        }
+    }
+
+    private void migrateStep() {
+        Table old = previous;
+        if (old == null) {
+            return;
+        }
+        int end = Math.min(migrated + MIGRATION_STEP, old.keys.length);
+        for (int i = migrated; i < end; i++) {
+            Person person = old.values[i];
+            if (person != null) {
+                if (insert(table, old.keys[i], person)) {
+                    tableCount++;
+                }
+                old.values[i] = null;
+            }
+        }
+        migrated = end;
+        if (migrated == old.keys.length) {
+            previous = null;
+        }
+    }
+
+    private static void checkId(int id) {
+        if (id < 0 || id == Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Person id out of range: " + id);
+        }
+    }
+}
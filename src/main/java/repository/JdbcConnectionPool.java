@@ -0,0 +1,184 @@
+package repository;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Small fixed-size pool of JDBC connections for JdbcPersonRepository. Connections are opened on demand up to
+ * maxConnections and handed back to an idle queue when released, so a request never pays for opening one once the
+ * pool is warm. A caller that finds every connection busy waits up to BORROW_TIMEOUT_MILLIS.
+ *
+ * Every pooled connection keeps its own cache of prepared statements keyed by SQL text (prepared statements belong
+ * to one connection), least recently used first out, so a repeated query is parsed and planned by the database once
+ * per connection instead of on every call.
+ *
+ * Connections run with auto-commit off; callers commit or roll back each unit of work before releasing.
+ */
+final class JdbcConnectionPool implements AutoCloseable {
+
+    static final int BORROW_TIMEOUT_MILLIS = 30_000;
+    static final int STATEMENT_CACHE_SIZE = 32;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int maxConnections;
+    private final BlockingQueue<PooledConnection> idle;
+    private final AtomicInteger opened = new AtomicInteger();
+    private volatile boolean closed;
+
+    JdbcConnectionPool(String url, String user, String password, int maxConnections) {
+        if (maxConnections < 1) {
+            throw new IllegalArgumentException("A connection pool needs at least one connection");
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxConnections = maxConnections;
+        this.idle = new ArrayBlockingQueue<>(maxConnections);
+    }
+
+    /**
+     * An idle connection, a newly opened one if the pool is not full yet, or the next one released
+     */
+    PooledConnection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        PooledConnection connection = idle.poll();
+        if (connection != null) {
+            return connection;
+        }
+        if (opened.incrementAndGet() <= maxConnections) {
+            try {
+                return open();
+            } catch (SQLException | RuntimeException e) {
+                opened.decrementAndGet();
+                throw e;
+            }
+        }
+        opened.decrementAndGet();
+        try {
+            connection = idle.poll(BORROW_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+        if (connection == null) {
+            throw new SQLException("No database connection became free within " + BORROW_TIMEOUT_MILLIS + " ms");
+        }
+        return connection;
+    }
+
+    /**
+     * Hand a connection back. A broken one (or any, once the pool is closed) is closed instead, making room for a new
+     * one to be opened.
+     */
+    void release(PooledConnection connection, boolean broken) {
+        if (!broken && !closed && idle.offer(connection)) {
+            return;
+        }
+        connection.closeQuietly();
+        opened.decrementAndGet();
+    }
+
+    private PooledConnection open() throws SQLException {
+        Connection connection = user != null
+                ? DriverManager.getConnection(url, user, password)
+                : DriverManager.getConnection(url);
+        connection.setAutoCommit(false);
+        return new PooledConnection(connection);
+    }
+
+    /**
+     * Close the idle connections; busy ones are closed as they are released
+     */
+    @Override
+    public void close() {
+        closed = true;
+        PooledConnection connection;
+        while ((connection = idle.poll()) != null) {
+            connection.closeQuietly();
+            opened.decrementAndGet();
+        }
+    }
+
+    /**
+     * A connection plus its prepared statement cache. Used by one thread at a time (whoever borrowed it).
+     */
+    static final class PooledConnection {
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements =
+                new LinkedHashMap<>(STATEMENT_CACHE_SIZE * 2, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                        if (size() <= STATEMENT_CACHE_SIZE) {
+                            return false;
+                        }
+                        closeQuietly(eldest.getValue());
+                        return true;
+                    }
+                };
+
+        private PooledConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        /**
+         * The cached statement for sql, prepared on first use. Callers set every parameter and close the result sets
+         * they open, but never close the statement itself.
+         */
+        PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement statement = statements.get(sql);
+            if (statement == null) {
+                statement = connection.prepareStatement(sql);
+                statements.put(sql, statement);
+            }
+            return statement;
+        }
+
+        Connection getConnection() {
+            return connection;
+        }
+
+        void commit() throws SQLException {
+            connection.commit();
+        }
+
+        void rollbackQuietly() {
+            try {
+                connection.rollback();
+            } catch (SQLException ignored) {
+                // The connection is released as broken by the caller anyway if it is unusable
+            }
+        }
+
+        private void closeQuietly() {
+            for (PreparedStatement statement : statements.values()) {
+                closeQuietly(statement);
+            }
+            statements.clear();
+            try {
+                connection.close();
+            } catch (SQLException ignored) {
+                // Nothing useful to do about a connection that will not close
+            }
+        }
+
+        private static void closeQuietly(PreparedStatement statement) {
+            try {
+                statement.close();
+            } catch (SQLException ignored) {
+                // Already unusable
+            }
+        }
+    }
+}
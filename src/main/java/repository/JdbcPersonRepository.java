@@ -0,0 +1,494 @@
+package repository;
+
+import model.Person;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Repository backed by a relational database over JDBC, by default an embedded file database (H2, see
+ * BaylorSportsHttpServer), so registrations live in one table instead of in the heap:
+ *
+ *   person(id INT PRIMARY KEY, name, name_key, email, email_key UNIQUE, age, version)
+ *
+ * name_key and email_key are the trimmed, lower-cased name and email, indexed so the prefix and email lookups are
+ * index seeks and the unique constraint on email_key enforces email uniqueness the same way EmailIndex does. A
+ * one-row person_sequence table keeps the highest id ever stored, including deleted ones.
+ *
+ * Connections come from a JdbcConnectionPool, and every statement is taken from the connection's prepared-statement
+ * cache. saveAll() inserts the whole batch with one JDBC batch and one commit. update() is a conditional
+ * UPDATE ... WHERE version = ?, so the version compare-and-set is done by the database without any lock here.
+ *
+ * The ChangeListener is called right after the commit, under a lock held only for the commit and the notification,
+ * so it sees the changes in the order they were committed. Reads do not take that lock. findAll() runs a query on
+ * every call; there is no in-process copy of the table.
+ *
+ * writeBatch() borrows one connection up front and runs the whole batch on it while holding that lock, so no other
+ * thread can commit a change until the batch is done. The connection is taken before the lock because other writers
+ * hold theirs while they wait for it.
+ */
+public class JdbcPersonRepository implements PersonRepository {
+
+    private static final String COLUMNS = "id, name, email, age, version";
+
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS person (id INT PRIMARY KEY, name VARCHAR(1000), name_key VARCHAR(1000),"
+                    + " email VARCHAR(1000), email_key VARCHAR(1000) UNIQUE, age INT NOT NULL, version INT NOT NULL)",
+            "CREATE INDEX IF NOT EXISTS person_name_key ON person (name_key, id)",
+            "CREATE INDEX IF NOT EXISTS person_age ON person (age, id)",
+            "CREATE TABLE IF NOT EXISTS person_sequence (highest_id INT NOT NULL)"
+    };
+
+    private static final String SELECT_BY_ID = "SELECT " + COLUMNS + " FROM person WHERE id = ?";
+    private static final String SELECT_ALL = "SELECT " + COLUMNS + " FROM person ORDER BY id";
+    private static final String SELECT_BY_EMAIL = "SELECT " + COLUMNS + " FROM person WHERE email_key = ?";
+    private static final String SELECT_BY_NAME_PREFIX = "SELECT " + COLUMNS
+            + " FROM person WHERE name_key LIKE ? ESCAPE '\\' ORDER BY name_key, id";
+    private static final String SELECT_BY_AGE = "SELECT " + COLUMNS
+            + " FROM person WHERE age BETWEEN ? AND ? ORDER BY age, id";
+    private static final String SELECT_EMAIL_OWNER = "SELECT id FROM person WHERE email_key = ?";
+    private static final String INSERT = "INSERT INTO person (name, name_key, email, email_key, age, version, id)"
+            + " VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String REPLACE = "UPDATE person SET name = ?, name_key = ?, email = ?, email_key = ?,"
+            + " age = ?, version = ? WHERE id = ?";
+    private static final String COMPARE_AND_SET = REPLACE + " AND version = ?";
+    private static final String DELETE = "DELETE FROM person WHERE id = ?";
+    private static final String SELECT_HIGHEST_ID = "SELECT highest_id FROM person_sequence";
+    private static final String INSERT_HIGHEST_ID = "INSERT INTO person_sequence (highest_id) VALUES (0)";
+    private static final String RAISE_HIGHEST_ID =
+            "UPDATE person_sequence SET highest_id = ? WHERE highest_id < ?";
+
+    // SQLSTATE class for integrity constraint violations (unique email, duplicate id)
+    private static final String INTEGRITY_VIOLATION = "23";
+    // SQLSTATE class for connection failures
+    private static final String CONNECTION_FAILURE = "08";
+
+    /**
+     * One unit of work on a borrowed connection. Changes it makes are reported to the ChangeListener after the
+     * commit, through changed().
+     */
+    private interface Work<T> {
+        T run(Transaction transaction) throws SQLException;
+    }
+
+    private static final class Transaction {
+        final JdbcConnectionPool.PooledConnection connection;
+        final List<Person[]> changes = new ArrayList<>();
+
+        Transaction(JdbcConnectionPool.PooledConnection connection) {
+            this.connection = connection;
+        }
+
+        PreparedStatement prepare(String sql) throws SQLException {
+            return connection.prepare(sql);
+        }
+
+        void changed(Person previous, Person current) {
+            changes.add(new Person[]{previous, current});
+        }
+    }
+
+    // The connection a writeBatch() on this thread runs on
+    private static final class BatchConnection {
+        final JdbcConnectionPool.PooledConnection connection;
+        boolean broken;
+
+        BatchConnection(JdbcConnectionPool.PooledConnection connection) {
+            this.connection = connection;
+        }
+    }
+
+    private final JdbcConnectionPool pool;
+    // Makes the commit order the notification order
+    private final Object commitLock = new Object();
+    private final ThreadLocal<BatchConnection> batchConnection = new ThreadLocal<>();
+    private volatile ChangeListener changeListener;
+
+    /**
+     * Connect to the database at url (e.g. jdbc:h2:file:/path/to/people) with up to poolSize connections and create
+     * the tables if they do not exist yet. user may be null when the URL needs no credentials. The JDBC driver must
+     * be on the class path.
+     */
+    public JdbcPersonRepository(String url, String user, String password, int poolSize) {
+        this.pool = new JdbcConnectionPool(url, user, password, poolSize);
+        execute(transaction -> {
+            try (Statement statement = transaction.connection.getConnection().createStatement()) {
+                for (String ddl : SCHEMA) {
+                    statement.execute(ddl);
+                }
+            }
+            try (ResultSet rows = transaction.prepare(SELECT_HIGHEST_ID).executeQuery()) {
+                if (!rows.next()) {
+                    transaction.prepare(INSERT_HIGHEST_ID).executeUpdate();
+                }
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void save(int id, Person person) {
+        execute(transaction -> {
+            checkEmailAvailable(transaction, id, person);
+            Person previous = selectById(transaction, id);
+            write(transaction, previous != null ? REPLACE : INSERT, id, person);
+            raiseHighestId(transaction, id);
+            transaction.changed(previous, person);
+            return null;
+        });
+    }
+
+    /**
+     * The accepted people go into the table with one JDBC batch and one commit. If the batch itself is refused (an id
+     * that already exists, or an email taken by a concurrent writer after it was checked), the accepted people are
+     * saved one at a time instead and whatever fails is reported as rejected.
+     */
+    @Override
+    public List<String> saveAll(List<Person> people) {
+        List<String> rejections = new ArrayList<>(people.size());
+        List<Person> accepted = new ArrayList<>(people.size());
+        try {
+            execute(transaction -> {
+                Set<String> batchEmails = new HashSet<>();
+                PreparedStatement insert = transaction.prepare(INSERT);
+                int highest = 0;
+                for (Person person : people) {
+                    String emailKey = EmailIndex.normalize(person.getEmail());
+                    if (emailKey != null && (!batchEmails.add(emailKey)
+                            || isEmailTakenByOther(transaction, emailKey, person.getId()))) {
+                        rejections.add(emailTakenMessage(person));
+                        continue;
+                    }
+                    bind(insert, person.getId(), person);
+                    insert.addBatch();
+                    accepted.add(person);
+                    rejections.add(null);
+                    highest = Math.max(highest, person.getId());
+                }
+                if (accepted.isEmpty()) {
+                    return null;
+                }
+                insert.executeBatch();
+                raiseHighestId(transaction, highest);
+                for (Person person : accepted) {
+                    transaction.changed(null, person);
+                }
+                return null;
+            });
+            return rejections;
+        } catch (IllegalArgumentException e) {
+            if (!(e.getCause() instanceof SQLException)) {
+                throw e;
+            }
+        }
+
+        List<String> retried = new ArrayList<>(people.size());
+        int next = 0;
+        for (int i = 0; i < people.size(); i++) {
+            if (rejections.get(i) != null) {
+                retried.add(rejections.get(i));
+                continue;
+            }
+            Person person = accepted.get(next++);
+            try {
+                save(person.getId(), person);
+                retried.add(null);
+            } catch (IllegalArgumentException e) {
+                retried.add(e.getMessage());
+            }
+        }
+        return retried;
+    }
+
+    @Override
+    public Person findById(int id) {
+        return execute(transaction -> selectById(transaction, id));
+    }
+
+    @Override
+    public boolean delete(int id) {
+        return execute(transaction -> {
+            Person previous = selectById(transaction, id);
+            if (previous == null) {
+                return false;
+            }
+            PreparedStatement delete = transaction.prepare(DELETE);
+            delete.setInt(1, id);
+            if (delete.executeUpdate() == 0) {
+                return false;
+            }
+            transaction.changed(previous, null);
+            return true;
+        });
+    }
+
+    @Override
+    public boolean update(int id, int expectedVersion, Person person) {
+        return execute(transaction -> {
+            Person previous = selectById(transaction, id);
+            if (previous == null) {
+                return false;
+            }
+            if (previous.getVersion() != expectedVersion) {
+                throw new VersionConflictException(previous, expectedVersion);
+            }
+            checkEmailAvailable(transaction, id, person);
+            PreparedStatement update = transaction.prepare(COMPARE_AND_SET);
+            bind(update, id, person);
+            update.setInt(8, expectedVersion);
+            if (update.executeUpdate() == 0) {
+                // Changed or deleted by someone else since it was read above
+                Person current = selectById(transaction, id);
+                if (current == null) {
+                    return false;
+                }
+                throw new VersionConflictException(current, expectedVersion);
+            }
+            transaction.changed(previous, person);
+            return true;
+        });
+    }
+
+    @Override
+    public Person findByEmail(String email) {
+        String key = EmailIndex.normalize(email);
+        if (key == null) {
+            return null;
+        }
+        return execute(transaction -> {
+            PreparedStatement select = transaction.prepare(SELECT_BY_EMAIL);
+            select.setString(1, key);
+            List<Person> people = readPeople(select, 1);
+            return people.isEmpty() ? null : people.get(0);
+        });
+    }
+
+    @Override
+    public List<Person> findByNamePrefix(String prefix, int limit) {
+        String pattern = escapeLike(prefix.trim().toLowerCase(Locale.ROOT)) + "%";
+        return execute(transaction -> {
+            PreparedStatement select = transaction.prepare(SELECT_BY_NAME_PREFIX);
+            select.setString(1, pattern);
+            return readPeople(select, limit);
+        });
+    }
+
+    @Override
+    public List<Person> findByAgeRange(int minAge, int maxAge, int limit) {
+        if (minAge > maxAge) {
+            return List.of();
+        }
+        return execute(transaction -> {
+            PreparedStatement select = transaction.prepare(SELECT_BY_AGE);
+            select.setInt(1, minAge);
+            select.setInt(2, maxAge);
+            return readPeople(select, limit);
+        });
+    }
+
+    @Override
+    public List<Person> findAll() {
+        return execute(transaction -> readPeople(transaction.prepare(SELECT_ALL), 0));
+    }
+
+    @Override
+    public int getHighestId() {
+        return execute(transaction -> {
+            try (ResultSet rows = transaction.prepare(SELECT_HIGHEST_ID).executeQuery()) {
+                return rows.next() ? rows.getInt(1) : 0;
+            }
+        });
+    }
+
+    @Override
+    public void setChangeListener(ChangeListener changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    /**
+     * Runs the writes on one connection while holding the commit lock, so only this thread commits until they are done
+     */
+    @Override
+    public void writeBatch(Runnable writes) {
+        if (batchConnection.get() != null) {
+            writes.run();
+            return;
+        }
+        BatchConnection batch = new BatchConnection(borrow());
+        batchConnection.set(batch);
+        try {
+            synchronized (commitLock) {
+                writes.run();
+            }
+        } finally {
+            batchConnection.remove();
+            pool.release(batch.connection, batch.broken);
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.close();
+    }
+
+    private JdbcConnectionPool.PooledConnection borrow() {
+        try {
+            return pool.borrow();
+        } catch (SQLException e) {
+            throw new IllegalStateException("No database connection: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Run work in its own transaction on a pooled connection (the batch's, inside writeBatch()), commit it and report
+     * its changes. A violated integrity constraint (an email taken by a concurrent writer) becomes
+     * IllegalArgumentException, any other database failure IllegalStateException.
+     */
+    private <T> T execute(Work<T> work) {
+        BatchConnection batch = batchConnection.get();
+        JdbcConnectionPool.PooledConnection connection = batch != null ? batch.connection : borrow();
+        boolean broken = false;
+        Transaction transaction = new Transaction(connection);
+        try {
+            T result = work.run(transaction);
+            if (transaction.changes.isEmpty()) {
+                connection.commit();
+            } else {
+                synchronized (commitLock) {
+                    connection.commit();
+                    notifyChanges(transaction.changes);
+                }
+            }
+            return result;
+        } catch (SQLException e) {
+            connection.rollbackQuietly();
+            broken = isConnectionFailure(e);
+            if (isIntegrityViolation(e)) {
+                throw new IllegalArgumentException("Email is already registered", e);
+            }
+            throw new IllegalStateException("Database error: " + e.getMessage(), e);
+        } catch (RuntimeException e) {
+            connection.rollbackQuietly();
+            throw e;
+        } finally {
+            if (batch == null) {
+                pool.release(connection, broken);
+            } else {
+                batch.broken |= broken;
+            }
+        }
+    }
+
+    private void notifyChanges(List<Person[]> changes) {
+        ChangeListener listener = changeListener;
+        if (listener != null) {
+            for (Person[] change : changes) {
+                listener.changed(change[0], change[1]);
+            }
+        }
+    }
+
+    private static boolean isIntegrityViolation(SQLException e) {
+        for (SQLException next = e; next != null; next = next.getNextException()) {
+            String state = next.getSQLState();
+            if (state != null && state.startsWith(INTEGRITY_VIOLATION)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isConnectionFailure(SQLException e) {
+        String state = e.getSQLState();
+        return state != null && state.startsWith(CONNECTION_FAILURE);
+    }
+
+    private static void checkEmailAvailable(Transaction transaction, int id, Person person) throws SQLException {
+        String emailKey = EmailIndex.normalize(person.getEmail());
+        if (emailKey != null && isEmailTakenByOther(transaction, emailKey, id)) {
+            throw new IllegalArgumentException(emailTakenMessage(person));
+        }
+    }
+
+    private static boolean isEmailTakenByOther(Transaction transaction, String emailKey, int id) throws SQLException {
+        PreparedStatement select = transaction.prepare(SELECT_EMAIL_OWNER);
+        select.setString(1, emailKey);
+        try (ResultSet rows = select.executeQuery()) {
+            return rows.next() && rows.getInt(1) != id;
+        }
+    }
+
+    private static String emailTakenMessage(Person person) {
+        return "Email is already registered: " + person.getEmail();
+    }
+
+    private static Person selectById(Transaction transaction, int id) throws SQLException {
+        PreparedStatement select = transaction.prepare(SELECT_BY_ID);
+        select.setInt(1, id);
+        List<Person> people = readPeople(select, 1);
+        return people.isEmpty() ? null : people.get(0);
+    }
+
+    private static void write(Transaction transaction, String sql, int id, Person person) throws SQLException {
+        PreparedStatement statement = transaction.prepare(sql);
+        bind(statement, id, person);
+        statement.executeUpdate();
+    }
+
+    private static void raiseHighestId(Transaction transaction, int id) throws SQLException {
+        PreparedStatement raise = transaction.prepare(RAISE_HIGHEST_ID);
+        raise.setInt(1, id);
+        raise.setInt(2, id);
+        raise.executeUpdate();
+    }
+
+    // Parameters 1-7 of INSERT and REPLACE, which list the columns in the same order
+    private static void bind(PreparedStatement statement, int id, Person person) throws SQLException {
+        setNullableString(statement, 1, person.getName());
+        setNullableString(statement, 2, person.getName() != null
+                ? person.getName().trim().toLowerCase(Locale.ROOT)
+                : null);
+        setNullableString(statement, 3, person.getEmail());
+        setNullableString(statement, 4, EmailIndex.normalize(person.getEmail()));
+        statement.setInt(5, person.getAge());
+        statement.setInt(6, person.getVersion());
+        statement.setInt(7, id);
+    }
+
+    private static void setNullableString(PreparedStatement statement, int index, String value) throws SQLException {
+        if (value == null) {
+            statement.setNull(index, Types.VARCHAR);
+        } else {
+            statement.setString(index, value);
+        }
+    }
+
+    // Up to limit people (0 for all) from the query, as an immutable list
+    private static List<Person> readPeople(PreparedStatement select, int limit) throws SQLException {
+        select.setMaxRows(limit);
+        List<Person> people = new ArrayList<>();
+        try (ResultSet rows = select.executeQuery()) {
+            while (rows.next()) {
+                people.add(new Person.PersonBuilder(rows.getInt(1), rows.getString(2))
+                        .email(rows.getString(3))
+                        .age(rows.getInt(4))
+                        .version(rows.getInt(5))
+                        .build());
+            }
+        }
+        return Collections.unmodifiableList(people);
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -0,0 +1,100 @@
+package repository;
+
+import model.Person;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.IntFunction;
+
+/**
+ * Name prefix index, kept as a flattened trie: the ids of everyone with a name, sorted by lower-cased name (then id).
+ * Those are the trie's leaves in depth-first order, so "names starting with..." is a binary search for the prefix and
+ * a scan from there, and results come back in alphabetical order. Only ids are kept; names are read through the
+ * PersonStore when two entries are compared, so the index holds no Person or String of its own.
+ * Not thread-safe; PersonIndexes guards it, and the store must hold the indexed version of every id it contains.
+ */
+class NamePrefixIndex {
+
+    private final IntFunction<Person> people;
+    private final SortedIdList ids = new SortedIdList();
+
+    NamePrefixIndex(IntFunction<Person> people) {
+        this.people = people;
+    }
+
+    void add(int id, Person person) {
+        if (person.getName() != null) {
+            String name = normalize(person.getName());
+            ids.add(id, entry -> compare(entry, name, id));
+        }
+    }
+
+    void remove(int id, Person person) {
+        if (person.getName() != null) {
+            String name = normalize(person.getName());
+            ids.remove(id, entry -> compare(entry, name, id));
+        }
+    }
+
+    /**
+     * Replace the index with everyone in people
+     */
+    void load(List<Person> everyone) {
+        List<Person> named = new ArrayList<>(everyone.size());
+        for (Person person : everyone) {
+            if (person.getName() != null) {
+                named.add(person);
+            }
+        }
+        String[] names = new String[named.size()];
+        Integer[] order = new Integer[named.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = normalize(named.get(i).getName());
+            order[i] = i;
+        }
+        // named is in id order, so a stable sort by name leaves equal names ordered by id
+        Arrays.sort(order, Comparator.comparing(i -> names[i]));
+        int[] sorted = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            sorted[i] = named.get(order[i]).getId();
+        }
+        ids.load(sorted, sorted.length);
+    }
+
+    /**
+     * Up to limit people whose name starts with prefix (case-insensitive), alphabetically
+     */
+    List<Person> startingWith(String prefix, int limit) {
+        List<Person> matches = new ArrayList<>();
+        if (limit <= 0) {
+            return matches;
+        }
+        String start = normalize(prefix);
+        ids.forEachFrom(entry -> nameOf(entry).compareTo(start), entry -> {
+            Person person = people.apply(entry);
+            if (!normalize(person.getName()).startsWith(start)) {
+                return false;
+            }
+            matches.add(person);
+            return matches.size() < limit;
+        });
+        return matches;
+    }
+
+    // Where the stored entry sorts relative to (name, id)
+    private int compare(int entry, String name, int id) {
+        int byName = nameOf(entry).compareTo(name);
+        return byName != 0 ? byName : Integer.compare(entry, id);
+    }
+
+    private String nameOf(int id) {
+        return normalize(people.apply(id).getName());
+    }
+
+    private static String normalize(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,659 @@
+package repository;
+
+import model.Person;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Store that keeps every record outside the Java heap in MemorySegments (Foreign Memory API, a preview feature on
+ * Java 21, so the JVM must run with --enable-preview; .mvn/jvm.config does that for mvn exec:java). The heap only
+ * holds a few fixed-size fields no matter how many people are stored, so GC work does not grow with the data.
+ *
+ * Everything lives in one data segment, in 16-byte aligned blocks. A record is a fixed header
+ *   [int id][int age][int name length][int email length][int version] followed by the name and email as UTF-8 bytes
+ * (a length of -1 stands for a null string). Records are found through a 32-way radix trie indexed by the id, the
+ * same shape as PersonSnapshot, whose nodes are blocks too: [int people beneath][int unused][long child offset x 32],
+ * where the children of a bottom node are records and 0 means empty (the first 16 bytes are never handed out).
+ *
+ * The trie is persistent: a write never changes a block that is in use, it writes a new record and copies the few
+ * nodes on the way down to it, so every version stays intact. findAll() hands out the current version (its root,
+ * and the segment it is in) without copying anything. A block the newest version no longer uses is retired, and
+ * goes onto the free list for its size class (the list links live inside the free blocks themselves) once no view
+ * that could read it is left: each view is registered with a PhantomReference, and writes put back whatever was
+ * retired before the oldest view the GC has not yet found unreachable. With no view out, a block is reused right
+ * away. While one is held, the retired blocks wait, so the heap also holds a queue of them; that grows with writes
+ * made while a view is held, not with the number of people.
+ *
+ * When more than half of the used space is free, retired or abandoned, the live records are compacted into a new
+ * segment. Each segment has its own Arena, and a replaced segment is closed once no view that reads it is left.
+ * Readers and writers share a StampedLock (findAll() takes it only to make the view), which also guarantees no one
+ * is reading a segment when its Arena is closed. Snapshots still read this store id by id rather than through a
+ * view (hasImmutableVersions() stays false): holding one version for a whole snapshot write would hold back every
+ * block retired in the meantime. close() frees every segment, so a view read after it fails too; the store throws
+ * IllegalStateException if it is used after that.
+ */
+public class OffHeapPersonStore implements PersonStore {
+
+    private static final int HEADER = 20;
+    private static final int ALIGN = 16;
+    private static final int SIZE_CLASSES = 64;
+    private static final long NO_BLOCK = -1L;
+
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+    private static final int NODE_HEADER = 8;
+    private static final int NODE_BYTES = (NODE_HEADER + WIDTH * Long.BYTES + ALIGN - 1) & -ALIGN;
+
+    private static final long INITIAL_DATA_BYTES = 1024 * 1024;
+
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT;
+    private static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG;
+
+    private final StampedLock lock = new StampedLock();
+
+    // findAll() view of the current version, made on the first call after a write and shared until the next one
+    private volatile RecordsView allById;
+
+    private Arena dataArena;
+    private MemorySegment data;
+    private long dataUsed;
+    private long dataFree;
+    // Head of the free list for each size class (block size / 16), stored off-heap inside the free blocks
+    private final long[] freeLists = new long[SIZE_CLASSES];
+
+    // Root node of the trie (0 when nobody is stored), how far the root's index is shifted out of an id, and size
+    private long root;
+    private int shift;
+    private int size;
+    // Number of the current version; every write makes the next one
+    private long version;
+    private boolean closed;
+
+    // Views that may still be read, by the version they show, and the queue the GC reports unreachable ones on
+    private final TreeMap<Long, ViewReference> liveViews = new TreeMap<>();
+    private final ReferenceQueue<RecordsView> droppedViews = new ReferenceQueue<>();
+    // Blocks waiting for the views that can read them, oldest first: pairs of (last version the block was part of,
+    // offset << 8 | size class) in a ring of retiredCount pairs starting at pair retiredHead
+    private long[] retired = new long[2 * 64];
+    private int retiredHead;
+    private int retiredCount;
+    // Segments replaced by a resize or compaction while a view still read them, oldest first
+    private final ArrayDeque<RetiredArena> retiredArenas = new ArrayDeque<>();
+
+    private static final class ViewReference extends PhantomReference<RecordsView> {
+        final long version;
+
+        ViewReference(RecordsView view, ReferenceQueue<RecordsView> queue) {
+            super(view, queue);
+            this.version = view.version;
+        }
+    }
+
+    private static final class RetiredArena {
+        final long version;
+        final Arena arena;
+
+        RetiredArena(long version, Arena arena) {
+            this.version = version;
+            this.arena = arena;
+        }
+    }
+
+    public OffHeapPersonStore() {
+        dataArena = Arena.ofShared();
+        data = dataArena.allocate(INITIAL_DATA_BYTES, ALIGN);
+        dataUsed = ALIGN;
+        Arrays.fill(freeLists, NO_BLOCK);
+    }
+
+    @Override
+    public void put(int id, Person person) {
+        checkId(id);
+        long stamp = lock.writeLock();
+        try {
+            startWrite();
+            long old = find(data, root, shift, id);
+            long record = writeRecord(id, person);
+            growRootFor(id);
+            root = setPath(root, shift, id, record);
+            if (old != 0) {
+                retire(old, recordSize(data, old));
+            } else {
+                size++;
+            }
+            compactIfNeeded();
+        } finally {
+            version++;
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public Person get(int id) {
+        long stamp = lock.readLock();
+        try {
+            long record = find(data, root, shift, id);
+            return record == 0 ? null : readRecord(data, record);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public boolean replace(int id, Person person) {
+        long stamp = lock.writeLock();
+        try {
+            startWrite();
+            long old = find(data, root, shift, id);
+            if (old == 0) {
+                return false;
+            }
+            long record = writeRecord(id, person);
+            root = setPath(root, shift, id, record);
+            retire(old, recordSize(data, old));
+            compactIfNeeded();
+            return true;
+        } finally {
+            version++;
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean remove(int id) {
+        long stamp = lock.writeLock();
+        try {
+            startWrite();
+            long old = find(data, root, shift, id);
+            if (old == 0) {
+                return false;
+            }
+            root = setPath(root, shift, id, 0);
+            if (root == 0) {
+                shift = 0;
+            }
+            retire(old, recordSize(data, old));
+            size--;
+            compactIfNeeded();
+            return true;
+        } finally {
+            version++;
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Everyone in id order, as a view over the current version of the trie that builds each Person as it is read.
+     * Nothing is copied; the view is registered once after each write and shared by every read until the next write.
+     */
+    @Override
+    public List<Person> findAll() {
+        RecordsView all = allById;
+        if (all != null) {
+            return all;
+        }
+        long stamp = lock.writeLock();
+        try {
+            all = allById;
+            if (all == null) {
+                all = new RecordsView(data, root, shift, size, version);
+                liveViews.put(version, new ViewReference(all, droppedViews));
+                allById = all;
+            }
+            return all;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Read-only list over one version of the trie in id order, building each Person as it is read. get(i) walks one
+    // path down by the node counts (O(log n)) and iteration walks the trie once, so it is not RandomAccess. Every read
+    // ends with a reachability fence, so the view cannot be reported unreachable while it is still reading.
+    private static final class RecordsView extends AbstractList<Person> {
+        final MemorySegment data;
+        final long root;
+        final int shift;
+        final int size;
+        final long version;
+
+        RecordsView(MemorySegment data, long root, int shift, int size, long version) {
+            this.data = data;
+            this.root = root;
+            this.shift = shift;
+            this.size = size;
+            this.version = version;
+        }
+
+        @Override
+        public Person get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            try {
+                // Skip whole subtrees by their counts on the way down
+                long node = root;
+                for (int level = shift; ; level -= BITS) {
+                    for (int i = 0; i < WIDTH; i++) {
+                        long child = child(data, node, i);
+                        if (child == 0) {
+                            continue;
+                        }
+                        if (level == 0) {
+                            if (index == 0) {
+                                return readRecord(data, child);
+                            }
+                            index--;
+                        } else {
+                            int count = data.get(INT, child);
+                            if (index < count) {
+                                node = child;
+                                break;
+                            }
+                            index -= count;
+                        }
+                    }
+                }
+            } finally {
+                Reference.reachabilityFence(this);
+            }
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Iterator<Person> iterator() {
+            return new RecordsIterator();
+        }
+
+        // Depth-first walk over the trie using a small explicit stack (at most 7 levels)
+        private final class RecordsIterator implements Iterator<Person> {
+            private final long[] nodes = new long[8];
+            private final int[] positions = new int[8];
+            private final int leafDepth = shift / BITS;
+            private int depth;
+            private long next;
+
+            RecordsIterator() {
+                if (root != 0) {
+                    nodes[0] = root;
+                    depth = 0;
+                    try {
+                        advance();
+                    } finally {
+                        Reference.reachabilityFence(RecordsView.this);
+                    }
+                } else {
+                    depth = -1;
+                }
+            }
+
+            private void advance() {
+                next = 0;
+                while (depth >= 0) {
+                    if (positions[depth] == WIDTH) {
+                        depth--;
+                        continue;
+                    }
+                    long child = child(data, nodes[depth], positions[depth]++);
+                    if (child == 0) {
+                        continue;
+                    }
+                    if (depth == leafDepth) {
+                        next = child;
+                        return;
+                    }
+                    depth++;
+                    nodes[depth] = child;
+                    positions[depth] = 0;
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != 0;
+            }
+
+            @Override
+            public Person next() {
+                if (next == 0) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    Person person = readRecord(data, next);
+                    advance();
+                    return person;
+                } finally {
+                    Reference.reachabilityFence(RecordsView.this);
+                }
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public void close() {
+        long stamp = lock.writeLock();
+        try {
+            if (!closed) {
+                closed = true;
+                allById = null;
+                liveViews.clear();
+                retiredCount = 0;
+                dataArena.close();
+                for (RetiredArena replaced : retiredArenas) {
+                    replaced.arena.close();
+                }
+                retiredArenas.clear();
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // ---- trie ----
+
+    private static long child(MemorySegment segment, long node, int index) {
+        return segment.get(LONG, node + NODE_HEADER + (long) index * Long.BYTES);
+    }
+
+    // Offset of id's record in the version under root, or 0
+    private static long find(MemorySegment segment, long root, int shift, int id) {
+        if (root == 0 || id < 0 || !fits(id, shift)) {
+            return 0;
+        }
+        long node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = child(segment, node, (id >>> level) & MASK);
+            if (node == 0) {
+                return 0;
+            }
+        }
+        return child(segment, node, id & MASK);
+    }
+
+    private static boolean fits(int id, int shift) {
+        int bits = shift + BITS;
+        return bits >= 31 || (id >>> bits) == 0;
+    }
+
+    // Add levels above the root until id fits; the old root becomes the first child of the new one
+    private void growRootFor(int id) {
+        while (!fits(id, shift)) {
+            if (root != 0) {
+                long node = allocateNode();
+                data.set(INT, node, data.get(INT, root));
+                data.set(LONG, node + NODE_HEADER, root);
+                root = node;
+            }
+            shift += BITS;
+        }
+    }
+
+    // Path copy down to id and put record there (0 takes id out). Returns the copy, or 0 if nobody is left beneath
+    // it; the nodes it replaces are retired. allocate() may move data, so the segment is looked up again after it.
+    private long setPath(long node, int level, int id, long record) {
+        long copy;
+        if (node != 0) {
+            copy = allocate(NODE_BYTES);
+            MemorySegment.copy(data, node, data, copy, NODE_BYTES);
+        } else {
+            copy = allocateNode();
+        }
+        int index = (id >>> level) & MASK;
+        long slot = copy + NODE_HEADER + (long) index * Long.BYTES;
+        long child = data.get(LONG, slot);
+        // Read before the recursion, which may retire the child and reuse its header for a free-list link
+        int before = level == 0 ? (child != 0 ? 1 : 0) : (child != 0 ? data.get(INT, child) : 0);
+        long replacement = level == 0 ? record : setPath(child, level - BITS, id, record);
+        int after = level == 0 ? (replacement != 0 ? 1 : 0) : (replacement != 0 ? data.get(INT, replacement) : 0);
+        int count = data.get(INT, copy) - before + after;
+        if (node != 0) {
+            retire(node, NODE_BYTES);
+        }
+        if (count == 0) {
+            // Never part of any version, so it can be reused straight away
+            free(copy, NODE_BYTES);
+            return 0;
+        }
+        data.set(LONG, slot, replacement);
+        data.set(INT, copy, count);
+        return copy;
+    }
+
+    private long allocateNode() {
+        long node = allocate(NODE_BYTES);
+        data.asSlice(node, NODE_BYTES).fill((byte) 0);
+        return node;
+    }
+
+    // ---- records ----
+
+    private long writeRecord(int id, Person person) {
+        byte[] name = encode(person.getName());
+        byte[] email = encode(person.getEmail());
+        int nameLength = name != null ? name.length : 0;
+        int emailLength = email != null ? email.length : 0;
+
+        long offset = allocate(blockSize(nameLength + emailLength));
+        data.set(INT, offset, id);
+        data.set(INT, offset + 4, person.getAge());
+        data.set(INT, offset + 8, name != null ? name.length : -1);
+        data.set(INT, offset + 12, email != null ? email.length : -1);
+        data.set(INT, offset + 16, person.getVersion());
+        if (name != null) {
+            MemorySegment.copy(name, 0, data, ValueLayout.JAVA_BYTE, offset + HEADER, nameLength);
+        }
+        if (email != null) {
+            MemorySegment.copy(email, 0, data, ValueLayout.JAVA_BYTE, offset + HEADER + nameLength, emailLength);
+        }
+        return offset;
+    }
+
+    private static Person readRecord(MemorySegment segment, long offset) {
+        int nameLength = segment.get(INT, offset + 8);
+        int emailLength = segment.get(INT, offset + 12);
+        String name = decode(segment, offset + HEADER, nameLength);
+        String email = decode(segment, offset + HEADER + Math.max(nameLength, 0), emailLength);
+        return new Person.PersonBuilder(segment.get(INT, offset), name)
+                .age(segment.get(INT, offset + 4))
+                .email(email)
+                .version(segment.get(INT, offset + 16))
+                .build();
+    }
+
+    private static int recordSize(MemorySegment segment, long offset) {
+        return blockSize(Math.max(segment.get(INT, offset + 8), 0) + Math.max(segment.get(INT, offset + 12), 0));
+    }
+
+    private static int blockSize(int stringBytes) {
+        return (HEADER + stringBytes + ALIGN - 1) & -ALIGN;
+    }
+
+    private static byte[] encode(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String decode(MemorySegment segment, long offset, int length) {
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        MemorySegment.copy(segment, ValueLayout.JAVA_BYTE, offset, bytes, 0, length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // ---- space ----
+
+    private long allocate(int blockSize) {
+        int sizeClass = blockSize / ALIGN;
+        if (sizeClass < SIZE_CLASSES && freeLists[sizeClass] != NO_BLOCK) {
+            long block = freeLists[sizeClass];
+            freeLists[sizeClass] = data.get(LONG, block);
+            dataFree -= blockSize;
+            return block;
+        }
+        if (dataUsed + blockSize > data.byteSize()) {
+            resizeData(Math.max(data.byteSize() * 2, dataUsed + blockSize));
+        }
+        long block = dataUsed;
+        dataUsed += blockSize;
+        return block;
+    }
+
+    // Put a block no version uses on its free list. Blocks too big for a size class are simply abandoned until the
+    // next compaction.
+    private void free(long offset, int blockSize) {
+        dataFree += blockSize;
+        int sizeClass = blockSize / ALIGN;
+        if (sizeClass < SIZE_CLASSES) {
+            pushFree(offset, sizeClass);
+        }
+    }
+
+    private void pushFree(long offset, int sizeClass) {
+        data.set(LONG, offset, freeLists[sizeClass]);
+        freeLists[sizeClass] = offset;
+    }
+
+    // A block the version being written no longer uses: free it now if no view is out, otherwise once the views
+    // that may read it are gone
+    private void retire(long offset, int blockSize) {
+        if (liveViews.isEmpty()) {
+            free(offset, blockSize);
+            return;
+        }
+        dataFree += blockSize;
+        int sizeClass = blockSize / ALIGN;
+        if (sizeClass >= SIZE_CLASSES) {
+            return;
+        }
+        int pairs = retired.length / 2;
+        if (retiredCount == pairs) {
+            long[] bigger = new long[2 * retired.length];
+            for (int i = 0; i < retiredCount; i++) {
+                int from = 2 * ((retiredHead + i) % pairs);
+                bigger[2 * i] = retired[from];
+                bigger[2 * i + 1] = retired[from + 1];
+            }
+            retired = bigger;
+            retiredHead = 0;
+        }
+        int at = 2 * ((retiredHead + retiredCount) % (retired.length / 2));
+        retired[at] = version;
+        retired[at + 1] = (offset << 8) | sizeClass;
+        retiredCount++;
+    }
+
+    private void retireArena(Arena arena) {
+        if (liveViews.isEmpty()) {
+            arena.close();
+        } else {
+            retiredArenas.addLast(new RetiredArena(version, arena));
+        }
+    }
+
+    // Forget the views the GC found unreachable, then reuse every block and close every segment retired before the
+    // oldest view still out was made. Views are made between writes, so one made at version v can read exactly what
+    // was retired at v or later.
+    private void startWrite() {
+        allById = null;
+        Reference<? extends RecordsView> dropped;
+        while ((dropped = droppedViews.poll()) != null) {
+            liveViews.remove(((ViewReference) dropped).version);
+        }
+        long oldest = liveViews.isEmpty() ? Long.MAX_VALUE : liveViews.firstKey();
+        int pairs = retired.length / 2;
+        while (retiredCount > 0 && retired[2 * retiredHead] < oldest) {
+            long entry = retired[2 * retiredHead + 1];
+            pushFree(entry >>> 8, (int) (entry & 0xFF));
+            retiredHead = (retiredHead + 1) % pairs;
+            retiredCount--;
+        }
+        while (!retiredArenas.isEmpty() && retiredArenas.peekFirst().version < oldest) {
+            retiredArenas.pollFirst().arena.close();
+        }
+    }
+
+    private void resizeData(long capacity) {
+        Arena arena = Arena.ofShared();
+        MemorySegment bigger = arena.allocate(capacity, ALIGN);
+        MemorySegment.copy(data, 0, bigger, 0, dataUsed);
+        retireArena(dataArena);
+        dataArena = arena;
+        data = bigger;
+    }
+
+    // Copy the current version's nodes and records into a fresh segment, which also drops all free lists and every
+    // retired block (they are all in the old segment)
+    private void compactIfNeeded() {
+        if (dataFree < INITIAL_DATA_BYTES || dataFree * 2 < dataUsed) {
+            return;
+        }
+        long live = dataUsed - dataFree;
+        Arena oldArena = dataArena;
+        MemorySegment old = data;
+        dataArena = Arena.ofShared();
+        data = dataArena.allocate(Math.max(INITIAL_DATA_BYTES, live * 2), ALIGN);
+        dataUsed = ALIGN;
+        dataFree = 0;
+        Arrays.fill(freeLists, NO_BLOCK);
+        retiredCount = 0;
+        root = copyTree(old, root, shift);
+        retireArena(oldArena);
+    }
+
+    // Copy of node and everything beneath it, from old into data
+    private long copyTree(MemorySegment old, long node, int level) {
+        if (node == 0) {
+            return 0;
+        }
+        long copy = allocate(NODE_BYTES);
+        data.set(INT, copy, old.get(INT, node));
+        for (int i = 0; i < WIDTH; i++) {
+            long child = child(old, node, i);
+            long moved = 0;
+            if (child != 0 && level == 0) {
+                int blockSize = recordSize(old, child);
+                moved = allocate(blockSize);
+                MemorySegment.copy(old, child, data, moved, blockSize);
+            } else if (child != 0) {
+                moved = copyTree(old, child, level - BITS);
+            }
+            data.set(LONG, copy + NODE_HEADER + (long) i * Long.BYTES, moved);
+        }
+        return copy;
+    }
+
+    private static void checkId(int id) {
+        if (id < 0 || id == Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Person id out of range: " + id);
+        }
+    }
+}
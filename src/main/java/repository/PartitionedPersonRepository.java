@@ -0,0 +1,512 @@
+package repository;
+
+import model.Person;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Repository that shards people by id (id mod N) across N InMemoryPersonRepository partitions. Each partition has its
+ * own store, indexes, write lock and write-ahead log (in its own directory), so writes to different partitions
+ * neither wait for each other's lock nor share an fsync queue. Sequential ids spread evenly over the partitions.
+ *
+ * Reads fan out on the common ForkJoinPool: findAll() merges the partitions' id-ordered lists pairwise in parallel
+ * (and shares the result until the next write), the name and age searches ask every partition for up to limit
+ * matches and merge them, and aggregate() folds each partition on its own core before combining the results.
+ *
+ * What the single repository got from its one write lock is kept like this:
+ * - Email uniqueness across partitions: a write holds the lock stripe of every email it takes or frees (chosen by
+ *   the email's hash) while it checks the other partitions and until its change is durable, so two partitions can
+ *   neither register the same email at once nor hand out one whose release a crash could still undo.
+ * - Change order: each partition publishes its changes in order once they are durable, and the listener is called
+ *   one change at a time. Changes to one person come in order; changes to people in different partitions may
+ *   interleave in any order.
+ * - writeBatch() takes every stripe and every partition's batch, so it still keeps all other writes out.
+ *
+ * findAll() is not a single point-in-time cut: each partition is read at its own moment.
+ */
+public final class PartitionedPersonRepository implements PersonRepository {
+
+    private static final int EMAIL_STRIPES = 64;
+
+    private record Merged(long stamp, List<Person> people) {
+    }
+
+    private final InMemoryPersonRepository[] partitions;
+    private final ReentrantLock[] emailStripes = new ReentrantLock[EMAIL_STRIPES];
+    // Bumped after every write; a merged findAll() list is only reused while the stamp it was built at is current
+    private final AtomicLong writes = new AtomicLong();
+    private volatile Merged allById;
+    private final Object listenerLock = new Object();
+    private volatile ChangeListener changeListener;
+    // True on the thread running writeBatch(), which holds every partition's write lock
+    private final ThreadLocal<Boolean> batching = ThreadLocal.withInitial(() -> false);
+
+    /**
+     * partitionCount partitions, partition k made by newPartition.apply(k). A partition with a log recovers from it
+     * while it is made; the partitions are opened in parallel. Throws IllegalStateException if a recovered partition
+     * holds someone that belongs to another one (the data was written with a different partition count).
+     */
+    public PartitionedPersonRepository(int partitionCount, IntFunction<InMemoryPersonRepository> newPartition) {
+        if (partitionCount < 1) {
+            throw new IllegalArgumentException("At least one partition is needed");
+        }
+        for (int i = 0; i < EMAIL_STRIPES; i++) {
+            emailStripes[i] = new ReentrantLock();
+        }
+        List<ForkJoinTask<InMemoryPersonRepository>> opening = new ArrayList<>(partitionCount);
+        for (int k = 0; k < partitionCount; k++) {
+            int index = k;
+            opening.add(ForkJoinTask.adapt(() -> newPartition.apply(index)));
+        }
+        partitions = ForkJoinPool.commonPool().invoke(ForkJoinTask.adapt(() -> {
+            ForkJoinTask.invokeAll(opening);
+            InMemoryPersonRepository[] opened = new InMemoryPersonRepository[partitionCount];
+            for (int k = 0; k < partitionCount; k++) {
+                opened[k] = opening.get(k).join();
+            }
+            return opened;
+        }));
+        try {
+            onEveryPartition(partition -> {
+                int index = indexOf(partition);
+                for (Person person : partition.findAll()) {
+                    if (Math.floorMod(person.getId(), partitionCount) != index) {
+                        throw new IllegalStateException("Partition " + index + " holds person " + person.getId()
+                                + ", who belongs in partition " + Math.floorMod(person.getId(), partitionCount)
+                                + "; was the data written with a different number of partitions?");
+                    }
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            try {
+                close();
+            } catch (IOException closing) {
+                e.addSuppressed(closing);
+            }
+            throw e;
+        }
+        for (InMemoryPersonRepository partition : partitions) {
+            partition.setChangeListener(this::changed);
+        }
+    }
+
+    public int getPartitionCount() {
+        return partitions.length;
+    }
+
+    private InMemoryPersonRepository partition(int id) {
+        return partitions[Math.floorMod(id, partitions.length)];
+    }
+
+    private int indexOf(InMemoryPersonRepository partition) {
+        for (int k = 0; k < partitions.length; k++) {
+            if (partitions[k] == partition) {
+                return k;
+            }
+        }
+        throw new IllegalArgumentException("Not a partition of this repository");
+    }
+
+    // Partitions publish on their own threads; the listener still gets one change at a time
+    private void changed(Person previous, Person current) {
+        ChangeListener listener = changeListener;
+        if (listener != null) {
+            synchronized (listenerLock) {
+                listener.changed(previous, current);
+            }
+        }
+    }
+
+    @Override
+    public void setChangeListener(ChangeListener changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    /**
+     * Throws IllegalArgumentException if the email already belongs to someone else, in any partition
+     */
+    @Override
+    public void save(int id, Person person) {
+        withEmailsLocked(id, person.getEmail(), () -> {
+            partition(id).save(id, person);
+            return null;
+        });
+    }
+
+    @Override
+    public boolean update(int id, int expectedVersion, Person person) {
+        return withEmailsLocked(id, person.getEmail(), () -> partition(id).update(id, expectedVersion, person));
+    }
+
+    @Override
+    public boolean delete(int id) {
+        return withEmailsLocked(id, null, () -> partition(id).delete(id));
+    }
+
+    /**
+     * Checks the whole batch under every email stripe, then saves each partition's share of it in parallel, so the
+     * partitions' log flushes overlap
+     */
+    @Override
+    public List<String> saveAll(List<Person> people) {
+        String[] rejections = new String[people.size()];
+        List<List<Person>> shares = new ArrayList<>(partitions.length);
+        List<List<Integer>> positions = new ArrayList<>(partitions.length);
+        for (int k = 0; k < partitions.length; k++) {
+            shares.add(new ArrayList<>());
+            positions.add(new ArrayList<>());
+        }
+        lockAllStripes();
+        try {
+            // Normalized email → id, for the people accepted so far in this batch
+            Map<String, Integer> batchEmails = new HashMap<>();
+            for (int i = 0; i < people.size(); i++) {
+                Person person = people.get(i);
+                String key = EmailIndex.normalize(person.getEmail());
+                if (key != null) {
+                    Integer owner = batchEmails.get(key);
+                    if ((owner != null && owner != person.getId()) || isEmailTakenByOther(key, person.getId())) {
+                        rejections[i] = emailTakenMessage(person);
+                        continue;
+                    }
+                    batchEmails.put(key, person.getId());
+                }
+                int k = Math.floorMod(person.getId(), partitions.length);
+                shares.get(k).add(person);
+                positions.get(k).add(i);
+            }
+            Function<InMemoryPersonRepository, List<String>> saveShare = partition -> {
+                List<Person> share = shares.get(indexOf(partition));
+                return share.isEmpty() ? List.of() : partition.saveAll(share);
+            };
+            // In a batch this thread holds every partition's lock, so pool threads could not get in
+            List<List<String>> results = batching.get()
+                    ? Arrays.stream(partitions).map(saveShare).toList()
+                    : onEveryPartition(saveShare);
+            for (int k = 0; k < partitions.length; k++) {
+                for (int j = 0; j < results.get(k).size(); j++) {
+                    rejections[positions.get(k).get(j)] = results.get(k).get(j);
+                }
+            }
+            writes.incrementAndGet();
+        } finally {
+            unlockAllStripes();
+        }
+        return Arrays.asList(rejections);
+    }
+
+    /**
+     * Keeps every other write out for the whole batch: takes every email stripe, then every partition's batch in
+     * partition order (the order single writes take them in, so the two cannot deadlock)
+     */
+    @Override
+    public void writeBatch(Runnable writes) {
+        boolean nested = batching.get();
+        lockAllStripes();
+        batching.set(true);
+        try {
+            batchFrom(0, writes);
+        } finally {
+            batching.set(nested);
+            unlockAllStripes();
+        }
+    }
+
+    private void batchFrom(int partition, Runnable writes) {
+        if (partition == partitions.length) {
+            writes.run();
+        } else {
+            partitions[partition].writeBatch(() -> batchFrom(partition + 1, writes));
+        }
+    }
+
+    // Runs write holding the stripes of id's current email and of newEmail, once newEmail is known to be free
+    private <T> T withEmailsLocked(int id, String newEmail, Supplier<T> write) {
+        InMemoryPersonRepository partition = partition(id);
+        String newKey = EmailIndex.normalize(newEmail);
+        while (true) {
+            String oldKey = emailKey(partition.findById(id));
+            int first = stripe(oldKey);
+            int second = stripe(newKey);
+            if (first > second) {
+                int swap = first;
+                first = second;
+                second = swap;
+            }
+            lock(first);
+            if (second != first) {
+                lock(second);
+            }
+            try {
+                // The person's email may have changed before we had its stripe; start again with the new one
+                if (!Objects.equals(oldKey, emailKey(partition.findById(id)))) {
+                    continue;
+                }
+                if (newKey != null && isEmailTakenByOther(newKey, id)) {
+                    throw new IllegalArgumentException("Email is already registered: " + newEmail);
+                }
+                // Still holding the stripes: the partition returns once the change is durable
+                T result = write.get();
+                writes.incrementAndGet();
+                return result;
+            } finally {
+                if (second != first) {
+                    unlock(second);
+                }
+                unlock(first);
+            }
+        }
+    }
+
+    private boolean isEmailTakenByOther(String key, int id) {
+        for (InMemoryPersonRepository partition : partitions) {
+            Person owner = partition.findByEmail(key);
+            if (owner != null && owner.getId() != id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String emailKey(Person person) {
+        return person == null ? null : EmailIndex.normalize(person.getEmail());
+    }
+
+    private static String emailTakenMessage(Person person) {
+        return "Email is already registered: " + person.getEmail();
+    }
+
+    // -1 (no lock) for no email
+    private static int stripe(String key) {
+        return key == null ? -1 : Math.floorMod(key.hashCode(), EMAIL_STRIPES);
+    }
+
+    private void lock(int stripe) {
+        if (stripe >= 0) {
+            emailStripes[stripe].lock();
+        }
+    }
+
+    private void unlock(int stripe) {
+        if (stripe >= 0) {
+            emailStripes[stripe].unlock();
+        }
+    }
+
+    private void lockAllStripes() {
+        for (ReentrantLock stripe : emailStripes) {
+            stripe.lock();
+        }
+    }
+
+    private void unlockAllStripes() {
+        for (int i = EMAIL_STRIPES - 1; i >= 0; i--) {
+            emailStripes[i].unlock();
+        }
+    }
+
+    @Override
+    public Person findById(int id) {
+        return partition(id).findById(id);
+    }
+
+    @Override
+    public Person findByEmail(String email) {
+        for (InMemoryPersonRepository partition : partitions) {
+            Person person = partition.findByEmail(email);
+            if (person != null) {
+                return person;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public List<Person> findByNamePrefix(String prefix, int limit) {
+        return firstMatches(onEveryPartition(partition -> partition.findByNamePrefix(prefix, limit)),
+                Comparator.comparing((Person person) -> person.getName().trim().toLowerCase(Locale.ROOT))
+                        .thenComparingInt(Person::getId),
+                limit);
+    }
+
+    @Override
+    public List<Person> findByAgeRange(int minAge, int maxAge, int limit) {
+        return firstMatches(onEveryPartition(partition -> partition.findByAgeRange(minAge, maxAge, limit)),
+                Comparator.comparingInt(Person::getAge).thenComparingInt(Person::getId), limit);
+    }
+
+    // Each partition's matches are its first limit in order, so the first limit overall are among them
+    private static List<Person> firstMatches(List<List<Person>> matches, Comparator<Person> order, int limit) {
+        List<Person> all = new ArrayList<>();
+        for (List<Person> partitionMatches : matches) {
+            all.addAll(partitionMatches);
+        }
+        all.sort(order);
+        return all.size() > limit ? new ArrayList<>(all.subList(0, limit)) : all;
+    }
+
+    /**
+     * Everyone in id order, merged from the partitions in parallel. Built once after each write and shared by every
+     * read until the next one.
+     */
+    @Override
+    public List<Person> findAll() {
+        long stamp = writes.get();
+        Merged merged = allById;
+        if (merged != null && merged.stamp() == stamp) {
+            return merged.people();
+        }
+        List<Person> people = partitions.length == 1
+                ? partitions[0].findAll()
+                : Collections.unmodifiableList(ForkJoinPool.commonPool().invoke(
+                        ForkJoinTask.adapt(() -> mergeById(0, partitions.length))));
+        allById = new Merged(stamp, people);
+        return people;
+    }
+
+    // Id-ordered contents of partitions [from, to): one half is forked while this thread does the other
+    private List<Person> mergeById(int from, int to) {
+        if (to - from == 1) {
+            return partitions[from].findAll();
+        }
+        int middle = (from + to) >>> 1;
+        ForkJoinTask<List<Person>> left = ForkJoinTask.adapt(() -> mergeById(from, middle)).fork();
+        List<Person> right = mergeById(middle, to);
+        return merge(left.join(), right);
+    }
+
+    // Iterators rather than get(i): a SnapshotPersonStore partition's list walks its trie on every get
+    private static List<Person> merge(List<Person> a, List<Person> b) {
+        List<Person> merged = new ArrayList<>(a.size() + b.size());
+        Iterator<Person> left = a.iterator();
+        Iterator<Person> right = b.iterator();
+        Person nextLeft = left.hasNext() ? left.next() : null;
+        Person nextRight = right.hasNext() ? right.next() : null;
+        while (nextLeft != null && nextRight != null) {
+            if (nextLeft.getId() <= nextRight.getId()) {
+                merged.add(nextLeft);
+                nextLeft = left.hasNext() ? left.next() : null;
+            } else {
+                merged.add(nextRight);
+                nextRight = right.hasNext() ? right.next() : null;
+            }
+        }
+        for (; nextLeft != null; nextLeft = left.hasNext() ? left.next() : null) {
+            merged.add(nextLeft);
+        }
+        for (; nextRight != null; nextRight = right.hasNext() ? right.next() : null) {
+            merged.add(nextRight);
+        }
+        return merged;
+    }
+
+    /**
+     * Folds every partition in parallel, each into its own container, then combines the containers
+     */
+    @Override
+    public <A> A aggregate(Supplier<A> supplier, BiConsumer<A, Person> accumulator, BinaryOperator<A> combiner) {
+        List<A> parts = onEveryPartition(partition -> partition.aggregate(supplier, accumulator, combiner));
+        A result = parts.get(0);
+        for (int k = 1; k < parts.size(); k++) {
+            result = combiner.apply(result, parts.get(k));
+        }
+        return result;
+    }
+
+    // Runs task on every partition on the common ForkJoinPool; results in partition order
+    private <T> List<T> onEveryPartition(Function<InMemoryPersonRepository, T> task) {
+        List<ForkJoinTask<T>> tasks = new ArrayList<>(partitions.length);
+        for (InMemoryPersonRepository partition : partitions) {
+            tasks.add(ForkJoinTask.adapt(() -> task.apply(partition)));
+        }
+        return ForkJoinPool.commonPool().invoke(ForkJoinTask.adapt(() -> {
+            ForkJoinTask.invokeAll(tasks);
+            List<T> results = new ArrayList<>(tasks.size());
+            for (ForkJoinTask<T> done : tasks) {
+                results.add(done.join());
+            }
+            return results;
+        }));
+    }
+
+    @Override
+    public int getHighestId() {
+        int highest = 0;
+        for (InMemoryPersonRepository partition : partitions) {
+            highest = Math.max(highest, partition.getHighestId());
+        }
+        return highest;
+    }
+
+    /**
+     * Snapshot every partition that logged something since its last snapshot, in parallel. Returns true if any did.
+     */
+    public boolean snapshot() throws IOException {
+        List<Object> results = onEveryPartition(partition -> {
+            try {
+                return partition.snapshot();
+            } catch (IOException e) {
+                return e;
+            }
+        });
+        boolean written = false;
+        for (Object result : results) {
+            if (result instanceof IOException e) {
+                throw e;
+            }
+            written |= (Boolean) result;
+        }
+        return written;
+    }
+
+    /**
+     * Every partition takes its own snapshots, every intervalMillis
+     */
+    public void scheduleSnapshots(long intervalMillis) {
+        for (InMemoryPersonRepository partition : partitions) {
+            partition.scheduleSnapshots(intervalMillis);
+        }
+    }
+
+    /**
+     * Close every partition; the first failure is thrown once all have been tried
+     */
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (InMemoryPersonRepository partition : partitions) {
+            try {
+                partition.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package repository;
+
+import model.Person;
+
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The secondary indexes kept next to the PersonStore: unique email, name prefix and age range. They hold person ids
+ * only and read the people through the store, so every store write goes through here: under the write lock the old
+ * version's entries are removed while the store still holds it, the store is written, and the new version's entries
+ * are added. A query therefore never sees an index that disagrees with the store or with another index. Queries share
+ * a read lock, so they run in parallel with each other.
+ */
+class PersonIndexes {
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final PersonStore store;
+    private final EmailIndex emailIndex;
+    private final NamePrefixIndex nameIndex;
+    private final AgeIndex ageIndex;
+
+    PersonIndexes(PersonStore store) {
+        this.store = store;
+        emailIndex = new EmailIndex(store::get);
+        nameIndex = new NamePrefixIndex(store::get);
+        ageIndex = new AgeIndex(store::get);
+    }
+
+    /**
+     * Store current under id in place of previous (null for a create)
+     */
+    void put(int id, Person previous, Person current) {
+        lock.writeLock().lock();
+        try {
+            unindex(id, previous);
+            store.put(id, current);
+            index(id, current);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replace previous, which the store holds under id, with current
+     */
+    void replace(int id, Person previous, Person current) {
+        lock.writeLock().lock();
+        try {
+            unindex(id, previous);
+            if (!store.replace(id, current)) {
+                throw new IllegalStateException("Person " + id + " is indexed but not stored");
+            }
+            index(id, current);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove previous, which the store holds under id
+     */
+    void remove(int id, Person previous) {
+        lock.writeLock().lock();
+        try {
+            unindex(id, previous);
+            store.remove(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Rebuild every index from the store's contents, after people were loaded into the store directly (recovery)
+     */
+    void rebuild() {
+        lock.writeLock().lock();
+        try {
+            List<Person> everyone = store.findAll();
+            emailIndex.clear();
+            for (Person person : everyone) {
+                emailIndex.add(person.getId(), person);
+            }
+            nameIndex.load(everyone);
+            ageIndex.load(everyone);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void unindex(int id, Person previous) {
+        if (previous != null) {
+            emailIndex.remove(id, previous);
+            nameIndex.remove(id, previous);
+            ageIndex.remove(id, previous);
+        }
+    }
+
+    private void index(int id, Person current) {
+        emailIndex.add(id, current);
+        nameIndex.add(id, current);
+        ageIndex.add(id, current);
+    }
+
+    boolean isEmailTakenByOther(String email, int id) {
+        lock.readLock().lock();
+        try {
+            return emailIndex.isTakenByOther(email, id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    Person findByEmail(String email) {
+        lock.readLock().lock();
+        try {
+            return emailIndex.get(email);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    List<Person> findByNamePrefix(String prefix, int limit) {
+        lock.readLock().lock();
+        try {
+            return nameIndex.startingWith(prefix, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    List<Person> findByAgeRange(int minAge, int maxAge, int limit) {
+        lock.readLock().lock();
+        try {
+            return ageIndex.between(minAge, maxAge, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
@@ -1,44 +1,115 @@
 package repository;
 
-
 import model.Person;
 
-import java.util.HashMap;
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.List;
-import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
 
 /**
- * My "repository" stores Person objects in the Application's scope (no persistent storage to a database) Note that
- * this also SOMEWHAT acts as an Identity Map. In the real Identity Map pattern, this would connect to a database and the
- * identity map class would contain a Map (like below) to store and reuse any data retrieved from the database.
- * The Identity map would first check its own map for the requested item and provide it if it has it. Otherwise, it
- * retrieves the requested data from the database. However, this class is already using a Map for storage, so there is
- * no real need to create an additional identity map on top of it.
+ * Where PersonService keeps its registrations. The service only talks to this interface, so the storage behind it can
+ * be swapped without touching the service layer:
+ * - InMemoryPersonRepository keeps everything in a PersonStore engine, made durable by a WriteAheadLog and snapshots.
+ * - JdbcPersonRepository keeps everything in a relational database through JDBC.
+ * The backend is picked at startup (see BaylorSportsHttpServer).
+ *
+ * Emails are unique, compared trimmed and case-insensitively; a write that would break that throws
+ * IllegalArgumentException.
  */
-public class PersonRepository {
-
-    private Map<Integer, Person> personRepository;
+public interface PersonRepository extends Closeable {
 
-    public PersonRepository() {
-        personRepository = new HashMap<>();
+    /**
+     * Told about every change once it has been applied and made durable, one change at a time. previous is null for
+     * a create and current is null for a delete. Must be quick and must not block.
+     */
+    interface ChangeListener {
+        void changed(Person previous, Person current);
     }
 
-    public void save(int id, Person person) {
-        personRepository.put(id, person);
-    }
+    /**
+     * Store a new person (or replace the one stored under id). Throws IllegalArgumentException if the email already
+     * belongs to someone else.
+     */
+    void save(int id, Person person);
 
-    public Person findById(int id) {
-        return personRepository.get(id);
-    }
+    /**
+     * Save a batch in one go, for bulk imports. Each person is checked against everyone saved before it, including
+     * earlier people in the same batch. Returns one entry per person, in order: null if it was saved, otherwise why
+     * it was rejected.
+     */
+    List<String> saveAll(List<Person> people);
 
-    public boolean delete(int id){
-        return personRepository.remove(id) != null;
-    }
+    Person findById(int id);
+
+    /**
+     * Returns false if there was no such person
+     */
+    boolean delete(int id);
+
+    /**
+     * Replace the person, but only if the stored version is still expectedVersion (compare-and-set), so an edit made
+     * from an out-of-date form cannot silently overwrite someone else's change. The new person should carry
+     * expectedVersion + 1. Returns false if there is no such person.
+     * Throws VersionConflictException if the stored version is different, and IllegalArgumentException if the email
+     * already belongs to someone else.
+     */
+    boolean update(int id, int expectedVersion, Person person);
+
+    Person findByEmail(String email);
 
-    public void update(int id, Person person){
-        personRepository.put(id, person);
+    /**
+     * Up to limit people whose name starts with prefix (case-insensitive), alphabetically
+     */
+    List<Person> findByNamePrefix(String prefix, int limit);
+
+    /**
+     * Up to limit people with minAge <= age <= maxAge, youngest first
+     */
+    List<Person> findByAgeRange(int minAge, int maxAge, int limit);
+
+    /**
+     * Everyone currently stored, in id order, as an immutable list that later writes do not change
+     */
+    List<Person> findAll();
+
+    /**
+     * Fold everyone stored into one result, like Stream.collect: people are accumulated into containers made by
+     * supplier, and the containers are then combined. A repository split into parts may fold the parts in parallel,
+     * so accumulator and combiner must not depend on the order people come in. By default this is one pass over
+     * findAll().
+     */
+    default <A> A aggregate(Supplier<A> supplier, BiConsumer<A, Person> accumulator, BinaryOperator<A> combiner) {
+        A result = supplier.get();
+        for (Person person : findAll()) {
+            accumulator.accept(result, person);
+        }
+        return result;
     }
-    public List<Person> findAll(){
-        return personRepository.values().stream().toList();
+
+    /**
+     * Highest id that has ever been stored (0 if none), so id allocation can continue after a restart
+     */
+    int getHighestId();
+
+    void setChangeListener(ChangeListener changeListener);
+
+    /**
+     * Run several writes (calls to the methods above, made by writes on the calling thread) as one batch. A
+     * repository may then do per-write overhead once for the whole batch, such as taking its lock or waiting for the
+     * disk; every write is durable when this returns. By default the writes simply run one after another.
+     * InMemoryPersonRepository and JdbcPersonRepository also keep every other thread's writes out until the batch is
+     * done, so whatever the batch reads back is not changed underneath it.
+     */
+    default void writeBatch(Runnable writes) {
+        writes.run();
     }
+
+    /**
+     * Release whatever the repository holds open (log files, database connections)
+     */
+    @Override
+    void close() throws IOException;
 }
@@ -0,0 +1,240 @@
+package repository;
+
+import model.Person;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * One immutable version of the repository contents. Writers never change a snapshot; they build a new one that
+ * shares every untouched node with the old one (path copying), so a write only copies the handful of small nodes
+ * on the way down to the changed id. Readers holding an older snapshot keep seeing exactly what it contained, and
+ * once nobody references an old version the garbage collector reclaims whatever nodes it does not share.
+ *
+ * The structure is a 32-way radix trie indexed by the bits of the id (ids are small non-negative ints handed out in
+ * order, so the tree stays shallow: three levels cover 32K people, five cover 33M). Every node also records how many
+ * people are stored beneath it, so the i-th person in id order is found by walking down one path.
+ */
+final class PersonSnapshot {
+
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    static final PersonSnapshot EMPTY = new PersonSnapshot(null, 0, 0);
+
+    // Interior nodes hold child Nodes, leaf nodes (shift 0) hold Persons; count is the number of people beneath
+    private static final class Node {
+        final Object[] slots;
+        final int count;
+
+        Node(Object[] slots, int count) {
+            this.slots = slots;
+            this.count = count;
+        }
+    }
+
+    private final Node root;
+    private final int shift;
+    private final int size;
+
+    private PersonSnapshot(Node root, int shift, int size) {
+        this.root = root;
+        this.shift = shift;
+        this.size = size;
+    }
+
+    int size() {
+        return size;
+    }
+
+    Person get(int id) {
+        if (id < 0 || root == null || !fits(id, shift)) {
+            return null;
+        }
+        Node node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Node) node.slots[(id >>> level) & MASK];
+            if (node == null) {
+                return null;
+            }
+        }
+        return (Person) node.slots[id & MASK];
+    }
+
+    /**
+     * New version with the person stored under id (added or replaced)
+     */
+    PersonSnapshot with(int id, Person person) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Person id cannot be negative: " + id);
+        }
+        Node newRoot = root;
+        int newShift = shift;
+        while (!fits(id, newShift)) {
+            if (newRoot != null) {
+                Object[] slots = new Object[WIDTH];
+                slots[0] = newRoot;
+                newRoot = new Node(slots, newRoot.count);
+            }
+            newShift += BITS;
+        }
+        boolean replacing = get(id) != null;
+        return new PersonSnapshot(set(newRoot, newShift, id, person), newShift, replacing ? size : size + 1);
+    }
+
+    /**
+     * New version without id, or this same version if id is not present
+     */
+    PersonSnapshot without(int id) {
+        if (get(id) == null) {
+            return this;
+        }
+        Node newRoot = set(root, shift, id, null);
+        return new PersonSnapshot(newRoot, newRoot == null ? 0 : shift, size - 1);
+    }
+
+    // Path copy down to id; returns null when a node ends up empty so deleted ranges are pruned
+    private static Node set(Node node, int level, int id, Person person) {
+        Object[] slots = node != null ? node.slots.clone() : new Object[WIDTH];
+        int index = (id >>> level) & MASK;
+        if (level == 0) {
+            slots[index] = person;
+        } else {
+            slots[index] = set((Node) slots[index], level - BITS, id, person);
+        }
+        int count = count(slots, level);
+        if (count == 0) {
+            return null;
+        }
+        return new Node(slots, count);
+    }
+
+    private static int count(Object[] slots, int level) {
+        int count = 0;
+        for (Object slot : slots) {
+            if (slot != null) {
+                count += level == 0 ? 1 : ((Node) slot).count;
+            }
+        }
+        return count;
+    }
+
+    // The index-th person in id order: skip whole subtrees by their counts on the way down
+    private Person personAt(int index) {
+        Node node = root;
+        for (int level = shift; ; level -= BITS) {
+            for (Object slot : node.slots) {
+                if (slot == null) {
+                    continue;
+                }
+                if (level == 0) {
+                    if (index == 0) {
+                        return (Person) slot;
+                    }
+                    index--;
+                } else {
+                    Node child = (Node) slot;
+                    if (index < child.count) {
+                        node = child;
+                        break;
+                    }
+                    index -= child.count;
+                }
+            }
+        }
+    }
+
+    private static boolean fits(int id, int shift) {
+        int bits = shift + BITS;
+        return bits >= 31 || (id >>> bits) == 0;
+    }
+
+    /**
+     * Read-only List over this version in id order. Nothing is copied; get(i) walks one path down the trie
+     * (O(log n)) and iteration walks the trie once. It is not RandomAccess, so JDK algorithms iterate it rather than
+     * index it.
+     */
+    List<Person> values() {
+        return new Values();
+    }
+
+    private final class Values extends AbstractList<Person> {
+        @Override
+        public Person get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return personAt(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Iterator<Person> iterator() {
+            return new SnapshotIterator(root, shift);
+        }
+    }
+
+    // Depth-first walk over the trie using a small explicit stack (at most 7 levels)
+    private static final class SnapshotIterator implements Iterator<Person> {
+        private final Node[] nodes = new Node[8];
+        private final int[] positions = new int[8];
+        private final int leafDepth;
+        private int depth;
+        private Person next;
+
+        SnapshotIterator(Node root, int shift) {
+            this.leafDepth = shift / BITS;
+            if (root != null) {
+                nodes[0] = root;
+                depth = 0;
+                advance();
+            } else {
+                depth = -1;
+            }
+        }
+
+        private void advance() {
+            next = null;
+            while (depth >= 0) {
+                Node node = nodes[depth];
+                if (positions[depth] >= WIDTH) {
+                    depth--;
+                    continue;
+                }
+                Object slot = node.slots[positions[depth]++];
+                if (slot == null) {
+                    continue;
+                }
+                if (depth == leafDepth) {
+                    next = (Person) slot;
+                    return;
+                }
+                depth++;
+                nodes[depth] = (Node) slot;
+                positions[depth] = 0;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Person next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Person current = next;
+            advance();
+            return current;
+        }
+    }
+}
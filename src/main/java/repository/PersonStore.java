@@ -0,0 +1,57 @@
+package repository;
+
+import model.Person;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Storage engine behind PersonRepository. The repository decides what a save, update or delete means; a store only
+ * has to keep Persons by id and be safe to use from all the worker threads at once.
+ *
+ * The engine is picked at startup (see BaylorSportsHttpServer), with SnapshotPersonStore as the default.
+ */
+public interface PersonStore {
+
+    Comparator<Person> BY_ID = Comparator.comparingInt(Person::getId);
+
+    /**
+     * Add or replace the person stored under id
+     */
+    void put(int id, Person person);
+
+    Person get(int id);
+
+    /**
+     * Replace the person only if id is already stored; returns false if it is not
+     */
+    boolean replace(int id, Person person);
+
+    /**
+     * Returns false if id was not stored
+     */
+    boolean remove(int id);
+
+    /**
+     * Everyone currently stored in id order, as a read-only list that later writes do not change. Called for every
+     * list page, so stores should not copy all their contents on every call.
+     */
+    List<Person> findAll();
+
+    /**
+     * True if findAll() hands out an immutable version without copying, cheap enough to take while writes are held
+     * up. The snapshot taken by InMemoryPersonRepository reads the other stores id by id instead.
+     */
+    default boolean hasImmutableVersions() {
+        return false;
+    }
+
+    int size();
+
+    /**
+     * Free whatever the store holds outside the heap; the store must not be used afterwards. Called by
+     * InMemoryPersonRepository.close(), possibly more than once. Heap-only stores have nothing to free.
+     */
+    default void close() {
+    }
+}
@@ -0,0 +1,270 @@
+package repository;
+
+import model.Person;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Compact binary image of every stored person, written and read through memory-mapped windows of the file so neither
+ * side goes through a stream or an intermediate buffer. Snapshot people-<generation>.snapshot holds the state of the
+ * repository at the moment write-ahead log segment <generation> was started, so recovery loads the newest snapshot and
+ * replays only the log segments from that generation on.
+ *
+ * Layout: a 40-byte header
+ *   [int magic][int version][long generation][int highest id][int count][int CRC32C of the body][int unused]
+ *   [long body length]
+ * then one record per person: [int record length][int id][int age][int version][string name][string email], where a
+ * string is [int byte length, -1 for null][UTF-8 bytes]. Version 1 files have no [int version] in their records; they
+ * are still read, with every person at version 1. A snapshot is written to a .tmp file, forced to disk and only then
+ * renamed, so a crash while writing leaves the previous snapshot in place. The directory is forced after the rename,
+ * so once write() returns the new name survives a power loss and the files it replaces can be deleted.
+ */
+final class SnapshotFile {
+
+    private static final int MAGIC = 0x42535053;
+    private static final int VERSION = 2;
+    private static final int HEADER = 40;
+    private static final long WINDOW = 64L * 1024 * 1024;
+
+    private static final String PREFIX = "people-";
+    private static final String SUFFIX = ".snapshot";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private SnapshotFile() {
+    }
+
+    static Path path(Path directory, long generation) {
+        return directory.resolve(String.format("%s%012d%s", PREFIX, generation, SUFFIX));
+    }
+
+    /**
+     * Generation of the newest snapshot in the directory, or 0 if there is none. Leftovers of interrupted writes are
+     * deleted on the way.
+     */
+    static long latestGeneration(Path directory) throws IOException {
+        long latest = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*")) {
+            for (Path path : files) {
+                String name = path.getFileName().toString();
+                if (name.endsWith(SUFFIX + TEMP_SUFFIX)) {
+                    Files.deleteIfExists(path);
+                } else if (name.endsWith(SUFFIX)) {
+                    latest = Math.max(latest, generationOf(name));
+                }
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * Delete the snapshots older than the given generation
+     */
+    static void deleteBefore(Path directory, long generation) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path path : files) {
+                long snapshotGeneration = generationOf(path.getFileName().toString());
+                if (snapshotGeneration > 0 && snapshotGeneration < generation) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+
+    private static long generationOf(String name) {
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Write the people as snapshot generation and return how many there were. beforeInstall runs once the file is on
+     * disk, just before it is renamed into place.
+     */
+    static int write(Path directory, long generation, int highestId, Iterable<Person> people, Runnable beforeInstall)
+            throws IOException {
+        Path target = path(directory, generation);
+        Path temp = target.resolveSibling(target.getFileName() + TEMP_SUFFIX);
+
+        int count = 0;
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            CRC32C crc = new CRC32C();
+            long windowStart = HEADER;
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_WRITE, windowStart, WINDOW);
+
+            for (Person person : people) {
+                byte[] name = encode(person.getName());
+                byte[] email = encode(person.getEmail());
+                int length = 24 + length(name) + length(email);
+                if (window.remaining() < length) {
+                    finishWindow(window, crc);
+                    windowStart += window.position();
+                    window = channel.map(FileChannel.MapMode.READ_WRITE, windowStart, Math.max(WINDOW, length));
+                }
+                window.putInt(length);
+                window.putInt(person.getId());
+                window.putInt(person.getAge());
+                window.putInt(person.getVersion());
+                putString(window, name);
+                putString(window, email);
+                count++;
+            }
+            finishWindow(window, crc);
+            long end = windowStart + window.position();
+
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER);
+            header.putInt(MAGIC).putInt(VERSION).putLong(generation).putInt(highestId).putInt(count)
+                    .putInt((int) crc.getValue()).putInt(0).putLong(end - HEADER);
+            header.force();
+            channel.truncate(end);
+            channel.force(true);
+            beforeInstall.run();
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        forceDirectory(directory);
+        return count;
+    }
+
+    /**
+     * Force the directory's entries (creations, renames, deletions) to disk. Windows cannot open a directory as a
+     * channel and does not need this, so there it does nothing.
+     */
+    static void forceDirectory(Path directory) throws IOException {
+        if (System.getProperty("os.name", "").startsWith("Windows")) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    private static void finishWindow(MappedByteBuffer window, CRC32C crc) {
+        crc.update(window.duplicate().flip());
+        window.force();
+    }
+
+    /**
+     * Hand every person in the snapshot to the consumer, in the order they were written. Returns the highest id
+     * recorded in the snapshot. Throws IOException if the file is not a complete, intact snapshot.
+     */
+    static int read(Path directory, long generation, Consumer<Person> consumer) throws IOException {
+        Path source = path(directory, generation);
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER) {
+                throw new IOException("Snapshot " + source + " is truncated");
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER);
+            int magic = header.getInt();
+            int version = header.getInt();
+            if (magic != MAGIC || version < 1 || version > VERSION || header.getLong() != generation) {
+                throw new IOException("Snapshot " + source + " has an unexpected header");
+            }
+            int fixedLength = version == 1 ? 20 : 24;
+            int highestId = header.getInt();
+            int count = header.getInt();
+            int checksum = header.getInt();
+            header.getInt();
+            long end = HEADER + header.getLong();
+            if (end != size) {
+                throw new IOException("Snapshot " + source + " is " + size + " bytes, expected " + end);
+            }
+
+            CRC32C crc = new CRC32C();
+            byte[] scratch = new byte[256];
+            long windowStart = HEADER;
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart,
+                    Math.min(WINDOW, end - windowStart));
+
+            try {
+                for (int i = 0; i < count; i++) {
+                    if (window.remaining() < 4 || window.remaining() < window.getInt(window.position())) {
+                        crc.update(window.duplicate().flip());
+                        windowStart += window.position();
+                        int length = readLength(channel, windowStart, end, source);
+                        window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart,
+                                Math.min(Math.max(WINDOW, length), end - windowStart));
+                        if (length < fixedLength || window.remaining() < length) {
+                            throw new IOException("Snapshot " + source + " has a damaged record at " + windowStart);
+                        }
+                    }
+                    window.getInt();
+                    int id = window.getInt();
+                    int age = window.getInt();
+                    int personVersion = version == 1 ? 1 : window.getInt();
+                    scratch = ensureCapacity(scratch, window.getInt(window.position()));
+                    String name = getString(window, scratch);
+                    scratch = ensureCapacity(scratch, window.getInt(window.position()));
+                    String email = getString(window, scratch);
+                    consumer.accept(new Person.PersonBuilder(id, name).age(age).email(email)
+                            .version(personVersion).build());
+                }
+            } catch (RuntimeException e) {
+                // A damaged length sends the reads past the record; the checksum would have caught it at the end
+                throw new IOException("Snapshot " + source + " is damaged", e);
+            }
+            crc.update(window.duplicate().flip());
+
+            if (windowStart + window.position() != end || (int) crc.getValue() != checksum) {
+                throw new IOException("Snapshot " + source + " failed its checksum");
+            }
+            return highestId;
+        }
+    }
+
+    private static int readLength(FileChannel channel, long position, long end, Path source) throws IOException {
+        if (end - position < 4) {
+            throw new IOException("Snapshot " + source + " ends in the middle of a record");
+        }
+        ByteBuffer length = ByteBuffer.allocate(4);
+        while (length.hasRemaining()) {
+            if (channel.read(length, position + length.position()) < 0) {
+                throw new IOException("Snapshot " + source + " ends in the middle of a record");
+            }
+        }
+        return length.getInt(0);
+    }
+
+    private static byte[] encode(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int length(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    private static void putString(ByteBuffer window, byte[] bytes) {
+        if (bytes == null) {
+            window.putInt(-1);
+            return;
+        }
+        window.putInt(bytes.length);
+        window.put(bytes);
+    }
+
+    private static byte[] ensureCapacity(byte[] scratch, int length) {
+        return length <= scratch.length ? scratch : new byte[Math.max(length, scratch.length * 2)];
+    }
+
+    private static String getString(ByteBuffer window, byte[] scratch) {
+        int length = window.getInt();
+        if (length < 0) {
+            return null;
+        }
+        window.get(scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,78 @@
+package repository;
+
+import model.Person;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Default store, using multi-version concurrency control: the current contents are an immutable PersonSnapshot,
+ * readers just read the current version (no locks, O(1)), and writers build the next version and publish it with a
+ * compare-and-set, retrying if another writer got there first. A list render therefore always sees one consistent
+ * version and never blocks or is blocked by a write.
+ */
+public class SnapshotPersonStore implements PersonStore {
+
+    private final AtomicReference<PersonSnapshot> current;
+
+    public SnapshotPersonStore() {
+        current = new AtomicReference<>(PersonSnapshot.EMPTY);
+    }
+
+    @Override
+    public void put(int id, Person person) {
+        PersonSnapshot version;
+        do {
+            version = current.get();
+        } while (!current.compareAndSet(version, version.with(id, person)));
+    }
+
+    @Override
+    public Person get(int id) {
+        return current.get().get(id);
+    }
+
+    @Override
+    public boolean replace(int id, Person person) {
+        PersonSnapshot version;
+        do {
+            version = current.get();
+            if (version.get(id) == null) {
+                return false;
+            }
+        } while (!current.compareAndSet(version, version.with(id, person)));
+        return true;
+    }
+
+    @Override
+    public boolean remove(int id) {
+        PersonSnapshot version;
+        PersonSnapshot next;
+        do {
+            version = current.get();
+            next = version.without(id);
+            if (next == version) {
+                return false;
+            }
+        } while (!current.compareAndSet(version, next));
+        return true;
+    }
+
+    /**
+     * A read-only view of the current version (nothing is copied)
+     */
+    @Override
+    public List<Person> findAll() {
+        return current.get().values();
+    }
+
+    @Override
+    public boolean hasImmutableVersions() {
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return current.get().size();
+    }
+}
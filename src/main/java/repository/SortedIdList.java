@@ -0,0 +1,194 @@
+package repository;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Person ids kept in an order the caller defines (by name, by id, ...), stored as plain int arrays of at most CHUNK
+ * ids each. An insert or delete only shifts ids inside one chunk, so its cost does not grow with the number of people,
+ * and there are no per-entry objects. The order is given per call as a probe: probe(id) compares the stored id with the
+ * position being looked for (negative: id sorts before it, zero: it is there, positive: after it). Nearly empty chunks
+ * are merged into their neighbour so deletes cannot leave mostly empty arrays behind.
+ * Not thread-safe; PersonIndexes guards it.
+ */
+class SortedIdList {
+
+    static final int CHUNK = 512;
+
+    private int[][] chunks = new int[0][];
+    private int[] sizes = new int[0];
+    private int chunkCount;
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Add id at the position probe points to (the first stored id with probe(id) >= 0)
+     */
+    void add(int id, IntUnaryOperator probe) {
+        if (chunkCount == 0) {
+            int[] ids = new int[CHUNK];
+            ids[0] = id;
+            insertChunk(0, ids, 1);
+            size++;
+            return;
+        }
+        long position = lowerBound(probe);
+        int chunk = (int) (position >>> 32);
+        int index = (int) position;
+        if (chunk == chunkCount) {
+            // Past the end: append to the last chunk
+            chunk--;
+            index = sizes[chunk];
+        }
+        if (sizes[chunk] == CHUNK) {
+            split(chunk);
+            if (index > sizes[chunk]) {
+                index -= sizes[chunk];
+                chunk++;
+            }
+        }
+        int[] ids = chunks[chunk];
+        System.arraycopy(ids, index, ids, index + 1, sizes[chunk] - index);
+        ids[index] = id;
+        sizes[chunk]++;
+        size++;
+    }
+
+    /**
+     * Remove id, which must sort where probe points to. Returns false if it is not there.
+     */
+    boolean remove(int id, IntUnaryOperator probe) {
+        long position = lowerBound(probe);
+        int chunk = (int) (position >>> 32);
+        int index = (int) position;
+        if (chunk == chunkCount || chunks[chunk][index] != id) {
+            return false;
+        }
+        int[] ids = chunks[chunk];
+        System.arraycopy(ids, index + 1, ids, index, sizes[chunk] - index - 1);
+        sizes[chunk]--;
+        size--;
+        if (sizes[chunk] == 0) {
+            removeChunk(chunk);
+        } else if (sizes[chunk] < CHUNK / 4) {
+            mergeWithNeighbour(chunk);
+        }
+        return true;
+    }
+
+    /**
+     * Hand ids to visitor in order, starting at the first one with probe(id) >= 0, until visitor returns false
+     */
+    void forEachFrom(IntUnaryOperator probe, IntPredicate visitor) {
+        long position = lowerBound(probe);
+        int index = (int) position;
+        for (int chunk = (int) (position >>> 32); chunk < chunkCount; chunk++, index = 0) {
+            int[] ids = chunks[chunk];
+            for (; index < sizes[chunk]; index++) {
+                if (!visitor.test(ids[index])) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Replace everything with ids, which are already in order
+     */
+    void load(int[] ids, int count) {
+        int full = CHUNK * 3 / 4;
+        int needed = (count + full - 1) / full;
+        chunks = new int[Math.max(needed, 1)][];
+        sizes = new int[chunks.length];
+        chunkCount = 0;
+        for (int from = 0; from < count; from += full) {
+            int[] chunk = new int[CHUNK];
+            int length = Math.min(full, count - from);
+            System.arraycopy(ids, from, chunk, 0, length);
+            chunks[chunkCount] = chunk;
+            sizes[chunkCount++] = length;
+        }
+        size = count;
+    }
+
+    // (chunk << 32 | index) of the first id with probe(id) >= 0, or (chunkCount << 32) if there is none
+    private long lowerBound(IntUnaryOperator probe) {
+        // First chunk whose last id is at or after the position
+        int low = 0;
+        int high = chunkCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (probe.applyAsInt(chunks[middle][sizes[middle] - 1]) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        if (low == chunkCount) {
+            return (long) chunkCount << 32;
+        }
+        int[] ids = chunks[low];
+        int from = 0;
+        int to = sizes[low] - 1;
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            if (probe.applyAsInt(ids[middle]) < 0) {
+                from = middle + 1;
+            } else {
+                to = middle;
+            }
+        }
+        return (long) low << 32 | from;
+    }
+
+    private void split(int chunk) {
+        int half = sizes[chunk] / 2;
+        int[] upper = new int[CHUNK];
+        System.arraycopy(chunks[chunk], half, upper, 0, sizes[chunk] - half);
+        insertChunk(chunk + 1, upper, sizes[chunk] - half);
+        sizes[chunk] = half;
+    }
+
+    private void mergeWithNeighbour(int chunk) {
+        // Into the smaller neighbour
+        int into;
+        if (chunk == 0) {
+            into = 0;
+        } else if (chunk == chunkCount - 1) {
+            into = chunk - 1;
+        } else {
+            into = sizes[chunk - 1] <= sizes[chunk + 1] ? chunk - 1 : chunk;
+        }
+        int from = into + 1;
+        if (from >= chunkCount || sizes[into] + sizes[from] > CHUNK * 3 / 4) {
+            return;
+        }
+        System.arraycopy(chunks[from], 0, chunks[into], sizes[into], sizes[from]);
+        sizes[into] += sizes[from];
+        removeChunk(from);
+    }
+
+    private void insertChunk(int at, int[] ids, int count) {
+        if (chunkCount == chunks.length) {
+            int capacity = Math.max(4, chunks.length * 2);
+            chunks = Arrays.copyOf(chunks, capacity);
+            sizes = Arrays.copyOf(sizes, capacity);
+        }
+        System.arraycopy(chunks, at, chunks, at + 1, chunkCount - at);
+        System.arraycopy(sizes, at, sizes, at + 1, chunkCount - at);
+        chunks[at] = ids;
+        sizes[at] = count;
+        chunkCount++;
+    }
+
+    private void removeChunk(int at) {
+        System.arraycopy(chunks, at + 1, chunks, at, chunkCount - at - 1);
+        System.arraycopy(sizes, at + 1, sizes, at, chunkCount - at - 1);
+        chunkCount--;
+        chunks[chunkCount] = null;
+    }
+}
@@ -0,0 +1,294 @@
+package repository;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded cache with W-TinyLFU eviction. Entries live in a ConcurrentHashMap, so a hit is a lock-free map read; the
+ * eviction policy is kept next to it in three LRU queues:
+ * - window (1% of the capacity): every new entry starts here, so a burst of new keys cannot flush the rest;
+ * - probation: entries that left the window, or were demoted from protected;
+ * - protected (80% of the main area): entries that were hit again while on probation.
+ * When the cache is over capacity, the entry at the head of probation (the victim) and the newest arrival from the
+ * window (the candidate) are compared by how often each was accessed recently, according to a FrequencySketch, and
+ * the less frequent one is evicted. One-hit wonders therefore rarely displace popular entries.
+ *
+ * All policy work happens under one lock. A hit only tries that lock: if another thread holds it, the hit still
+ * returns the value but is not recorded, which costs a little accuracy instead of making readers queue up.
+ *
+ * Every put and invalidate advances a stamp; putIfUnchanged() lets a loader install what it read only if nothing was
+ * written since it started, so a slow load cannot put back a value that a write has already replaced.
+ */
+final class TinyLfuCache<K, V> {
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+    private static final int REMOVED = -1;
+
+    private static final class Node<K, V> {
+        final K key;
+        volatile V value;
+        int queue;
+        Node<K, V> previous;
+        Node<K, V> next;
+
+        Node(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Intrusive doubly-linked LRU queue: head is the least recently used
+     */
+    private static final class Queue<K, V> {
+        Node<K, V> head;
+        Node<K, V> tail;
+        int size;
+
+        void addLast(Node<K, V> node) {
+            node.previous = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+            size++;
+        }
+
+        void remove(Node<K, V> node) {
+            if (node.previous == null) {
+                head = node.next;
+            } else {
+                node.previous.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.previous;
+            } else {
+                node.next.previous = node.previous;
+            }
+            node.previous = null;
+            node.next = null;
+            size--;
+        }
+
+        void moveToLast(Node<K, V> node) {
+            if (node != tail) {
+                remove(node);
+                addLast(node);
+            }
+        }
+    }
+
+    private final int maximumSize;
+    private final int windowMaximum;
+    private final int protectedMaximum;
+    private final ConcurrentHashMap<K, Node<K, V>> data;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final FrequencySketch sketch;
+    private final Queue<K, V> window = new Queue<>();
+    private final Queue<K, V> probation = new Queue<>();
+    private final Queue<K, V> protectedQueue = new Queue<>();
+    private final LongAdder evictions = new LongAdder();
+    // Guarded by lock
+    private long stamp;
+
+    TinyLfuCache(int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("Cache size must be at least 1");
+        }
+        this.maximumSize = maximumSize;
+        this.windowMaximum = Math.max(1, maximumSize / 100);
+        this.protectedMaximum = (int) ((maximumSize - windowMaximum) * 0.8);
+        this.data = new ConcurrentHashMap<>(Math.min(maximumSize, 1 << 16));
+        this.sketch = new FrequencySketch(maximumSize);
+    }
+
+    /**
+     * The cached value, or null
+     */
+    V get(K key) {
+        Node<K, V> node = data.get(key);
+        if (node == null) {
+            lock.lock();
+            try {
+                // Misses count towards the frequency too, so a key that keeps being asked for gets admitted
+                sketch.increment(key);
+            } finally {
+                lock.unlock();
+            }
+            return null;
+        }
+        if (lock.tryLock()) {
+            try {
+                if (node.queue != REMOVED) {
+                    onAccess(node);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return node.value;
+    }
+
+    /**
+     * Current stamp, to pass to putIfUnchanged() after loading
+     */
+    long stamp() {
+        lock.lock();
+        try {
+            return stamp;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void put(K key, V value) {
+        lock.lock();
+        try {
+            stamp++;
+            insert(key, value);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Install a loaded value, unless something was put or invalidated since stamp was read, or the key is already
+     * cached. Returns whether it was installed.
+     */
+    boolean putIfUnchanged(K key, V value, long loadStamp) {
+        lock.lock();
+        try {
+            if (stamp != loadStamp || data.containsKey(key)) {
+                return false;
+            }
+            insert(key, value);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void invalidate(K key) {
+        lock.lock();
+        try {
+            stamp++;
+            Node<K, V> node = data.remove(key);
+            if (node != null) {
+                unlink(node);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int size() {
+        return data.size();
+    }
+
+    int maximumSize() {
+        return maximumSize;
+    }
+
+    long evictionCount() {
+        return evictions.sum();
+    }
+
+    // ---- policy, always under lock ----
+
+    private void insert(K key, V value) {
+        Node<K, V> node = data.get(key);
+        if (node != null) {
+            node.value = value;
+            onAccess(node);
+            return;
+        }
+        sketch.increment(key);
+        node = new Node<>(key, value);
+        node.queue = WINDOW;
+        window.addLast(node);
+        data.put(key, node);
+        evict();
+    }
+
+    private void onAccess(Node<K, V> node) {
+        sketch.increment(node.key);
+        switch (node.queue) {
+            case WINDOW:
+                window.moveToLast(node);
+                break;
+            case PROBATION:
+                probation.remove(node);
+                node.queue = PROTECTED;
+                protectedQueue.addLast(node);
+                demoteProtected();
+                break;
+            case PROTECTED:
+                protectedQueue.moveToLast(node);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void demoteProtected() {
+        while (protectedQueue.size > protectedMaximum && protectedQueue.head != null) {
+            Node<K, V> demoted = protectedQueue.head;
+            protectedQueue.remove(demoted);
+            demoted.queue = PROBATION;
+            probation.addLast(demoted);
+        }
+    }
+
+    private void evict() {
+        // Window overflow moves to probation, where it has to win against the victim to stay
+        Node<K, V> candidate = null;
+        while (window.size > windowMaximum) {
+            candidate = window.head;
+            window.remove(candidate);
+            candidate.queue = PROBATION;
+            probation.addLast(candidate);
+        }
+
+        while (data.size() > maximumSize) {
+            Node<K, V> victim = probation.head;
+            Node<K, V> nextCandidate = null;
+            if (victim == null) {
+                victim = protectedQueue.head != null ? protectedQueue.head : window.head;
+            } else if (candidate != null && candidate != victim && candidate.queue == PROBATION) {
+                // Ties go against the candidate: an entry has to be more popular than the one it replaces
+                if (sketch.frequency(candidate.key) <= sketch.frequency(victim.key)) {
+                    victim = candidate;
+                }
+                // The earlier arrivals from the same window overflow sit just before it
+                nextCandidate = candidate.previous;
+            }
+            data.remove(victim.key, victim);
+            unlink(victim);
+            evictions.increment();
+            candidate = nextCandidate != null && nextCandidate.queue == PROBATION ? nextCandidate : null;
+        }
+    }
+
+    private void unlink(Node<K, V> node) {
+        switch (node.queue) {
+            case WINDOW:
+                window.remove(node);
+                break;
+            case PROBATION:
+                probation.remove(node);
+                break;
+            case PROTECTED:
+                protectedQueue.remove(node);
+                break;
+            default:
+                break;
+        }
+        node.queue = REMOVED;
+    }
+}
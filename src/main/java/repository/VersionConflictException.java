@@ -0,0 +1,27 @@
+package repository;
+
+import model.Person;
+
+/**
+ * An update was based on an older version of the person than the one stored: someone else changed it in the meantime.
+ * Carries the stored version so the caller can show it.
+ */
+public class VersionConflictException extends IllegalStateException {
+
+    private static final long serialVersionUID = 1L;
+
+    // Person is not serializable; a deserialized exception keeps only its message
+    private final transient Person current;
+
+    public VersionConflictException(Person current, int expectedVersion) {
+        super("Person " + current.getId() + " is at version " + current.getVersion() + ", not " + expectedVersion);
+        this.current = current;
+    }
+
+    /**
+     * The stored person; null if this exception was deserialized
+     */
+    public Person getCurrent() {
+        return current;
+    }
+}
@@ -0,0 +1,499 @@
+package repository;
+
+import model.Person;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of every change made to the repository, so registrations survive a restart. PersonRepository
+ * appends a record before it applies a change and replays the log into an empty store at startup.
+ *
+ * The log is a directory of segment files people-<generation>.wal. Appends always go to the newest segment;
+ * rollOver() starts the next one, so that a snapshot can cover every older segment and they can be deleted.
+ *
+ * Record layout: [int payload length][int CRC32C of payload][payload], where the payload is
+ *   PUT:    [byte 3][int id][int age][int version][string name][string email]
+ *   DELETE: [byte 2][int id]
+ * (logs written before people had versions contain [byte 1] puts without the version; they replay as version 1)
+ * and a string is [int byte length, -1 for null][UTF-8 bytes]. Replay stops at the first record that is cut short or
+ * fails its checksum (a crash in the middle of a write) and truncates the segment there.
+ *
+ * How appends reach the disk depends on the SyncPolicy:
+ * - PER_WRITE: every append is written and fsynced on its own before append returns.
+ * - BATCHED: group commit. append only buffers the record; await(sequence) blocks until it is on disk. The first
+ *   waiting thread becomes the leader and writes and fsyncs everything buffered so far in one go, while records
+ *   appended in the meantime wait for the next leader, so concurrent writers share fsyncs.
+ * - INTERVAL: append only buffers and await returns immediately; a background thread flushes and fsyncs every
+ *   intervalMillis, so at most that much is lost in a crash.
+ */
+public class WriteAheadLog implements Closeable {
+
+    public enum SyncPolicy { PER_WRITE, BATCHED, INTERVAL }
+
+    /**
+     * Receives the records found in the log, in order, during replay
+     */
+    public interface Replayer {
+        void put(Person person);
+
+        void delete(int id);
+    }
+
+    private static final byte PUT_UNVERSIONED = 1;
+    private static final byte DELETE = 2;
+    private static final byte PUT = 3;
+    private static final int RECORD_HEADER = 8;
+
+    private static final String SEGMENT_PREFIX = "people-";
+    private static final String SEGMENT_SUFFIX = ".wal";
+
+    private final Path directory;
+    private final SyncPolicy policy;
+    private final ScheduledExecutorService flusher;
+
+    // Guarded by this; only replaced by rollOver() while no flush is running
+    private long generation;
+    private Path file;
+    private FileChannel channel;
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private long appendedSequence;
+    private long durableSequence;
+    private boolean flushing;
+    private long rolledOverSequence;
+    private boolean replayedRecords;
+    private IOException failure;
+
+    /**
+     * Open the log in the given directory, appending to its newest segment (or generation 1 if there is none). With
+     * SyncPolicy.INTERVAL the background flusher is running when this returns.
+     */
+    public static WriteAheadLog open(Path directory, SyncPolicy policy, long intervalMillis) throws IOException {
+        WriteAheadLog log = new WriteAheadLog(directory, policy);
+        // Scheduled only once the log is fully built, so the flusher never sees it half-constructed
+        if (log.flusher != null) {
+            log.flusher.scheduleWithFixedDelay(log::flushQuietly, intervalMillis, intervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+        return log;
+    }
+
+    private WriteAheadLog(Path directory, SyncPolicy policy) throws IOException {
+        this.directory = directory;
+        this.policy = policy;
+        Files.createDirectories(directory);
+        List<Long> generations = listGenerations(directory);
+        this.generation = generations.isEmpty() ? 1 : generations.get(generations.size() - 1);
+        this.file = segment(generation);
+        this.channel = openSegment(directory, file);
+
+        if (policy == SyncPolicy.INTERVAL) {
+            flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "wal-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            flusher = null;
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Generation of the segment currently appended to
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    public SyncPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Feed every intact record of the segments from the given generation on to the replayer, oldest first, and cut
+     * off a torn tail of the newest segment. Call once, before the first append. Returns the number of records
+     * replayed.
+     */
+    public int replay(long fromGeneration, Replayer replayer) throws IOException {
+        int[] records = new int[1];
+        Replayer counting = new Replayer() {
+            @Override
+            public void put(Person person) {
+                records[0]++;
+                replayer.put(person);
+            }
+
+            @Override
+            public void delete(int id) {
+                records[0]++;
+                replayer.delete(id);
+            }
+        };
+        for (long segmentGeneration : listGenerations(directory)) {
+            if (segmentGeneration < fromGeneration || segmentGeneration > generation) {
+                continue;
+            }
+            if (segmentGeneration == generation) {
+                long end = replaySegment(channel, file, counting);
+                if (end < channel.size()) {
+                    channel.truncate(end);
+                }
+                channel.position(end);
+            } else {
+                // Older segments were fsynced when they were rolled over, so a bad record there is damage, not a
+                // torn write: report it and keep going with the next segment
+                Path older = segment(segmentGeneration);
+                try (FileChannel olderChannel = FileChannel.open(older, StandardOpenOption.READ)) {
+                    replaySegment(olderChannel, older, counting);
+                }
+            }
+        }
+        synchronized (this) {
+            replayedRecords = records[0] > 0;
+        }
+        return records[0];
+    }
+
+    // Returns the offset just past the last intact record
+    private static long replaySegment(FileChannel segment, Path path, Replayer replayer) throws IOException {
+        long size = segment.size();
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+        long position = 0;
+
+        while (position + RECORD_HEADER <= size) {
+            header.clear();
+            readFully(segment, header, position);
+            header.flip();
+            int length = header.getInt();
+            int checksum = header.getInt();
+            if (length <= 0 || position + RECORD_HEADER + length > size) {
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(segment, payload, position + RECORD_HEADER);
+            if (checksum(payload.array()) != checksum) {
+                break;
+            }
+            payload.flip();
+            apply(payload, replayer);
+            position += RECORD_HEADER + length;
+        }
+
+        if (position < size) {
+            System.err.println("Write-ahead log " + path + ": discarding " + (size - position)
+                    + " bytes of incomplete record(s) at offset " + position);
+        }
+        return position;
+    }
+
+    private static void readFully(FileChannel segment, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (segment.read(buffer, position + buffer.position()) < 0) {
+                return;
+            }
+        }
+    }
+
+    private static void apply(ByteBuffer payload, Replayer replayer) {
+        byte type = payload.get();
+        int id = payload.getInt();
+        if (type == DELETE) {
+            replayer.delete(id);
+            return;
+        }
+        int age = payload.getInt();
+        int version = type == PUT_UNVERSIONED ? 1 : payload.getInt();
+        String name = readString(payload);
+        String email = readString(payload);
+        replayer.put(new Person.PersonBuilder(id, name).age(age).email(email).version(version).build());
+    }
+
+    private static String readString(ByteBuffer payload) {
+        int length = payload.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(payload.array(), payload.position(), length, StandardCharsets.UTF_8);
+        payload.position(payload.position() + length);
+        return value;
+    }
+
+    /**
+     * Log that the person was created or changed. Returns the sequence number to pass to await().
+     */
+    public long appendPut(Person person) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(PUT);
+            out.writeInt(person.getId());
+            out.writeInt(person.getAge());
+            out.writeInt(person.getVersion());
+            writeString(out, person.getName());
+            writeString(out, person.getEmail());
+            return append(bytes.toByteArray());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write to " + directory, e);
+        }
+    }
+
+    /**
+     * Log that the person was deleted. Returns the sequence number to pass to await().
+     */
+    public long appendDelete(int id) {
+        ByteBuffer payload = ByteBuffer.allocate(5);
+        payload.put(DELETE).putInt(id);
+        return append(payload.array());
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private synchronized long append(byte[] payload) {
+        checkFailure();
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+        header.putInt(payload.length).putInt(checksum(payload));
+        pending.writeBytes(header.array());
+        pending.writeBytes(payload);
+        long sequence = ++appendedSequence;
+
+        if (policy == SyncPolicy.PER_WRITE) {
+            try {
+                writeAndForce(channel, takePending());
+                durableSequence = sequence;
+            } catch (IOException e) {
+                failure = e;
+                checkFailure();
+            }
+        }
+        return sequence;
+    }
+
+    /**
+     * Block until the record with this sequence number is on disk (BATCHED). Returns straight away for the other
+     * policies: PER_WRITE already synced in append, and INTERVAL trades that guarantee for throughput.
+     * Call it without holding other locks, so other writers can keep appending into the next batch.
+     */
+    public void await(long sequence) {
+        if (policy == SyncPolicy.BATCHED) {
+            syncUpTo(sequence);
+        }
+    }
+
+    /**
+     * Write and fsync everything appended so far
+     */
+    public void flush() {
+        long sequence;
+        synchronized (this) {
+            sequence = appendedSequence;
+        }
+        syncUpTo(sequence);
+    }
+
+    // Group commit: one thread at a time writes and fsyncs every pending record, the others wait for it
+    private void syncUpTo(long sequence) {
+        while (true) {
+            byte[] batch;
+            long batchEnd;
+            FileChannel target;
+            synchronized (this) {
+                while (flushing && durableSequence < sequence) {
+                    waitForFlush();
+                }
+                checkFailure();
+                if (durableSequence >= sequence) {
+                    return;
+                }
+                // Become the leader for everything appended so far
+                flushing = true;
+                batch = takePending();
+                batchEnd = appendedSequence;
+                target = channel;
+            }
+
+            IOException error = null;
+            try {
+                writeAndForce(target, batch);
+            } catch (IOException e) {
+                error = e;
+            }
+
+            synchronized (this) {
+                flushing = false;
+                if (error != null) {
+                    failure = error;
+                } else {
+                    durableSequence = batchEnd;
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    private void waitForFlush() {
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the write-ahead log", e);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            System.err.println("Write-ahead log flush failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Make everything appended so far durable and start appending to a new segment. Returns the new generation;
+     * every record appended before the call is in an older segment. Callers that need a consistent cut (a snapshot)
+     * call this while holding the lock that orders their appends.
+     */
+    public synchronized long rollOver() throws IOException {
+        while (flushing) {
+            waitForFlush();
+        }
+        checkFailure();
+        try {
+            writeAndForce(channel, takePending());
+            durableSequence = appendedSequence;
+            rolledOverSequence = appendedSequence;
+            replayedRecords = false;
+            FileChannel next = openSegment(directory, segment(generation + 1));
+            channel.close();
+            channel = next;
+            generation++;
+            file = segment(generation);
+            return generation;
+        } catch (IOException e) {
+            failure = e;
+            throw e;
+        }
+    }
+
+    /**
+     * Whether anything was appended since the last roll-over, or replayed at startup. If not, a new snapshot would
+     * be the same as the last one.
+     */
+    public synchronized boolean hasRecordsSinceRollOver() {
+        return appendedSequence > rolledOverSequence || replayedRecords;
+    }
+
+    /**
+     * Delete the segments older than the given generation, once a snapshot covers them
+     */
+    public void deleteSegmentsBefore(long generation) throws IOException {
+        for (long segmentGeneration : listGenerations(directory)) {
+            if (segmentGeneration < generation) {
+                Files.deleteIfExists(segment(segmentGeneration));
+            }
+        }
+    }
+
+    private Path segment(long segmentGeneration) {
+        return directory.resolve(String.format("%s%012d%s", SEGMENT_PREFIX, segmentGeneration, SEGMENT_SUFFIX));
+    }
+
+    // Generations of the segments in the directory, oldest first
+    private static List<Long> listGenerations(Path directory) throws IOException {
+        List<Long> generations = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : files) {
+                String name = path.getFileName().toString();
+                try {
+                    generations.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                            name.length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    // Not one of ours
+                }
+            }
+        }
+        generations.sort(null);
+        return generations;
+    }
+
+    // Forcing the channel does not make a new file's directory entry durable, so the directory is forced too before
+    // anything appended to the segment can be acknowledged
+    private static FileChannel openSegment(Path directory, Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            SnapshotFile.forceDirectory(directory);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return channel;
+    }
+
+    private byte[] takePending() {
+        byte[] bytes = pending.toByteArray();
+        pending = new ByteArrayOutputStream(Math.max(256, bytes.length));
+        return bytes;
+    }
+
+    private static void writeAndForce(FileChannel target, byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+        target.force(false);
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw new UncheckedIOException("Write-ahead log " + file + " is unusable", failure);
+        }
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        try {
+            flush();
+        } finally {
+            synchronized (this) {
+                channel.close();
+            }
+        }
+    }
+}
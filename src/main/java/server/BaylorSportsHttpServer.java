@@ -4,36 +4,95 @@ import controller.DispatcherServlet;
 import controller.PersonController;
 import http.HttpRequest;
 import http.HttpResponse;
+import http.LimitedInputStream;
+import repository.CachingPersonRepository;
+import repository.ColumnarPersonStore;
+import repository.InMemoryPersonRepository;
+import repository.IntHashPersonStore;
+import repository.JdbcPersonRepository;
+import repository.OffHeapPersonStore;
+import repository.PartitionedPersonRepository;
 import repository.PersonRepository;
+import repository.PersonStore;
+import repository.SnapshotPersonStore;
+import repository.WriteAheadLog;
+import service.ChangeFeed;
+import service.MutationPipeline;
 import service.PersonService;
+import util.FormParser;
 
 import java.io.*;
 import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 public class BaylorSportsHttpServer {
 
+    private static final int WORKER_THREADS = 10;
+    // Each live update subscriber holds a worker for as long as it is connected; the rest stay for normal requests
+    private static final int MAX_FEED_SUBSCRIBERS = WORKER_THREADS / 2;
+
     private final int port;
     private ServerSocket serverSocket;
     private DispatcherServlet dispatcherServlet;
+    private PersonRepository personRepository;
+    private PersonService personService;
     private ExecutorService threadPool;
+    private RateLimiter rateLimiter;
     private volatile boolean running = false;
 
     public BaylorSportsHttpServer(int port) {
         this.port = port;
-        this.threadPool = Executors.newFixedThreadPool(10);
+        this.threadPool = Executors.newFixedThreadPool(WORKER_THREADS);
+        this.rateLimiter = createRateLimiter();
         initializeApplication();
     }
 
+    /**
+     * Per-client-IP rate limits, in requests per second with a burst allowance, separately for reads (GET, HEAD)
+     * and writes (everything else):
+     *   -Dperson.ratelimit.read=20 -Dperson.ratelimit.read.burst=40
+     *   -Dperson.ratelimit.write=5 -Dperson.ratelimit.write.burst=10
+     *   -Dperson.ratelimit.clients=4096   how many clients are tracked at once
+     * A rate of 0 leaves that class unlimited; -Dperson.ratelimit=off turns limiting off altogether.
+     */
+    private RateLimiter createRateLimiter() {
+        if ("off".equals(System.getProperty("person.ratelimit"))) {
+            return null;
+        }
+        return new RateLimiter(Integer.getInteger("person.ratelimit.clients", 4096),
+                Double.parseDouble(System.getProperty("person.ratelimit.read", "20")),
+                Integer.getInteger("person.ratelimit.read.burst", 40),
+                Double.parseDouble(System.getProperty("person.ratelimit.write", "5")),
+                Integer.getInteger("person.ratelimit.write.burst", 10));
+    }
+
     /**
      * Initializes the entire application stack:
      * Repository → Service → Controller → DispatcherServlet
      */
     private void initializeApplication() {
 
-        PersonRepository personRepository = new PersonRepository();
-        PersonService personService = new PersonService(personRepository);
+        this.personRepository = createPersonRepository();
+        // -Dperson.events.capacity / -Dperson.events.max.subscribers size the live change feed
+        int maxSubscribers = Integer.getInteger("person.events.max.subscribers",
+                PersonService.DEFAULT_FEED_SUBSCRIBERS);
+        if (maxSubscribers > MAX_FEED_SUBSCRIBERS) {
+            System.err.println("person.events.max.subscribers " + maxSubscribers + " would tie up too many of the "
+                    + WORKER_THREADS + " workers, using " + MAX_FEED_SUBSCRIBERS);
+            maxSubscribers = MAX_FEED_SUBSCRIBERS;
+        }
+        ChangeFeed changeFeed = new ChangeFeed(
+                Integer.getInteger("person.events.capacity", PersonService.DEFAULT_FEED_CAPACITY), maxSubscribers);
+        // -Dperson.email.filter.fpp is the target false-positive rate of the duplicate-email filter
+        this.personService = new PersonService(personRepository, changeFeed, createMutationPipeline(),
+                Double.parseDouble(System.getProperty("person.email.filter.fpp",
+                        String.valueOf(PersonService.DEFAULT_EMAIL_FILTER_FPP))));
         PersonController personController = new PersonController(personService);
 
         this.dispatcherServlet = new DispatcherServlet();
@@ -42,6 +101,161 @@ public class BaylorSportsHttpServer {
         System.out.println("Application initialized with PersonController");
     }
 
+    /**
+     * Writes go through a single-writer MutationPipeline unless -Dperson.writes=direct; the pipeline is sized with
+     * -Dperson.pipeline.capacity and -Dperson.pipeline.batch
+     */
+    private MutationPipeline createMutationPipeline() {
+        String writes = System.getProperty("person.writes", "pipeline");
+        if (writes.equals("direct")) {
+            return null;
+        }
+        if (!writes.equals("pipeline")) {
+            System.err.println("Unknown person.writes '" + writes + "', using pipeline");
+        }
+        return MutationPipeline.start(personRepository,
+                Integer.getInteger("person.pipeline.capacity", MutationPipeline.DEFAULT_CAPACITY),
+                Integer.getInteger("person.pipeline.batch", MutationPipeline.DEFAULT_MAX_BATCH));
+    }
+
+    /**
+     * Pick the repository backend, e.g. mvn exec:java -Dperson.repository=jdbc
+     *   partitioned (default)  memory repositories, each with its own store, write lock and log (in
+     *                          person.data.dir/partition-k), people spread over them by id, so writers to different
+     *                          partitions do not wait for each other; see partitionCount() for how many
+     *   memory                 one PersonStore engine in the heap behind a single write lock, made durable by the
+     *                          write-ahead log in person.data.dir
+     *   jdbc                   relational database; -Dperson.jdbc.url (default: an H2 file database in
+     *                          person.data.dir), -Dperson.jdbc.user, -Dperson.jdbc.password, -Dperson.jdbc.pool.size=10
+     * -Dperson.cache.size puts a CachingPersonRepository of that many people in front; it defaults to 10000 for jdbc
+     * and to 0 (no cache) for the in-memory backends, whose lookups are already map reads.
+     */
+    private PersonRepository createPersonRepository() {
+        String backend = System.getProperty("person.repository", "partitioned");
+        if (backend.equals("jdbc")) {
+            Path directory = Paths.get(System.getProperty("person.data.dir", "data")).toAbsolutePath();
+            String url = System.getProperty("person.jdbc.url", "jdbc:h2:file:" + directory.resolve("people"));
+            // One connection per worker thread
+            int poolSize = Integer.getInteger("person.jdbc.pool.size", 10);
+            return withCache(new JdbcPersonRepository(url, System.getProperty("person.jdbc.user"),
+                    System.getProperty("person.jdbc.password"), poolSize), 10_000);
+        }
+        Path directory = Paths.get(System.getProperty("person.data.dir", "data"));
+        long snapshotInterval = Long.getLong("person.snapshot.interval.ms", 5 * 60 * 1000L);
+        if (backend.equals("partitioned")) {
+            int partitions = partitionCount(directory);
+            if (partitions > 0) {
+                PartitionedPersonRepository repository = new PartitionedPersonRepository(partitions,
+                        k -> new InMemoryPersonRepository(createPersonStore(),
+                                createWriteAheadLog(directory.resolve("partition-" + k))));
+                repository.scheduleSnapshots(snapshotInterval);
+                return withCache(repository, 0);
+            }
+            System.out.println(directory + " holds an unpartitioned log, using the memory repository");
+        } else if (!backend.equals("memory")) {
+            System.err.println("Unknown person.repository '" + backend + "', using memory");
+        }
+        InMemoryPersonRepository repository = new InMemoryPersonRepository(createPersonStore(),
+                createWriteAheadLog(directory));
+        repository.scheduleSnapshots(snapshotInterval);
+        return withCache(repository, 0);
+    }
+
+    /**
+     * How many partitions to open in directory. People are placed by id mod the count, so data written with one count
+     * cannot be opened with another: if directory already has partition-k directories, that many; otherwise
+     * -Dperson.partitions, by default one per core. 0 if directory holds the log or snapshots of a memory repository,
+     * which then keeps being used.
+     */
+    private static int partitionCount(Path directory) {
+        int configured = Integer.getInteger("person.partitions", Runtime.getRuntime().availableProcessors());
+        if (!Files.isDirectory(directory)) {
+            return configured;
+        }
+        int existing = 0;
+        boolean unpartitioned = false;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (Path entry : entries) {
+                String name = entry.getFileName().toString();
+                if (name.startsWith("partition-") && Files.isDirectory(entry)) {
+                    existing++;
+                } else if (name.startsWith("people-")) {
+                    unpartitioned = true;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read data directory " + directory, e);
+        }
+        if (existing > 0) {
+            if (existing != configured && System.getProperty("person.partitions") != null) {
+                System.err.println(directory + " holds " + existing + " partitions, ignoring person.partitions "
+                        + configured);
+            }
+            return existing;
+        }
+        return unpartitioned ? 0 : configured;
+    }
+
+    private PersonRepository withCache(PersonRepository repository, int defaultSize) {
+        int size = Integer.getInteger("person.cache.size", defaultSize);
+        return size > 0 ? new CachingPersonRepository(repository, size) : repository;
+    }
+
+    /**
+     * Pick the storage engine behind the in-memory repository, e.g. mvn exec:java -Dperson.store=inthash
+     */
+    private PersonStore createPersonStore() {
+        String store = System.getProperty("person.store", "snapshot");
+        switch (store) {
+            case "snapshot":
+                return new SnapshotPersonStore();
+            case "inthash":
+                return new IntHashPersonStore();
+            case "columnar":
+                return new ColumnarPersonStore();
+            case "offheap":
+                return new OffHeapPersonStore();
+            default:
+                System.err.println("Unknown person.store '" + store + "', using snapshot");
+                return new SnapshotPersonStore();
+        }
+    }
+
+    /**
+     * Log in directory that makes registrations survive a restart, configured with
+     *   -Dperson.data.dir=data                 directory holding the log and its snapshots
+     *   -Dperson.durability=batched            none | perwrite | batched | interval
+     *   -Dperson.wal.interval.ms=100           flush interval for durability=interval
+     *   -Dperson.snapshot.interval.ms=300000   how often a background snapshot is taken
+     * Returns null (memory only) for durability=none.
+     */
+    private WriteAheadLog createWriteAheadLog(Path directory) {
+        String durability = System.getProperty("person.durability", "batched");
+        WriteAheadLog.SyncPolicy policy;
+        switch (durability) {
+            case "none":
+                return null;
+            case "perwrite":
+                policy = WriteAheadLog.SyncPolicy.PER_WRITE;
+                break;
+            case "interval":
+                policy = WriteAheadLog.SyncPolicy.INTERVAL;
+                break;
+            case "batched":
+                policy = WriteAheadLog.SyncPolicy.BATCHED;
+                break;
+            default:
+                System.err.println("Unknown person.durability '" + durability + "', using batched");
+                policy = WriteAheadLog.SyncPolicy.BATCHED;
+        }
+        long intervalMillis = Long.getLong("person.wal.interval.ms", 100L);
+        try {
+            return WriteAheadLog.open(directory, policy, intervalMillis);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open write-ahead log in " + directory, e);
+        }
+    }
+
     /**
      * Start the HTTP server
      */
@@ -76,11 +290,23 @@ public class BaylorSportsHttpServer {
     private void handleClientConnection(Socket clientSocket) {
         String clientAddress = clientSocket.getRemoteSocketAddress().toString();
 
-        try (BufferedReader in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-             PrintWriter out = new PrintWriter(clientSocket.getOutputStream());
+        try (InputStream in = new BufferedInputStream(clientSocket.getInputStream());
+             OutputStream out = new BufferedOutputStream(clientSocket.getOutputStream());
              Socket socket = clientSocket) {
 
-            HttpRequest request = parseHttpRequest(in);
+            String requestLine = readLine(in);
+            // Checked before anything past the request line is read, so a flooding client costs as little as possible
+            if (rateLimiter != null && requestLine != null && !requestLine.isEmpty()) {
+                long retryAfter = rateLimiter.acquire(clientSocket.getInetAddress(), RateLimiter.classify(requestLine));
+                if (retryAfter > 0) {
+                    sendTooManyRequestsResponse(out, retryAfter);
+                    // Drop what has already arrived of the request, so closing does not reset the connection
+                    in.skip(in.available());
+                    return;
+                }
+            }
+
+            HttpRequest request = parseHttpRequest(requestLine, in);
 
             if (request != null) {
                 System.out.println(request.getMethod() + " " + request.getPath() + " from " + clientAddress);
@@ -102,9 +328,12 @@ public class BaylorSportsHttpServer {
 
     /**
      * Parse raw HTTP request into my own HttpRequest object (later parsed by URLParser and FormParser)
+     *
+     * The head is read byte by byte as ISO-8859-1 lines and Content-Length counts bytes, so the body is read as exactly
+     * that many bytes; HttpRequest decodes them as UTF-8 only if the text is asked for. Uploads to streaming routes are
+     * not read here at all: the controller gets the socket stream, limited to Content-Length, and reads it as it goes.
      */
-    private HttpRequest parseHttpRequest(BufferedReader in) throws IOException {
-        String requestLine = in.readLine();
+    private HttpRequest parseHttpRequest(String requestLine, InputStream in) throws IOException {
         if (requestLine == null || requestLine.trim().isEmpty()) {
             return null;
         }
@@ -120,9 +349,11 @@ public class BaylorSportsHttpServer {
         String fullPath = requestParts[1];
 
         String path = fullPath;
+        String query = null;
         if (fullPath.contains("?")) {
             String[] pathParts = fullPath.split("\\?", 2);
             path = pathParts[0];
+            query = pathParts[1];
         }
 
         // This handles cases where the Http Post is actually a Delete or Put
@@ -133,10 +364,13 @@ public class BaylorSportsHttpServer {
         }
 
         HttpRequest request = new HttpRequest(method, path);
+        if (query != null) {
+            FormParser.parseFormData(query).forEach(request::addQueryParam);
+        }
 
         String headerLine;
-        int contentLength = 0;
-        while ((headerLine = in.readLine()) != null && !headerLine.trim().isEmpty()) {
+        long contentLength = 0;
+        while ((headerLine = readLine(in)) != null && !headerLine.trim().isEmpty()) {
             String[] headerParts = headerLine.split(":", 2);
             if (headerParts.length == 2) {
                 String headerName = headerParts[0].trim();
@@ -145,7 +379,7 @@ public class BaylorSportsHttpServer {
 
                 if ("content-length".equalsIgnoreCase(headerName)) {
                     try {
-                        contentLength = Integer.parseInt(headerValue);
+                        contentLength = Long.parseLong(headerValue);
                     } catch (NumberFormatException e) {
                         System.err.println("Invalid Content-Length header: " + headerValue);
                     }
@@ -153,22 +387,19 @@ public class BaylorSportsHttpServer {
             }
         }
 
+        if (isStreamingUpload(method, path)) {
+            request.setBodyStream(new LimitedInputStream(in, contentLength));
+            return request;
+        }
+
         // Read body if present (for POST requests)
         if (contentLength > 0) {
-            char[] bodyChars = new char[contentLength];
-            int totalRead = 0;
-            while (totalRead < contentLength) {
-                int bytesRead = in.read(bodyChars, totalRead, contentLength - totalRead);
-                if (bytesRead == -1) {
-                    break;
-                }
-                totalRead += bytesRead;
-            }
-            String body = new String(bodyChars, 0, totalRead);
-            request.setBody(body);
+            byte[] bodyBytes = in.readNBytes((int) Math.min(contentLength, Integer.MAX_VALUE));
+            // Kept as bytes: form posts are decoded straight from them, so the text is never built for those
+            request.setBody(bodyBytes);
 
-            if (!body.isEmpty()) {
-                System.out.println("Request body: " + body);
+            if (bodyBytes.length > 0) {
+                System.out.println("Request body: " + bodyBytes.length + " bytes");
             }
         }
 
@@ -176,19 +407,52 @@ public class BaylorSportsHttpServer {
     }
 
 
-    // This is to convert my custom HttpResponse to send back to client
-    private void sendHttpResponse(PrintWriter out, HttpResponse response) {
-        String httpResponseString = response.toHttpString();
-        out.print(httpResponseString);
-        out.flush();
+    // Bulk uploads can be far bigger than anything worth holding in memory, so their controllers read the socket
+    private static boolean isStreamingUpload(String method, String path) {
+        return "POST".equals(method) && path.replaceAll("/+$", "").equals("/person/import");
+    }
+
+    // One line of the request head, without its CRLF; null at end of stream
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') {
+                break;
+            }
+            line.write(b);
+        }
+        if (b == -1 && line.size() == 0) {
+            return null;
+        }
+        byte[] bytes = line.toByteArray();
+        int length = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1 : bytes.length;
+        return new String(bytes, 0, length, StandardCharsets.ISO_8859_1);
     }
 
-    private void sendBadRequestResponse(PrintWriter out) {
+    // This is to write my custom HttpResponse back to the client; the body goes out as the bytes it was rendered into
+    private void sendHttpResponse(OutputStream out, HttpResponse response) throws IOException {
+        try {
+            response.writeTo(out);
+        } finally {
+            response.release();
+        }
+    }
+
+    private void sendBadRequestResponse(OutputStream out) throws IOException {
         HttpResponse badResponse = new HttpResponse(400, "Bad Request");
         badResponse.setBody("<html><body><h1>400 Bad Request</h1><p>Invalid HTTP request</p></body></html>");
         sendHttpResponse(out, badResponse);
     }
 
+    private void sendTooManyRequestsResponse(OutputStream out, long retryAfterSeconds) throws IOException {
+        HttpResponse response = new HttpResponse(429, "Too Many Requests");
+        response.addHeader("Retry-After", String.valueOf(retryAfterSeconds));
+        response.setBody("<html><body><h1>429 Too Many Requests</h1><p>Please try again in " + retryAfterSeconds
+                + " seconds</p></body></html>");
+        sendHttpResponse(out, response);
+    }
+
     public void stop() {
         running = false;
 
@@ -196,7 +460,16 @@ public class BaylorSportsHttpServer {
             if (serverSocket != null && !serverSocket.isClosed()) {
                 serverSocket.close();
             }
+            personService.close();
+            System.out.println("Email filter: " + personService.getEmailFilter());
+            if (rateLimiter != null) {
+                System.out.println("Rate limiter: " + rateLimiter);
+            }
             threadPool.shutdown();
+            personRepository.close();
+            if (personRepository instanceof CachingPersonRepository) {
+                System.out.println("Person cache: " + ((CachingPersonRepository) personRepository).getStats());
+            }
             System.out.println("Server stopped gracefully");
         } catch (IOException e) {
             System.err.println("Error stopping server: " + e.getMessage());
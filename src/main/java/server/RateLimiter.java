@@ -0,0 +1,204 @@
+package server;
+
+import java.net.InetAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-client-IP token buckets, one per route class (reads and writes), so a single script flooding /person/create
+ * cannot keep all workers busy. The server asks before it parses anything past the request line.
+ *
+ * Each bucket is a single long, the time at which it will be full again (the "theoretical arrival time" of GCRA,
+ * which behaves exactly like a token bucket of burst tokens refilled at rate per second): taking a token moves that
+ * time forward by one refill interval, and the request is refused if it would then lie more than burst intervals in
+ * the future. A take is one CAS on that long, so buckets need no lock. A refused client is told how long until a
+ * token is back (Retry-After).
+ *
+ * Clients live in a fixed-size table (a power of two) and are looked up in a window of PROBES slots starting at their
+ * hash, so memory and the cost of a check stay the same however many clients there are. A client whose buckets have
+ * all refilled is indistinguishable from a new one, so its slot is free to take; if the window holds only active
+ * clients, the one closest to full is replaced. Being replaced can only ever give a client a fresh, full bucket.
+ * Slots are claimed with a CAS; a client that loses the race for one to other clients ATTEMPTS times in a row (only
+ * under a flood of new addresses in one window) takes its tokens from a single shared overflow bucket instead, so
+ * no request is ever let through on a bucket nobody keeps.
+ */
+public class RateLimiter {
+
+    public enum RouteClass { READ, WRITE }
+
+    private static final int PROBES = 8;
+    // Times a client looks for a slot before it settles for the overflow bucket
+    private static final int ATTEMPTS = 4;
+
+    private static final class Client {
+        final InetAddress address;
+        // Per route class, clock time (nanoseconds) at which the bucket is full again
+        final AtomicLongArray fullAt;
+
+        Client(InetAddress address, long now) {
+            this.address = address;
+            this.fullAt = new AtomicLongArray(RouteClass.values().length);
+            for (int i = 0; i < fullAt.length(); i++) {
+                fullAt.set(i, now);
+            }
+        }
+
+        long latestFullAt() {
+            long latest = fullAt.get(0);
+            for (int i = 1; i < fullAt.length(); i++) {
+                latest = Math.max(latest, fullAt.get(i));
+            }
+            return latest;
+        }
+    }
+
+    private final AtomicReferenceArray<Client> clients;
+    private final int mask;
+    // Per route class; 0 interval means unlimited
+    private final long[] intervalNanos;
+    private final long[] burstNanos;
+    private final LongSupplier nanoClock;
+    // Shared by every request whose client lost the race for a slot ATTEMPTS times in a row, so none goes unlimited
+    private final Client overflow;
+
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder replaced = new LongAdder();
+    private final LongAdder overflowed = new LongAdder();
+
+    /**
+     * maxClients is rounded up to a power of two. A rate of 0 (requests per second) leaves that route class
+     * unlimited; burst is how many requests a client may make at once after being idle.
+     */
+    public RateLimiter(int maxClients, double readRate, int readBurst, double writeRate, int writeBurst) {
+        this(maxClients, readRate, readBurst, writeRate, writeBurst, System::nanoTime);
+    }
+
+    /**
+     * Same, reading the time from nanoClock instead of System.nanoTime(), so tests can move time by hand
+     */
+    RateLimiter(int maxClients, double readRate, int readBurst, double writeRate, int writeBurst,
+                LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+        int size = Integer.highestOneBit(Math.max(PROBES, maxClients) - 1) << 1;
+        clients = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+        intervalNanos = new long[RouteClass.values().length];
+        burstNanos = new long[intervalNanos.length];
+        configure(RouteClass.READ, readRate, readBurst);
+        configure(RouteClass.WRITE, writeRate, writeBurst);
+        overflow = new Client(null, nanoClock.getAsLong());
+    }
+
+    private void configure(RouteClass routeClass, double rate, int burst) {
+        if (rate < 0 || (rate > 0 && burst < 1)) {
+            throw new IllegalArgumentException("Rate limit for " + routeClass + " needs a rate >= 0 and a burst >= 1");
+        }
+        long interval = rate == 0 ? 0 : Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / rate));
+        intervalNanos[routeClass.ordinal()] = interval;
+        burstNanos[routeClass.ordinal()] = interval * burst;
+    }
+
+    /**
+     * GET and HEAD requests read; everything else writes. Takes the raw request line, so nothing has to be parsed.
+     */
+    public static RouteClass classify(String requestLine) {
+        return requestLine.startsWith("GET ") || requestLine.startsWith("HEAD ") ? RouteClass.READ : RouteClass.WRITE;
+    }
+
+    /**
+     * Take a token from the client's bucket for routeClass. Returns 0 if the request may go ahead, otherwise how many
+     * seconds (at least 1) until it could.
+     */
+    public long acquire(InetAddress address, RouteClass routeClass) {
+        int index = routeClass.ordinal();
+        long interval = intervalNanos[index];
+        if (interval == 0) {
+            allowed.increment();
+            return 0;
+        }
+        long now = nanoClock.getAsLong();
+        AtomicLongArray fullAt = client(address, now).fullAt;
+        while (true) {
+            long current = fullAt.get(index);
+            long next = Math.max(current, now) + interval;
+            long wait = next - now - burstNanos[index];
+            if (wait > 0) {
+                rejected.increment();
+                return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait + TimeUnit.SECONDS.toNanos(1) - 1));
+            }
+            if (fullAt.compareAndSet(index, current, next)) {
+                allowed.increment();
+                return 0;
+            }
+        }
+    }
+
+    private Client client(InetAddress address, long now) {
+        int start = spread(address.hashCode());
+        for (int attempt = 0; attempt < ATTEMPTS; attempt++) {
+            int victim = -1;
+            Client victimClient = null;
+            long victimFullAt = Long.MAX_VALUE;
+            for (int probe = 0; probe < PROBES; probe++) {
+                int slot = (start + probe) & mask;
+                Client client = clients.get(slot);
+                if (client == null) {
+                    if (victim < 0 || victimFullAt > Long.MIN_VALUE) {
+                        victim = slot;
+                        victimClient = null;
+                        victimFullAt = Long.MIN_VALUE;
+                    }
+                    continue;
+                }
+                if (client.address.equals(address)) {
+                    return client;
+                }
+                long fullAt = client.latestFullAt();
+                // Fully refilled clients are free slots; otherwise prefer the one that is closest to full
+                long rank = fullAt - now <= 0 ? Long.MIN_VALUE : fullAt;
+                if (rank < victimFullAt) {
+                    victim = slot;
+                    victimClient = client;
+                    victimFullAt = rank;
+                }
+            }
+            Client fresh = new Client(address, now);
+            if (clients.compareAndSet(victim, victimClient, fresh)) {
+                if (victimClient != null && victimFullAt != Long.MIN_VALUE) {
+                    replaced.increment();
+                }
+                return fresh;
+            }
+            // Another thread changed the slot first: use its client if it is this one, otherwise look again
+            Client winner = clients.get(victim);
+            if (winner != null && winner.address.equals(address)) {
+                return winner;
+            }
+        }
+        overflowed.increment();
+        return overflow;
+    }
+
+    private static int spread(int hash) {
+        hash *= 0x9e3779b9;
+        return hash ^ (hash >>> 16);
+    }
+
+    public long getAllowedCount() {
+        return allowed.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("allowed=%d rejected=%d activeClientsReplaced=%d overflowed=%d tableSize=%d",
+                allowed.sum(), rejected.sum(), replaced.sum(), overflowed.sum(), clients.length());
+    }
+}
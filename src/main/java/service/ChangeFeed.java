@@ -0,0 +1,220 @@
+package service;
+
+import model.Person;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fan-out buffer of registration changes for live subscribers (the /person/events stream). Every change gets the next
+ * sequence number and goes into a fixed-size ring, overwriting the oldest entry. Each subscriber only remembers the
+ * last sequence it has seen and reads the ring from there.
+ *
+ * Publishing never waits for subscribers: it stores the event, bumps a volatile counter and unparks whoever is
+ * waiting. A subscriber that falls more than a ring's worth behind finds its next event overwritten; it is then moved
+ * to the newest event and told it missed some (missedEvents()), so it can reload instead of holding writers back.
+ *
+ * Event ids are "<epoch>-<sequence>", where the epoch is when this feed was created, so an id remembered by a client
+ * from before a restart is recognised as unusable rather than mistaken for a sequence of the new feed.
+ */
+public class ChangeFeed {
+
+    public enum Type { CREATED, UPDATED, DELETED }
+
+    public static final class Event {
+        private final long sequence;
+        private final Type type;
+        private final int personId;
+        private final Person person;
+
+        Event(long sequence, Type type, int personId, Person person) {
+            this.sequence = sequence;
+            this.type = type;
+            this.personId = personId;
+            this.person = person;
+        }
+
+        public long getSequence() { return sequence; }
+        public Type getType() { return type; }
+        public int getPersonId() { return personId; }
+
+        /**
+         * The person after the change, or null for a delete
+         */
+        public Person getPerson() { return person; }
+    }
+
+    private final Event[] ring;
+    private final int mask;
+    private final int maxSubscribers;
+    private final long epoch = System.currentTimeMillis();
+
+    // Sequence of the newest event; the event is in the ring before this is bumped
+    private volatile long published;
+    private volatile boolean closed;
+    private final Set<Thread> waiting = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger subscribers = new AtomicInteger();
+
+    /**
+     * capacity is rounded up to a power of two
+     */
+    public ChangeFeed(int capacity, int maxSubscribers) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.ring = new Event[size];
+        this.mask = size - 1;
+        this.maxSubscribers = maxSubscribers;
+    }
+
+    /**
+     * Record a change; previous is null for a create and current is null for a delete. Publishers are expected to be
+     * serialized by the caller: PersonService publishes from the repository's change listener, which
+     * InMemoryPersonRepository calls one change at a time under its publishLock, in the order the changes were made and
+     * only once they are durable, outside its write lock (PartitionedPersonRepository serializes its partitions under
+     * a listenerLock). The method is synchronized anyway, which subscribers never contend for.
+     */
+    public synchronized void publish(Person previous, Person current) {
+        Type type = previous == null ? Type.CREATED : current == null ? Type.DELETED : Type.UPDATED;
+        int personId = current != null ? current.getId() : previous.getId();
+        long sequence = published + 1;
+        ring[(int) (sequence & mask)] = new Event(sequence, type, personId, current);
+        published = sequence;
+        for (Thread thread : waiting) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Start following the feed. With the id of the last event a client saw (the SSE Last-Event-ID), the subscription
+     * resumes right after it if it is still in the ring; otherwise, and for a null id, it starts with the next event.
+     * Returns null if maxSubscribers are already following.
+     */
+    public Subscription subscribe(String lastEventId) {
+        if (subscribers.incrementAndGet() > maxSubscribers) {
+            subscribers.decrementAndGet();
+            return null;
+        }
+        long newest = published;
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return new Subscription(newest, false);
+        }
+        long sequence = parseSequence(lastEventId.trim());
+        if (sequence < 0 || sequence > newest || newest - sequence > ring.length) {
+            return new Subscription(newest, true);
+        }
+        return new Subscription(sequence, false);
+    }
+
+    private long parseSequence(String eventId) {
+        int dash = eventId.indexOf('-');
+        try {
+            if (dash < 0 || Long.parseLong(eventId.substring(0, dash)) != epoch) {
+                return -1;
+            }
+            return Long.parseLong(eventId.substring(dash + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    public String eventId(Event event) {
+        return epoch + "-" + event.getSequence();
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.get();
+    }
+
+    /**
+     * Wake every subscriber and make their polls return null, e.g. when the server stops
+     */
+    public void close() {
+        closed = true;
+        for (Thread thread : waiting) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * One subscriber's position in the feed. Used by a single thread.
+     */
+    public final class Subscription implements Closeable {
+        private long position;
+        private boolean missed;
+        private boolean released;
+
+        private Subscription(long position, boolean missed) {
+            this.position = position;
+            this.missed = missed;
+        }
+
+        /**
+         * Up to max events after the last one returned, oldest first, waiting up to timeoutMillis for the first one.
+         * Returns an empty list on timeout and null once the feed is closed.
+         */
+        public List<Event> poll(int max, long timeoutMillis) {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            while (!closed && published == position) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return List.of();
+                }
+                Thread current = Thread.currentThread();
+                waiting.add(current);
+                try {
+                    // Re-check after registering, so a publish in between is not slept through
+                    if (!closed && published == position) {
+                        LockSupport.parkNanos(ChangeFeed.this, remaining);
+                    }
+                } finally {
+                    waiting.remove(current);
+                }
+                if (current.isInterrupted()) {
+                    return null;
+                }
+            }
+            if (closed) {
+                return null;
+            }
+
+            long newest = published;
+            List<Event> events = new ArrayList<>((int) Math.min(max, newest - position));
+            while (position < newest && events.size() < max) {
+                Event event = ring[(int) ((position + 1) & mask)];
+                if (event == null || event.getSequence() != position + 1) {
+                    // Overwritten: this subscriber fell a whole ring behind
+                    missed = true;
+                    position = published;
+                    events.clear();
+                    break;
+                }
+                events.add(event);
+                position++;
+            }
+            return events;
+        }
+
+        /**
+         * True (once) if events were skipped because this subscriber fell behind or resumed from an id the feed no
+         * longer has; the subscriber should reload everything.
+         */
+        public boolean missedEvents() {
+            boolean result = missed;
+            missed = false;
+            return result;
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                subscribers.decrementAndGet();
+            }
+        }
+    }
+}
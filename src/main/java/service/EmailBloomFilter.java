@@ -0,0 +1,230 @@
+package service;
+
+import model.Person;
+
+import java.util.Collection;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counting Bloom filter over the registered emails (trimmed and lower-cased, like the repository's email index), so
+ * "is this email taken?" is usually answered without touching the repository: if the filter says no, the email is
+ * definitely new; only a "maybe" needs an exact lookup.
+ *
+ * Each email sets k of m 4-bit counters (sixteen to a long), chosen by double hashing, and is present if all k are
+ * non-zero. Counters rather than bits allow removing an email again; a counter that reaches 15 stays there, which
+ * can only cause false positives. m and k are sized from the capacity and the target false-positive rate; once more
+ * emails than the capacity are stored, needsRebuild() turns true and the owner rebuilds the filter from all people at
+ * twice the capacity, so the rate returns to the target as registrations grow.
+ *
+ * PersonService feeds it every change from the repository's change listener, so the filter changes in the same order
+ * as the repository; changes and rebuilds are synchronized, reads need no lock. A "no" is trusted by email lookups,
+ * so a rebuild must not miss a change: the owner reads everyone back inside the repository's write batch, where no
+ * other write can be applied between that read and the rebuild, and every earlier change has already been passed on.
+ *
+ * The rate is observable: getExpectedFalsePositiveRate() is what the current fill predicts, and
+ * getObservedFalsePositiveRate() is measured from the "maybe" answers that the exact lookup then found to be free.
+ */
+public class EmailBloomFilter {
+
+    private static final int MAX_COUNT = 15;
+    private static final int MIN_CAPACITY = 1024;
+
+    private static final class Table {
+        final AtomicLongArray counters;
+        final int size;
+        final int hashes;
+        final long capacity;
+
+        Table(long capacity, double falsePositiveRate) {
+            double bits = -capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+            this.size = (int) Math.min(Integer.MAX_VALUE - 15, Math.max(64, Math.ceil(bits)));
+            this.hashes = Math.max(1, (int) Math.round((double) size / capacity * Math.log(2)));
+            this.counters = new AtomicLongArray((size + 15) / 16);
+            this.capacity = capacity;
+        }
+
+        int counter(int index) {
+            return (int) (counters.get(index >>> 4) >>> ((index & 15) << 2)) & 0xf;
+        }
+
+        void add(int index, long delta) {
+            int word = index >>> 4;
+            counters.set(word, counters.get(word) + (delta << ((index & 15) << 2)));
+        }
+    }
+
+    private final double falsePositiveRate;
+    private volatile Table table;
+    private volatile long count;
+
+    private final LongAdder definitelyNew = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+
+    /**
+     * Filter for about expectedEmails emails (it grows past that) at the given false-positive rate, e.g. 0.01
+     */
+    public EmailBloomFilter(long expectedEmails, double falsePositiveRate) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False-positive rate must be between 0 and 1");
+        }
+        this.falsePositiveRate = falsePositiveRate;
+        this.table = new Table(Math.max(MIN_CAPACITY, expectedEmails), falsePositiveRate);
+    }
+
+    /**
+     * False means the email is definitely not registered; true means it may be
+     */
+    public boolean mightContain(String email) {
+        String key = normalize(email);
+        if (key == null) {
+            return false;
+        }
+        Table current = table;
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < current.hashes; i++) {
+            if (current.counter(index(h1, h2, i, current.size)) == 0) {
+                definitelyNew.increment();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Report that a "maybe" from mightContain() turned out to be a free email, for getObservedFalsePositiveRate()
+     */
+    public void recordFalsePositive() {
+        falsePositives.increment();
+    }
+
+    /**
+     * Keep the filter in step with a repository change (previous is null for a create, current null for a delete)
+     */
+    public synchronized void changed(Person previous, Person current) {
+        String before = previous != null ? normalize(previous.getEmail()) : null;
+        String after = current != null ? normalize(current.getEmail()) : null;
+        if (before != null && before.equals(after)) {
+            return;
+        }
+        if (before != null) {
+            update(table, before, -1);
+            count--;
+        }
+        if (after != null) {
+            update(table, after, 1);
+            count++;
+        }
+    }
+
+    /**
+     * True once more emails are stored than the filter was sized for
+     */
+    public boolean needsRebuild() {
+        return count > table.capacity;
+    }
+
+    /**
+     * Replace the contents with the emails of people (everyone stored), sized for twice as many emails as there
+     * are now, or twice the current capacity if that is more
+     */
+    public synchronized void rebuild(Collection<Person> people) {
+        long capacity = Math.max(2L * people.size(), needsRebuild() ? 2 * table.capacity : table.capacity);
+        Table fresh = new Table(Math.max(MIN_CAPACITY, capacity), falsePositiveRate);
+        long emails = 0;
+        for (Person person : people) {
+            String key = normalize(person.getEmail());
+            if (key != null) {
+                update(fresh, key, 1);
+                emails++;
+            }
+        }
+        count = emails;
+        table = fresh;
+    }
+
+    private static void update(Table table, String key, int delta) {
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < table.hashes; i++) {
+            int index = index(h1, h2, i, table.size);
+            int value = table.counter(index);
+            // A saturated counter no longer knows how many emails share it, so it is never decremented
+            if (value == MAX_COUNT || (delta < 0 && value == 0)) {
+                continue;
+            }
+            table.add(index, delta);
+        }
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getCapacity() {
+        return table.capacity;
+    }
+
+    public double getTargetFalsePositiveRate() {
+        return falsePositiveRate;
+    }
+
+    /**
+     * (1 - e^(-kn/m))^k for the current number of emails n
+     */
+    public double getExpectedFalsePositiveRate() {
+        Table current = table;
+        return Math.pow(1 - Math.exp(-(double) current.hashes * count / current.size), current.hashes);
+    }
+
+    /**
+     * False positives as a fraction of lookups for emails that were not registered, 0 before there were any
+     */
+    public double getObservedFalsePositiveRate() {
+        long falsePositive = falsePositives.sum();
+        long negatives = falsePositive + definitelyNew.sum();
+        return negatives == 0 ? 0 : (double) falsePositive / negatives;
+    }
+
+    @Override
+    public String toString() {
+        Table current = table;
+        return String.format("emails=%d capacity=%d counters=%d hashes=%d targetFpp=%.4f expectedFpp=%.4f"
+                        + " observedFpp=%.4f (%d false positives, %d definitely new)",
+                count, current.capacity, current.size, current.hashes, falsePositiveRate,
+                getExpectedFalsePositiveRate(), getObservedFalsePositiveRate(), falsePositives.sum(),
+                definitelyNew.sum());
+    }
+
+    private static int index(int h1, int h2, int i, int size) {
+        return Math.floorMod(h1 + i * h2, size);
+    }
+
+    // 64-bit FNV-1a over the characters, then a finalizer so both halves are well mixed
+    private static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    // Same normalization as the repository's email index
+    private static String normalize(String email) {
+        if (email == null) {
+            return null;
+        }
+        String key = email.trim().toLowerCase(Locale.ROOT);
+        return key.isEmpty() ? null : key;
+    }
+}
@@ -0,0 +1,227 @@
+package service;
+
+import repository.PersonRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Funnels every create, update and delete through one writer thread. Worker threads put a command into a fixed-size
+ * ring and wait for its future; the writer takes whatever has queued up (up to maxBatch commands) and applies it as
+ * one PersonRepository.writeBatch(), so the batch shares one lock acquisition and one wait for the disk. Only then
+ * are the callers' futures completed, so a caller still returns only once its change is durable.
+ *
+ * The ring is multi-producer, single-consumer: a worker claims the next sequence number with a CAS, writes its
+ * command into that slot and publishes it by storing the sequence in the slot's entry of published. The writer reads
+ * slots in sequence order and frees them by advancing consumed. A full ring makes workers wait for the writer
+ * (back-pressure); an empty one parks the writer until a worker unparks it.
+ *
+ * A command that throws (a validation error, a version conflict) only fails its own future; the rest of the batch
+ * is unaffected.
+ */
+public class MutationPipeline implements AutoCloseable {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+    public static final int DEFAULT_MAX_BATCH = 256;
+
+    // Set in claimed once close() has been called; no further sequence can be claimed
+    private static final long CLOSED = Long.MIN_VALUE;
+    private static final long FULL_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final class Command<T> {
+        final Supplier<T> mutation;
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        T result;
+        RuntimeException failure;
+
+        Command(Supplier<T> mutation) {
+            this.mutation = mutation;
+        }
+
+        void apply() {
+            try {
+                result = mutation.get();
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+
+        void complete() {
+            if (failure != null) {
+                future.completeExceptionally(failure);
+            } else {
+                future.complete(result);
+            }
+        }
+    }
+
+    private final PersonRepository personRepository;
+    private final int maxBatch;
+    private final Command<?>[] ring;
+    private final int mask;
+    // Sequence stored in each slot once its command is there; -1 while it never held one
+    private final AtomicLongArray published;
+    // Next sequence to hand out, with CLOSED set after close()
+    private final AtomicLong claimed = new AtomicLong();
+    // Next sequence the writer reads; everything before it is free again
+    private volatile long consumed;
+    private volatile boolean writerParked;
+    private final Thread writer;
+
+    /**
+     * A pipeline with its writer thread running. capacity is rounded up to a power of two.
+     */
+    public static MutationPipeline start(PersonRepository personRepository, int capacity, int maxBatch) {
+        MutationPipeline pipeline = new MutationPipeline(personRepository, capacity, maxBatch);
+        // Started only once the pipeline is fully built, so the writer never sees it half-constructed
+        pipeline.writer.start();
+        return pipeline;
+    }
+
+    private MutationPipeline(PersonRepository personRepository, int capacity, int maxBatch) {
+        this.personRepository = personRepository;
+        this.maxBatch = Math.max(1, maxBatch);
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.ring = new Command<?>[size];
+        this.mask = size - 1;
+        this.published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            published.set(i, -1);
+        }
+        writer = new Thread(this::run, "person-writer");
+        writer.setDaemon(true);
+    }
+
+    /**
+     * Run mutation on the writer thread as part of the next batch and return its result once the batch is durable.
+     * Whatever RuntimeException the mutation throws is rethrown here.
+     * Throws IllegalStateException once the pipeline is closed.
+     */
+    public <T> T submit(Supplier<T> mutation) {
+        Command<T> command = new Command<>(mutation);
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if ((sequence & CLOSED) != 0) {
+                throw new IllegalStateException("The server is shutting down; the change was not saved");
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+
+        while (sequence - consumed >= ring.length) {
+            // Ring full: wait for the writer to take a batch
+            LockSupport.parkNanos(this, FULL_WAIT_NANOS);
+        }
+        int slot = (int) (sequence & mask);
+        ring[slot] = command;
+        // A volatile store (set), not a release one: with writerParked it forms a Dekker handshake, and a release
+        // store may be reordered with the read of writerParked after it, so both sides could miss each other
+        published.set(slot, sequence);
+        if (writerParked) {
+            LockSupport.unpark(writer);
+        }
+        return await(command);
+    }
+
+    private static <T> T await(Command<T> command) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return command.future.get();
+                } catch (InterruptedException e) {
+                    // The command is already queued and will be applied; the caller has to learn the outcome
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void run() {
+        List<Command<?>> batch = new ArrayList<>(maxBatch);
+        while (true) {
+            long next = consumed;
+            if (published.getAcquire((int) (next & mask)) != next) {
+                long state = claimed.get();
+                if ((state & CLOSED) != 0 && (state & ~CLOSED) == next) {
+                    // Closed and everything claimed has been applied
+                    return;
+                }
+                writerParked = true;
+                // The other half of the handshake in submit(): a volatile read (get) cannot move before the store above
+                if (published.get((int) (next & mask)) != next) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                writerParked = false;
+                continue;
+            }
+
+            while (batch.size() < maxBatch && published.getAcquire((int) (next & mask)) == next) {
+                int slot = (int) (next & mask);
+                batch.add(ring[slot]);
+                ring[slot] = null;
+                next++;
+            }
+            // The commands are copied out, so the slots can be reused while the batch is applied
+            consumed = next;
+            apply(batch);
+            batch.clear();
+        }
+    }
+
+    private void apply(List<Command<?>> batch) {
+        try {
+            personRepository.writeBatch(() -> {
+                for (Command<?> command : batch) {
+                    command.apply();
+                }
+            });
+        } catch (RuntimeException | Error e) {
+            // Waiting for the disk failed: none of the batch can be reported as saved
+            for (Command<?> command : batch) {
+                command.future.completeExceptionally(e);
+            }
+            return;
+        }
+        for (Command<?> command : batch) {
+            command.complete();
+        }
+    }
+
+    /**
+     * Refuse new commands, apply the ones already queued and wait for the writer to finish
+     */
+    @Override
+    public void close() {
+        long state;
+        do {
+            state = claimed.get();
+        } while ((state & CLOSED) == 0 && !claimed.compareAndSet(state, state | CLOSED));
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
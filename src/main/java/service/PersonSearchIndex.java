@@ -0,0 +1,475 @@
+package service;
+
+import model.Person;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index for free-text search over names and emails, kept up to date by PersonService from the repository's
+ * change listener. Each person is broken into lower-case tokens: the words of the name, the words of the email's
+ * local part, and the email domain both whole ("baylor.edu") and split ("baylor", "edu"). The index maps every token
+ * to the ids that contain it, in a sorted map so a query fragment can match every token it is a prefix of. Prefixes
+ * of up to SHORT_PREFIX characters have postings of their own, since they would otherwise expand to a large part of
+ * the map. Every posting is a sorted int array whose size is its document frequency.
+ *
+ * A query matches people that contain every query term (as a whole token or a token prefix). Results are ranked by
+ * score, where a whole-token match counts EXACT_WEIGHT and a prefix match PREFIX_WEIGHT, then by id. Candidates are
+ * drawn only from the postings of the rarest term, whole-token posting first, in id order, and intersected with the
+ * other terms, rarest first, by galloping forward through their postings; a candidate's own tokens are read only for a
+ * term that expands to more than MAX_MATCH_CURSORS tokens, and only if it could still make the results. The best limit
+ * are kept in a bounded heap, and a posting is abandoned as soon as the best score it could still give cannot beat the
+ * worst kept result. A query therefore usually reads about limit ids instead of every match.
+ */
+public class PersonSearchIndex {
+
+    private static final int EXACT_WEIGHT = 2;
+    private static final int PREFIX_WEIGHT = 1;
+    private static final int SHORT_PREFIX = 2;
+    // Most postings a term is intersected through; past this its matches are checked against the tokens
+    private static final int MAX_MATCH_CURSORS = 16;
+
+    // Ids that contain one token (or token prefix), ascending
+    private static final class Posting {
+        int[] ids = new int[2];
+        int size;
+
+        void add(int id) {
+            int at = size > 0 && ids[size - 1] < id ? size : Arrays.binarySearch(ids, 0, size, id);
+            if (at >= 0 && at < size) {
+                return;
+            }
+            int insert = at >= 0 ? at : -at - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, insert, ids, insert + 1, size - insert);
+            ids[insert] = id;
+            size++;
+        }
+
+        void remove(int id) {
+            int at = Arrays.binarySearch(ids, 0, size, id);
+            if (at >= 0) {
+                System.arraycopy(ids, at + 1, ids, at, size - at - 1);
+                size--;
+            }
+        }
+
+    }
+
+    // Walks a posting for ids that only ever grow, so each look-up starts where the last one ended
+    private static final class Cursor {
+        final Posting posting;
+        int at;
+
+        Cursor(Posting posting) {
+            this.posting = posting;
+        }
+
+        // Whether the posting holds id, which must not be smaller than any id asked for since the last rewind
+        boolean seek(int id) {
+            int[] ids = posting.ids;
+            int size = posting.size;
+            if (at >= size || ids[at] >= id) {
+                return at < size && ids[at] == id;
+            }
+            // Gallop: double the step until past id, then binary search the last step
+            int low = at;
+            int step = 1;
+            while (low + step < size && ids[low + step] < id) {
+                low += step;
+                step <<= 1;
+            }
+            int found = Arrays.binarySearch(ids, low + 1, Math.min(low + step + 1, size), id);
+            at = found >= 0 ? found : -found - 1;
+            return found >= 0;
+        }
+    }
+
+    // A query term and the postings it matches
+    private static final class Term {
+        final String text;
+        // Whole-token matches, or null
+        final Posting exact;
+        // Every id with a token starting with the term, for short terms only, or null
+        final Posting prefixed;
+        // Every token starting with the term
+        final NavigableMap<String, Posting> tokens;
+        long frequency;
+        // For intersecting with this term: its whole-token posting, and the postings that together hold every id
+        // with a token starting with it (null if there are too many, in which case candidates' tokens are read)
+        Cursor exactCursor;
+        Cursor[] matchCursors;
+
+        Term(String text, Posting exact, Posting prefixed, NavigableMap<String, Posting> tokens) {
+            this.text = text;
+            this.exact = exact;
+            this.prefixed = prefixed;
+            this.tokens = tokens;
+        }
+
+        int maxWeight() {
+            return exact != null ? EXACT_WEIGHT : PREFIX_WEIGHT;
+        }
+
+        void openCursors() {
+            exactCursor = exact != null ? new Cursor(exact) : null;
+            if (prefixed != null) {
+                matchCursors = new Cursor[]{new Cursor(prefixed)};
+            } else if (tokens.size() <= MAX_MATCH_CURSORS) {
+                matchCursors = new Cursor[tokens.size()];
+                int i = 0;
+                for (Posting posting : tokens.values()) {
+                    matchCursors[i++] = new Cursor(posting);
+                }
+            }
+        }
+
+        void rewind() {
+            if (exactCursor != null) {
+                exactCursor.at = 0;
+            }
+            if (matchCursors != null) {
+                for (Cursor cursor : matchCursors) {
+                    cursor.at = 0;
+                }
+            }
+        }
+
+        // Weight of id for this term, or 0 if it does not match; -1 if that takes reading the id's tokens
+        int weight(int id) {
+            if (exactCursor != null && exactCursor.seek(id)) {
+                return EXACT_WEIGHT;
+            }
+            if (matchCursors == null) {
+                return -1;
+            }
+            for (Cursor cursor : matchCursors) {
+                if (cursor.seek(id)) {
+                    return PREFIX_WEIGHT;
+                }
+            }
+            return 0;
+        }
+    }
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<String, Posting> postings = new TreeMap<>();
+    private final Map<String, Posting> shortPrefixes = new HashMap<>();
+    // Indexed by id; ids are handed out in sequence, so this stays dense
+    private String[][] tokensById = new String[1024][];
+
+    /**
+     * Index a new or changed person, replacing whatever was indexed for that id before. Only the tokens that changed
+     * touch the postings, so an edit that keeps the name and email costs nothing here.
+     */
+    public void index(Person person) {
+        int id = person.getId();
+        String[] tokens = tokenize(person);
+        lock.writeLock().lock();
+        try {
+            if (id >= tokensById.length) {
+                tokensById = Arrays.copyOf(tokensById, Math.max(id + 1, 2 * tokensById.length));
+            }
+            String[] previous = tokensById[id];
+            Set<String> before = previous != null ? Set.of(previous) : Set.of();
+            Set<String> after = Set.of(tokens);
+            unindex(id, previous, after);
+            for (String token : tokens) {
+                if (!before.contains(token)) {
+                    postings.computeIfAbsent(token, key -> new Posting()).add(id);
+                }
+            }
+            Set<String> prefixesBefore = shortPrefixes(before);
+            for (String prefix : shortPrefixes(after)) {
+                if (!prefixesBefore.contains(prefix)) {
+                    shortPrefixes.computeIfAbsent(prefix, key -> new Posting()).add(id);
+                }
+            }
+            tokensById[id] = tokens;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int id) {
+        lock.writeLock().lock();
+        try {
+            if (id >= 0 && id < tokensById.length) {
+                unindex(id, tokensById[id], Set.of());
+                tokensById[id] = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Apply a repository change (previous is null for a create, current null for a delete)
+     */
+    public void changed(Person previous, Person current) {
+        if (current != null) {
+            index(current);
+        } else if (previous != null) {
+            remove(previous.getId());
+        }
+    }
+
+    /**
+     * Ids of the best matches for the query, best first, at most limit of them
+     */
+    public List<Integer> search(String query, int limit) {
+        Set<String> words = splitWords(query);
+        if (words.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            List<Term> terms = new ArrayList<>(words.size());
+            for (String word : words) {
+                terms.add(new Term(word, postings.get(word),
+                        word.length() <= SHORT_PREFIX ? shortPrefixes.get(word) : null,
+                        postings.subMap(word, true, word + Character.MAX_VALUE, false)));
+            }
+            // Longer terms are usually rarer, so counting them first lets the rest stop early
+            terms.sort((a, b) -> b.text.length() - a.text.length());
+            long rarest = Long.MAX_VALUE;
+            for (Term term : terms) {
+                term.frequency = frequency(term, rarest);
+                if (term.frequency == 0) {
+                    return List.of();
+                }
+                rarest = Math.min(rarest, term.frequency);
+            }
+            terms.sort((a, b) -> Long.compare(a.frequency, b.frequency));
+
+            Term driver = terms.get(0);
+            List<Term> others = terms.subList(1, terms.size());
+            int othersMaxWeight = 0;
+            for (Term term : others) {
+                othersMaxWeight += term.maxWeight();
+                term.openCursors();
+            }
+
+            // Min-heap of rank(score, id), so the worst kept result is on top
+            PriorityQueue<Long> best = new PriorityQueue<>(limit + 1);
+            // Ids in best; one person can be under several of the driver's tokens
+            Set<Integer> kept = new HashSet<>();
+            Cursor done = driver.exact != null ? new Cursor(driver.exact) : null;
+            if (driver.exact != null) {
+                collect(driver.exact, null, EXACT_WEIGHT, othersMaxWeight, others, limit, best, kept);
+            }
+            if (driver.prefixed != null) {
+                collect(driver.prefixed, done, PREFIX_WEIGHT, othersMaxWeight, others, limit, best, kept);
+            } else {
+                for (Posting posting : driver.tokens.values()) {
+                    if (posting != driver.exact) {
+                        collect(posting, done, PREFIX_WEIGHT, othersMaxWeight, others, limit, best, kept);
+                    }
+                }
+            }
+
+            Integer[] ids = new Integer[best.size()];
+            for (int i = ids.length - 1; i >= 0; i--) {
+                ids[i] = idOf(best.poll());
+            }
+            return Arrays.asList(ids);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Ids under the term's prefix (a person with several matching long tokens counts once per token), or just over
+    // cap once it passes it
+    private static long frequency(Term term, long cap) {
+        if (term.prefixed != null || term.text.length() <= SHORT_PREFIX) {
+            return term.prefixed != null ? term.prefixed.size : 0;
+        }
+        long frequency = 0;
+        for (Posting posting : term.tokens.values()) {
+            frequency += posting.size;
+            if (frequency > cap) {
+                break;
+            }
+        }
+        return frequency;
+    }
+
+    /**
+     * Offer the ids of one posting of the rarest term, each matching it with driverWeight, skipping those in done
+     * (already offered with a higher weight) and those already kept. The other terms can add at most othersMaxWeight.
+     */
+    private void collect(Posting posting, Cursor done, int driverWeight, int othersMaxWeight, List<Term> others,
+                         int limit, PriorityQueue<Long> best, Set<Integer> kept) {
+        if (done != null) {
+            done.at = 0;
+        }
+        for (Term term : others) {
+            term.rewind();
+        }
+        for (int i = 0; i < posting.size; i++) {
+            int id = posting.ids[i];
+            // Ids only grow along the posting, so once this one cannot make it, none after it can
+            if (best.size() == limit && rank(driverWeight + othersMaxWeight, id) <= best.peek()) {
+                return;
+            }
+            if (kept.contains(id) || (done != null && done.seek(id))) {
+                continue;
+            }
+            int score = score(id, driverWeight, others, best.size() == limit ? best.peek() : Long.MIN_VALUE);
+            if (score == 0) {
+                continue;
+            }
+            if (best.size() == limit) {
+                kept.remove(idOf(best.poll()));
+            }
+            best.add(rank(score, id));
+            kept.add(id);
+        }
+    }
+
+    /**
+     * Score of id against the other terms, or 0 if it misses one of them or cannot rank above worstKept. Postings
+     * answer first; tokens are only read for terms with too many postings, once the id could still make it.
+     */
+    private int score(int id, int driverWeight, List<Term> others, long worstKept) {
+        int score = driverWeight;
+        List<Term> unchecked = null;
+        for (Term term : others) {
+            int weight = term.weight(id);
+            if (weight == 0) {
+                return 0;
+            }
+            if (weight < 0) {
+                // A prefix match at best, since the whole-token posting said no
+                weight = PREFIX_WEIGHT;
+                if (unchecked == null) {
+                    unchecked = new ArrayList<>(others.size());
+                }
+                unchecked.add(term);
+            }
+            score += weight;
+        }
+        if (rank(score, id) <= worstKept) {
+            return 0;
+        }
+        if (unchecked != null) {
+            String[] tokens = tokensById[id];
+            for (Term term : unchecked) {
+                if (!hasPrefix(tokens, term.text)) {
+                    return 0;
+                }
+            }
+        }
+        return score;
+    }
+
+    // Higher score first, then lower id
+    private static long rank(int score, int id) {
+        return ((long) score << 32) | (Integer.MAX_VALUE - id);
+    }
+
+    private static int idOf(long rank) {
+        return Integer.MAX_VALUE - (int) rank;
+    }
+
+    private static boolean hasPrefix(String[] tokens, String prefix) {
+        for (String token : tokens) {
+            if (token.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Take id out of the postings of the tokens (and their short prefixes) that are not among those it keeps
+    private void unindex(int id, String[] tokens, Set<String> keep) {
+        if (tokens == null) {
+            return;
+        }
+        for (String token : tokens) {
+            if (!keep.contains(token)) {
+                removeFrom(postings, token, id);
+            }
+        }
+        Set<String> kept = shortPrefixes(keep);
+        for (String prefix : shortPrefixes(Set.of(tokens))) {
+            if (!kept.contains(prefix)) {
+                removeFrom(shortPrefixes, prefix, id);
+            }
+        }
+    }
+
+    private static void removeFrom(Map<String, Posting> map, String key, int id) {
+        Posting ids = map.get(key);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.size == 0) {
+                map.remove(key);
+            }
+        }
+    }
+
+    private static Set<String> shortPrefixes(Set<String> tokens) {
+        Set<String> prefixes = new HashSet<>();
+        for (String token : tokens) {
+            for (int length = 1; length <= SHORT_PREFIX && length <= token.length(); length++) {
+                prefixes.add(token.substring(0, length));
+            }
+        }
+        return prefixes;
+    }
+
+    static String[] tokenize(Person person) {
+        Set<String> tokens = new LinkedHashSet<>(splitWords(person.getName()));
+        String email = person.getEmail();
+        if (email != null) {
+            String normalized = email.trim().toLowerCase(Locale.ROOT);
+            int at = normalized.lastIndexOf('@');
+            if (at >= 0) {
+                tokens.addAll(splitWords(normalized.substring(0, at)));
+                String domain = normalized.substring(at + 1);
+                if (!domain.isEmpty()) {
+                    tokens.add(domain);
+                    tokens.addAll(splitWords(domain));
+                }
+            } else {
+                tokens.addAll(splitWords(normalized));
+            }
+        }
+        return tokens.toArray(new String[0]);
+    }
+
+    // Lower-case runs of letters and digits; everything else separates words
+    private static Set<String> splitWords(String text) {
+        Set<String> words = new LinkedHashSet<>();
+        if (text == null) {
+            return words;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                words.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return words;
+    }
+}
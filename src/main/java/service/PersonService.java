@@ -1,38 +1,170 @@
 package service;
 
 import dto.PersonDTO;
+import dto.RegistrationStats;
 import model.Person;
 import repository.PersonRepository;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 /**
  * Handles the business logic, which in this case is the CRUD operations
  */
 public class PersonService {
 
+    // Upper bound on how many people a single search returns
+    public static final int MAX_SEARCH_RESULTS = 500;
+
+    // Change feed defaults: events kept for reconnecting subscribers, and concurrent subscribers (each holds a
+    // server worker thread while connected, so the server never allows more than half its workers)
+    public static final int DEFAULT_FEED_CAPACITY = 4096;
+    public static final int DEFAULT_FEED_SUBSCRIBERS = 4;
+
+    // Target false-positive rate of the duplicate-email filter
+    public static final double DEFAULT_EMAIL_FILTER_FPP = 0.01;
+
     PersonRepository personRepository;
-    private int personId;
+    private final PersonSearchIndex searchIndex;
+    // Shared by all worker threads, so ids are handed out atomically
+    private final AtomicInteger personId;
+    private final ChangeFeed changeFeed;
+    // Writes go through here when set; otherwise each worker thread writes to the repository itself
+    private final MutationPipeline mutationPipeline;
+    // Answers "definitely not registered" for most new emails without a repository lookup
+    private final EmailBloomFilter emailFilter;
+    // Counts for the stats page, kept current on every change instead of scanning everyone per request
+    private final RegistrationAggregates aggregates;
 
     /**
      * I implement the Singleton pattern here. The single instance of a PersonRepository is passed in to the service
      * constructor (dependency injection). This instance is then used for query operations.
      */
     public PersonService(PersonRepository personRepository) {
+        this(personRepository, new ChangeFeed(DEFAULT_FEED_CAPACITY, DEFAULT_FEED_SUBSCRIBERS));
+    }
+
+    /**
+     * Every change the repository applies is published to changeFeed, in the order it was applied
+     */
+    public PersonService(PersonRepository personRepository, ChangeFeed changeFeed) {
+        this(personRepository, changeFeed, null);
+    }
+
+    /**
+     * With a MutationPipeline (built on the same repository), creates, updates and deletes are applied by its single
+     * writer thread in batches instead of by the calling threads
+     */
+    public PersonService(PersonRepository personRepository, ChangeFeed changeFeed, MutationPipeline mutationPipeline) {
+        this(personRepository, changeFeed, mutationPipeline, DEFAULT_EMAIL_FILTER_FPP);
+    }
+
+    /**
+     * emailFilterFalsePositiveRate is the target rate of the duplicate-email Bloom filter, e.g. 0.01
+     */
+    public PersonService(PersonRepository personRepository, ChangeFeed changeFeed, MutationPipeline mutationPipeline,
+                         double emailFilterFalsePositiveRate) {
         this.personRepository = personRepository;
-        personId = 0;
+        this.changeFeed = changeFeed;
+        this.mutationPipeline = mutationPipeline;
+        // Continue after whatever the repository already holds (e.g. recovered from its log)
+        personId = new AtomicInteger(personRepository.getHighestId());
+        searchIndex = new PersonSearchIndex();
+        List<Person> people = personRepository.findAll();
+        for (Person person : people) {
+            searchIndex.index(person);
+        }
+        emailFilter = new EmailBloomFilter(2L * people.size(), emailFilterFalsePositiveRate);
+        emailFilter.rebuild(people);
+        // In parallel over the partitions, for a partitioned repository
+        aggregates = personRepository.aggregate(() -> new RegistrationAggregates(List.of()),
+                RegistrationAggregates::include, RegistrationAggregates::combine);
+        // Called once each change is durable, one at a time and in the order the changes were applied, so the search
+        // index, the filter and the feed never show a change the repository could still lose
+        personRepository.setChangeListener((previous, current) -> {
+            searchIndex.changed(previous, current);
+            emailFilter.changed(previous, current);
+            aggregates.changed(previous, current);
+            changeFeed.publish(previous, current);
+        });
+    }
+
+    public ChangeFeed getChangeFeed() {
+        return changeFeed;
+    }
+
+    public EmailBloomFilter getEmailFilter() {
+        return emailFilter;
+    }
+
+    /**
+     * Current registration figures, with the topDomains most common email domains
+     */
+    public RegistrationStats getStats(int topDomains) {
+        return aggregates.snapshot(topDomains);
+    }
+
+    /**
+     * Apply the writes still queued and end every live feed subscription, e.g. when the server stops
+     */
+    public void close() {
+        if (mutationPipeline != null) {
+            mutationPipeline.close();
+        }
+        changeFeed.close();
+    }
+
+    // Run a create, update or delete, on the pipeline's writer thread if there is one
+    private <T> T write(Supplier<T> mutation) {
+        T result = mutationPipeline != null ? mutationPipeline.submit(mutation) : mutation.get();
+        if (emailFilter.needsRebuild()) {
+            // In a write batch, so no change can land between reading everyone back and swapping in the new table
+            personRepository.writeBatch(() -> {
+                if (emailFilter.needsRebuild()) {
+                    emailFilter.rebuild(personRepository.findAll());
+                }
+            });
+        }
+        return result;
     }
 
     public Person createPerson(PersonDTO personDTO){
         if (personDTO.getName() == null || personDTO.getName().isBlank()) {
             throw new IllegalArgumentException("Name cannot be null or blank");
         }
-        personId++;
-        return savePerson(personId, personDTO);
+        // Early rejection only; the repository still enforces uniqueness when it saves
+        if (isEmailRegistered(personDTO.getEmail())) {
+            throw new IllegalArgumentException("Email is already registered: " + personDTO.getEmail());
+        }
+        Person person = personBuilder(personId.incrementAndGet(), personDTO).build();
+        return write(() -> {
+            personRepository.save(person.getId(), person);
+            return person;
+        });
+    }
+
+    /**
+     * Create a batch of people at once (bulk import). The batch is saved with a single repository write, so it costs
+     * one lock acquisition and one log flush. Returns one entry per DTO, in order: null if that person was created,
+     * otherwise why not. Throws IllegalArgumentException, before any id is taken, if a DTO has no name.
+     */
+    public List<String> createPersons(List<PersonDTO> personDTOs){
+        for (PersonDTO personDTO : personDTOs) {
+            if (personDTO.getName() == null || personDTO.getName().isBlank()) {
+                throw new IllegalArgumentException("Name cannot be null or blank");
+            }
+        }
+        List<Person> people = new ArrayList<>(personDTOs.size());
+        for (PersonDTO personDTO : personDTOs) {
+            people.add(personBuilder(personId.incrementAndGet(), personDTO).build());
+        }
+        return write(() -> personRepository.saveAll(people));
     }
 
     public boolean deletePerson(int id){
-        return personRepository.delete(id);
+        return write(() -> personRepository.delete(id));
     }
 
     public Person findPersonById(int id){
@@ -43,21 +175,76 @@ public class PersonService {
         return personRepository.findAll();
     }
 
+    public boolean isEmailRegistered(String email){
+        return findPersonByEmail(email) != null;
+    }
+
+    /**
+     * Emails the filter has never seen are answered without a repository lookup
+     */
+    public Person findPersonByEmail(String email){
+        if (email == null || !emailFilter.mightContain(email)) {
+            return null;
+        }
+        Person person = personRepository.findByEmail(email);
+        if (person == null) {
+            emailFilter.recordFalsePositive();
+        }
+        return person;
+    }
+
+    public List<Person> findPersonsByNamePrefix(String prefix){
+        if (prefix == null || prefix.isBlank()) {
+            return List.of();
+        }
+        return personRepository.findByNamePrefix(prefix.trim(), MAX_SEARCH_RESULTS);
+    }
+
+    public List<Person> findPersonsByAgeRange(int minAge, int maxAge){
+        return personRepository.findByAgeRange(minAge, maxAge, MAX_SEARCH_RESULTS);
+    }
+
+    /**
+     * Free-text search over names and email fragments, best match first. Ids are resolved against the repository,
+     * so someone deleted between the index lookup and here is simply left out.
+     */
+    public List<Person> searchPersons(String query){
+        List<Person> people = new ArrayList<>();
+        for (int id : searchIndex.search(query, MAX_SEARCH_RESULTS)) {
+            Person person = personRepository.findById(id);
+            if (person != null) {
+                people.add(person);
+            }
+        }
+        return people;
+    }
+
+    /**
+     * Apply an edit made to the given version of the person (PersonDTO.getVersion()). Returns null if the person does
+     * not exist (for example, it was deleted while being edited); throws VersionConflictException if it was changed
+     * since that version.
+     */
     public Person updatePerson(int id, PersonDTO personDTO){
         if (personDTO.getName() == null || personDTO.getName().isBlank()) {
             throw new IllegalArgumentException("Name cannot be null or blank");
         }
-        return savePerson(id, personDTO);
+        if (personDTO.getVersion() < 1) {
+            throw new IllegalArgumentException("Version is required to update a person");
+        }
+        Person owner = findPersonByEmail(personDTO.getEmail());
+        if (owner != null && owner.getId() != id) {
+            throw new IllegalArgumentException("Email is already registered: " + personDTO.getEmail());
+        }
+        Person person = personBuilder(id, personDTO)
+                .version(personDTO.getVersion() + 1)
+                .build();
+        return write(() -> personRepository.update(id, personDTO.getVersion(), person) ? person : null);
     }
 
-    // Helper method for both create and update to use
-    private Person savePerson(int id, PersonDTO personDTO){
-        Person person = new Person.PersonBuilder(id, personDTO.getName())
+    // Helper method for both create and update to use; creates keep the builder's first version
+    private Person.PersonBuilder personBuilder(int id, PersonDTO personDTO){
+        return new Person.PersonBuilder(id, personDTO.getName())
                 .age(personDTO.getAge())
-                .email(personDTO.getEmail())
-                .build();
-        personRepository.save(person.getId(), person);
-        return person;
-
+                .email(personDTO.getEmail());
     }
 }
@@ -0,0 +1,162 @@
+package service;
+
+import dto.RegistrationStats;
+import model.Person;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registration figures kept up to date as people change, so the stats page never scans the repository. PersonService
+ * feeds it every change from the repository's change listener; each change costs O(1): a few counter increments (the
+ * total, the operation count and the age brackets) and one adjustment of the email domain's count. The repository
+ * calls its listener one change at a time, so there is only ever one writer here; the counters are LongAdders and
+ * the domains a ConcurrentHashMap so that request threads can read them without taking any lock.
+ *
+ * snapshot() reads the counters without stopping writers, so its figures can straddle a change that is being applied
+ * at that moment. Picking the top domains walks the distinct domains, which are far fewer than the people.
+ */
+public class RegistrationAggregates {
+
+    public static final int DEFAULT_TOP_DOMAINS = 10;
+
+    // Lower bound of each bracket; ages below the first (not normally accepted) are counted in it
+    private static final int[] BRACKET_STARTS = {1, 18, 25, 35, 45, 55, 65};
+    private static final String[] BRACKET_LABELS = {"Under 18", "18-24", "25-34", "35-44", "45-54", "55-64", "65+"};
+
+    private final LongAdder total = new LongAdder();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder updated = new LongAdder();
+    private final LongAdder deleted = new LongAdder();
+    private final LongAdder[] brackets = new LongAdder[BRACKET_STARTS.length];
+    // Normalized domain → people registered with it; a domain is removed when its count reaches zero
+    private final ConcurrentHashMap<String, Long> domains = new ConcurrentHashMap<>();
+
+    /**
+     * Start from the people already stored; they do not count as created
+     */
+    public RegistrationAggregates(Iterable<Person> people) {
+        for (int i = 0; i < brackets.length; i++) {
+            brackets[i] = new LongAdder();
+        }
+        for (Person person : people) {
+            add(person, 1);
+        }
+    }
+
+    /**
+     * Count one of the people already stored (not as created), for PersonRepository.aggregate()
+     */
+    void include(Person person) {
+        add(person, 1);
+    }
+
+    /**
+     * Add other's figures to these, for PersonRepository.aggregate(); returns this
+     */
+    RegistrationAggregates combine(RegistrationAggregates other) {
+        total.add(other.total.sum());
+        created.add(other.created.sum());
+        updated.add(other.updated.sum());
+        deleted.add(other.deleted.sum());
+        for (int i = 0; i < brackets.length; i++) {
+            brackets[i].add(other.brackets[i].sum());
+        }
+        other.domains.forEach((domain, count) -> domains.merge(domain, count, Long::sum));
+        return this;
+    }
+
+    /**
+     * Apply a repository change (previous is null for a create, current null for a delete)
+     */
+    public void changed(Person previous, Person current) {
+        if (previous == null) {
+            created.increment();
+        } else if (current == null) {
+            deleted.increment();
+        } else {
+            updated.increment();
+        }
+        if (previous != null) {
+            add(previous, -1);
+        }
+        if (current != null) {
+            add(current, 1);
+        }
+    }
+
+    private void add(Person person, int delta) {
+        total.add(delta);
+        brackets[bracket(person.getAge())].add(delta);
+        String domain = domain(person.getEmail());
+        if (domain == null) {
+            return;
+        }
+        if (delta > 0) {
+            domains.merge(domain, 1L, Long::sum);
+        } else {
+            domains.computeIfPresent(domain, (key, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    private static int bracket(int age) {
+        int bracket = 0;
+        while (bracket + 1 < BRACKET_STARTS.length && age >= BRACKET_STARTS[bracket + 1]) {
+            bracket++;
+        }
+        return bracket;
+    }
+
+    // Part after the last '@', lower-cased; null if there is none
+    private static String domain(String email) {
+        if (email == null) {
+            return null;
+        }
+        int at = email.lastIndexOf('@');
+        String domain = at < 0 ? "" : email.substring(at + 1).trim().toLowerCase(Locale.ROOT);
+        return domain.isEmpty() ? null : domain;
+    }
+
+    public RegistrationStats snapshot() {
+        return snapshot(DEFAULT_TOP_DOMAINS);
+    }
+
+    /**
+     * Current figures with the topDomains most common email domains
+     */
+    public RegistrationStats snapshot(int topDomains) {
+        List<RegistrationStats.Count> ages = new ArrayList<>(brackets.length);
+        for (int i = 0; i < brackets.length; i++) {
+            ages.add(new RegistrationStats.Count(BRACKET_LABELS[i], brackets[i].sum()));
+        }
+        return new RegistrationStats(total.sum(), created.sum(), updated.sum(), deleted.sum(), ages,
+                topDomains(topDomains));
+    }
+
+    // Bounded min-heap over the domains: the smallest of the best so far is the one to drop
+    private List<RegistrationStats.Count> topDomains(int limit) {
+        PriorityQueue<RegistrationStats.Count> best = new PriorityQueue<>(Math.max(1, limit + 1),
+                (a, b) -> a.getCount() != b.getCount()
+                        ? Long.compare(a.getCount(), b.getCount())
+                        : b.getLabel().compareTo(a.getLabel()));
+        for (Map.Entry<String, Long> entry : domains.entrySet()) {
+            best.add(new RegistrationStats.Count(entry.getKey(), entry.getValue()));
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+        List<RegistrationStats.Count> top = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            top.add(best.poll());
+        }
+        // Polled smallest first
+        Collections.reverse(top);
+        return top;
+    }
+}
@@ -0,0 +1,12 @@
+package template;
+
+/**
+ * A piece of a page that renders itself into a TemplateOutput, such as the rows of the people table. Generated
+ * templates take these for their {{{raw}}} placeholders so nested content is written straight into the page
+ * instead of being built up as a separate String first.
+ */
+@FunctionalInterface
+public interface Fragment {
+
+    void writeTo(TemplateOutput out);
+}
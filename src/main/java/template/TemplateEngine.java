@@ -0,0 +1,165 @@
+package template;
+
+import dto.ImportResult;
+import dto.RegistrationStats;
+import model.Person;
+import template.generated.ErrorTemplate;
+import template.generated.ImportErrorRowEmptyTemplate;
+import template.generated.ImportErrorRowTemplate;
+import template.generated.ImportResultTemplate;
+import template.generated.MessageTemplate;
+import template.generated.PersonDetailTemplate;
+import template.generated.PersonEditTemplate;
+import template.generated.PersonListTemplate;
+import template.generated.PersonRowEmptyTemplate;
+import template.generated.PersonRowTemplate;
+import template.generated.StatsRowEmptyTemplate;
+import template.generated.StatsRowTemplate;
+import template.generated.StatsTemplate;
+
+import java.util.List;
+
+/**
+ * Engine to render html of the various pages. Edit Button and Delete Button are provided on the table next to the
+ * records. The edit button will bring up a page to edit and save details. The delete button will delete the record.
+ *
+ * The pages themselves live in src/main/resources/templates and are compiled into the template.generated classes
+ * during the Maven build (see src/build/java/TemplateCompiler.java), so nothing is parsed at startup or per request.
+ * This class just supplies the values and nested fragments each page needs, writing into whatever TemplateOutput
+ * the caller provides (normally a pooled Utf8HtmlWriter).
+ */
+public class TemplateEngine {
+
+    public void renderPersonListPage(TemplateOutput out, List<Person> people, String errorMessage,
+                                     String successMessage) {
+        PersonListTemplate.render(out,
+                messages -> writeMessages(messages, errorMessage, successMessage),
+                rows -> writePeopleRows(rows, people));
+    }
+
+    public void renderPersonDetailPage(TemplateOutput out, Person person) {
+        if (person != null) {
+            PersonDetailTemplate.render(out, String.valueOf(person.getId()), person.getName(), person.getEmail(),
+                    String.valueOf(person.getAge()));
+        } else {
+            PersonDetailTemplate.render(out, "", "", "", "");
+        }
+    }
+
+    private void writeMessages(TemplateOutput out, String errorMessage, String successMessage) {
+        if (errorMessage != null && !errorMessage.trim().isEmpty()) {
+            MessageTemplate.render(out, "error", errorMessage);
+        }
+
+        if (successMessage != null && !successMessage.trim().isEmpty()) {
+            MessageTemplate.render(out, "success", successMessage);
+        }
+    }
+
+    private void writePeopleRows(TemplateOutput out, List<Person> people) {
+        if (people == null || people.isEmpty()) {
+            PersonRowEmptyTemplate.render(out);
+            return;
+        }
+
+        for (Person person : people) {
+            String id = String.valueOf(person.getId());
+            PersonRowTemplate.render(out, id, person.getName(), person.getEmail(), String.valueOf(person.getAge()),
+                    javaScriptString(person.getName()));
+        }
+    }
+
+    /**
+     * Escape text to sit inside a single- or double-quoted JavaScript string literal (the delete confirmation). The
+     * backslash goes first, otherwise a name ending in one would swallow the escape of the closing quote. The
+     * template still HTML-escapes the result for the attribute it is in.
+     */
+    static String javaScriptString(String text) {
+        StringBuilder escaped = new StringBuilder(text.length() + 8);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '\\' -> escaped.append("\\\\");
+                case '\'' -> escaped.append("\\'");
+                case '"' -> escaped.append("\\\"");
+                case '\n' -> escaped.append("\\n");
+                case '\r' -> escaped.append("\\r");
+                default -> {
+                    // Other control characters and the line separators that end a string literal in older engines
+                    if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+                        escaped.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        escaped.append(c);
+                    }
+                }
+            }
+        }
+        return escaped.toString();
+    }
+
+    // Create a form pre-populated with person's data for editing
+    public void renderEditPersonPage(TemplateOutput out, Person person) {
+        renderEditPersonPage(out, person, null);
+    }
+
+    // The version goes into a hidden field so the update can tell whether the person changed in the meantime
+    public void renderEditPersonPage(TemplateOutput out, Person person, String errorMessage) {
+        PersonEditTemplate.render(out,
+                messages -> writeMessages(messages, errorMessage, null),
+                person.getName(), String.valueOf(person.getId()), String.valueOf(person.getVersion()),
+                person.getEmail(), String.valueOf(person.getAge()));
+    }
+
+    public void renderImportResultPage(TemplateOutput out, ImportResult result) {
+        String successMessage = result.getImported() + " registration(s) imported";
+        String errorMessage = result.getAbortMessage() != null
+                ? "Import stopped early: " + result.getAbortMessage()
+                : null;
+        if (result.getRejected() > result.getErrors().size()) {
+            String omitted = "Only the first " + result.getErrors().size() + " of " + result.getRejected()
+                    + " rejected rows are listed";
+            errorMessage = errorMessage != null ? errorMessage + ". " + omitted : omitted;
+        }
+        String error = errorMessage;
+
+        ImportResultTemplate.render(out,
+                messages -> writeMessages(messages, error, successMessage),
+                String.valueOf(result.getImported()),
+                String.valueOf(result.getRejected()),
+                rows -> writeImportErrorRows(rows, result.getErrors()));
+    }
+
+    private void writeImportErrorRows(TemplateOutput out, List<ImportResult.RowError> errors) {
+        if (errors.isEmpty()) {
+            ImportErrorRowEmptyTemplate.render(out);
+            return;
+        }
+        for (ImportResult.RowError error : errors) {
+            ImportErrorRowTemplate.render(out, String.valueOf(error.getLine()), error.getMessage());
+        }
+    }
+
+    public void renderStatsPage(TemplateOutput out, RegistrationStats stats) {
+        StatsTemplate.render(out,
+                String.valueOf(stats.getTotal()),
+                String.valueOf(stats.getCreated()),
+                String.valueOf(stats.getUpdated()),
+                String.valueOf(stats.getDeleted()),
+                rows -> writeStatsRows(rows, stats.getAgeBrackets()),
+                rows -> writeStatsRows(rows, stats.getTopEmailDomains()));
+    }
+
+    private void writeStatsRows(TemplateOutput out, List<RegistrationStats.Count> counts) {
+        if (counts.isEmpty()) {
+            StatsRowEmptyTemplate.render(out);
+            return;
+        }
+        for (RegistrationStats.Count count : counts) {
+            StatsRowTemplate.render(out, count.getLabel(), String.valueOf(count.getCount()));
+        }
+    }
+
+    public void renderErrorPage(TemplateOutput out, String title, String message) {
+        ErrorTemplate.render(out, title, message);
+    }
+}
@@ -0,0 +1,28 @@
+package template;
+
+/**
+ * Destination for the generated template renderers (see template.generated). Static markup is written as-is, while
+ * model values go through writeText or writeAttribute so they are always HTML-escaped for the place they appear.
+ */
+public interface TemplateOutput {
+
+    /**
+     * Write trusted markup exactly as given
+     */
+    void write(String html);
+
+    /**
+     * Write trusted markup that has already been UTF-8 encoded (the static parts of compiled templates)
+     */
+    void write(byte[] html);
+
+    /**
+     * Write a value as element text, escaping it
+     */
+    void writeText(String text);
+
+    /**
+     * Write a value inside a quoted attribute, escaping it
+     */
+    void writeAttribute(String value);
+}
@@ -0,0 +1,195 @@
+package template;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Output buffer that pages are rendered into. Markup is encoded straight to UTF-8 bytes as it is written and model
+ * values are HTML-escaped in the same pass, so a response never exists as a String or needs a separate getBytes()
+ * copy. Pure ASCII text (almost all of our markup) takes a fast path that copies one byte per char.
+ *
+ * Writers are pooled per worker thread: acquire() hands out the thread's writer, the HttpResponse holds on to it
+ * while the response is sent, and release() gives it back for the next request on that thread.
+ */
+public class Utf8HtmlWriter implements TemplateOutput {
+
+    private static final int INITIAL_CAPACITY = 16 * 1024;
+
+    // Writers that grew past this (a huge list page) are not kept around after they are released
+    private static final int MAX_POOLED_CAPACITY = 1024 * 1024;
+
+    private static final ThreadLocal<Utf8HtmlWriter> POOL = new ThreadLocal<>();
+
+    private static final byte[] AMP = {'&', 'a', 'm', 'p', ';'};
+    private static final byte[] LT = {'&', 'l', 't', ';'};
+    private static final byte[] GT = {'&', 'g', 't', ';'};
+    private static final byte[] QUOT = {'&', 'q', 'u', 'o', 't', ';'};
+    private static final byte[] APOS = {'&', '#', 'x', '2', '7', ';'};
+
+    private byte[] buffer;
+    private int size;
+    private boolean inUse;
+
+    private Utf8HtmlWriter() {
+        this.buffer = new byte[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Get an empty writer, reusing this thread's pooled writer when it is free
+     */
+    public static Utf8HtmlWriter acquire() {
+        Utf8HtmlWriter writer = POOL.get();
+        if (writer == null || writer.inUse) {
+            writer = new Utf8HtmlWriter();
+            if (POOL.get() == null) {
+                POOL.set(writer);
+            }
+        }
+        writer.inUse = true;
+        writer.size = 0;
+        return writer;
+    }
+
+    /**
+     * Return the writer to its thread's pool. The contents must not be used afterwards.
+     */
+    public void release() {
+        inUse = false;
+        size = 0;
+        if (POOL.get() == this && buffer.length > MAX_POOLED_CAPACITY) {
+            POOL.remove();
+        }
+    }
+
+    @Override
+    public void write(String markup) {
+        if (markup == null) {
+            return;
+        }
+        int length = markup.length();
+        ensureCapacity(length);
+        // ASCII fast path; falls through to the full encoder at the first non-ASCII char
+        int i = 0;
+        byte[] buf = buffer;
+        int pos = size;
+        for (; i < length; i++) {
+            char c = markup.charAt(i);
+            if (c >= 0x80) {
+                break;
+            }
+            buf[pos++] = (byte) c;
+        }
+        size = pos;
+        for (; i < length; i++) {
+            i = encode(markup, i);
+        }
+    }
+
+    @Override
+    public void write(byte[] bytes) {
+        append(bytes);
+    }
+
+    @Override
+    public void writeText(String text) {
+        escape(text, false);
+    }
+
+    @Override
+    public void writeAttribute(String value) {
+        escape(value, true);
+    }
+
+    private void escape(String text, boolean attribute) {
+        if (text == null) {
+            return;
+        }
+        int length = text.length();
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&' -> append(AMP);
+                case '<' -> append(LT);
+                case '>' -> append(GT);
+                case '"' -> {
+                    if (attribute) {
+                        append(QUOT);
+                    } else {
+                        appendByte(c);
+                    }
+                }
+                case '\'' -> {
+                    if (attribute) {
+                        append(APOS);
+                    } else {
+                        appendByte(c);
+                    }
+                }
+                default -> {
+                    if (c < 0x80) {
+                        appendByte(c);
+                    } else {
+                        i = encode(text, i);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Encode the non-ASCII char at index i (plus its low surrogate, if any) and return the last index consumed
+     */
+    private int encode(String text, int i) {
+        ensureCapacity(4);
+        char c = text.charAt(i);
+        if (c < 0x80) {
+            buffer[size++] = (byte) c;
+        } else if (c < 0x800) {
+            buffer[size++] = (byte) (0xC0 | (c >> 6));
+            buffer[size++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                && Character.isLowSurrogate(text.charAt(i + 1))) {
+            int codePoint = Character.toCodePoint(c, text.charAt(i + 1));
+            buffer[size++] = (byte) (0xF0 | (codePoint >> 18));
+            buffer[size++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+            buffer[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+            buffer[size++] = (byte) (0x80 | (codePoint & 0x3F));
+            return i + 1;
+        } else if (Character.isSurrogate(c)) {
+            // Unpaired surrogate, same replacement String.getBytes(UTF_8) uses
+            buffer[size++] = '?';
+        } else {
+            buffer[size++] = (byte) (0xE0 | (c >> 12));
+            buffer[size++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            buffer[size++] = (byte) (0x80 | (c & 0x3F));
+        }
+        return i;
+    }
+
+    private void append(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, size, bytes.length);
+        size += bytes.length;
+    }
+
+    private void appendByte(char c) {
+        ensureCapacity(1);
+        buffer[size++] = (byte) c;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buffer, 0, size);
+    }
+}
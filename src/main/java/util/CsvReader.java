@@ -0,0 +1,141 @@
+package util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads CSV (RFC 4180) one record at a time from a Reader, so an upload of any size is parsed while it arrives and only
+ * the current record is held in memory. Fields may be quoted; inside quotes "" is a literal quote and commas and line
+ * breaks are part of the field. Records end at LF or CRLF. Blank lines are skipped.
+ */
+public class CsvReader {
+
+    // A record longer than this is rejected instead of being buffered without limit
+    public static final int MAX_RECORD_LENGTH = 64 * 1024;
+
+    private final Reader in;
+    private final char[] buffer = new char[8192];
+    private int position;
+    private int limit;
+
+    private final StringBuilder field = new StringBuilder();
+    private int recordLength;
+    private int line = 1;
+    private int recordLine;
+
+    public CsvReader(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * The fields of the next record, or null at the end of the input.
+     * Throws IllegalArgumentException if the record is longer than MAX_RECORD_LENGTH or a quote is never closed.
+     */
+    public List<String> next() throws IOException {
+        List<String> fields = new ArrayList<>();
+        field.setLength(0);
+        recordLength = 0;
+        recordLine = line;
+        boolean quoted = false;
+        boolean afterQuote = false;
+        boolean any = false;
+
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                if (quoted) {
+                    throw new IllegalArgumentException("Line " + recordLine + ": unterminated quoted field");
+                }
+                if (!any) {
+                    return null;
+                }
+                fields.add(field.toString());
+                return fields;
+            }
+
+            if (quoted) {
+                if (c == '"') {
+                    if (peek() == '"') {
+                        read();
+                        append('"');
+                    } else {
+                        quoted = false;
+                        afterQuote = true;
+                    }
+                } else {
+                    if (c == '\n') {
+                        line++;
+                    }
+                    append((char) c);
+                }
+                continue;
+            }
+
+            if (c == '\r' && peek() == '\n') {
+                continue;
+            }
+            if (c == '\n') {
+                line++;
+                if (!any) {
+                    // Blank line
+                    recordLine = line;
+                    continue;
+                }
+                fields.add(field.toString());
+                return fields;
+            }
+
+            any = true;
+            if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+                afterQuote = false;
+            } else if (c == '"' && field.length() == 0 && !afterQuote) {
+                quoted = true;
+            } else {
+                append((char) c);
+            }
+        }
+    }
+
+    /**
+     * Line number (1-based) where the record last returned by next() started
+     */
+    public int getRecordLine() {
+        return recordLine;
+    }
+
+    private void append(char c) {
+        if (++recordLength > MAX_RECORD_LENGTH) {
+            throw new IllegalArgumentException("Line " + recordLine + ": record is longer than "
+                    + MAX_RECORD_LENGTH + " characters");
+        }
+        field.append(c);
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++];
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    private boolean fill() throws IOException {
+        int read = in.read(buffer, 0, buffer.length);
+        if (read <= 0) {
+            return false;
+        }
+        position = 0;
+        limit = read;
+        return true;
+    }
+}
@@ -46,94 +46,41 @@ public class FormParser {
     }
 
     /**
-     * Convert form data map into a PersonDTO object
+     * Convert form data map into a PersonDTO object, checked by the PersonFields rules
      *
      * Expected form fields:
      * name: Person's full name
      * email: Person's email address
      * age: Person's age as integer
+     * version: only sent by the edit form (hidden field)
      */
     public static PersonDTO createPersonDTOFromForm(Map<String, String> formData) {
-        PersonDTO personDTO = new PersonDTO();
-
-        String name = formData.get("name");
-        if (name == null) {
-            throw new IllegalArgumentException("Name field is required");
-        }
-        name = name.trim();
-        if (name.isEmpty()) {
-            throw new IllegalArgumentException("Name cannot be empty");
-        }
-        if (name.length() > 100) {
-            throw new IllegalArgumentException("Name cannot be longer than 100 characters");
-        }
-        personDTO.setName(name);
-
-        String email = formData.get("email");
-        if (email == null) {
-            throw new IllegalArgumentException("Email field is required");
-        }
-        email = email.trim();
-        if (email.isEmpty()) {
-            throw new IllegalArgumentException("Email cannot be empty");
-        }
-        if (email.length() > 100) {
-            throw new IllegalArgumentException("Email cannot be longer than 100 characters");
-        }
-        if (!email.contains("@") || !email.contains(".")) {
-            throw new IllegalArgumentException("Email must be a valid email address");
-        }
-        personDTO.setEmail(email);
-
-        String ageStr = formData.get("age");
-        if (ageStr == null) {
-            throw new IllegalArgumentException("Age field is required");
-        }
-        ageStr = ageStr.trim();
-        if (ageStr.isEmpty()) {
-            throw new IllegalArgumentException("Age cannot be empty");
-        }
-
-        try {
-            int age = Integer.parseInt(ageStr);
-            if (age < 1) {
-                throw new IllegalArgumentException("Age must be at least 1");
-            }
-            if (age > 150) {
-                throw new IllegalArgumentException("Age cannot be greater than 150");
-            }
-            personDTO.setAge(age);
-        } catch (NumberFormatException e) {
-            throw new IllegalArgumentException("Age must be a valid number");
-        }
-
-        return personDTO;
+        return PersonFields.toPersonDTO(formData.get("name"), formData.get("email"), formData.get("age"),
+                formData.get("version"));
     }
 
+    /**
+     * Convert form data map into a PersonDTO, leaving out every field that breaks a PersonFields rule instead of
+     * rejecting the form
+     */
     public static PersonDTO createPersonDTOFromFormLenient(Map<String, String> formData) {
         PersonDTO personDTO = new PersonDTO();
 
         String name = formData.get("name");
-        if (name != null && !name.trim().isEmpty()) {
-            name = name.trim();
-            if (name.length() <= 100) {
-                personDTO.setName(name);
-            }
+        if (name != null && PersonFields.checkName(name.trim()) == null) {
+            personDTO.setName(name.trim());
         }
 
         String email = formData.get("email");
-        if (email != null && !email.trim().isEmpty()) {
-            email = email.trim();
-            if (email.length() <= 100 && email.contains("@") && email.contains(".")) {
-                personDTO.setEmail(email);
-            }
+        if (email != null && PersonFields.checkEmail(email.trim()) == null) {
+            personDTO.setEmail(email.trim());
         }
 
         String ageStr = formData.get("age");
-        if (ageStr != null && !ageStr.trim().isEmpty()) {
+        if (ageStr != null) {
             try {
                 int age = Integer.parseInt(ageStr.trim());
-                if (age >= 1 && age <= 150) {
+                if (PersonFields.checkAge(age) == null) {
                     personDTO.setAge(age);
                 }
             } catch (NumberFormatException e) {
@@ -0,0 +1,108 @@
+package util;
+
+import dto.RegistrationStats;
+import model.Person;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * The little bit of JSON the app writes by hand (exports, the change feed, the stats route): people, registration
+ * stats and quoted, escaped strings.
+ */
+public class JsonWriter {
+
+    /**
+     * Write {"id":..,"name":..,"email":..,"age":..,"version":..}
+     */
+    public static void writePerson(Writer out, Person person) throws IOException {
+        out.write("{\"id\":");
+        out.write(Integer.toString(person.getId()));
+        out.write(",\"name\":");
+        writeString(out, person.getName());
+        out.write(",\"email\":");
+        writeString(out, person.getEmail());
+        out.write(",\"age\":");
+        out.write(Integer.toString(person.getAge()));
+        out.write(",\"version\":");
+        out.write(Integer.toString(person.getVersion()));
+        out.write('}');
+    }
+
+    /**
+     * Write {"total":..,"created":..,"updated":..,"deleted":..,"ageBrackets":[{"label":..,"count":..},..],
+     * "topEmailDomains":[{"domain":..,"count":..},..]}
+     */
+    public static void writeStats(Writer out, RegistrationStats stats) throws IOException {
+        out.write("{\"total\":");
+        out.write(Long.toString(stats.getTotal()));
+        out.write(",\"created\":");
+        out.write(Long.toString(stats.getCreated()));
+        out.write(",\"updated\":");
+        out.write(Long.toString(stats.getUpdated()));
+        out.write(",\"deleted\":");
+        out.write(Long.toString(stats.getDeleted()));
+        out.write(",\"ageBrackets\":");
+        writeCounts(out, stats.getAgeBrackets(), "label");
+        out.write(",\"topEmailDomains\":");
+        writeCounts(out, stats.getTopEmailDomains(), "domain");
+        out.write('}');
+    }
+
+    private static void writeCounts(Writer out, List<RegistrationStats.Count> counts, String labelName)
+            throws IOException {
+        out.write('[');
+        for (int i = 0; i < counts.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            out.write("{\"");
+            out.write(labelName);
+            out.write("\":");
+            writeString(out, counts.get(i).getLabel());
+            out.write(",\"count\":");
+            out.write(Long.toString(counts.get(i).getCount()));
+            out.write('}');
+        }
+        out.write(']');
+    }
+
+    /**
+     * Write value as a JSON string literal, or null
+     */
+    public static void writeString(Writer out, String value) throws IOException {
+        if (value == null) {
+            out.write("null");
+            return;
+        }
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.write("\\\"");
+                    break;
+                case '\\':
+                    out.write("\\\\");
+                    break;
+                case '\n':
+                    out.write("\\n");
+                    break;
+                case '\r':
+                    out.write("\\r");
+                    break;
+                case '\t':
+                    out.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.write(c);
+                    }
+            }
+        }
+        out.write('"');
+    }
+}
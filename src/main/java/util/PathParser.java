@@ -34,6 +34,11 @@ public class PathParser {
      * - "/person"                  → PathInfo{resource="person", action="index", id=null}
      * - "/person/"                 → PathInfo{resource="person", action="index", id=null}
      * - "/person/create/"          → PathInfo{resource="person", action="create", id=null}
+     * - "/person/search?name=Al"   → PathInfo{resource="person", action="search", id=null} (query is in HttpRequest)
+     * - "/person/import"           → PathInfo{resource="person", action="import", id=null} (CSV upload)
+     * - "/person/export?format=csv" → PathInfo{resource="person", action="export", id=null} (CSV / NDJSON download)
+     * - "/person/events"           → PathInfo{resource="person", action="events", id=null} (live change feed)
+     * - "/person/stats?format=json" → PathInfo{resource="person", action="stats", id=null} (HTML page or JSON)
      * - "/person/delete/1"       → PathInfo{resource="person", action="delete", id=1}
      * - "/person/update/2"       → PathInfo{resource="person", action="update", id=2}
      * - "/person/2"              → PathInfo{resource="person", action="show", id=2}
@@ -73,6 +78,16 @@ public class PathParser {
             switch (second) {
                 case "create":
                     return new PathInfo(resource, "create", null);
+                case "search":
+                    return new PathInfo(resource, "search", null);
+                case "import":
+                    return new PathInfo(resource, "import", null);
+                case "export":
+                    return new PathInfo(resource, "export", null);
+                case "events":
+                    return new PathInfo(resource, "events", null);
+                case "stats":
+                    return new PathInfo(resource, "stats", null);
                 case "index":
                 case "list":
                     return new PathInfo(resource, "index", null);
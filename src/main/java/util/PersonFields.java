@@ -0,0 +1,125 @@
+package util;
+
+import dto.PersonDTO;
+
+/**
+ * The rules for a person's fields and the message for each way a field can be wrong, in one place for every way a
+ * person comes in: the create and edit forms (PersonFormDecoder) and CSV import rows and other decoded maps
+ * (FormParser.createPersonDTOFromForm). Fields are checked in the order name, email, age, version, and only the
+ * first problem is reported.
+ *
+ * Each check takes the value as sent, already trimmed (null if the field was not sent at all), and returns null if
+ * it is fine, otherwise the message to show.
+ */
+public final class PersonFields {
+
+    public static final int MAX_LENGTH = 100;
+    public static final int MIN_AGE = 1;
+    public static final int MAX_AGE = 150;
+
+    static final String NAME_REQUIRED = "Name field is required";
+    static final String NAME_EMPTY = "Name cannot be empty";
+    static final String NAME_TOO_LONG = "Name cannot be longer than " + MAX_LENGTH + " characters";
+    static final String EMAIL_REQUIRED = "Email field is required";
+    static final String EMAIL_EMPTY = "Email cannot be empty";
+    static final String EMAIL_TOO_LONG = "Email cannot be longer than " + MAX_LENGTH + " characters";
+    static final String EMAIL_INVALID = "Email must be a valid email address";
+    static final String AGE_REQUIRED = "Age field is required";
+    static final String AGE_EMPTY = "Age cannot be empty";
+    static final String AGE_TOO_LOW = "Age must be at least " + MIN_AGE;
+    static final String AGE_TOO_HIGH = "Age cannot be greater than " + MAX_AGE;
+    static final String AGE_NOT_A_NUMBER = "Age must be a valid number";
+    static final String VERSION_TOO_LOW = "Version must be at least 1";
+    static final String VERSION_NOT_A_NUMBER = "Version must be a valid number";
+
+    private PersonFields() {
+    }
+
+    static String checkName(String name) {
+        if (name == null) {
+            return NAME_REQUIRED;
+        }
+        if (name.isEmpty()) {
+            return NAME_EMPTY;
+        }
+        return name.length() > MAX_LENGTH ? NAME_TOO_LONG : null;
+    }
+
+    static String checkEmail(String email) {
+        if (email == null) {
+            return EMAIL_REQUIRED;
+        }
+        if (email.isEmpty()) {
+            return EMAIL_EMPTY;
+        }
+        if (email.length() > MAX_LENGTH) {
+            return EMAIL_TOO_LONG;
+        }
+        return email.indexOf('@') < 0 || email.indexOf('.') < 0 ? EMAIL_INVALID : null;
+    }
+
+    /**
+     * Range of an age that was sent and is a number; AGE_REQUIRED, AGE_EMPTY and AGE_NOT_A_NUMBER cover the rest
+     */
+    static String checkAge(int age) {
+        if (age < MIN_AGE) {
+            return AGE_TOO_LOW;
+        }
+        return age > MAX_AGE ? AGE_TOO_HIGH : null;
+    }
+
+    /**
+     * Range of a version that was sent and is a number; an empty or missing version means a new person
+     */
+    static String checkVersion(int version) {
+        return version < 1 ? VERSION_TOO_LOW : null;
+    }
+
+    /**
+     * A PersonDTO from the text of each field (null for one that was not sent), trimmed and checked. Throws
+     * IllegalArgumentException with the message of the first field that is wrong.
+     */
+    public static PersonDTO toPersonDTO(String name, String email, String age, String version) {
+        name = name == null ? null : name.trim();
+        require(checkName(name));
+        email = email == null ? null : email.trim();
+        require(checkEmail(email));
+
+        if (age == null) {
+            throw new IllegalArgumentException(AGE_REQUIRED);
+        }
+        age = age.trim();
+        if (age.isEmpty()) {
+            throw new IllegalArgumentException(AGE_EMPTY);
+        }
+        int ageValue = parse(age, AGE_NOT_A_NUMBER);
+        require(checkAge(ageValue));
+
+        int versionValue = 0;
+        if (version != null && !version.trim().isEmpty()) {
+            versionValue = parse(version.trim(), VERSION_NOT_A_NUMBER);
+            require(checkVersion(versionValue));
+        }
+
+        PersonDTO personDTO = new PersonDTO();
+        personDTO.setName(name);
+        personDTO.setEmail(email);
+        personDTO.setAge(ageValue);
+        personDTO.setVersion(versionValue);
+        return personDTO;
+    }
+
+    private static void require(String message) {
+        if (message != null) {
+            throw new IllegalArgumentException(message);
+        }
+    }
+
+    private static int parse(String number, String message) {
+        try {
+            return Integer.parseInt(number);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(message);
+        }
+    }
+}
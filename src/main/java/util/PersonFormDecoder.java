@@ -0,0 +1,394 @@
+package util;
+
+import dto.PersonDTO;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decodes a URL-encoded person form (name, email, age and the optional version) straight from the raw body bytes into
+ * a PersonDTO, checked by the same PersonFields rules and giving the same DTO or message as
+ * FormParser.createPersonDTOFromForm(FormParser.parseFormData(body)), but without the split arrays, the decoded
+ * map and the exceptions:
+ * - one pass over the bytes finds every pair and remembers where the last value of each known field is (like the
+ *   map, a repeated field keeps its last value); other fields are skipped without being decoded,
+ * - only those values are then percent-decoded into a per-thread scratch buffer, trimmed there and turned into the
+ *   one String the DTO keeps; age and version are parsed from the buffer without a String,
+ * - a validation failure is returned as a Result holding the message, never thrown.
+ *
+ * Browsers percent-encode everything outside ASCII, so that is the path taken. A pair that does contain raw non-ASCII
+ * bytes is decoded the way FormParser does it (as text, through URLDecoder), which keeps the two in agreement on
+ * every input. So does the rest of FormParser's behaviour: '+' is a space, an escape is '%' and two characters that
+ * Integer.parseInt accepts as a hex number from 0 to 255, consecutive escapes are decoded together as UTF-8, and a
+ * pair with a malformed escape in its key or value is taken literally.
+ */
+public final class PersonFormDecoder {
+
+    /**
+     * The decoded form, or why it was rejected
+     */
+    public static final class Result {
+        private final PersonDTO personDTO;
+        private final String errorMessage;
+
+        private Result(PersonDTO personDTO, String errorMessage) {
+            this.personDTO = personDTO;
+            this.errorMessage = errorMessage;
+        }
+
+        public boolean isValid() { return errorMessage == null; }
+        /**
+         * The decoded form; null if it was rejected
+         */
+        public PersonDTO getPersonDTO() { return personDTO; }
+        /**
+         * Why the form was rejected (a PersonFields message); null if it is valid
+         */
+        public String getErrorMessage() { return errorMessage; }
+    }
+
+    private static final String[] FIELDS = {"name", "email", "age", "version"};
+    private static final byte[][] FIELD_NAMES = new byte[FIELDS.length][];
+    static {
+        for (int i = 0; i < FIELDS.length; i++) {
+            FIELD_NAMES[i] = FIELDS[i].getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+    private static final int NAME = 0;
+    private static final int EMAIL = 1;
+    private static final int AGE = 2;
+    private static final int VERSION = 3;
+
+    // Returned by the number parsers for anything Integer.parseInt would reject
+    private static final long NOT_A_NUMBER = Long.MIN_VALUE;
+
+    /**
+     * Per-thread working state, so decoding allocates nothing but the DTO, its strings and the Result
+     */
+    private static final class Scratch {
+        // Per field: where the last value is in the body (start -1 if the field was not sent), whether it is taken
+        // literally, or its already decoded text (text != null) for a pair decoded the FormParser way
+        final int[] start = new int[FIELD_NAMES.length];
+        final int[] end = new int[FIELD_NAMES.length];
+        final boolean[] literal = new boolean[FIELD_NAMES.length];
+        final String[] text = new String[FIELD_NAMES.length];
+        byte[] decoded = new byte[256];
+        // Trimmed part of decoded, set by decodeValue
+        int from;
+        int to;
+
+        void reset() {
+            for (int i = 0; i < start.length; i++) {
+                start[i] = -1;
+                text[i] = null;
+            }
+        }
+    }
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private PersonFormDecoder() {
+    }
+
+    private static Result invalid(String message) {
+        return new Result(null, message);
+    }
+
+    public static Result decode(byte[] body) {
+        return decode(body, 0, body == null ? 0 : body.length);
+    }
+
+    /**
+     * Decode and validate the form in body[offset, offset + length)
+     */
+    public static Result decode(byte[] body, int offset, int length) {
+        Scratch scratch = SCRATCH.get();
+        scratch.reset();
+        if (body != null) {
+            findFields(body, offset, offset + length, scratch);
+        }
+
+        String name = isPresent(scratch, NAME) ? decodeString(body, scratch, NAME) : null;
+        String message = PersonFields.checkName(name);
+        if (message != null) {
+            return invalid(message);
+        }
+
+        String email = isPresent(scratch, EMAIL) ? decodeString(body, scratch, EMAIL) : null;
+        message = PersonFields.checkEmail(email);
+        if (message != null) {
+            return invalid(message);
+        }
+
+        if (!isPresent(scratch, AGE)) {
+            return invalid(PersonFields.AGE_REQUIRED);
+        }
+        long age = decodeNumber(body, scratch, AGE);
+        if (scratch.from == scratch.to) {
+            return invalid(PersonFields.AGE_EMPTY);
+        }
+        if (age == NOT_A_NUMBER) {
+            return invalid(PersonFields.AGE_NOT_A_NUMBER);
+        }
+        message = PersonFields.checkAge((int) age);
+        if (message != null) {
+            return invalid(message);
+        }
+
+        // Only the edit form sends a version (hidden field); 0 if it did not
+        long version = 0;
+        if (isPresent(scratch, VERSION)) {
+            version = decodeNumber(body, scratch, VERSION);
+            if (scratch.from == scratch.to) {
+                version = 0;
+            } else if (version == NOT_A_NUMBER) {
+                return invalid(PersonFields.VERSION_NOT_A_NUMBER);
+            } else {
+                message = PersonFields.checkVersion((int) version);
+                if (message != null) {
+                    return invalid(message);
+                }
+            }
+        }
+
+        PersonDTO personDTO = new PersonDTO();
+        personDTO.setName(name);
+        personDTO.setEmail(email);
+        personDTO.setAge((int) age);
+        personDTO.setVersion((int) version);
+        return new Result(personDTO, null);
+    }
+
+    private static boolean isPresent(Scratch scratch, int field) {
+        return scratch.text[field] != null || scratch.start[field] >= 0;
+    }
+
+    // Split at '&' and at the first '=' of each pair, the way FormParser.parseFormData does
+    private static void findFields(byte[] body, int offset, int end, Scratch scratch) {
+        int pairStart = offset;
+        while (pairStart < end) {
+            int pairEnd = indexOf(body, (byte) '&', pairStart, end);
+            if (pairEnd > pairStart) {
+                if (isAscii(body, pairStart, pairEnd)) {
+                    findField(body, pairStart, pairEnd, scratch);
+                } else {
+                    findFieldAsText(new String(body, pairStart, pairEnd - pairStart, StandardCharsets.UTF_8),
+                            scratch);
+                }
+            }
+            pairStart = pairEnd + 1;
+        }
+    }
+
+    private static void findField(byte[] body, int pairStart, int pairEnd, Scratch scratch) {
+        int equals = indexOf(body, (byte) '=', pairStart, pairEnd);
+        int keyEnd = equals < pairEnd ? equals : pairEnd;
+        int valueStart = equals < pairEnd ? equals + 1 : pairEnd;
+        // FormParser keeps both key and value undecoded if either has a malformed escape
+        boolean literal = !isWellFormed(body, pairStart, keyEnd) || !isWellFormed(body, valueStart, pairEnd);
+        for (int field = 0; field < FIELD_NAMES.length; field++) {
+            if (keyEquals(body, pairStart, keyEnd, literal, FIELD_NAMES[field])) {
+                scratch.start[field] = valueStart;
+                scratch.end[field] = pairEnd;
+                scratch.literal[field] = literal;
+                scratch.text[field] = null;
+                return;
+            }
+        }
+    }
+
+    // A pair with raw non-ASCII bytes, handled exactly as FormParser.parseFormData handles a pair
+    private static void findFieldAsText(String pair, Scratch scratch) {
+        String[] keyValue = pair.split("=", 2);
+        String key;
+        String value;
+        try {
+            key = URLDecoder.decode(keyValue[0], StandardCharsets.UTF_8);
+            value = keyValue.length == 2 ? URLDecoder.decode(keyValue[1], StandardCharsets.UTF_8) : "";
+        } catch (Exception e) {
+            key = keyValue[0];
+            value = keyValue.length == 2 ? keyValue[1] : "";
+        }
+        for (int field = 0; field < FIELD_NAMES.length; field++) {
+            if (key.equals(FIELDS[field])) {
+                scratch.text[field] = value;
+                scratch.start[field] = -1;
+                return;
+            }
+        }
+    }
+
+    // Compares the key as decoded (or literally) with an ASCII field name, decoding as it goes
+    private static boolean keyEquals(byte[] body, int from, int to, boolean literal, byte[] name) {
+        int matched = 0;
+        int i = from;
+        while (i < to) {
+            int b;
+            if (literal) {
+                b = body[i++];
+            } else if (body[i] == '%') {
+                b = hexByte(body[i + 1], body[i + 2]);
+                i += 3;
+            } else {
+                b = body[i] == '+' ? ' ' : body[i];
+                i++;
+            }
+            if (matched == name.length || name[matched] != b) {
+                return false;
+            }
+            matched++;
+        }
+        return matched == name.length;
+    }
+
+    /**
+     * The field's value, decoded and trimmed
+     */
+    private static String decodeString(byte[] body, Scratch scratch, int field) {
+        String text = scratch.text[field];
+        if (text != null) {
+            return text.trim();
+        }
+        decodeValue(body, scratch, field);
+        byte[] decoded = scratch.decoded;
+        return isAscii(decoded, scratch.from, scratch.to)
+                ? new String(decoded, scratch.from, scratch.to - scratch.from, StandardCharsets.ISO_8859_1)
+                : new String(decoded, scratch.from, scratch.to - scratch.from, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The field's value as Integer.parseInt would read it once decoded and trimmed, or NOT_A_NUMBER.
+     * scratch.from == scratch.to afterwards if the trimmed value is empty.
+     */
+    private static long decodeNumber(byte[] body, Scratch scratch, int field) {
+        String text = scratch.text[field];
+        if (text == null) {
+            decodeValue(body, scratch, field);
+            if (isAscii(scratch.decoded, scratch.from, scratch.to)) {
+                return parseInt(scratch.decoded, scratch.from, scratch.to);
+            }
+            // Integer.parseInt also takes non-ASCII digits, which are not worth parsing by hand
+            text = new String(scratch.decoded, scratch.from, scratch.to - scratch.from, StandardCharsets.UTF_8);
+        }
+        text = text.trim();
+        scratch.from = 0;
+        scratch.to = text.length();
+        try {
+            return Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            return NOT_A_NUMBER;
+        }
+    }
+
+    // Percent-decode the field's value into scratch.decoded and trim it there (to [scratch.from, scratch.to))
+    private static void decodeValue(byte[] body, Scratch scratch, int field) {
+        int from = scratch.start[field];
+        int to = scratch.end[field];
+        if (scratch.decoded.length < to - from) {
+            scratch.decoded = new byte[Math.max(to - from, 2 * scratch.decoded.length)];
+        }
+        byte[] decoded = scratch.decoded;
+        int length = 0;
+        if (scratch.literal[field]) {
+            System.arraycopy(body, from, decoded, 0, to - from);
+            length = to - from;
+        } else {
+            int i = from;
+            while (i < to) {
+                byte b = body[i];
+                if (b == '%') {
+                    decoded[length++] = (byte) hexByte(body[i + 1], body[i + 2]);
+                    i += 3;
+                } else {
+                    decoded[length++] = b == '+' ? (byte) ' ' : b;
+                    i++;
+                }
+            }
+        }
+        // String.trim() drops chars <= ' ', which after UTF-8 decoding are exactly the bytes <= ' '
+        int start = 0;
+        while (start < length && (decoded[start] & 0xff) <= ' ') {
+            start++;
+        }
+        while (length > start && (decoded[length - 1] & 0xff) <= ' ') {
+            length--;
+        }
+        scratch.from = start;
+        scratch.to = length;
+    }
+
+    // Every '%' is followed by two characters URLDecoder accepts (see hexByte)
+    private static boolean isWellFormed(byte[] body, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (body[i] == '%') {
+                if (i + 2 >= to || hexByte(body[i + 1], body[i + 2]) < 0) {
+                    return false;
+                }
+                i += 2;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The byte an escape stands for, or -1 if URLDecoder rejects it. URLDecoder reads the two characters with
+     * Integer.parseInt(s, 16), so a leading '+' is allowed, and '-' only in "-0".
+     */
+    private static int hexByte(byte first, byte second) {
+        int low = Character.digit(second, 16);
+        if (low < 0) {
+            return -1;
+        }
+        if (first == '+') {
+            return low;
+        }
+        if (first == '-') {
+            return low == 0 ? 0 : -1;
+        }
+        int high = Character.digit(first, 16);
+        return high < 0 ? -1 : high << 4 | low;
+    }
+
+    // Integer.parseInt over ASCII bytes
+    private static long parseInt(byte[] bytes, int from, int to) {
+        if (from == to) {
+            return NOT_A_NUMBER;
+        }
+        boolean negative = bytes[from] == '-';
+        int i = bytes[from] == '-' || bytes[from] == '+' ? from + 1 : from;
+        if (i == to) {
+            return NOT_A_NUMBER;
+        }
+        long value = 0;
+        for (; i < to; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return NOT_A_NUMBER;
+            }
+            value = value * 10 + digit;
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                return NOT_A_NUMBER;
+            }
+        }
+        value = negative ? -value : value;
+        return value < Integer.MIN_VALUE || value > Integer.MAX_VALUE ? NOT_A_NUMBER : value;
+    }
+
+    private static int indexOf(byte[] bytes, byte b, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == b) {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    private static boolean isAscii(byte[] bytes, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (bytes[i] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
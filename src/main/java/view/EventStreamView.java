@@ -0,0 +1,93 @@
+package view;
+
+import http.HttpResponse;
+import service.ChangeFeed;
+import util.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Streams a ChangeFeed subscription as Server-Sent Events. Each change is sent as
+ *   id: <event id>        (the browser sends it back as Last-Event-ID when it reconnects)
+ *   event: created | updated | deleted
+ *   data: {"id":..,"name":..,"email":..,"age":..,"version":..}   (just {"id":..} for deleted)
+ * An "event: reset" tells the page it missed changes and should reload the whole list. A comment line goes out
+ * every HEARTBEAT_MILLIS when nothing happens, which also notices clients that have gone away.
+ *
+ * The subscription is closed when the response is released, so its slot is freed even if the client goes away before
+ * the stream starts.
+ *
+ * Without a subscription (the feed is full) the answer is 503 with Retry-After. EventSource gives up on a 503, so
+ * that page simply goes without live updates instead of retrying every few seconds.
+ */
+public class EventStreamView implements View {
+
+    private static final long HEARTBEAT_MILLIS = 10_000;
+    private static final int MAX_EVENTS_PER_WRITE = 256;
+    private static final int RECONNECT_MILLIS = 3_000;
+    private static final String RESET = "event: reset\ndata: {}\n\n";
+    private static final int BUSY_RETRY_SECONDS = 30;
+
+    @Override
+    public HttpResponse render(Map<String, Object> model) {
+        ChangeFeed feed = (ChangeFeed) model.get("changeFeed");
+        ChangeFeed.Subscription subscription = (ChangeFeed.Subscription) model.get("subscription");
+        if (subscription == null) {
+            HttpResponse busy = new HttpResponse(503, "Service Unavailable");
+            busy.addHeader("Retry-After", String.valueOf(BUSY_RETRY_SECONDS));
+            busy.setBody("<html><body><h1>503 Service Unavailable</h1><p>Too many live update subscribers; please try "
+                    + "again in " + BUSY_RETRY_SECONDS + " seconds</p></body></html>");
+            return busy;
+        }
+
+        HttpResponse response = new HttpResponse(200, "OK");
+        response.addHeader("Content-Type", "text/event-stream; charset=UTF-8");
+        response.addHeader("Cache-Control", "no-cache");
+        response.closeOnRelease(subscription);
+        response.setStreamingBody(out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 4096);
+            writer.write("retry: " + RECONNECT_MILLIS + "\n\n");
+            if (subscription.missedEvents()) {
+                // Resumed from an event id the feed no longer has
+                writer.write(RESET);
+            }
+            writer.flush();
+
+            List<ChangeFeed.Event> events;
+            while ((events = subscription.poll(MAX_EVENTS_PER_WRITE, HEARTBEAT_MILLIS)) != null) {
+                if (subscription.missedEvents()) {
+                    writer.write(RESET);
+                }
+                if (events.isEmpty()) {
+                    writer.write(": keep-alive\n\n");
+                }
+                for (ChangeFeed.Event event : events) {
+                    writeEvent(writer, feed, event);
+                }
+                writer.flush();
+            }
+        }, false);
+        return response;
+    }
+
+    private static void writeEvent(Writer out, ChangeFeed feed, ChangeFeed.Event event) throws IOException {
+        out.write("id: ");
+        out.write(feed.eventId(event));
+        out.write("\nevent: ");
+        out.write(event.getType().name().toLowerCase(Locale.ROOT));
+        out.write("\ndata: ");
+        if (event.getPerson() != null) {
+            JsonWriter.writePerson(out, event.getPerson());
+        } else {
+            out.write("{\"id\":" + event.getPersonId() + "}");
+        }
+        out.write("\n\n");
+    }
+}
@@ -0,0 +1,94 @@
+package view;
+
+import http.HttpResponse;
+import model.Person;
+import util.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the whole registration list as a download, either CSV (id,name,email,age with a header row, RFC 4180
+ * quoting) or NDJSON (one JSON object per line). The people list is one consistent version handed over by the
+ * controller; rows are formatted straight into the chunked response while it is sent, so nothing but the current
+ * row and the output buffers is held in memory.
+ */
+public class ExportView implements View {
+
+    public static final String CSV = "csv";
+    public static final String NDJSON = "ndjson";
+
+    @Override
+    public HttpResponse render(Map<String, Object> model) {
+        @SuppressWarnings("unchecked")
+        List<Person> people = (List<Person>) model.get("people");
+        String format = (String) model.getOrDefault("format", CSV);
+        boolean gzip = Boolean.TRUE.equals(model.get("gzip"));
+        boolean ndjson = NDJSON.equals(format);
+
+        HttpResponse response = new HttpResponse(200, "OK");
+        response.addHeader("Content-Type", ndjson ? "application/x-ndjson; charset=UTF-8" : "text/csv; charset=UTF-8");
+        response.addHeader("Content-Disposition", "attachment; filename=\"people." + (ndjson ? NDJSON : CSV) + "\"");
+        response.setStreamingBody(out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 8192);
+            if (ndjson) {
+                writeNdjson(writer, people);
+            } else {
+                writeCsv(writer, people);
+            }
+            writer.flush();
+        }, gzip);
+        return response;
+    }
+
+    private static void writeCsv(Writer out, List<Person> people) throws IOException {
+        out.write("id,name,email,age\n");
+        for (Person person : people) {
+            out.write(Integer.toString(person.getId()));
+            out.write(',');
+            writeCsvField(out, person.getName());
+            out.write(',');
+            writeCsvField(out, person.getEmail());
+            out.write(',');
+            out.write(Integer.toString(person.getAge()));
+            out.write('\n');
+        }
+    }
+
+    // Quoted only when needed, with embedded quotes doubled
+    private static void writeCsvField(Writer out, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            out.write(value);
+            return;
+        }
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                out.write('"');
+            }
+            out.write(c);
+        }
+        out.write('"');
+    }
+
+    private static void writeNdjson(Writer out, List<Person> people) throws IOException {
+        for (Person person : people) {
+            JsonWriter.writePerson(out, person);
+            out.write('\n');
+        }
+    }
+}
@@ -1,18 +1,20 @@
 package view;
 
+import dto.ImportResult;
 import http.HttpResponse;
 import model.Person;
-import template.JSoupTemplateEngine;
+import template.TemplateEngine;
+import template.Utf8HtmlWriter;
 
 import java.util.List;
 import java.util.Map;
 
 public class PersonView implements View{
 
-    private JSoupTemplateEngine templateEngine;
+    private TemplateEngine templateEngine;
 
     public PersonView() {
-        this.templateEngine = new JSoupTemplateEngine();
+        this.templateEngine = new TemplateEngine();
     }
 
     /**
@@ -24,6 +26,9 @@ public class PersonView implements View{
         if (model.containsKey("isEdit") && Boolean.TRUE.equals(model.get("isEdit"))) {
             return renderPersonEdit(model);
         }
+        if (model.containsKey("importResult")) {
+            return renderImportResult(model);
+        }
         if (model.containsKey("person") && !model.containsKey("people")) {
             // Single person detail page
             return renderPersonDetail(model);
@@ -50,17 +55,20 @@ public class PersonView implements View{
             String errorMessage = (String) model.get("errorMessage");
             String successMessage = (String) model.get("successMessage");
 
-            // JSoup template engine to render
-            String html = templateEngine.renderPersonListPage(
-                    people != null ? people : List.of(),
-                    errorMessage,
-                    successMessage
-            );
+            // Compiled template engine renders straight into the pooled response buffer
+            Utf8HtmlWriter out = Utf8HtmlWriter.acquire();
+            try {
+                templateEngine.renderPersonListPage(out,
+                        people != null ? people : List.of(),
+                        errorMessage,
+                        successMessage
+                );
+            } catch (RuntimeException e) {
+                out.release();
+                throw e;
+            }
 
-            // Create HTTP response
-            HttpResponse response = new HttpResponse(200, "OK");
-            response.setBody(html);
-            return response;
+            return ok(out);
 
         } catch (Exception e) {
             System.err.println("Error rendering person list: " + e.getMessage());
@@ -77,11 +85,15 @@ public class PersonView implements View{
                 return renderNotFound("Person not found");
             }
 
-            String html = templateEngine.renderPersonDetailPage(person);
+            Utf8HtmlWriter out = Utf8HtmlWriter.acquire();
+            try {
+                templateEngine.renderPersonDetailPage(out, person);
+            } catch (RuntimeException e) {
+                out.release();
+                throw e;
+            }
 
-            HttpResponse response = new HttpResponse(200, "OK");
-            response.setBody(html);
-            return response;
+            return ok(out);
 
         } catch (Exception e) {
             System.err.println("Error rendering person detail: " + e.getMessage());
@@ -96,16 +108,27 @@ public class PersonView implements View{
         try {
             Person person = (Person) model.get("person");
             String title = (String) model.getOrDefault("title", "Edit Person");
+            String errorMessage = (String) model.get("errorMessage");
 
             if (person == null) {
                 return renderNotFound("Person not found");
             }
 
-            String html = templateEngine.renderEditPersonPage(person);
+            Utf8HtmlWriter out = Utf8HtmlWriter.acquire();
+            try {
+                templateEngine.renderEditPersonPage(out, person, errorMessage);
+            } catch (RuntimeException e) {
+                out.release();
+                throw e;
+            }
 
-            HttpResponse response = new HttpResponse(200, "OK");
-            response.setBody(html);
-            return response;
+            if (Boolean.TRUE.equals(model.get("conflict"))) {
+                // A stale edit was refused: 409 with the current details in the form
+                HttpResponse response = new HttpResponse(409, "Conflict");
+                response.setBody(out);
+                return response;
+            }
+            return ok(out);
 
         } catch (Exception e) {
             System.err.println("Error rendering person edit form: " + e.getMessage());
@@ -113,6 +136,29 @@ public class PersonView implements View{
         }
     }
 
+    /**
+     * Render the outcome of a bulk CSV import
+     */
+    private HttpResponse renderImportResult(Map<String, Object> model) {
+        try {
+            ImportResult result = (ImportResult) model.get("importResult");
+
+            Utf8HtmlWriter out = Utf8HtmlWriter.acquire();
+            try {
+                templateEngine.renderImportResultPage(out, result);
+            } catch (RuntimeException e) {
+                out.release();
+                throw e;
+            }
+
+            return ok(out);
+
+        } catch (Exception e) {
+            System.err.println("Error rendering import result: " + e.getMessage());
+            return renderInternalError("Failed to render import result: " + e.getMessage());
+        }
+    }
+
     /**
      * Render error page
      */
@@ -124,86 +170,25 @@ public class PersonView implements View{
     }
 
     private HttpResponse renderNotFound(String message) {
-        String html = createErrorPageHtml("Not Found", message != null ? message : "Page not found");
-
-        HttpResponse response = new HttpResponse(404, "Not Found");
-        response.setBody(html);
-        return response;
+        return renderErrorPage(404, "Not Found", message != null ? message : "Page not found");
     }
 
     private HttpResponse renderInternalError(String message) {
-        String html = createErrorPageHtml("Internal Server Error", message != null ? message : "An internal error occurred");
-
-        HttpResponse response = new HttpResponse(500, "Internal Server Error");
-        response.setBody(html);
-        return response;
+        return renderErrorPage(500, "Internal Server Error", message != null ? message : "An internal error occurred");
     }
 
-    private String createErrorPageHtml(String title, String message) {
-        return """
-        <!DOCTYPE html>
-        <html>
-        <head>
-            <title>%s - Baylor Sports Registration</title>
-            <style>
-                body { 
-                    font-family: 'Segoe UI', Tahoma, Geneva, Verdana, sans-serif; 
-                    margin: 0; 
-                    padding: 40px; 
-                    background: linear-gradient(135deg, #1e4d2b, #2d6b3f); 
-                    color: white;
-                    text-align: center;
-                }
-                .error-container { 
-                    max-width: 600px; 
-                    margin: 0 auto; 
-                    background: rgba(255, 255, 255, 0.1); 
-                    padding: 40px; 
-                    border-radius: 10px; 
-                    box-shadow: 0 4px 20px rgba(0,0,0,0.3);
-                }
-                h1 { 
-                    color: #ffd700; 
-                    font-size: 3em; 
-                    margin-bottom: 20px; 
-                }
-                p { 
-                    font-size: 1.2em; 
-                    margin-bottom: 30px; 
-                    line-height: 1.6;
-                }
-                .home-link { 
-                    display: inline-block; 
-                    background: #ffd700; 
-                    color: #1e4d2b; 
-                    padding: 12px 24px; 
-                    text-decoration: none; 
-                    border-radius: 6px; 
-                    font-weight: bold;
-                    transition: transform 0.2s ease;
-                }
-                .home-link:hover { 
-                    transform: translateY(-2px); 
-                }
-            </style>
-        </head>
-        <body>
-            <div class="error-container">
-                <h1>%s</h1>
-                <p>%s</p>
-                <a href="/person" class="home-link">Return to Registration</a>
-            </div>
-        </body>
-        </html>
-        """.formatted(title, title, escapeHtml(message));
+    private HttpResponse renderErrorPage(int statusCode, String title, String message) {
+        Utf8HtmlWriter out = Utf8HtmlWriter.acquire();
+        templateEngine.renderErrorPage(out, title, message);
+
+        HttpResponse response = new HttpResponse(statusCode, title);
+        response.setBody(out);
+        return response;
     }
 
-    private String escapeHtml(String text) {
-        if (text == null) return "";
-        return text.replace("&", "&amp;")
-                .replace("<", "&lt;")
-                .replace(">", "&gt;")
-                .replace("\"", "&quot;")
-                .replace("'", "&#x27;");
+    private HttpResponse ok(Utf8HtmlWriter out) {
+        HttpResponse response = new HttpResponse(200, "OK");
+        response.setBody(out);
+        return response;
     }
 }
@@ -0,0 +1,54 @@
+package view;
+
+import dto.RegistrationStats;
+import http.HttpResponse;
+import template.TemplateEngine;
+import template.Utf8HtmlWriter;
+import util.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.Map;
+
+/**
+ * The registration figures handed over by the controller, as the stats page (format=html) or as one JSON object
+ * (format=json) for dashboards.
+ */
+public class StatsView implements View {
+
+    public static final String HTML = "html";
+    public static final String JSON = "json";
+
+    private final TemplateEngine templateEngine = new TemplateEngine();
+
+    @Override
+    public HttpResponse render(Map<String, Object> model) {
+        RegistrationStats stats = (RegistrationStats) model.get("stats");
+        HttpResponse response = new HttpResponse(200, "OK");
+        // Live figures: always ask again
+        response.addHeader("Cache-Control", "no-cache");
+
+        if (JSON.equals(model.get("format"))) {
+            StringWriter json = new StringWriter(512);
+            try {
+                JsonWriter.writeStats(json, stats);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            response.addHeader("Content-Type", "application/json; charset=UTF-8");
+            response.setBody(json.toString());
+            return response;
+        }
+
+        Utf8HtmlWriter out = Utf8HtmlWriter.acquire();
+        try {
+            templateEngine.renderStatsPage(out, stats);
+        } catch (RuntimeException e) {
+            out.release();
+            throw e;
+        }
+        response.setBody(out);
+        return response;
+    }
+}
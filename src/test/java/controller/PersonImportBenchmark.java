@@ -0,0 +1,96 @@
+package controller;
+
+import dto.ImportResult;
+import http.HttpRequest;
+import http.LimitedInputStream;
+import repository.BenchmarkSupport;
+import repository.InMemoryPersonRepository;
+import repository.SnapshotPersonStore;
+import repository.WriteAheadLog;
+import service.ChangeFeed;
+import service.MutationPipeline;
+import service.PersonService;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Rows per second through POST /person/import: CSV parsing, validation, batched saves and the response model,
+ * without the socket. Not run by the build; after mvn test-compile:
+ *
+ *   java --enable-preview -cp target/classes:target/test-classes controller.PersonImportBenchmark [rows]
+ *
+ * The upload (default 200,000 rows, one in a hundred invalid, some names quoted) is built in memory first and
+ * imported into an empty repository: memory only, then with a write-ahead log synced per batch, each written
+ * directly and through the MutationPipeline. A smaller run comes first to warm up the JIT.
+ */
+public class PersonImportBenchmark {
+
+    private interface Setup {
+        PersonService open(Path directory) throws IOException;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        byte[] upload = csv(rows);
+        System.out.printf("%,d rows, %,d bytes%n", rows, upload.length);
+        run("warm-up", csv(rows / 4), directory -> service(new InMemoryPersonRepository(), false));
+        run("memory/direct", upload, directory -> service(new InMemoryPersonRepository(), false));
+        run("memory/pipeline", upload, directory -> service(new InMemoryPersonRepository(), true));
+        run("memory+wal(batched)/direct", upload, directory -> service(new InMemoryPersonRepository(
+                new SnapshotPersonStore(), WriteAheadLog.open(directory, WriteAheadLog.SyncPolicy.BATCHED, 100)),
+                false));
+        run("memory+wal(batched)/pipeline", upload, directory -> service(new InMemoryPersonRepository(
+                new SnapshotPersonStore(), WriteAheadLog.open(directory, WriteAheadLog.SyncPolicy.BATCHED, 100)),
+                true));
+    }
+
+    private static PersonService service(InMemoryPersonRepository repository, boolean pipeline) {
+        MutationPipeline mutationPipeline = pipeline
+                ? MutationPipeline.start(repository, MutationPipeline.DEFAULT_CAPACITY,
+                        MutationPipeline.DEFAULT_MAX_BATCH)
+                : null;
+        return new PersonService(repository, new ChangeFeed(PersonService.DEFAULT_FEED_CAPACITY,
+                PersonService.DEFAULT_FEED_SUBSCRIBERS), mutationPipeline);
+    }
+
+    private static void run(String name, byte[] upload, Setup setup) throws Exception {
+        Path directory = Files.createTempDirectory("import-benchmark");
+        PersonService service = setup.open(directory);
+        try {
+            PersonController controller = new PersonController(service);
+            HttpRequest request = new HttpRequest("POST", "/person/import");
+            request.setBodyStream(new LimitedInputStream(new ByteArrayInputStream(upload), upload.length));
+
+            long start = System.nanoTime();
+            ModelAndView result = controller.handleRequest(request);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            ImportResult imported = (ImportResult) result.getModel().get("importResult");
+            int rows = imported.getImported() + imported.getRejected();
+            System.out.printf("  %-30s %,10.0f rows/s  (%,d imported, %,d rejected, %.2f s)%n", name,
+                    rows / seconds, imported.getImported(), imported.getRejected(), seconds);
+        } finally {
+            service.close();
+            BenchmarkSupport.delete(directory);
+        }
+    }
+
+    // Header plus rows; every hundredth has an invalid age, every tenth a quoted name with a comma in it
+    private static byte[] csv(int rows) {
+        StringBuilder csv = new StringBuilder(rows * 40).append("name,email,age\n");
+        for (int i = 0; i < rows; i++) {
+            if (i % 10 == 0) {
+                csv.append("\"Smith, Person ").append(i).append('"');
+            } else {
+                csv.append("Person ").append(i);
+            }
+            csv.append(",person").append(i).append("@example.com,");
+            csv.append(i % 100 == 99 ? "n/a" : String.valueOf(18 + i % 60)).append('\n');
+        }
+        return csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
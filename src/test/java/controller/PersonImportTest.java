@@ -0,0 +1,180 @@
+package controller;
+
+import dto.ImportResult;
+import dto.PersonDTO;
+import http.HttpRequest;
+import http.LimitedInputStream;
+import model.Person;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import repository.InMemoryPersonRepository;
+import service.ChangeFeed;
+import service.PersonService;
+import util.CsvReader;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * POST /person/import streams a CSV body into the service: good rows are saved, every bad row is reported by the
+ * line it started on without stopping the import, and nothing past the request's Content-Length is read. A batch
+ * the repository cannot save stops the import with a message instead of being retried.
+ */
+class PersonImportTest {
+
+    private final PersonService service = new PersonService(new InMemoryPersonRepository(),
+            new ChangeFeed(PersonService.DEFAULT_FEED_CAPACITY, PersonService.DEFAULT_FEED_SUBSCRIBERS), null);
+    private final PersonController controller = new PersonController(service);
+
+    @AfterEach
+    void close() {
+        service.close();
+    }
+
+    private ImportResult importCsv(byte[] body, long contentLength) {
+        HttpRequest request = new HttpRequest("POST", "/person/import");
+        request.setBodyStream(new LimitedInputStream(new ByteArrayInputStream(body), contentLength));
+        ModelAndView result = controller.handleRequest(request);
+        assertEquals("importResult", result.getViewName(), String.valueOf(result.getModel()));
+        return (ImportResult) result.getModel().get("importResult");
+    }
+
+    private ImportResult importCsv(String csv) {
+        byte[] body = csv.getBytes(StandardCharsets.UTF_8);
+        return importCsv(body, body.length);
+    }
+
+    private static List<String> errors(ImportResult result) {
+        return result.getErrors().stream().map(error -> error.getLine() + ": " + error.getMessage()).toList();
+    }
+
+    @Test
+    void goodRowsAreSavedAndBadRowsReportedByLine() {
+        ImportResult result = importCsv("Email,Name,Age\n"
+                + "ann@x.com,\"Doe, Ann\",30\n"
+                + "bob@x.com,Bob,abc\n"
+                + "\"multi\nline@x.com\",\"Carol\nSmith\",40\n"
+                + "not-an-email,Dan,20\n"
+                + "ann@x.com,Ann Again,31\n"
+                + "eve@x.com,Eve,151\n"
+                + "\n"
+                + "fay@x.com,Fay,25\n");
+
+        assertEquals(3, result.getImported());
+        assertEquals(4, result.getRejected());
+        assertNull(result.getAbortMessage());
+        assertEquals(List.of(
+                "3: Age must be a valid number",
+                // The quoted record on lines 4-6 holds two line breaks, so the rows after it start further down
+                "7: Email must be a valid email address",
+                "8: Email is already registered: ann@x.com",
+                "9: Age cannot be greater than 150"), errors(result));
+
+        Person ann = service.findPersonByEmail("ann@x.com");
+        assertEquals("Doe, Ann", ann.getName());
+        assertEquals(30, ann.getAge());
+        assertEquals("Carol\nSmith", service.findPersonByEmail("multi\nline@x.com").getName());
+        assertNotNull(service.findPersonByEmail("fay@x.com"));
+        assertEquals(3, service.findAllPersons().size());
+    }
+
+    @Test
+    void withoutAHeaderTheColumnsAreNameEmailAge() {
+        ImportResult result = importCsv("Gus,gus@x.com,50\r\nHal,hal@x.com,51\r\n");
+        assertEquals(2, result.getImported());
+        assertEquals("Gus", service.findPersonByEmail("gus@x.com").getName());
+    }
+
+    @Test
+    void malformedCsvStopsTheImportButKeepsEarlierRows() {
+        ImportResult result = importCsv("name,email,age\nIvy,ivy@x.com,20\n\"Jon,jon@x.com,21\n");
+        assertEquals(1, result.getImported());
+        assertEquals("Line 3: unterminated quoted field", result.getAbortMessage());
+        assertNotNull(service.findPersonByEmail("ivy@x.com"));
+    }
+
+    @Test
+    void aRecordOverTheSizeLimitAbortsWithoutBufferingIt() {
+        String huge = "x".repeat(CsvReader.MAX_RECORD_LENGTH + 1);
+        ImportResult result = importCsv("name,email,age\nKim,kim@x.com,20\n" + huge + ",a@x.com,20\n"
+                + "Lee,lee@x.com,30\n");
+        assertEquals(1, result.getImported());
+        assertTrue(result.getAbortMessage().startsWith("Line 3: record is longer than"), result.getAbortMessage());
+        assertNull(service.findPersonByEmail("lee@x.com"));
+    }
+
+    @Test
+    void nothingPastContentLengthIsRead() {
+        String first = "name,email,age\nMay,may@x.com,20\n";
+        byte[] body = (first + "Ned,ned@x.com,21\n").getBytes(StandardCharsets.UTF_8);
+        ImportResult result = importCsv(body, first.length());
+        assertEquals(1, result.getImported());
+        assertNull(service.findPersonByEmail("ned@x.com"));
+    }
+
+    @Test
+    void importsMoreRowsThanOneBatch() {
+        StringBuilder csv = new StringBuilder("name,email,age\n");
+        for (int i = 0; i < 2_500; i++) {
+            csv.append("Person ").append(i).append(",p").append(i).append("@x.com,").append(18 + i % 60).append('\n');
+        }
+        csv.append("Person 0,p0@x.com,18\n");
+        ImportResult result = importCsv(csv.toString());
+        assertEquals(2_500, result.getImported());
+        assertEquals(List.of("2502: Email is already registered: p0@x.com"), errors(result));
+        assertEquals(2_500, service.findAllPersons().size());
+    }
+
+    @Test
+    void aBatchThatCannotBeSavedStopsTheImportWithoutRetryingIt() {
+        AtomicInteger batches = new AtomicInteger();
+        PersonService failing = new PersonService(new InMemoryPersonRepository() {
+            @Override
+            public List<String> saveAll(List<Person> people) {
+                if (batches.incrementAndGet() == 2) {
+                    throw new IllegalArgumentException("storage refused the batch");
+                }
+                return super.saveAll(people);
+            }
+        }, new ChangeFeed(PersonService.DEFAULT_FEED_CAPACITY, PersonService.DEFAULT_FEED_SUBSCRIBERS), null);
+        StringBuilder csv = new StringBuilder("name,email,age\n");
+        for (int i = 0; i < 2_500; i++) {
+            csv.append("Person ").append(i).append(",p").append(i).append("@x.com,30\n");
+        }
+        byte[] body = csv.toString().getBytes(StandardCharsets.UTF_8);
+        HttpRequest request = new HttpRequest("POST", "/person/import");
+        request.setBodyStream(new LimitedInputStream(new ByteArrayInputStream(body), body.length));
+        try {
+            ModelAndView response = new PersonController(failing).handleRequest(request);
+            assertEquals("importResult", response.getViewName(), String.valueOf(response.getModel()));
+            ImportResult result = (ImportResult) response.getModel().get("importResult");
+            assertEquals(1_000, result.getImported());
+            assertEquals("Could not save the rows from line 1002 on: storage refused the batch",
+                    result.getAbortMessage());
+            assertEquals(2, batches.get());
+            assertEquals(1_000, failing.findAllPersons().size());
+        } finally {
+            failing.close();
+        }
+    }
+
+    @Test
+    void aBatchWithANamelessPersonTakesNoIds() {
+        PersonDTO named = new PersonDTO();
+        named.setName("Ann");
+        named.setEmail("ann@x.com");
+        PersonDTO nameless = new PersonDTO();
+        nameless.setEmail("bob@x.com");
+        assertThrows(IllegalArgumentException.class, () -> service.createPersons(List.of(named, nameless)));
+
+        assertEquals(1, service.createPerson(named).getId());
+    }
+}
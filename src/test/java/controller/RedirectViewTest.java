@@ -0,0 +1,45 @@
+package controller;
+
+import http.HttpResponse;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Every render of a redirect hands out the same frozen response, and nothing can change it for the next request.
+ */
+class RedirectViewTest {
+
+    @Test
+    void everyRenderSharesOneImmutableResponse() throws IOException {
+        RedirectView view = new RedirectView("/person/list");
+        HttpResponse first = view.render(Map.of());
+        HttpResponse second = view.render(Map.of("ignored", "model"));
+        assertSame(first, second);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        first.writeTo(out);
+        String sent = out.toString(StandardCharsets.ISO_8859_1);
+        assertEquals("HTTP/1.1 302 Found\r\n", sent.substring(0, sent.indexOf("\r\n") + 2));
+        assertTrue(sent.contains("\r\nLocation: /person/list\r\n"));
+        assertTrue(sent.endsWith("Content-Length: 0\r\n\r\n"));
+        assertEquals("/person/list", first.getHeaders().get("Location"));
+
+        assertThrows(UnsupportedOperationException.class, () -> first.addHeader("Set-Cookie", "a=b"));
+        assertThrows(UnsupportedOperationException.class, () -> first.setStatusCode(200));
+        assertThrows(UnsupportedOperationException.class, () -> first.setBody("changed"));
+        assertThrows(UnsupportedOperationException.class, () -> first.getHeaders().put("X", "y"));
+        first.release();
+        ByteArrayOutputStream again = new ByteArrayOutputStream();
+        second.writeTo(again);
+        assertEquals(sent, again.toString(StandardCharsets.ISO_8859_1));
+    }
+}
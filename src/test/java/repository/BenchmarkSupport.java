@@ -0,0 +1,66 @@
+package repository;
+
+import model.Person;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Fixtures shared by the benchmarks: the people they store, a check that fails the run, the heap in use, and cleanup
+ * of the temporary directories their logs and databases live in. delete() is public for the benchmarks in other
+ * packages.
+ */
+public final class BenchmarkSupport {
+
+    static final String[] NAMES = {"Mary", "James", "John", "Patricia", "Robert", "Jennifer", "Michael",
+            "Linda", "William", "Elizabeth", "David", "Barbara", "Richard", "Susan", "Joseph", "Jessica"};
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * Person id at this version, with a name from NAMES followed by the id, and email(id)
+     */
+    static Person person(int id, int version) {
+        return new Person.PersonBuilder(id, NAMES[id % NAMES.length] + " " + id)
+                .email(email(id))
+                .age(18 + id % 60)
+                .version(version)
+                .build();
+    }
+
+    static String email(int id) {
+        return "person" + id + "@example.com";
+    }
+
+    static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+
+    // Heap in use once a few full collections have settled it
+    static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+
+    /**
+     * Remove directory and everything in it
+     */
+    public static void delete(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+}
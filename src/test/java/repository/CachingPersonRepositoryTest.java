@@ -0,0 +1,139 @@
+package repository;
+
+import model.Person;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Concurrent misses on one id cost a single load, and a write that lands while a load is running wins: the load
+ * cannot put back what the write replaced or removed.
+ */
+class CachingPersonRepositoryTest {
+
+    private static final int THREADS = 8;
+
+    /**
+     * Counts lookups by id; while gate is set, a lookup reads its answer and then waits for the gate before
+     * returning it, like a slow database round trip
+     */
+    private static final class SlowRepository extends InMemoryPersonRepository {
+        final AtomicInteger lookups = new AtomicInteger();
+        final CountDownLatch reading = new CountDownLatch(1);
+        volatile CountDownLatch gate;
+
+        @Override
+        public Person findById(int id) {
+            lookups.incrementAndGet();
+            Person person = super.findById(id);
+            CountDownLatch waitFor = gate;
+            if (waitFor != null) {
+                reading.countDown();
+                try {
+                    waitFor.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return person;
+        }
+    }
+
+    private static Person person(int id, String name, int version) {
+        return new Person.PersonBuilder(id, name).email(name.toLowerCase() + "@x.com").age(30).version(version)
+                .build();
+    }
+
+    @Test
+    void concurrentMissesCollapseIntoOneLoad() throws Exception {
+        SlowRepository slow = new SlowRepository();
+        slow.save(1, person(1, "Alice", 1));
+        CachingPersonRepository cache = new CachingPersonRepository(slow, 100);
+        slow.gate = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Person>> results = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                results.add(pool.submit(() -> cache.findById(1)));
+            }
+            // Let the load finish only once every other caller is waiting on it
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (cache.getStats().getCollapsedLoads() < THREADS - 1 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            slow.gate.countDown();
+            Person first = results.get(0).get(30, TimeUnit.SECONDS);
+            for (Future<Person> result : results) {
+                assertSame(first, result.get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, slow.lookups.get());
+        assertEquals(1, cache.getStats().getLoads());
+        assertEquals(THREADS - 1, cache.getStats().getCollapsedLoads());
+
+        slow.gate = null;
+        assertEquals("Alice", cache.findById(1).getName());
+        assertEquals(1, slow.lookups.get(), "the loaded person should be cached");
+    }
+
+    @Test
+    void aDeleteDuringALoadLeavesNoStaleEntry() throws Exception {
+        SlowRepository slow = new SlowRepository();
+        slow.save(1, person(1, "Alice", 1));
+        CachingPersonRepository cache = new CachingPersonRepository(slow, 100);
+        slow.gate = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<Person> load = pool.submit(() -> cache.findById(1));
+            assertTrue(slow.reading.await(30, TimeUnit.SECONDS));
+            // The load has read Alice; she is deleted before it returns
+            assertTrue(cache.delete(1));
+            slow.gate.countDown();
+            assertEquals("Alice", load.get(30, TimeUnit.SECONDS).getName());
+        } finally {
+            pool.shutdownNow();
+        }
+        slow.gate = null;
+        assertEquals(0, cache.getStats().getSize());
+        assertNull(cache.findById(1));
+    }
+
+    @Test
+    void anUpdateDuringALoadIsNotOverwrittenByTheOldVersion() throws Exception {
+        SlowRepository slow = new SlowRepository();
+        slow.save(1, person(1, "Alice", 1));
+        CachingPersonRepository cache = new CachingPersonRepository(slow, 100);
+        slow.gate = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<Person> load = pool.submit(() -> cache.findById(1));
+            assertTrue(slow.reading.await(30, TimeUnit.SECONDS));
+            assertTrue(cache.update(1, 1, person(1, "Alicia", 2)));
+            slow.gate.countDown();
+            assertEquals(1, load.get(30, TimeUnit.SECONDS).getVersion());
+        } finally {
+            pool.shutdownNow();
+        }
+        slow.gate = null;
+        int lookups = slow.lookups.get();
+        assertEquals("Alicia", cache.findById(1).getName());
+        assertEquals(lookups, slow.lookups.get(), "the update should have been cached by the write");
+    }
+}
@@ -0,0 +1,121 @@
+package repository;
+
+import model.Person;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The change listener is called after writeLock is released and once the change is durable: a slow listener does not
+ * stop other writes from being applied, every change still reaches it once and in the order the changes were applied,
+ * and a write returns only after its own change has reached it.
+ */
+class ChangePublishingTest {
+
+    @TempDir
+    Path directory;
+
+    private static Person person(int id, int version) {
+        return new Person.PersonBuilder(id, "P" + id).email("p" + id + "@x.com").age(version).version(version).build();
+    }
+
+    @Test
+    void aSlowListenerDoesNotHoldUpOtherWrites() throws Exception {
+        InMemoryPersonRepository repository = new InMemoryPersonRepository(new SnapshotPersonStore(),
+                WriteAheadLog.open(directory, WriteAheadLog.SyncPolicy.BATCHED, 10));
+        CountDownLatch inListener = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> seen = new ArrayList<>();
+        repository.setChangeListener((previous, current) -> {
+            seen.add(current.getId());
+            if (current.getId() == 1) {
+                inListener.countDown();
+                await(release);
+            }
+        });
+
+        Thread first = new Thread(() -> repository.save(1, person(1, 1)));
+        first.start();
+        assertTrue(inListener.await(10, TimeUnit.SECONDS));
+        Thread second = new Thread(() -> repository.save(2, person(2, 1)));
+        second.start();
+        // Applied (and readable) while the listener is still busy with the first change
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (repository.findById(2) == null && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertEquals(2, repository.findByEmail("p2@x.com").getId());
+        assertTrue(second.isAlive(), "returned before its change reached the listener");
+
+        release.countDown();
+        first.join();
+        second.join();
+        assertEquals(List.of(1, 2), seen);
+        repository.close();
+    }
+
+    @Test
+    void changesReachTheListenerInTheOrderTheyWereApplied() throws Exception {
+        InMemoryPersonRepository repository = new InMemoryPersonRepository(new SnapshotPersonStore(),
+                WriteAheadLog.open(directory, WriteAheadLog.SyncPolicy.BATCHED, 10));
+        repository.save(1, person(1, 1));
+        List<Integer> versions = new ArrayList<>();
+        repository.setChangeListener((previous, current) -> {
+            synchronized (versions) {
+                versions.add(current.getVersion());
+            }
+        });
+        Queue<String> unpublished = new ConcurrentLinkedQueue<>();
+
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread writer = new Thread(() -> {
+                for (int done = 0; done < 100; ) {
+                    Person current = repository.findById(1);
+                    try {
+                        repository.update(1, current.getVersion(), person(1, current.getVersion() + 1));
+                        // Our own change has been published by the time update() returns
+                        synchronized (versions) {
+                            if (!versions.contains(current.getVersion() + 1)) {
+                                unpublished.add("version " + (current.getVersion() + 1));
+                            }
+                        }
+                        done++;
+                    } catch (VersionConflictException e) {
+                        // Someone else updated it first
+                    }
+                }
+            });
+            writer.start();
+            writers.add(writer);
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        assertEquals(List.of(), List.copyOf(unpublished));
+        assertEquals(800, versions.size());
+        for (int i = 0; i < versions.size(); i++) {
+            assertEquals(i + 2, versions.get(i));
+        }
+        repository.close();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package repository;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import model.Person;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import static repository.BenchmarkSupport.check;
+import static repository.BenchmarkSupport.person;
+import static repository.BenchmarkSupport.usedHeap;
+
+/**
+ * GC pauses of an InMemoryPersonRepository on each store under a mixed read/write load. Not run by the build; after
+ * mvn test-compile:
+ *
+ *   java --enable-preview -Xmx8g -cp target/classes:target/test-classes repository.GcPauseBenchmark \
+ *       [people] [seconds] [store...]
+ *
+ * For people (default 2,000,000) on each store (default all four): the heap still in use after a full GC with
+ * everyone stored, then seconds (default 20) of load from one thread per core, each doing 80% findById, 15% update
+ * and 5% new registrations. Reported are operations per second, the number of stop-the-world collections, their
+ * total and longest pause. Pauses come from GC notifications; concurrent cycles (G1 Concurrent GC, ZGC cycles) do
+ * not stop the application and are left out. A store that keeps people on the heap makes every old-generation
+ * collection trace them; the off-heap store leaves only the indexes there. Run each store in its own JVM for
+ * figures that do not depend on the store before it.
+ */
+public class GcPauseBenchmark {
+
+    private static final Map<String, Supplier<PersonStore>> STORES = Map.of(
+            "snapshot", SnapshotPersonStore::new,
+            "inthash", IntHashPersonStore::new,
+            "columnar", ColumnarPersonStore::new,
+            "offheap", OffHeapPersonStore::new);
+
+    private static final LongAdder PAUSES = new LongAdder();
+    private static final LongAdder PAUSE_MILLIS = new LongAdder();
+    private static final AtomicLong LONGEST_PAUSE = new AtomicLong();
+
+    public static void main(String[] args) throws Exception {
+        int people = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        long seconds = args.length > 1 ? Long.parseLong(args[1]) : 20;
+        List<String> stores = args.length > 2 ? List.of(args).subList(2, args.length)
+                : List.of("snapshot", "inthash", "columnar", "offheap");
+        listenForPauses();
+        int threads = Runtime.getRuntime().availableProcessors();
+        System.out.printf("%,d people, %d s, %d threads%n", people, seconds, threads);
+        System.out.printf("%-10s %12s %14s %10s %14s %14s%n", "store", "heap MB", "ops/s", "pauses", "total ms",
+                "longest ms");
+        for (String name : stores) {
+            InMemoryPersonRepository repository = new InMemoryPersonRepository(STORES.get(name).get());
+            try {
+                List<Person> batch = new ArrayList<>(1000);
+                for (int id = 1; id <= people; id++) {
+                    batch.add(person(id, 1));
+                    if (batch.size() == 1000 || id == people) {
+                        repository.saveAll(batch);
+                        batch.clear();
+                    }
+                }
+                long heap = usedHeap();
+                // Notifications arrive asynchronously; let those of the full GCs above come in before counting
+                Thread.sleep(500);
+                PAUSES.reset();
+                PAUSE_MILLIS.reset();
+                LONGEST_PAUSE.set(0);
+                double operations = load(repository, people, threads, seconds);
+                System.out.printf("%-10s %,12d %,14.0f %,10d %,14d %,14d%n", name, heap >> 20, operations,
+                        PAUSES.sum(), PAUSE_MILLIS.sum(), LONGEST_PAUSE.get());
+            } finally {
+                repository.close();
+            }
+        }
+    }
+
+    // Operations per second with threads reading and writing for seconds
+    private static double load(InMemoryPersonRepository repository, int people, int threads, long seconds)
+            throws InterruptedException {
+        AtomicInteger nextId = new AtomicInteger(repository.getHighestId());
+        LongAdder operations = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        long[] deadline = new long[1];
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long done = 0;
+                while (System.nanoTime() < deadline[0]) {
+                    int roll = random.nextInt(100);
+                    if (roll < 80) {
+                        check(repository.findById(1 + random.nextInt(people)) != null, "findById missed");
+                    } else if (roll < 95) {
+                        int id = 1 + random.nextInt(people);
+                        Person current = repository.findById(id);
+                        try {
+                            repository.update(id, current.getVersion(), person(id, current.getVersion() + 1));
+                        } catch (VersionConflictException e) {
+                            // Another thread updated it first; costs the same
+                        }
+                    } else {
+                        int id = nextId.incrementAndGet();
+                        repository.save(id, person(id, 1));
+                    }
+                    done++;
+                }
+                operations.add(done);
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        long began = System.nanoTime();
+        deadline[0] = began + seconds * 1_000_000_000L;
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return operations.sum() / ((System.nanoTime() - began) / 1e9);
+    }
+
+    // Count every stop-the-world collection the JVM reports
+    private static void listenForPauses() {
+        NotificationListener listener = (Notification notification, Object handback) -> {
+            if (!notification.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)) {
+                return;
+            }
+            GarbageCollectionNotificationInfo info =
+                    GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+            if (info.getGcName().contains("Concurrent") || info.getGcName().contains("Cycles")) {
+                return;
+            }
+            long millis = info.getGcInfo().getDuration();
+            PAUSES.increment();
+            PAUSE_MILLIS.add(millis);
+            LONGEST_PAUSE.accumulateAndGet(millis, Math::max);
+        };
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ((NotificationEmitter) collector).addNotificationListener(listener, null, null);
+        }
+    }
+}
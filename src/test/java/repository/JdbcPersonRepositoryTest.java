@@ -0,0 +1,188 @@
+package repository;
+
+import model.Person;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * JdbcPersonRepository against an embedded H2 file database, as the server runs it with -Dperson.repository=jdbc
+ */
+class JdbcPersonRepositoryTest {
+
+    @TempDir
+    Path directory;
+
+    private JdbcPersonRepository repository;
+    private final List<String> changes = new ArrayList<>();
+
+    @BeforeEach
+    void open() {
+        repository = open(directory);
+    }
+
+    @AfterEach
+    void close() {
+        repository.close();
+    }
+
+    private JdbcPersonRepository open(Path directory) {
+        JdbcPersonRepository opened = new JdbcPersonRepository("jdbc:h2:file:" + directory.resolve("people"), null,
+                null, 4);
+        opened.setChangeListener((previous, current) -> changes.add(
+                (previous != null ? previous.getId() + "v" + previous.getVersion() : "-") + ">"
+                        + (current != null ? current.getId() + "v" + current.getVersion() : "-")));
+        return opened;
+    }
+
+    private static Person person(int id, String name, String email, int age, int version) {
+        return new Person.PersonBuilder(id, name).email(email).age(age).version(version).build();
+    }
+
+    @Test
+    void createsTheSchemaAndKeepsDataAcrossReopening() {
+        repository.save(1, person(1, "Alice", "alice@x.com", 30, 1));
+        repository.save(7, person(7, "Bob", null, 40, 1));
+        assertTrue(repository.delete(7));
+        repository.close();
+
+        repository = open(directory);
+        assertEquals("Alice", repository.findById(1).getName());
+        assertNull(repository.findById(7));
+        // Deleted ids still count, so they are never handed out again
+        assertEquals(7, repository.getHighestId());
+    }
+
+    @Test
+    void crud() {
+        repository.save(1, person(1, "Alice Smith", "Alice@X.com", 30, 1));
+        repository.save(2, person(2, "alfred_e", null, 17, 1));
+        repository.save(3, person(3, "Bob", "bob@x.com", 45, 1));
+
+        Person alice = repository.findById(1);
+        assertEquals("Alice Smith", alice.getName());
+        assertEquals("Alice@X.com", alice.getEmail());
+        assertEquals(30, alice.getAge());
+        assertEquals(1, alice.getVersion());
+        assertNull(repository.findById(2).getEmail());
+
+        assertEquals(1, repository.findByEmail("  alice@x.COM ").getId());
+        assertNull(repository.findByEmail("nobody@x.com"));
+        assertEquals(List.of(2, 1), ids(repository.findByNamePrefix("AL", 10)));
+        // LIKE wildcards in the prefix are matched literally
+        assertEquals(List.of(2), ids(repository.findByNamePrefix("alfred_", 10)));
+        assertTrue(repository.findByNamePrefix("%", 10).isEmpty());
+        assertEquals(List.of(2), ids(repository.findByNamePrefix("al", 1)));
+        assertEquals(List.of(2, 1, 3), ids(repository.findByAgeRange(0, 150, 10)));
+        assertEquals(List.of(1), ids(repository.findByAgeRange(18, 44, 10)));
+        assertTrue(repository.findByAgeRange(50, 40, 10).isEmpty());
+        assertEquals(List.of(1, 2, 3), ids(repository.findAll()));
+
+        repository.save(3, person(3, "Robert", "bob@x.com", 46, 1));
+        assertEquals("Robert", repository.findById(3).getName());
+
+        assertTrue(repository.delete(2));
+        assertFalse(repository.delete(2));
+        assertEquals(List.of(1, 3), ids(repository.findAll()));
+        assertEquals(3, repository.getHighestId());
+        assertEquals(List.of("->1v1", "->2v1", "->3v1", "3v1>3v1", "2v1>-"), changes);
+    }
+
+    @Test
+    void rejectsAnEmailThatIsTaken() {
+        repository.save(1, person(1, "Alice", "alice@x.com", 30, 1));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> repository.save(2, person(2, "Eve", " ALICE@x.com", 30, 1)));
+        assertNull(repository.findById(2));
+        // Saving the owner again with its own email is fine
+        repository.save(1, person(1, "Alice B", "alice@x.com", 31, 1));
+        assertEquals("Alice B", repository.findByEmail("alice@x.com").getName());
+    }
+
+    @Test
+    void saveAllRejectsDuplicatesWithinTheBatchAndAgainstTheTable() {
+        repository.save(1, person(1, "Alice", "alice@x.com", 30, 1));
+        changes.clear();
+
+        List<String> rejections = repository.saveAll(List.of(
+                person(2, "Bob", "bob@x.com", 20, 1),
+                person(3, "Eve", "ALICE@x.com", 20, 1),
+                person(4, "Bobby", "bob@X.com", 20, 1),
+                person(5, "Carol", null, 20, 1)));
+
+        assertNull(rejections.get(0));
+        assertNotNull(rejections.get(1));
+        assertNotNull(rejections.get(2));
+        assertNull(rejections.get(3));
+        assertEquals(List.of(1, 2, 5), ids(repository.findAll()));
+        assertEquals(5, repository.getHighestId());
+        assertEquals(List.of("->2v1", "->5v1"), changes);
+    }
+
+    @Test
+    void saveAllFallsBackToOneAtATimeWhenTheBatchIsRefused() {
+        repository.save(2, person(2, "Bob", "bob@x.com", 20, 1));
+
+        // Id 2 exists, so the batch insert fails as a whole; the others still go in
+        List<String> rejections = repository.saveAll(List.of(
+                person(1, "Alice", "alice@x.com", 30, 1),
+                person(2, "Bob again", "bob2@x.com", 30, 1),
+                person(3, "Carol", "carol@x.com", 30, 1)));
+
+        assertEquals(Arrays.asList(null, null, null), rejections);
+        assertEquals(List.of(1, 2, 3), ids(repository.findAll()));
+        assertEquals("Bob again", repository.findById(2).getName());
+    }
+
+    @Test
+    void updateIsACompareAndSetOnTheVersion() {
+        repository.save(1, person(1, "Alice", "alice@x.com", 30, 1));
+        repository.save(2, person(2, "Bob", "bob@x.com", 40, 1));
+
+        assertTrue(repository.update(1, 1, person(1, "Alice Smith", "alice@x.com", 31, 2)));
+        assertEquals(2, repository.findById(1).getVersion());
+
+        VersionConflictException conflict = assertThrows(VersionConflictException.class,
+                () -> repository.update(1, 1, person(1, "Stale", "alice@x.com", 30, 2)));
+        assertEquals(2, conflict.getCurrent().getVersion());
+        assertEquals("Alice Smith", repository.findById(1).getName());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> repository.update(1, 2, person(1, "Alice", "BOB@x.com", 31, 3)));
+        assertEquals("alice@x.com", repository.findById(1).getEmail());
+
+        assertFalse(repository.update(9, 1, person(9, "Nobody", null, 20, 2)));
+    }
+
+    @Test
+    void writeBatchRunsOnOneConnectionAndNests() {
+        repository.writeBatch(() -> {
+            repository.save(1, person(1, "Alice", "alice@x.com", 30, 1));
+            repository.writeBatch(() -> repository.save(2, person(2, "Bob", "bob@x.com", 30, 1)));
+            assertEquals(2, repository.findAll().size());
+            assertThrows(IllegalArgumentException.class,
+                    () -> repository.save(3, person(3, "Eve", "alice@x.com", 30, 1)));
+            repository.save(3, person(3, "Carol", "carol@x.com", 30, 1));
+        });
+
+        assertEquals(List.of(1, 2, 3), ids(repository.findAll()));
+    }
+
+    private static List<Integer> ids(List<Person> people) {
+        return people.stream().map(Person::getId).toList();
+    }
+}
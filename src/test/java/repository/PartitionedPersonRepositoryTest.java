@@ -0,0 +1,153 @@
+package repository;
+
+import model.Person;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A partitioned repository answers like a single one holding the same people: findAll() in id order, searches merged
+ * in the same order with the same limit, aggregates over everyone, and an email taken in one partition is taken in
+ * all of them. Each partition recovers from its own log, and data written with another partition count is refused.
+ */
+class PartitionedPersonRepositoryTest {
+
+    private static final String[] NAMES = {"Mary", "Maria", "Mark", "John", "Joan", "Zoe"};
+
+    @TempDir
+    Path directory;
+
+    private static Person person(int id, String email) {
+        return new Person.PersonBuilder(id, NAMES[id % NAMES.length] + " " + (id % 7))
+                .email(email).age(18 + id % 30).build();
+    }
+
+    private static PartitionedPersonRepository inMemory(int partitions) {
+        return new PartitionedPersonRepository(partitions, k -> new InMemoryPersonRepository());
+    }
+
+    private PartitionedPersonRepository logged(int partitions) {
+        return new PartitionedPersonRepository(partitions, k -> {
+            try {
+                return new InMemoryPersonRepository(new SnapshotPersonStore(), WriteAheadLog.open(
+                        directory.resolve("partition-" + k), WriteAheadLog.SyncPolicy.BATCHED, 10));
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    @Test
+    void answersLikeASingleRepository() {
+        PartitionedPersonRepository partitioned = inMemory(4);
+        InMemoryPersonRepository single = new InMemoryPersonRepository();
+        for (int id = 1; id <= 500; id++) {
+            partitioned.save(id, person(id, "p" + id + "@x.com"));
+            single.save(id, person(id, "p" + id + "@x.com"));
+        }
+        for (int id = 3; id <= 500; id += 7) {
+            assertTrue(partitioned.delete(id));
+            assertTrue(single.delete(id));
+        }
+
+        assertEquals(ids(single.findAll()), ids(partitioned.findAll()));
+        for (String prefix : new String[]{"ma", "mar", "jo", "zoe 3", "x"}) {
+            for (int limit : new int[]{1, 10, 1000}) {
+                assertEquals(ids(single.findByNamePrefix(prefix, limit)),
+                        ids(partitioned.findByNamePrefix(prefix, limit)), prefix + " " + limit);
+            }
+        }
+        assertEquals(ids(single.findByAgeRange(20, 25, 40)), ids(partitioned.findByAgeRange(20, 25, 40)));
+        assertEquals(single.findByEmail("p100@x.com").getId(), partitioned.findByEmail("P100@x.com").getId());
+        assertNull(partitioned.findByEmail("p3@x.com"));
+        assertEquals(500, partitioned.getHighestId());
+        int[] ageSum = partitioned.aggregate(() -> new int[1], (sum, person) -> sum[0] += person.getAge(),
+                (a, b) -> new int[]{a[0] + b[0]});
+        assertEquals(single.findAll().stream().mapToInt(Person::getAge).sum(), ageSum[0]);
+    }
+
+    @Test
+    void anEmailTakenInOnePartitionIsTakenInAll() throws Exception {
+        PartitionedPersonRepository repository = inMemory(4);
+        repository.save(1, person(1, "taken@x.com"));
+        assertThrows(IllegalArgumentException.class, () -> repository.save(2, person(2, " TAKEN@x.com")));
+        repository.save(2, person(2, "two@x.com"));
+        assertThrows(IllegalArgumentException.class, () -> repository.update(2, 0, person(2, "taken@x.com")));
+        assertEquals(Arrays.asList(null, "Email is already registered: taken@x.com", null,
+                        "Email is already registered: new@x.com"),
+                repository.saveAll(List.of(person(3, "new@x.com"), person(4, "taken@x.com"), person(5, "five@x.com"),
+                        person(6, "new@x.com"))));
+        assertTrue(repository.delete(1));
+        repository.save(7, person(7, "taken@x.com"));
+
+        // Threads race to register the same emails under different ids, which land in different partitions
+        int emails = 100;
+        AtomicInteger created = new AtomicInteger();
+        AtomicInteger nextId = new AtomicInteger(100);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < emails; i++) {
+                    int id = nextId.incrementAndGet();
+                    try {
+                        repository.save(id, person(id, "shared" + i + "@x.com"));
+                        created.incrementAndGet();
+                    } catch (IllegalArgumentException e) {
+                        // Someone else registered it first
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(emails, created.get());
+    }
+
+    @Test
+    void eachPartitionRecoversFromItsOwnLog() throws IOException {
+        PartitionedPersonRepository repository = logged(4);
+        for (int id = 1; id <= 40; id++) {
+            repository.save(id, person(id, "p" + id + "@x.com"));
+        }
+        assertTrue(repository.delete(10));
+        assertTrue(repository.snapshot());
+        repository.save(41, person(41, "p41@x.com"));
+        repository.close();
+
+        repository = logged(4);
+        assertEquals(40, repository.findAll().size());
+        assertNull(repository.findById(10));
+        assertEquals(41, repository.findByEmail("p41@x.com").getId());
+        assertEquals(41, repository.getHighestId());
+        repository.close();
+
+        IllegalStateException refused = assertThrows(IllegalStateException.class, () -> logged(3));
+        assertTrue(refused.getMessage().contains("different number of partitions"), refused.getMessage());
+    }
+
+    private static List<Integer> ids(List<Person> people) {
+        return people.stream().map(Person::getId).toList();
+    }
+}
@@ -0,0 +1,180 @@
+package repository;
+
+import model.Person;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static repository.BenchmarkSupport.check;
+import static repository.BenchmarkSupport.delete;
+import static repository.BenchmarkSupport.person;
+
+/**
+ * One InMemoryPersonRepository against PartitionedPersonRepository with 4, 8 and 16 partitions. Not run by the build;
+ * after mvn test-compile:
+ *
+ *   java --enable-preview -cp target/classes:target/test-classes repository.PartitionedRepositoryBenchmark \
+ *       [millis] [people]
+ *
+ * Scaling: writes per second from 1 to 32 threads (half creates, half updates of a random person), in memory only
+ * and with a batched write-ahead log per repository or partition, each cell run for millis (default 1000) after a
+ * warm-up of the same length. Scans: with people (default 1,000,000) stored, the time of findAll() just after a
+ * write, an aggregate() over everyone and a 500-result name prefix search.
+ */
+public class PartitionedRepositoryBenchmark {
+
+    private static final int[] THREADS = {1, 2, 4, 8, 16, 32};
+    private static final int[] PARTITIONS = {1, 4, 8, 16};
+    private static final int PEOPLE = 10_000;
+
+    private interface Opener {
+        PersonRepository open(Path directory) throws IOException;
+    }
+
+    public static void main(String[] args) throws Exception {
+        long millis = args.length > 0 ? Long.parseLong(args[0]) : 1000;
+        int people = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        System.out.printf("%d cores; writes per second%n", Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-24s", "repository");
+        for (int threads : THREADS) {
+            System.out.printf(" %11s", threads + " thr");
+        }
+        System.out.println();
+        for (boolean logged : new boolean[]{false, true}) {
+            for (int partitions : PARTITIONS) {
+                System.out.printf("%-24s", name(partitions) + (logged ? "+wal" : ""));
+                for (int threads : THREADS) {
+                    Path directory = Files.createTempDirectory("partition-benchmark");
+                    PersonRepository repository = opener(partitions, logged).open(directory);
+                    try {
+                        fill(repository, PEOPLE);
+                        writes(repository, threads, millis);
+                        System.out.printf(" %,11.0f", writes(repository, threads, millis));
+                    } finally {
+                        repository.close();
+                        delete(directory);
+                    }
+                }
+                System.out.println();
+            }
+        }
+
+        System.out.printf("%n%,d people; milliseconds per call (best of 5)%n", people);
+        System.out.printf("%-24s %12s %12s %12s%n", "repository", "findAll", "aggregate", "prefix");
+        for (int partitions : PARTITIONS) {
+            PersonRepository repository = opener(partitions, false).open(null);
+            fill(repository, people);
+            double findAll = Double.MAX_VALUE;
+            double aggregate = Double.MAX_VALUE;
+            double prefix = Double.MAX_VALUE;
+            for (int round = 0; round < 5; round++) {
+                // A write first, so findAll() cannot reuse a list it already built
+                Person first = repository.findById(1);
+                repository.update(1, first.getVersion(), person(1, first.getVersion() + 1));
+                long start = System.nanoTime();
+                check(repository.findAll().size() == people, "findAll lost people");
+                findAll = Math.min(findAll, (System.nanoTime() - start) / 1e6);
+
+                start = System.nanoTime();
+                long[] ages = repository.aggregate(() -> new long[1], (sum, person) -> sum[0] += person.getAge(),
+                        (a, b) -> new long[]{a[0] + b[0]});
+                check(ages[0] > 0, "aggregate saw nobody");
+                aggregate = Math.min(aggregate, (System.nanoTime() - start) / 1e6);
+
+                start = System.nanoTime();
+                check(repository.findByNamePrefix("jo", 500).size() == 500, "prefix search came up short");
+                prefix = Math.min(prefix, (System.nanoTime() - start) / 1e6);
+            }
+            System.out.printf("%-24s %12.2f %12.2f %12.2f%n", name(partitions), findAll, aggregate, prefix);
+            repository.close();
+        }
+    }
+
+    private static String name(int partitions) {
+        return partitions == 1 ? "single" : "partitioned(" + partitions + ")";
+    }
+
+    // One repository, or that many partitions; with a batched log in directory (or per-partition directories)
+    private static Opener opener(int partitions, boolean logged) {
+        return directory -> {
+            if (partitions == 1) {
+                return memory(directory, logged);
+            }
+            return new PartitionedPersonRepository(partitions, k -> {
+                try {
+                    return memory(directory == null ? null : directory.resolve("partition-" + k), logged);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        };
+    }
+
+    private static InMemoryPersonRepository memory(Path directory, boolean logged) throws IOException {
+        return new InMemoryPersonRepository(new SnapshotPersonStore(),
+                logged ? WriteAheadLog.open(directory, WriteAheadLog.SyncPolicy.BATCHED, 100) : null);
+    }
+
+    private static void fill(PersonRepository repository, int people) {
+        List<Person> batch = new ArrayList<>(1000);
+        for (int id = 1; id <= people; id++) {
+            batch.add(person(id, 0));
+            if (batch.size() == 1000 || id == people) {
+                repository.saveAll(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    // Writes per second with threads creating and updating for millis
+    private static double writes(PersonRepository repository, int threads, long millis) throws Exception {
+        AtomicInteger nextId = new AtomicInteger(repository.getHighestId());
+        LongAdder operations = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        long[] deadline = new long[1];
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long done = 0;
+                while (System.nanoTime() < deadline[0]) {
+                    if (random.nextBoolean()) {
+                        int id = nextId.incrementAndGet();
+                        repository.save(id, person(id, 0));
+                    } else {
+                        int id = 1 + random.nextInt(PEOPLE);
+                        Person current = repository.findById(id);
+                        try {
+                            repository.update(id, current.getVersion(), person(id, current.getVersion() + 1));
+                        } catch (VersionConflictException e) {
+                            // Another thread updated it first; costs the same
+                        }
+                    }
+                    done++;
+                }
+                operations.add(done);
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        long began = System.nanoTime();
+        deadline[0] = began + millis * 1_000_000;
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return operations.sum() / ((System.nanoTime() - began) / 1e9);
+    }
+}
@@ -0,0 +1,123 @@
+package repository;
+
+import model.Person;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Random creates, updates and deletes through PersonIndexes, checked after every round against a plain map of the
+ * same people. Few distinct names and ages keep thousands of ids under one key, so the sorted id chunks split and
+ * merge, and a small email pool makes the email table probe, grow and shift entries back after deletes. An index
+ * rebuilt from the store afterwards (as recovery does) must answer the same.
+ */
+class PersonIndexesTest {
+
+    private static final String[] NAMES = {"Mary", "mary ann", "Maryam", "John", "Johnny", " jo", "Zoe", "Ana"};
+
+    static Stream<Arguments> engines() {
+        return Stream.of(
+                Arguments.of("snapshot", (Supplier<PersonStore>) SnapshotPersonStore::new),
+                Arguments.of("columnar", (Supplier<PersonStore>) ColumnarPersonStore::new));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("engines")
+    void indexesAgreeWithTheStoredPeople(String engine, Supplier<PersonStore> supplier) {
+        PersonStore store = supplier.get();
+        PersonIndexes indexes = new PersonIndexes(store);
+        Map<Integer, Person> model = new TreeMap<>();
+        Map<String, Integer> owners = new HashMap<>();
+        Random random = new Random(7);
+
+        for (int round = 0; round < 8; round++) {
+            for (int i = 0; i < 2_000; i++) {
+                int id = 1 + random.nextInt(4_000);
+                Person previous = model.get(id);
+                if (previous != null && random.nextInt(3) == 0) {
+                    indexes.remove(id, previous);
+                    model.remove(id);
+                    owners.remove(EmailIndex.normalize(previous.getEmail()));
+                    continue;
+                }
+                String email = "p" + random.nextInt(6_000) + "@X.com";
+                Integer owner = owners.get(EmailIndex.normalize(email));
+                if (owner != null && owner != id) {
+                    email = null;
+                }
+                Person current = new Person.PersonBuilder(id, NAMES[random.nextInt(NAMES.length)])
+                        .email(email).age(18 + random.nextInt(4)).build();
+                if (previous == null) {
+                    indexes.put(id, null, current);
+                } else {
+                    indexes.replace(id, previous, current);
+                    owners.remove(EmailIndex.normalize(previous.getEmail()));
+                }
+                model.put(id, current);
+                if (email != null) {
+                    owners.put(EmailIndex.normalize(email), id);
+                }
+            }
+            assertAgree(indexes, model, owners);
+        }
+
+        PersonIndexes rebuilt = new PersonIndexes(store);
+        rebuilt.rebuild();
+        assertAgree(rebuilt, model, owners);
+    }
+
+    private static void assertAgree(PersonIndexes indexes, Map<Integer, Person> model, Map<String, Integer> owners) {
+        for (String prefix : new String[]{"", "m", "MARY", "mary a", "jo", "john", "x"}) {
+            String start = prefix.trim().toLowerCase(Locale.ROOT);
+            List<Integer> expected = model.values().stream()
+                    .filter(person -> normalized(person).startsWith(start))
+                    .sorted(Comparator.comparing(PersonIndexesTest::normalized).thenComparing(Person::getId))
+                    .map(Person::getId)
+                    .toList();
+            assertEquals(expected, ids(indexes.findByNamePrefix(prefix, Integer.MAX_VALUE)), prefix);
+            assertEquals(expected.subList(0, Math.min(10, expected.size())),
+                    ids(indexes.findByNamePrefix(prefix, 10)), prefix);
+        }
+        List<Integer> expected = model.values().stream()
+                .filter(person -> person.getAge() >= 19 && person.getAge() <= 20)
+                .sorted(Comparator.comparingInt(Person::getAge).thenComparing(Person::getId))
+                .map(Person::getId)
+                .toList();
+        assertEquals(expected, ids(indexes.findByAgeRange(19, 20, Integer.MAX_VALUE)));
+        for (int i = 0; i < 6_000; i++) {
+            String email = "P" + i + "@x.com ";
+            Integer owner = owners.get(EmailIndex.normalize(email));
+            if (owner == null) {
+                assertNull(indexes.findByEmail(email), email);
+            } else {
+                assertEquals(owner, indexes.findByEmail(email).getId(), email);
+            }
+        }
+    }
+
+    private static String normalized(Person person) {
+        return person.getName().trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static List<Integer> ids(List<Person> people) {
+        List<Integer> ids = new ArrayList<>();
+        for (Person person : people) {
+            ids.add(person.getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,154 @@
+package repository;
+
+import model.Person;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs delete, update and re-registration through InMemoryPersonRepository on every PersonStore engine. Some engines
+ * hand out a freshly built Person on each get(), so the secondary indexes must not depend on object identity.
+ * Closing the repository frees the off-heap store's memory.
+ */
+class PersonStoreEnginesTest {
+
+    static Stream<Arguments> engines() {
+        return Stream.of(
+                Arguments.of("snapshot", (Supplier<PersonStore>) SnapshotPersonStore::new),
+                Arguments.of("inthash", (Supplier<PersonStore>) IntHashPersonStore::new),
+                Arguments.of("columnar", (Supplier<PersonStore>) ColumnarPersonStore::new),
+                Arguments.of("offheap", (Supplier<PersonStore>) OffHeapPersonStore::new));
+    }
+
+    private static Person person(int id, String name, String email, int age, int version) {
+        return new Person.PersonBuilder(id, name).email(email).age(age).version(version).build();
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("engines")
+    void deleteRemovesEveryIndexEntry(String engine, Supplier<PersonStore> store) {
+        InMemoryPersonRepository repository = new InMemoryPersonRepository(store.get());
+        repository.save(1, person(1, "Alice", "a@x.com", 30, 1));
+        repository.save(2, person(2, "Alina", "b@x.com", 30, 1));
+
+        assertTrue(repository.delete(1));
+
+        assertNull(repository.findById(1));
+        assertNull(repository.findByEmail("a@x.com"));
+        assertEquals(List.of(2), ids(repository.findByNamePrefix("al", 10)));
+        assertEquals(List.of(2), ids(repository.findByAgeRange(30, 30, 10)));
+        assertDoesNotThrow(() -> repository.save(3, person(3, "Alice", "a@x.com", 30, 1)));
+        assertEquals(3, repository.findByEmail("A@X.com ").getId());
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("engines")
+    void updateMovesIndexEntries(String engine, Supplier<PersonStore> store) {
+        InMemoryPersonRepository repository = new InMemoryPersonRepository(store.get());
+        repository.save(1, person(1, "Alice", "a@x.com", 30, 1));
+
+        assertTrue(repository.update(1, 1, person(1, "Bob", "bob@x.com", 40, 2)));
+
+        assertNull(repository.findByEmail("a@x.com"));
+        assertEquals(1, repository.findByEmail("bob@x.com").getId());
+        assertTrue(repository.findByNamePrefix("al", 10).isEmpty());
+        assertEquals(List.of(1), ids(repository.findByNamePrefix("bo", 10)));
+        assertTrue(repository.findByAgeRange(30, 30, 10).isEmpty());
+        assertEquals(List.of(1), ids(repository.findByAgeRange(40, 40, 10)));
+        // The old email is free again, the new one is taken
+        assertDoesNotThrow(() -> repository.save(2, person(2, "Carol", "a@x.com", 25, 1)));
+        assertThrows(IllegalArgumentException.class,
+                () -> repository.save(3, person(3, "Dave", "bob@x.com", 25, 1)));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("engines")
+    void updateKeepingTheEmailKeepsItTaken(String engine, Supplier<PersonStore> store) {
+        InMemoryPersonRepository repository = new InMemoryPersonRepository(store.get());
+        repository.save(1, person(1, "Alice", "a@x.com", 30, 1));
+
+        assertTrue(repository.update(1, 1, person(1, "Alice Smith", "a@x.com", 31, 2)));
+        assertTrue(repository.update(1, 2, person(1, "Alice Jones", "A@x.com", 32, 3)));
+
+        assertEquals(3, repository.findByEmail("a@x.com").getVersion());
+        assertEquals(List.of(1), ids(repository.findByNamePrefix("alice", 10)));
+        assertEquals(List.of(1), ids(repository.findByAgeRange(1, 150, 10)));
+        assertThrows(IllegalArgumentException.class,
+                () -> repository.save(2, person(2, "Eve", "a@x.com", 25, 1)));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("engines")
+    void findAllIsAnIdOrderedSnapshot(String engine, Supplier<PersonStore> supplier) {
+        PersonStore store = supplier.get();
+        for (int id = 300; id >= 1; id--) {
+            store.put(id, person(id, "Name " + id, id % 7 == 0 ? null : id + "@x.com", id % 90, 1));
+        }
+        store.remove(150);
+        List<Person> before = store.findAll();
+        List<Integer> expected = new ArrayList<>();
+        for (int id = 1; id <= 300; id++) {
+            if (id != 150) {
+                expected.add(id);
+            }
+        }
+        assertEquals(expected, ids(before));
+        assertEquals("Name 7", before.get(6).getName());
+        assertNull(before.get(6).getEmail());
+
+        // Enough replaced and removed strings to make the arena-based engines compact their storage
+        String padding = "x".repeat(200);
+        for (int round = 0; round < 40; round++) {
+            for (int id = 1; id <= 300; id++) {
+                store.replace(id, person(id, padding + round, "new" + id + "@x.com", 1, round + 2));
+            }
+        }
+        for (int id = 1; id <= 100; id++) {
+            store.remove(id);
+        }
+
+        assertEquals(expected, ids(before));
+        for (int i = 0; i < before.size(); i++) {
+            Person person = before.get(i);
+            assertEquals("Name " + person.getId(), person.getName());
+            assertEquals(person.getId() % 7 == 0 ? null : person.getId() + "@x.com", person.getEmail());
+            assertEquals(person.getId() % 90, person.getAge());
+            assertEquals(1, person.getVersion());
+        }
+        assertEquals(199, store.findAll().size());
+        assertEquals(padding + 39, store.findAll().get(0).getName());
+        assertThrows(UnsupportedOperationException.class, () -> before.remove(0));
+    }
+
+    private static List<Integer> ids(List<Person> people) {
+        return people.stream().map(Person::getId).toList();
+    }
+
+    @Test
+    void closingTheRepositoryFreesTheOffHeapStore() throws IOException {
+        OffHeapPersonStore store = new OffHeapPersonStore();
+        InMemoryPersonRepository repository = new InMemoryPersonRepository(store);
+        repository.save(1, person(1, "Alice", "a@x.com", 30, 1));
+        List<Person> listed = repository.findAll();
+
+        repository.close();
+
+        assertThrows(IllegalStateException.class, () -> store.get(1));
+        // A list handed out before reads the store's memory too
+        assertThrows(IllegalStateException.class, () -> listed.get(0));
+        assertDoesNotThrow(store::close);
+    }
+}
@@ -0,0 +1,117 @@
+package repository;
+
+import model.Person;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import static repository.BenchmarkSupport.check;
+import static repository.BenchmarkSupport.delete;
+import static repository.BenchmarkSupport.person;
+
+/**
+ * Snapshot and startup cost of a logged InMemoryPersonRepository on each store. Not run by the build; after
+ * mvn test-compile:
+ *
+ *   java --enable-preview -Xmx4g -cp target/classes:target/test-classes repository.RecoveryBenchmark \
+ *       [people] [store...]
+ *
+ * For people (default 1,000,000) on each store (default all four): the time snapshot() takes and the longest a
+ * concurrent writer waited for one update while it ran, then the startup time of a repository reopened from that
+ * snapshot plus a log of people / 10 later updates, with the heap it uses. Run 10,000,000 one store at a time.
+ */
+public class RecoveryBenchmark {
+
+    private static final Map<String, Supplier<PersonStore>> STORES = Map.of(
+            "snapshot", SnapshotPersonStore::new,
+            "inthash", IntHashPersonStore::new,
+            "columnar", ColumnarPersonStore::new,
+            "offheap", OffHeapPersonStore::new);
+
+    public static void main(String[] args) throws Exception {
+        int people = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        List<String> stores = args.length > 1 ? List.of(args).subList(1, args.length)
+                : List.of("snapshot", "inthash", "columnar", "offheap");
+        System.out.printf("%,d people%n", people);
+        System.out.printf("%-10s %12s %14s %12s %12s%n", "store", "snapshot ms", "max stall ms", "startup ms",
+                "heap MB");
+        for (String store : stores) {
+            Path directory = Files.createTempDirectory("recovery-benchmark");
+            try {
+                run(store, STORES.get(store), people, directory);
+            } finally {
+                delete(directory);
+            }
+        }
+    }
+
+    private static void run(String name, Supplier<PersonStore> store, int people, Path directory) throws Exception {
+        // Written by a repository that is gone (with its off-heap memory) by the time the next one starts
+        double[] snapshot = write(store, people, directory);
+        System.gc();
+        long start = System.nanoTime();
+        InMemoryPersonRepository recovered = open(store, directory);
+        double startup = (System.nanoTime() - start) / 1e6;
+        check(recovered.findAll().size() == people, "recovery lost people");
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        long heap = runtime.totalMemory() - runtime.freeMemory();
+        System.out.printf("%-10s %,12.0f %,14.1f %,12.0f %,12d%n", name, snapshot[0], snapshot[1], startup,
+                heap >> 20);
+        recovered.close();
+    }
+
+    // Store people, snapshot them while a writer carries on, then log people / 10 more updates. Returns the
+    // milliseconds the snapshot took and the longest the writer waited for one update meanwhile.
+    private static double[] write(Supplier<PersonStore> store, int people, Path directory) throws Exception {
+        InMemoryPersonRepository repository = open(store, directory);
+        List<Person> batch = new ArrayList<>(1000);
+        for (int id = 1; id <= people; id++) {
+            batch.add(person(id, 0));
+            if (batch.size() == 1000 || id == people) {
+                repository.saveAll(batch);
+                batch.clear();
+            }
+        }
+
+        // A writer keeps updating random people while the snapshot is written
+        AtomicBoolean stop = new AtomicBoolean();
+        long[] longestWait = new long[1];
+        Thread writer = new Thread(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            while (!stop.get()) {
+                int id = 1 + random.nextInt(people);
+                long start = System.nanoTime();
+                Person current = repository.findById(id);
+                repository.update(id, current.getVersion(), person(id, current.getVersion() + 1));
+                longestWait[0] = Math.max(longestWait[0], System.nanoTime() - start);
+            }
+        });
+        writer.start();
+        long start = System.nanoTime();
+        check(repository.snapshot(), "nothing to snapshot");
+        double snapshot = (System.nanoTime() - start) / 1e6;
+        stop.set(true);
+        writer.join();
+
+        for (int i = 0; i < people / 10; i++) {
+            int id = 1 + ThreadLocalRandom.current().nextInt(people);
+            Person current = repository.findById(id);
+            repository.update(id, current.getVersion(), person(id, current.getVersion() + 1));
+        }
+        repository.close();
+        return new double[]{snapshot, longestWait[0] / 1e6};
+    }
+
+    private static InMemoryPersonRepository open(Supplier<PersonStore> store, Path directory) throws IOException {
+        return new InMemoryPersonRepository(store.get(),
+                WriteAheadLog.open(directory, WriteAheadLog.SyncPolicy.BATCHED, 100));
+    }
+}
@@ -0,0 +1,150 @@
+package repository;
+
+import model.Person;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A snapshot replaces the log segments and snapshots before it, and a reopened repository recovers from the snapshot
+ * plus whatever was logged after it, whichever way the log is synced. Snapshots taken while a writer carries on
+ * (which every store but SnapshotPersonStore reads id by id after the cut) recover to the state the writer left.
+ */
+class SnapshotRecoveryTest {
+
+    @TempDir
+    Path directory;
+
+    private InMemoryPersonRepository open(WriteAheadLog.SyncPolicy policy) throws IOException {
+        return new InMemoryPersonRepository(new SnapshotPersonStore(), WriteAheadLog.open(directory, policy, 10));
+    }
+
+    private static Person person(int id, String name, String email) {
+        return new Person.PersonBuilder(id, name).email(email).age(30).build();
+    }
+
+    @ParameterizedTest
+    @EnumSource(WriteAheadLog.SyncPolicy.class)
+    void snapshotReplacesOlderFilesAndRecoversWithTheLaterLog(WriteAheadLog.SyncPolicy policy) throws IOException {
+        InMemoryPersonRepository repository = open(policy);
+        repository.save(1, person(1, "Alice", "alice@x.com"));
+        repository.save(2, person(2, "Bob", "bob@x.com"));
+        assertTrue(repository.snapshot());
+        repository.save(3, person(3, "Carol", "carol@x.com"));
+        assertTrue(repository.delete(1));
+        assertTrue(repository.snapshot());
+        repository.save(4, person(4, "Dave", "dave@x.com"));
+        assertEquals(0, files(".snapshot.tmp").size());
+        assertEquals(1, files(".snapshot").size());
+        assertEquals(1, files(".wal").size());
+        repository.close();
+
+        repository = open(policy);
+        assertNull(repository.findById(1));
+        assertEquals(List.of(2, 3, 4), repository.findAll().stream().map(Person::getId).toList());
+        assertEquals(3, repository.findByEmail("carol@x.com").getId());
+        assertEquals(4, repository.getHighestId());
+        repository.close();
+    }
+
+    static Stream<Arguments> engines() {
+        return Stream.of(
+                Arguments.of("snapshot", (Supplier<PersonStore>) SnapshotPersonStore::new),
+                Arguments.of("inthash", (Supplier<PersonStore>) IntHashPersonStore::new),
+                Arguments.of("columnar", (Supplier<PersonStore>) ColumnarPersonStore::new),
+                Arguments.of("offheap", (Supplier<PersonStore>) OffHeapPersonStore::new));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("engines")
+    void snapshotsTakenWhileWritersCarryOnRecoverTheLatestState(String engine, Supplier<PersonStore> store)
+            throws Exception {
+        InMemoryPersonRepository repository = new InMemoryPersonRepository(store.get(),
+                WriteAheadLog.open(directory, WriteAheadLog.SyncPolicy.BATCHED, 10));
+        for (int id = 1; id <= 2000; id++) {
+            repository.save(id, person(id, "P" + id, "p" + id + "@x.com"));
+        }
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread writer = new Thread(() -> {
+            Random random = new Random(7);
+            int nextId = 2000;
+            try {
+                for (int round = 0; !stop.get() || round < 2000; round++) {
+                    int id = 1 + random.nextInt(nextId);
+                    Person current = repository.findById(id);
+                    if (current == null) {
+                        continue;
+                    }
+                    switch (random.nextInt(4)) {
+                        case 0 -> repository.delete(id);
+                        case 1 -> {
+                            nextId++;
+                            repository.save(nextId, person(nextId, "P" + nextId, "p" + nextId + "@x.com"));
+                        }
+                        default -> {
+                            // Hand the email on to someone else: freed by one update, taken by the next
+                            repository.update(id, current.getVersion(), new Person.PersonBuilder(id, current.getName())
+                                    .email("r" + round + "@x.com").age(30).version(current.getVersion() + 1).build());
+                            Person other = repository.findById(1 + random.nextInt(nextId));
+                            if (other != null && other.getId() != id) {
+                                repository.update(other.getId(), other.getVersion(),
+                                        new Person.PersonBuilder(other.getId(), other.getName())
+                                                .email(current.getEmail()).age(31)
+                                                .version(other.getVersion() + 1).build());
+                            }
+                        }
+                    }
+                }
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        });
+        writer.start();
+        for (int i = 0; i < 5; i++) {
+            repository.snapshot();
+        }
+        stop.set(true);
+        writer.join();
+        assertNull(failure.get());
+        List<String> expected = repository.findAll().stream().map(SnapshotRecoveryTest::describe).toList();
+        int highest = repository.getHighestId();
+        repository.close();
+
+        InMemoryPersonRepository recovered = new InMemoryPersonRepository(store.get(),
+                WriteAheadLog.open(directory, WriteAheadLog.SyncPolicy.BATCHED, 10));
+        assertEquals(expected, recovered.findAll().stream().map(SnapshotRecoveryTest::describe).toList());
+        assertEquals(highest, recovered.getHighestId());
+        for (Person person : recovered.findAll()) {
+            assertEquals(person.getId(), recovered.findByEmail(person.getEmail()).getId());
+        }
+        recovered.close();
+    }
+
+    private static String describe(Person person) {
+        return person.getId() + " " + person.getName() + " " + person.getEmail() + " " + person.getAge() + " v"
+                + person.getVersion();
+    }
+
+    private List<Path> files(String suffix) throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.filter(path -> path.getFileName().toString().endsWith(suffix)).toList();
+        }
+    }
+}
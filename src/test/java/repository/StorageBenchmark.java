@@ -0,0 +1,146 @@
+package repository;
+
+import model.Person;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static repository.BenchmarkSupport.NAMES;
+import static repository.BenchmarkSupport.check;
+import static repository.BenchmarkSupport.delete;
+import static repository.BenchmarkSupport.email;
+import static repository.BenchmarkSupport.person;
+
+/**
+ * The same workload against each storage backend: the in-memory repository alone, with a write-ahead log synced per
+ * write and in batches, and JdbcPersonRepository on an embedded H2 file. Not run by the build; after mvn test-compile:
+ *
+ *   java --enable-preview \
+ *       -cp target/classes:target/test-classes:$HOME/.m2/repository/com/h2database/h2/2.2.224/h2-2.2.224.jar \
+ *       repository.StorageBenchmark [people] [readerThreads]
+ *
+ * Every phase prints operations per second. A smaller in-memory run comes first to warm up the JIT. Data lives in a
+ * temporary directory that is removed afterwards.
+ */
+public class StorageBenchmark {
+
+    private static final int BATCH = 500;
+
+    private interface Backend {
+        PersonRepository open(Path directory) throws IOException;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int people = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int readers = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        System.out.printf("%,d people, %d reader threads%n", people, readers);
+        run("warm-up", Math.max(1, people / 4), readers, directory -> new InMemoryPersonRepository());
+        run("memory", people, readers, directory -> new InMemoryPersonRepository());
+        run("memory+wal(batched)", people, readers, directory -> new InMemoryPersonRepository(
+                new SnapshotPersonStore(), WriteAheadLog.open(directory, WriteAheadLog.SyncPolicy.BATCHED, 100)));
+        run("memory+wal(perwrite)", people, readers, directory -> new InMemoryPersonRepository(
+                new SnapshotPersonStore(), WriteAheadLog.open(directory, WriteAheadLog.SyncPolicy.PER_WRITE, 100)));
+        run("jdbc(h2 file)", people, readers, directory -> new JdbcPersonRepository(
+                "jdbc:h2:file:" + directory.resolve("people"), null, null, readers + 1));
+    }
+
+    private static void run(String name, int people, int readers, Backend backend) throws Exception {
+        Path directory = Files.createTempDirectory("storage-benchmark");
+        PersonRepository repository = backend.open(directory);
+        System.out.println(name);
+        try {
+            Random random = new Random(42);
+            int half = people / 2;
+
+            long start = System.nanoTime();
+            for (int id = 1; id <= half; id++) {
+                repository.save(id, person(id, 1));
+            }
+            report("save", half, start);
+
+            start = System.nanoTime();
+            for (int from = half + 1; from <= people; from += BATCH) {
+                List<Person> batch = new ArrayList<>(BATCH);
+                for (int id = from; id < Math.min(from + BATCH, people + 1); id++) {
+                    batch.add(person(id, 1));
+                }
+                repository.saveAll(batch);
+            }
+            report("saveAll(" + BATCH + ")", people - half, start);
+
+            start = System.nanoTime();
+            long found = 0;
+            for (int i = 0; i < people; i++) {
+                found += repository.findById(1 + random.nextInt(people)) != null ? 1 : 0;
+            }
+            report("findById", people, start);
+            check(found == people, "findById missed");
+
+            start = System.nanoTime();
+            found = 0;
+            for (int i = 0; i < people; i++) {
+                found += repository.findByEmail(email(1 + random.nextInt(people))) != null ? 1 : 0;
+            }
+            report("findByEmail", people, start);
+            check(found == people, "findByEmail missed");
+
+            int prefixes = Math.max(1, people / 10);
+            start = System.nanoTime();
+            for (int i = 0; i < prefixes; i++) {
+                String prefix = NAMES[random.nextInt(NAMES.length)].substring(0, 3);
+                check(!repository.findByNamePrefix(prefix, 20).isEmpty(), "findByNamePrefix missed");
+            }
+            report("findByNamePrefix", prefixes, start);
+
+            start = System.nanoTime();
+            List<Future<Long>> results = new ArrayList<>();
+            ExecutorService pool = Executors.newFixedThreadPool(readers);
+            for (int t = 0; t < readers; t++) {
+                long seed = t;
+                results.add(pool.submit(() -> {
+                    Random own = new Random(seed);
+                    long hits = 0;
+                    for (int i = 0; i < people; i++) {
+                        hits += repository.findById(1 + own.nextInt(people)) != null ? 1 : 0;
+                    }
+                    return hits;
+                }));
+            }
+            found = 0;
+            for (Future<Long> result : results) {
+                found += result.get();
+            }
+            pool.shutdown();
+            report("findById x" + readers + " threads", (long) people * readers, start);
+            check(found == (long) people * readers, "concurrent findById missed");
+
+            start = System.nanoTime();
+            for (int id = 1; id <= people; id++) {
+                check(repository.update(id, 1, person(id, 2)), "update missed");
+            }
+            report("update (version check)", people, start);
+
+            start = System.nanoTime();
+            for (int id = 1; id <= people; id++) {
+                check(repository.delete(id), "delete missed");
+            }
+            report("delete", people, start);
+            check(repository.findAll().isEmpty(), "delete left people behind");
+        } finally {
+            repository.close();
+            delete(directory);
+        }
+    }
+
+    private static void report(String phase, long operations, long start) {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("  %-24s %,12.0f ops/s%n", phase, operations / seconds);
+    }
+}
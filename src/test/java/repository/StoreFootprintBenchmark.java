@@ -0,0 +1,111 @@
+package repository;
+
+import model.Person;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static repository.BenchmarkSupport.check;
+import static repository.BenchmarkSupport.person;
+import static repository.BenchmarkSupport.usedHeap;
+
+/**
+ * Heap taken by each store holding the same people, and how fast a full scan reads them. Not run by the build; after
+ * mvn test-compile:
+ *
+ *   java --enable-preview -Xmx8g -cp target/classes:target/test-classes repository.StoreFootprintBenchmark \
+ *       [people] [store...]
+ *
+ * For people (default 1,000,000) on each store (default all four): the heap in use after a full GC with the store
+ * filled, minus the heap in use before, in MB and bytes per person, and how long filling took. hashmap is the
+ * HashMap<Integer, Person> the repository used to keep, so its figure includes a boxed key and a node per person;
+ * snapshot, hashmap and inthash keep a Person object per person, columnar keeps only primitive columns and a byte
+ * arena. Then the best of 5 full scans of findAll() reading every field, in people per second (for columnar that
+ * includes building each Person). Run 10,000,000 one store at a time.
+ */
+public class StoreFootprintBenchmark {
+
+    private static final Map<String, Supplier<PersonStore>> STORES = Map.of(
+            "hashmap", HashMapPersonStore::new,
+            "snapshot", SnapshotPersonStore::new,
+            "inthash", IntHashPersonStore::new,
+            "columnar", ColumnarPersonStore::new);
+
+    public static void main(String[] args) {
+        int people = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        List<String> stores = args.length > 1 ? List.of(args).subList(1, args.length)
+                : List.of("hashmap", "snapshot", "inthash", "columnar");
+        System.out.printf("%,d people%n", people);
+        System.out.printf("%-10s %12s %14s %12s %16s%n", "store", "heap MB", "bytes/person", "fill ms",
+                "scan people/s");
+        for (String name : stores) {
+            long before = usedHeap();
+            long start = System.nanoTime();
+            PersonStore store = STORES.get(name).get();
+            for (int id = 1; id <= people; id++) {
+                store.put(id, person(id, 1));
+            }
+            double fill = (System.nanoTime() - start) / 1e6;
+            long used = usedHeap() - before;
+            check(store.size() == people, name + " lost people");
+            double scan = scan(store, people);
+            System.out.printf("%-10s %,12d %,14.1f %,12.0f %,16.0f%n", name, used >> 20, (double) used / people, fill,
+                    scan);
+        }
+    }
+
+    // Best of 5 full scans of findAll() touching every field, in people per second
+    private static double scan(PersonStore store, int people) {
+        double best = 0;
+        long checksum = 0;
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            for (Person person : store.findAll()) {
+                checksum += person.getId() + person.getAge() + person.getName().length() + person.getEmail().length();
+            }
+            best = Math.max(best, people / ((System.nanoTime() - start) / 1e9));
+        }
+        check(checksum != 0, "scan read nothing");
+        return best;
+    }
+
+    // The layout the repository had before the store engines: boxed ids in a HashMap
+    private static final class HashMapPersonStore implements PersonStore {
+        private final Map<Integer, Person> people = new HashMap<>();
+
+        @Override
+        public synchronized void put(int id, Person person) {
+            people.put(id, person);
+        }
+
+        @Override
+        public synchronized Person get(int id) {
+            return people.get(id);
+        }
+
+        @Override
+        public synchronized boolean replace(int id, Person person) {
+            return people.replace(id, person) != null;
+        }
+
+        @Override
+        public synchronized boolean remove(int id) {
+            return people.remove(id) != null;
+        }
+
+        @Override
+        public synchronized List<Person> findAll() {
+            List<Person> all = new ArrayList<>(people.values());
+            all.sort(BY_ID);
+            return all;
+        }
+
+        @Override
+        public synchronized int size() {
+            return people.size();
+        }
+    }
+}
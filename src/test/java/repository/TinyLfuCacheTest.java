@@ -0,0 +1,127 @@
+package repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * W-TinyLFU keeps the popular keys of a skewed (Zipf) workload better than plain LRU of the same size, never holds
+ * more than its maximum, and putIfUnchanged() refuses a load that raced with a write.
+ */
+class TinyLfuCacheTest {
+
+    private static final int KEYS = 100_000;
+    private static final int CAPACITY = 1_000;
+    private static final int ACCESSES = 1_000_000;
+
+    @Test
+    void beatsLruOnAZipfWorkload() {
+        int[] trace = zipfTrace(new Random(7), 0.8);
+        double tinyLfu = tinyLfuHitRate(trace);
+        double lru = lruHitRate(trace);
+
+        System.out.printf("Zipf(0.8) over %,d keys, %,d entries: TinyLFU %.1f%% hits, LRU %.1f%%%n", KEYS, CAPACITY,
+                tinyLfu * 100, lru * 100);
+        assertTrue(tinyLfu > lru + 0.03, "TinyLFU " + tinyLfu + " vs LRU " + lru);
+    }
+
+    @Test
+    void aScanDoesNotFlushThePopularKeys() {
+        TinyLfuCache<Integer, Integer> cache = new TinyLfuCache<>(CAPACITY);
+        // A small hot set, asked for many times
+        for (int round = 0; round < 20; round++) {
+            for (int key = 0; key < CAPACITY / 2; key++) {
+                if (cache.get(key) == null) {
+                    cache.put(key, key);
+                }
+            }
+        }
+        // Then a one-off scan over ten times the capacity
+        for (int key = KEYS; key < KEYS + 10 * CAPACITY; key++) {
+            if (cache.get(key) == null) {
+                cache.put(key, key);
+            }
+        }
+        int stillCached = 0;
+        for (int key = 0; key < CAPACITY / 2; key++) {
+            stillCached += cache.get(key) != null ? 1 : 0;
+        }
+        assertTrue(stillCached > CAPACITY / 2 * 9 / 10, stillCached + " of the hot keys survived the scan");
+        assertTrue(cache.size() <= CAPACITY, "size " + cache.size());
+    }
+
+    @Test
+    void aLoadThatRacedWithAWriteIsNotInstalled() {
+        TinyLfuCache<Integer, String> cache = new TinyLfuCache<>(16);
+        long stamp = cache.stamp();
+        cache.invalidate(1);
+        assertFalse(cache.putIfUnchanged(1, "stale", stamp));
+        assertNull(cache.get(1));
+
+        stamp = cache.stamp();
+        cache.put(2, "written");
+        assertFalse(cache.putIfUnchanged(2, "stale", stamp));
+        assertEquals("written", cache.get(2));
+
+        stamp = cache.stamp();
+        assertTrue(cache.putIfUnchanged(3, "loaded", stamp));
+        assertEquals("loaded", cache.get(3));
+    }
+
+    // Keys drawn with probability proportional to 1 / rank^skew, by inverting the cumulative distribution
+    private static int[] zipfTrace(Random random, double skew) {
+        double[] cumulative = new double[KEYS];
+        double sum = 0;
+        for (int rank = 0; rank < KEYS; rank++) {
+            sum += 1 / Math.pow(rank + 1, skew);
+            cumulative[rank] = sum;
+        }
+        int[] trace = new int[ACCESSES];
+        for (int i = 0; i < ACCESSES; i++) {
+            int rank = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            // Scatter the ranks over the key space so key order says nothing about popularity
+            trace[i] = (rank < 0 ? -rank - 1 : rank) * 7919 % KEYS;
+        }
+        return trace;
+    }
+
+    private static double tinyLfuHitRate(int[] trace) {
+        TinyLfuCache<Integer, Integer> cache = new TinyLfuCache<>(CAPACITY);
+        long hits = 0;
+        for (int key : trace) {
+            if (cache.get(key) != null) {
+                hits++;
+            } else {
+                cache.put(key, key);
+            }
+        }
+        assertTrue(cache.size() <= CAPACITY, "size " + cache.size());
+        return hits / (double) trace.length;
+    }
+
+    private static double lruHitRate(int[] trace) {
+        Map<Integer, Integer> cache = new LinkedHashMap<>(CAPACITY * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Integer> eldest) {
+                return size() > CAPACITY;
+            }
+        };
+        long hits = 0;
+        for (int key : trace) {
+            if (cache.get(key) != null) {
+                hits++;
+            } else {
+                cache.put(key, key);
+            }
+        }
+        return hits / (double) trace.length;
+    }
+}
@@ -0,0 +1,112 @@
+package server;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A client over its limit gets 429 Too Many Requests with a Retry-After header from the running server, before its
+ * request reaches a controller, while other route classes stay open.
+ */
+class RateLimitedServerTest {
+
+    private static final List<String> PROPERTIES = List.of("person.ratelimit.read", "person.ratelimit.read.burst",
+            "person.ratelimit.write", "person.ratelimit.write.burst", "person.durability", "person.data.dir",
+            "person.writes");
+
+    @TempDir
+    Path directory;
+
+    private BaylorSportsHttpServer server;
+    private Thread accepting;
+
+    @AfterEach
+    void stop() throws InterruptedException {
+        if (server != null) {
+            server.stop();
+            accepting.join(10_000);
+        }
+        PROPERTIES.forEach(System::clearProperty);
+    }
+
+    @Test
+    void aClientOverItsLimitIsToldWhenToComeBack() throws Exception {
+        // Two reads, then one every 100 seconds; writes unlimited
+        System.setProperty("person.ratelimit.read", "0.01");
+        System.setProperty("person.ratelimit.read.burst", "2");
+        System.setProperty("person.ratelimit.write", "0");
+        System.setProperty("person.durability", "none");
+        System.setProperty("person.data.dir", directory.toString());
+        System.setProperty("person.writes", "direct");
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        server = new BaylorSportsHttpServer(port);
+        accepting = new Thread(() -> {
+            try {
+                server.start();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        accepting.start();
+
+        String first = send(port, "GET /person HTTP/1.1\r\nHost: localhost\r\n\r\n");
+        String second = send(port, "GET /person HTTP/1.1\r\nHost: localhost\r\n\r\n");
+        assertFalse(first.startsWith("HTTP/1.1 429"), first);
+        assertFalse(second.startsWith("HTTP/1.1 429"), second);
+
+        String third = send(port, "GET /person HTTP/1.1\r\nHost: localhost\r\n\r\n");
+        assertTrue(third.startsWith("HTTP/1.1 429 Too Many Requests\r\n"), third);
+        String head = third.substring(0, third.indexOf("\r\n\r\n") + 2);
+        long retryAfter = Long.parseLong(header(head, "Retry-After"));
+        assertTrue(retryAfter >= 99 && retryAfter <= 100, "Retry-After " + retryAfter);
+        assertTrue(third.contains("Please try again in " + retryAfter + " seconds"), third);
+
+        String write = send(port, "POST /person/delete/12345 HTTP/1.1\r\nHost: localhost\r\nContent-Length: 0\r\n\r\n");
+        assertFalse(write.startsWith("HTTP/1.1 429"), write);
+    }
+
+    // Sends the request on a fresh connection and returns everything the server answers, retrying until it listens
+    private static String send(int port, String request) throws Exception {
+        for (int attempt = 0; ; attempt++) {
+            try (Socket socket = new Socket("localhost", port)) {
+                socket.setSoTimeout(10_000);
+                OutputStream out = socket.getOutputStream();
+                out.write(request.getBytes(StandardCharsets.ISO_8859_1));
+                out.flush();
+                InputStream in = socket.getInputStream();
+                return new String(in.readAllBytes(), StandardCharsets.ISO_8859_1);
+            } catch (ConnectException e) {
+                if (attempt == 100) {
+                    throw e;
+                }
+                Thread.sleep(50);
+            }
+        }
+    }
+
+    private static String header(String head, String name) {
+        for (String line : head.split("\r\n")) {
+            if (line.regionMatches(true, 0, name + ":", 0, name.length() + 1)) {
+                return line.substring(name.length() + 1).trim();
+            }
+        }
+        throw new AssertionError("no " + name + " header in " + head);
+    }
+}
@@ -0,0 +1,122 @@
+package server;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The GCRA buckets on a clock moved by hand: a client gets its burst and then one request per interval, a refused
+ * request is told the whole seconds until its next token (rounded up, never 0), route classes are counted
+ * separately, and when the client table is full the client closest to full loses its slot and comes back with a
+ * fresh bucket.
+ */
+class RateLimiterTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000_000_000L);
+
+    private RateLimiter limiter(int maxClients, double readRate, int readBurst, double writeRate, int writeBurst) {
+        return new RateLimiter(maxClients, readRate, readBurst, writeRate, writeBurst, now::get);
+    }
+
+    private void advance(long amount, TimeUnit unit) {
+        now.addAndGet(unit.toNanos(amount));
+    }
+
+    private static InetAddress client(int n) throws UnknownHostException {
+        return InetAddress.getByAddress(new byte[]{10, 0, (byte) (n >> 8), (byte) n});
+    }
+
+    @Test
+    void aClientGetsItsBurstAndThenOneRequestPerInterval() throws UnknownHostException {
+        RateLimiter limiter = limiter(64, 10, 3, 0, 0);
+        InetAddress client = client(1);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.acquire(client, RateLimiter.RouteClass.READ), "burst request " + i);
+        }
+        assertEquals(1, limiter.acquire(client, RateLimiter.RouteClass.READ));
+
+        advance(99, TimeUnit.MILLISECONDS);
+        assertEquals(1, limiter.acquire(client, RateLimiter.RouteClass.READ));
+        advance(1, TimeUnit.MILLISECONDS);
+        assertEquals(0, limiter.acquire(client, RateLimiter.RouteClass.READ));
+        assertEquals(1, limiter.acquire(client, RateLimiter.RouteClass.READ));
+
+        // Idle for much longer than burst intervals: the bucket holds burst tokens, not more
+        advance(1, TimeUnit.HOURS);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.acquire(client, RateLimiter.RouteClass.READ), "refilled request " + i);
+        }
+        assertEquals(1, limiter.acquire(client, RateLimiter.RouteClass.READ));
+        assertEquals(7, limiter.getAllowedCount());
+        assertEquals(4, limiter.getRejectedCount());
+    }
+
+    @Test
+    void retryAfterIsRoundedUpToWholeSeconds() throws UnknownHostException {
+        // One request every 10 seconds, no burst beyond it
+        RateLimiter limiter = limiter(64, 0, 0, 0.1, 1);
+        InetAddress client = client(1);
+        assertEquals(0, limiter.acquire(client, RateLimiter.RouteClass.WRITE));
+        assertEquals(10, limiter.acquire(client, RateLimiter.RouteClass.WRITE));
+
+        advance(500, TimeUnit.MILLISECONDS);
+        assertEquals(10, limiter.acquire(client, RateLimiter.RouteClass.WRITE));
+        advance(8_500, TimeUnit.MILLISECONDS);
+        assertEquals(1, limiter.acquire(client, RateLimiter.RouteClass.WRITE));
+        advance(999_999_999, TimeUnit.NANOSECONDS);
+        assertEquals(1, limiter.acquire(client, RateLimiter.RouteClass.WRITE));
+        advance(1, TimeUnit.NANOSECONDS);
+        assertEquals(0, limiter.acquire(client, RateLimiter.RouteClass.WRITE));
+    }
+
+    @Test
+    void routeClassesHaveTheirOwnBucketsAndZeroMeansUnlimited() throws UnknownHostException {
+        RateLimiter limiter = limiter(64, 0, 0, 1, 1);
+        InetAddress client = client(1);
+        assertEquals(0, limiter.acquire(client, RateLimiter.RouteClass.WRITE));
+        assertEquals(1, limiter.acquire(client, RateLimiter.RouteClass.WRITE));
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(0, limiter.acquire(client, RateLimiter.RouteClass.READ));
+        }
+        // Another client's writes are not affected by the first one's
+        assertEquals(0, limiter.acquire(client(2), RateLimiter.RouteClass.WRITE));
+
+        assertEquals(RateLimiter.RouteClass.READ, RateLimiter.classify("GET /person HTTP/1.1"));
+        assertEquals(RateLimiter.RouteClass.READ, RateLimiter.classify("HEAD / HTTP/1.1"));
+        assertEquals(RateLimiter.RouteClass.WRITE, RateLimiter.classify("POST /person/create HTTP/1.1"));
+        assertEquals(RateLimiter.RouteClass.WRITE, RateLimiter.classify("DELETE /person/1 HTTP/1.1"));
+        assertThrows(IllegalArgumentException.class, () -> limiter(64, -1, 1, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> limiter(64, 1, 0, 0, 0));
+    }
+
+    @Test
+    void aFullTableReplacesTheClientClosestToFull() throws UnknownHostException {
+        // Eight slots, all in every client's probe window, one write a minute per client
+        RateLimiter limiter = limiter(8, 0, 0, 1.0 / 60, 1);
+        for (int n = 1; n <= 8; n++) {
+            assertEquals(0, limiter.acquire(client(n), RateLimiter.RouteClass.WRITE));
+            advance(1, TimeUnit.SECONDS);
+        }
+        // Client 1 went first, so its bucket is the closest to full and its slot goes to client 9
+        assertEquals(0, limiter.acquire(client(9), RateLimiter.RouteClass.WRITE));
+        assertTrue(limiter.toString().contains("activeClientsReplaced=1"), limiter.toString());
+        for (int n = 2; n <= 9; n++) {
+            assertTrue(limiter.acquire(client(n), RateLimiter.RouteClass.WRITE) > 0, "client " + n + " was reset");
+        }
+        // Being pushed out only ever gives a client a fresh bucket: client 1 is back, taking client 2's slot
+        assertEquals(0, limiter.acquire(client(1), RateLimiter.RouteClass.WRITE));
+        assertTrue(limiter.toString().contains("activeClientsReplaced=2"), limiter.toString());
+
+        // Once every bucket has refilled, a slot is free to take without counting as a replacement
+        advance(2, TimeUnit.MINUTES);
+        assertEquals(0, limiter.acquire(client(10), RateLimiter.RouteClass.WRITE));
+        assertTrue(limiter.toString().contains("activeClientsReplaced=2"), limiter.toString());
+    }
+}
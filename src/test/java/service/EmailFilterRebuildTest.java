@@ -0,0 +1,72 @@
+package service;
+
+import dto.PersonDTO;
+import model.Person;
+import org.junit.jupiter.api.Test;
+import repository.InMemoryPersonRepository;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A create that arrives while the email filter is being rebuilt must still be in the filter afterwards, since email
+ * lookups trust its "definitely absent".
+ */
+class EmailFilterRebuildTest {
+
+    // Once armed, the next findAll() starts a concurrent create after taking its snapshot and gives it time to land
+    private static final class RacingRepository extends InMemoryPersonRepository {
+        volatile PersonService service;
+        volatile boolean armed;
+        Thread racer;
+
+        @Override
+        public List<Person> findAll() {
+            List<Person> people = super.findAll();
+            if (armed) {
+                armed = false;
+                racer = new Thread(() -> service.createPerson(dto("Racer", "racer@x.com")));
+                racer.start();
+                try {
+                    racer.join(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return people;
+        }
+    }
+
+    private static PersonDTO dto(String name, String email) {
+        PersonDTO dto = new PersonDTO();
+        dto.setName(name);
+        dto.setEmail(email);
+        dto.setAge(30);
+        return dto;
+    }
+
+    @Test
+    void createDuringRebuildIsNotLost() throws InterruptedException {
+        RacingRepository repository = new RacingRepository();
+        PersonService service = new PersonService(repository, new ChangeFeed(16, 1));
+        repository.service = service;
+        EmailBloomFilter filter = service.getEmailFilter();
+        long capacity = filter.getCapacity();
+
+        for (int i = 0; i < capacity; i++) {
+            service.createPerson(dto("Person " + i, "person" + i + "@x.com"));
+        }
+        repository.armed = true;
+        // One past the capacity: this create triggers the rebuild
+        service.createPerson(dto("Trigger", "trigger@x.com"));
+        repository.racer.join();
+
+        assertTrue(filter.getCapacity() > capacity);
+        assertNotNull(repository.findByEmail("racer@x.com"));
+        assertNotNull(service.findPersonByEmail("racer@x.com"));
+        assertEquals(repository.findAll().size(), filter.getCount());
+    }
+}
@@ -0,0 +1,78 @@
+package service;
+
+import model.Person;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Search latency at a million people. Not run by the build; after mvn test-compile:
+ *
+ *   java --enable-preview -Xmx4g -cp target/classes:target/test-classes service.PersonSearchBenchmark [people]
+ *
+ * Names come from small lists, so common first names and domains match tens of thousands of people, and every email
+ * local part carries a number, which gives single-letter queries tens of thousands of prefix tokens to expand.
+ */
+public class PersonSearchBenchmark {
+
+    private static final String[] FIRST = {"mary", "james", "john", "patricia", "robert", "jennifer", "michael",
+            "linda", "william", "elizabeth", "david", "barbara", "richard", "susan", "joseph", "jessica", "thomas",
+            "sarah", "charles", "karen", "christopher", "nancy", "daniel", "lisa", "matthew", "betty", "anthony",
+            "margaret", "mark", "sandra", "donald", "ashley", "steven", "kimberly", "paul", "emily", "andrew", "donna",
+            "joshua", "michelle", "kenneth", "dorothy", "kevin", "carol", "brian", "amanda", "george", "melissa"};
+    private static final String[] LAST = {"smith", "johnson", "williams", "brown", "jones", "garcia", "miller",
+            "davis", "rodriguez", "martinez", "hernandez", "lopez", "gonzalez", "wilson", "anderson", "thomas",
+            "taylor", "moore", "jackson", "martin", "lee", "perez", "thompson", "white", "harris", "sanchez", "clark",
+            "ramirez", "lewis", "robinson", "walker", "young", "allen", "king", "wright", "scott", "torres", "nguyen",
+            "hill", "flores", "green", "adams", "nelson", "baker", "hall", "rivera", "campbell", "mitchell"};
+    private static final String[] DOMAINS = {"baylor.edu", "gmail.com", "yahoo.com", "outlook.com", "icloud.com",
+            "hotmail.com", "aol.com", "proton.me", "utexas.edu", "tamu.edu"};
+
+    private static final String[] QUERIES = {"mary", "baylor", "j", "mary baylor", "jo sm", "elizabeth edu",
+            "mary john", "zzz"};
+    private static final int LIMIT = PersonService.MAX_SEARCH_RESULTS;
+    private static final int WARMUP = 2_000;
+    private static final int RUNS = 5_000;
+
+    public static void main(String[] args) {
+        int people = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Random random = new Random(42);
+        PersonSearchIndex index = new PersonSearchIndex();
+        long start = System.nanoTime();
+        for (int id = 1; id <= people; id++) {
+            String first = FIRST[random.nextInt(FIRST.length)];
+            String last = LAST[random.nextInt(LAST.length)];
+            index.index(new Person.PersonBuilder(id, capitalize(first) + " " + capitalize(last))
+                    .email(first + "." + last + random.nextInt(10_000) + "@" + DOMAINS[random.nextInt(DOMAINS.length)])
+                    .age(18 + random.nextInt(60))
+                    .build());
+        }
+        System.out.printf("indexed %,d people in %d ms%n", people,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+        long blackhole = 0;
+        for (String query : QUERIES) {
+            for (int i = 0; i < WARMUP; i++) {
+                blackhole += index.search(query, LIMIT).size();
+            }
+            long[] nanos = new long[RUNS];
+            int results = 0;
+            for (int i = 0; i < RUNS; i++) {
+                long before = System.nanoTime();
+                results = index.search(query, LIMIT).size();
+                nanos[i] = System.nanoTime() - before;
+                blackhole += results;
+            }
+            Arrays.sort(nanos);
+            System.out.printf("%-16s results=%3d  mean=%8.1f us  p50=%8.1f us  p99=%8.1f us%n", "\"" + query + "\"",
+                    results, Arrays.stream(nanos).average().orElse(0) / 1000, nanos[RUNS / 2] / 1000.0,
+                    nanos[RUNS * 99 / 100] / 1000.0);
+        }
+        System.out.println("(" + blackhole + ")");
+    }
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+}
@@ -0,0 +1,141 @@
+package service;
+
+import dto.PersonDTO;
+import model.Person;
+import org.junit.jupiter.api.Test;
+import repository.InMemoryPersonRepository;
+import repository.VersionConflictException;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PersonSearchIndexTest {
+
+    private static final String[] FIRST = {"mary", "maryann", "john", "johnny", "james", "jane", "ma", "j"};
+    private static final String[] LAST = {"baylor", "bay", "jones", "johnson", "smith", "marsh"};
+    private static final String[] DOMAINS = {"baylor.edu", "gmail.com", "bay.org", "jmail.com"};
+
+    private static Person person(int id, String name, String email) {
+        return new Person.PersonBuilder(id, name).email(email).age(30).version(1).build();
+    }
+
+    // Every person, scored the way the index documents it, best first
+    private static List<Integer> bruteForce(Map<Integer, Person> people, String query, int limit) {
+        String[] terms = query.toLowerCase().trim().split("[^a-z0-9]+");
+        List<int[]> ranked = new ArrayList<>();
+        for (Person person : people.values()) {
+            String[] tokens = PersonSearchIndex.tokenize(person);
+            int score = 0;
+            for (String term : terms) {
+                int weight = 0;
+                for (String token : tokens) {
+                    weight = Math.max(weight, token.equals(term) ? 2 : token.startsWith(term) ? 1 : 0);
+                }
+                if (weight == 0) {
+                    score = 0;
+                    break;
+                }
+                score += weight;
+            }
+            if (score > 0) {
+                ranked.add(new int[]{person.getId(), score});
+            }
+        }
+        ranked.sort(Comparator.<int[]>comparingInt(r -> -r[1]).thenComparingInt(r -> r[0]));
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < ranked.size() && i < limit; i++) {
+            ids.add(ranked.get(i)[0]);
+        }
+        return ids;
+    }
+
+    @Test
+    void matchesBruteForceRanking() {
+        Random random = new Random(35);
+        PersonSearchIndex index = new PersonSearchIndex();
+        Map<Integer, Person> people = new HashMap<>();
+        for (int step = 0; step < 20_000; step++) {
+            int id = 1 + random.nextInt(3000);
+            if (random.nextInt(5) == 0) {
+                index.remove(id);
+                people.remove(id);
+                continue;
+            }
+            String first = FIRST[random.nextInt(FIRST.length)];
+            String last = LAST[random.nextInt(LAST.length)];
+            Person person = person(id, first + " " + last,
+                    first + "." + last + random.nextInt(50) + "@" + DOMAINS[random.nextInt(DOMAINS.length)]);
+            index.index(person);
+            people.put(id, person);
+        }
+
+        String[] queries = {"mary", "ma", "j", "john", "baylor", "bay", "mary baylor", "j bay", "ma j", "jones edu",
+                "m b g", "smith3", "nobody", "mary mary", "baylor.edu", "joh smi", "mar bay", "jo johnson"};
+        for (String query : queries) {
+            for (int limit : new int[]{1, 7, 50, 5000}) {
+                assertEquals(bruteForce(people, query, limit), index.search(query, limit), query + " / " + limit);
+            }
+        }
+    }
+
+    @Test
+    void concurrentUpdatesLeaveTheLatestNameIndexed() throws InterruptedException {
+        PersonService service = new PersonService(new InMemoryPersonRepository(), new ChangeFeed(16, 1));
+        PersonDTO created = new PersonDTO();
+        created.setName("start");
+        created.setEmail("same@x.com");
+        created.setAge(30);
+        int id = service.createPerson(created).getId();
+
+        int threads = 4;
+        CountDownLatch ready = new CountDownLatch(threads);
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            String name = "writer" + t;
+            Thread writer = new Thread(() -> {
+                ready.countDown();
+                for (int i = 0; i < 2000; i++) {
+                    PersonDTO dto = new PersonDTO();
+                    dto.setName(name);
+                    dto.setEmail("same@x.com");
+                    dto.setAge(30);
+                    dto.setVersion(service.findPersonById(id).getVersion());
+                    try {
+                        service.updatePerson(id, dto);
+                    } catch (VersionConflictException e) {
+                        // Lost the race this time; the next round reads the new version
+                    }
+                }
+            });
+            writers.add(writer);
+            writer.start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        String stored = service.findPersonById(id).getName();
+        assertEquals(List.of(id), ids(service.searchPersons(stored)));
+        for (int t = 0; t < threads; t++) {
+            if (!stored.equals("writer" + t)) {
+                assertTrue(service.searchPersons("writer" + t).isEmpty(), "stale tokens for writer" + t);
+            }
+        }
+    }
+
+    private static List<Integer> ids(List<Person> people) {
+        List<Integer> ids = new ArrayList<>();
+        for (Person person : people) {
+            ids.add(person.getId());
+        }
+        return ids;
+    }
+}
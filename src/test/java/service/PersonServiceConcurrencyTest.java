@@ -0,0 +1,258 @@
+package service;
+
+import dto.PersonDTO;
+import model.Person;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import repository.ColumnarPersonStore;
+import repository.InMemoryPersonRepository;
+import repository.IntHashPersonStore;
+import repository.OffHeapPersonStore;
+import repository.PartitionedPersonRepository;
+import repository.PersonRepository;
+import repository.PersonStore;
+import repository.SnapshotPersonStore;
+import repository.VersionConflictException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Creates, updates and deletes from many threads at once, on every PersonStore engine and on a partitioned repository,
+ * with and without the MutationPipeline. Each test checks what a linearizable repository guarantees whatever the
+ * interleaving: every create gets its own id and is kept, an email is registered once, an update only applies to the
+ * version it was based on (so none is lost), readers never see a version go backwards, and nothing comes back after a
+ * delete.
+ */
+class PersonServiceConcurrencyTest {
+
+    private static final int THREADS = 8;
+
+    static Stream<Arguments> configurations() {
+        List<Arguments> configurations = new ArrayList<>();
+        for (boolean pipeline : new boolean[]{false, true}) {
+            String writes = pipeline ? "pipeline" : "direct";
+            configurations.add(Arguments.of("snapshot/" + writes, memory(SnapshotPersonStore::new), pipeline));
+            configurations.add(Arguments.of("inthash/" + writes, memory(IntHashPersonStore::new), pipeline));
+            configurations.add(Arguments.of("columnar/" + writes, memory(ColumnarPersonStore::new), pipeline));
+            configurations.add(Arguments.of("offheap/" + writes, memory(OffHeapPersonStore::new), pipeline));
+            configurations.add(Arguments.of("partitioned(4)/" + writes, (Supplier<PersonRepository>)
+                    () -> new PartitionedPersonRepository(4, k -> new InMemoryPersonRepository()), pipeline));
+        }
+        return configurations.stream();
+    }
+
+    private static Supplier<PersonRepository> memory(Supplier<PersonStore> store) {
+        return () -> new InMemoryPersonRepository(store.get());
+    }
+
+    private static PersonService service(Supplier<PersonRepository> repositories, boolean pipeline) {
+        PersonRepository repository = repositories.get();
+        MutationPipeline mutationPipeline = pipeline
+                ? MutationPipeline.start(repository, MutationPipeline.DEFAULT_CAPACITY,
+                        MutationPipeline.DEFAULT_MAX_BATCH)
+                : null;
+        return new PersonService(repository, new ChangeFeed(PersonService.DEFAULT_FEED_CAPACITY,
+                PersonService.DEFAULT_FEED_SUBSCRIBERS), mutationPipeline);
+    }
+
+    private static PersonDTO dto(String name, String email, int age, int version) {
+        PersonDTO dto = new PersonDTO();
+        dto.setName(name);
+        dto.setEmail(email);
+        dto.setAge(age);
+        dto.setVersion(version);
+        return dto;
+    }
+
+    // Runs body(thread) on THREADS threads released together; rethrows the first failure
+    private static void concurrently(IntConsumer body) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                results.add(pool.submit(() -> {
+                    start.await();
+                    body.accept(thread);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("configurations")
+    void everyCreateGetsItsOwnIdAndIsKept(String name, Supplier<PersonRepository> repository, boolean pipeline)
+            throws Exception {
+        PersonService service = service(repository, pipeline);
+        int perThread = 500;
+        Set<Integer> ids = ConcurrentHashMap.newKeySet();
+
+        concurrently(thread -> {
+            for (int i = 0; i < perThread; i++) {
+                Person person = service.createPerson(dto("P" + thread + "-" + i, "p" + thread + "-" + i + "@x.com",
+                        20, 0));
+                assertTrue(ids.add(person.getId()), "id " + person.getId() + " handed out twice");
+            }
+        });
+
+        int total = THREADS * perThread;
+        assertEquals(total, ids.size());
+        assertEquals(total, service.findAllPersons().size());
+        for (int id = 1; id <= total; id++) {
+            Person person = service.findPersonById(id);
+            assertNotNull(person, "person " + id + " was lost");
+            assertEquals(id, service.findPersonByEmail(person.getEmail()).getId());
+        }
+        assertEquals(total, service.getStats(1).getTotal());
+        service.close();
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("configurations")
+    void anEmailIsRegisteredOnce(String name, Supplier<PersonRepository> repository, boolean pipeline)
+            throws Exception {
+        PersonService service = service(repository, pipeline);
+        int emails = 200;
+        AtomicInteger created = new AtomicInteger();
+
+        concurrently(thread -> {
+            for (int i = 0; i < emails; i++) {
+                try {
+                    service.createPerson(dto("T" + thread, "shared" + i + "@x.com", 20, 0));
+                    created.incrementAndGet();
+                } catch (IllegalArgumentException e) {
+                    // Someone else registered it first
+                }
+            }
+        });
+
+        assertEquals(emails, created.get());
+        assertEquals(emails, service.findAllPersons().size());
+        for (int i = 0; i < emails; i++) {
+            assertNotNull(service.findPersonByEmail("shared" + i + "@x.com"));
+        }
+        service.close();
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("configurations")
+    void updatesAreCompareAndSetOnTheVersion(String name, Supplier<PersonRepository> repository, boolean pipeline)
+            throws Exception {
+        PersonService service = service(repository, pipeline);
+        int id = service.createPerson(dto("Counter", "counter@x.com", 0, 0)).getId();
+        int perThread = 300;
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<String> anomalies = new ArrayList<>();
+
+        // Each person is replaced as a whole, so age stays version - 1, and versions only go forward
+        Thread reader = new Thread(() -> {
+            int lastVersion = 0;
+            while (writing.get()) {
+                Person person = service.findPersonById(id);
+                if (person.getVersion() < lastVersion || person.getAge() != person.getVersion() - 1) {
+                    anomalies.add("read version " + person.getVersion() + " age " + person.getAge() + " after "
+                            + lastVersion);
+                }
+                lastVersion = person.getVersion();
+            }
+        });
+        reader.start();
+
+        // Every thread adds perThread to the age, re-reading on each conflict
+        concurrently(thread -> {
+            for (int done = 0; done < perThread; ) {
+                Person current = service.findPersonById(id);
+                try {
+                    assertNotNull(service.updatePerson(id, dto("Counter", "counter@x.com", current.getAge() + 1,
+                            current.getVersion())));
+                    done++;
+                } catch (VersionConflictException e) {
+                    // Lost the race; try again from the newer version
+                }
+            }
+        });
+        writing.set(false);
+        reader.join();
+
+        Person person = service.findPersonById(id);
+        assertEquals(THREADS * perThread, person.getAge());
+        assertEquals(THREADS * perThread + 1, person.getVersion());
+        assertEquals(List.of(), anomalies);
+        service.close();
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("configurations")
+    void nothingComesBackAfterADelete(String name, Supplier<PersonRepository> repository, boolean pipeline)
+            throws Exception {
+        PersonService service = service(repository, pipeline);
+        int people = 300;
+        for (int i = 0; i < people; i++) {
+            service.createPerson(dto("Doomed " + i, "doomed" + i + "@x.com", 30, 0));
+        }
+        AtomicInteger deleted = new AtomicInteger();
+
+        // Half the threads delete everyone, the other half keep editing until they find the person gone
+        concurrently(thread -> {
+            for (int id = 1; id <= people; id++) {
+                if (thread % 2 == 0) {
+                    if (service.deletePerson(id)) {
+                        deleted.incrementAndGet();
+                    }
+                    continue;
+                }
+                while (true) {
+                    Person current = service.findPersonById(id);
+                    if (current == null) {
+                        break;
+                    }
+                    try {
+                        if (service.updatePerson(id, dto("Edited " + thread, current.getEmail(), 31,
+                                current.getVersion())) == null) {
+                            break;
+                        }
+                    } catch (VersionConflictException e) {
+                        // Edited by another thread; look again
+                    }
+                }
+            }
+        });
+
+        assertEquals(people, deleted.get());
+        assertEquals(List.of(), service.findAllPersons());
+        for (int id = 1; id <= people; id++) {
+            assertNull(service.findPersonById(id));
+            assertNull(service.findPersonByEmail("doomed" + (id - 1) + "@x.com"));
+        }
+        assertEquals(List.of(), service.searchPersons("doomed"));
+        assertEquals(0, service.getStats(1).getTotal());
+        service.close();
+    }
+}
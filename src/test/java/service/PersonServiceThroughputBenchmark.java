@@ -0,0 +1,134 @@
+package service;
+
+import dto.PersonDTO;
+import model.Person;
+import repository.ColumnarPersonStore;
+import repository.InMemoryPersonRepository;
+import repository.IntHashPersonStore;
+import repository.OffHeapPersonStore;
+import repository.PersonStore;
+import repository.SnapshotPersonStore;
+import repository.VersionConflictException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * PersonService throughput from 1 to 32 threads, on every PersonStore engine, writing directly and through the
+ * MutationPipeline. Not run by the build; after mvn test-compile:
+ *
+ *   java --enable-preview -cp target/classes:target/test-classes service.PersonServiceThroughputBenchmark [millis]
+ *
+ * Two mixes run against 10,000 people: reads (findById, 90%) with updates (10%), and writes only (creates and
+ * updates, half each). Each cell is operations per second over millis (default 1000) after a warm-up of the same
+ * length. Updates that lose a version race count as done; they cost the same as a successful one.
+ */
+public class PersonServiceThroughputBenchmark {
+
+    private static final int[] THREADS = {1, 2, 4, 8, 16, 32};
+    private static final int PEOPLE = 10_000;
+
+    public static void main(String[] args) throws Exception {
+        long millis = args.length > 0 ? Long.parseLong(args[0]) : 1000;
+        List<String> names = List.of("snapshot", "inthash", "columnar", "offheap");
+        List<Supplier<PersonStore>> stores = List.of(SnapshotPersonStore::new, IntHashPersonStore::new,
+                ColumnarPersonStore::new, OffHeapPersonStore::new);
+
+        System.out.printf("%-20s %-6s", "engine/writes", "mix");
+        for (int threads : THREADS) {
+            System.out.printf(" %11s", threads + " thr");
+        }
+        System.out.println();
+        for (int i = 0; i < names.size(); i++) {
+            for (boolean pipeline : new boolean[]{false, true}) {
+                for (int readPercent : new int[]{90, 0}) {
+                    System.out.printf("%-20s %-6s", names.get(i) + "/" + (pipeline ? "pipeline" : "direct"),
+                            readPercent > 0 ? "90/10" : "writes");
+                    for (int threads : THREADS) {
+                        PersonService service = service(stores.get(i), pipeline);
+                        run(service, threads, readPercent, millis);
+                        System.out.printf(" %,11.0f", run(service, threads, readPercent, millis));
+                        service.close();
+                    }
+                    System.out.println();
+                }
+            }
+        }
+    }
+
+    private static PersonService service(Supplier<PersonStore> store, boolean pipeline) {
+        InMemoryPersonRepository repository = new InMemoryPersonRepository(store.get());
+        MutationPipeline mutationPipeline = pipeline
+                ? MutationPipeline.start(repository, MutationPipeline.DEFAULT_CAPACITY,
+                        MutationPipeline.DEFAULT_MAX_BATCH)
+                : null;
+        PersonService service = new PersonService(repository, new ChangeFeed(PersonService.DEFAULT_FEED_CAPACITY,
+                PersonService.DEFAULT_FEED_SUBSCRIBERS), mutationPipeline);
+        List<PersonDTO> people = new ArrayList<>(PEOPLE);
+        for (int i = 0; i < PEOPLE; i++) {
+            people.add(dto("Person " + i, "person" + i + "@x.com", 0));
+        }
+        service.createPersons(people);
+        return service;
+    }
+
+    // Operations per second with threads running the mix for millis
+    private static double run(PersonService service, int threads, int readPercent, long millis) throws Exception {
+        LongAdder operations = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        long[] deadline = new long[1];
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long done = 0;
+                while (System.nanoTime() < deadline[0]) {
+                    int id = 1 + random.nextInt(PEOPLE);
+                    int roll = random.nextInt(100);
+                    if (roll < readPercent) {
+                        service.findPersonById(id);
+                    } else if (readPercent == 0 && roll < 50) {
+                        service.createPerson(dto("New", null, 0));
+                    } else {
+                        Person current = service.findPersonById(id);
+                        try {
+                            service.updatePerson(id, dto(current.getName(), current.getEmail(),
+                                    current.getVersion()));
+                        } catch (VersionConflictException e) {
+                            // Another thread updated it first
+                        }
+                    }
+                    done++;
+                }
+                operations.add(done);
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        long began = System.nanoTime();
+        deadline[0] = began + millis * 1_000_000;
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return operations.sum() / ((System.nanoTime() - began) / 1e9);
+    }
+
+    private static PersonDTO dto(String name, String email, int version) {
+        PersonDTO dto = new PersonDTO();
+        dto.setName(name);
+        dto.setEmail(email);
+        dto.setAge(30);
+        dto.setVersion(version);
+        return dto;
+    }
+}
@@ -0,0 +1,122 @@
+package service;
+
+import dto.RegistrationStats;
+import model.Person;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Each age lands in the bracket that starts at or below it, a domain disappears once nobody uses it, the top
+ * domains come most common first with ties in alphabetical order, and figures counted in parts combine to the same
+ * result as one pass (as PersonRepository.aggregate() builds them).
+ */
+class RegistrationAggregatesTest {
+
+    private static Person person(int id, int age, String email) {
+        return new Person.PersonBuilder(id, "P" + id).age(age).email(email).build();
+    }
+
+    private static long bracket(RegistrationAggregates aggregates, String label) {
+        for (RegistrationStats.Count count : aggregates.snapshot().getAgeBrackets()) {
+            if (count.getLabel().equals(label)) {
+                return count.getCount();
+            }
+        }
+        throw new AssertionError("no bracket " + label);
+    }
+
+    private static List<String> labels(List<RegistrationStats.Count> counts) {
+        return counts.stream().map(count -> count.getLabel() + "=" + count.getCount()).toList();
+    }
+
+    @Test
+    void bracketBoundariesBelongToTheHigherBracket() {
+        RegistrationAggregates aggregates = new RegistrationAggregates(List.of(
+                person(1, 17, null), person(2, 18, null), person(3, 24, null), person(4, 25, null),
+                person(5, 64, null), person(6, 65, null), person(7, 120, null), person(8, 0, null)));
+
+        assertEquals(2, bracket(aggregates, "Under 18"));
+        assertEquals(2, bracket(aggregates, "18-24"));
+        assertEquals(1, bracket(aggregates, "25-34"));
+        assertEquals(1, bracket(aggregates, "55-64"));
+        assertEquals(2, bracket(aggregates, "65+"));
+        assertEquals(8, aggregates.snapshot().getTotal());
+        assertEquals(0, aggregates.snapshot().getCreated());
+    }
+
+    @Test
+    void anUpdateMovesAPersonBetweenBrackets() {
+        RegistrationAggregates aggregates = new RegistrationAggregates(List.of());
+        Person seventeen = person(1, 17, "a@x.com");
+        aggregates.changed(null, seventeen);
+        Person eighteen = person(1, 18, "a@x.com");
+        aggregates.changed(seventeen, eighteen);
+        aggregates.changed(eighteen, person(1, 64, "a@x.com"));
+
+        assertEquals(0, bracket(aggregates, "Under 18"));
+        assertEquals(0, bracket(aggregates, "18-24"));
+        assertEquals(1, bracket(aggregates, "55-64"));
+        RegistrationStats stats = aggregates.snapshot();
+        assertEquals(1, stats.getTotal());
+        assertEquals(1, stats.getCreated());
+        assertEquals(2, stats.getUpdated());
+    }
+
+    @Test
+    void aDomainIsRemovedWhenItsLastPersonGoes() {
+        RegistrationAggregates aggregates = new RegistrationAggregates(List.of());
+        Person first = person(1, 30, "a@Baylor.edu");
+        Person second = person(2, 30, "b@baylor.edu ");
+        aggregates.changed(null, first);
+        aggregates.changed(null, second);
+        assertEquals(List.of("baylor.edu=2"), labels(aggregates.snapshot().getTopEmailDomains()));
+
+        aggregates.changed(first, null);
+        assertEquals(List.of("baylor.edu=1"), labels(aggregates.snapshot().getTopEmailDomains()));
+        // Changing the email away from the domain counts as leaving it
+        aggregates.changed(second, person(2, 30, "b@gmail.com"));
+        assertEquals(List.of("gmail.com=1"), labels(aggregates.snapshot().getTopEmailDomains()));
+        aggregates.changed(person(2, 30, "b@gmail.com"), null);
+        assertEquals(List.of(), aggregates.snapshot().getTopEmailDomains());
+        assertEquals(0, aggregates.snapshot().getTotal());
+        assertEquals(2, aggregates.snapshot().getDeleted());
+    }
+
+    @Test
+    void topDomainsAreMostCommonFirstWithTiesAlphabetical() {
+        String[] emails = {"a@c.com", "b@c.com", "c@c.com", "a@b.com", "b@b.com", "a@z.com", "b@z.com", "a@a.com",
+                "a@y.com", "nodomain", "trailing@"};
+        RegistrationAggregates aggregates = new RegistrationAggregates(List.of());
+        for (int i = 0; i < emails.length; i++) {
+            aggregates.changed(null, person(i + 1, 30, emails[i]));
+        }
+
+        assertEquals(List.of("c.com=3", "b.com=2", "z.com=2", "a.com=1", "y.com=1"),
+                labels(aggregates.snapshot(10).getTopEmailDomains()));
+        assertEquals(List.of("c.com=3", "b.com=2", "z.com=2"), labels(aggregates.snapshot(3).getTopEmailDomains()));
+        assertEquals(List.of("c.com=3"), labels(aggregates.snapshot(1).getTopEmailDomains()));
+        assertEquals(List.of(), aggregates.snapshot(0).getTopEmailDomains());
+        assertEquals(11, aggregates.snapshot().getTotal());
+    }
+
+    @Test
+    void partsCombineToTheSameFiguresAsOnePass() {
+        List<Person> people = List.of(person(1, 17, "a@x.com"), person(2, 30, "b@x.com"), person(3, 30, "c@y.com"),
+                person(4, 70, null), person(5, 18, "d@y.com"), person(6, 40, "e@x.com"));
+        RegistrationAggregates first = new RegistrationAggregates(List.of());
+        RegistrationAggregates second = new RegistrationAggregates(List.of());
+        for (Person person : people) {
+            (person.getId() % 2 == 0 ? first : second).include(person);
+        }
+
+        RegistrationStats combined = first.combine(second).snapshot();
+        RegistrationStats onePass = new RegistrationAggregates(people).snapshot();
+        assertEquals(onePass.getTotal(), combined.getTotal());
+        assertEquals(labels(onePass.getAgeBrackets()), labels(combined.getAgeBrackets()));
+        assertEquals(labels(onePass.getTopEmailDomains()), labels(combined.getTopEmailDomains()));
+        assertEquals(List.of("x.com=3", "y.com=2"), labels(combined.getTopEmailDomains()));
+    }
+}
@@ -0,0 +1,112 @@
+package template;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs src/build/java/TemplateCompiler.java the way the build does (the single-file source launcher) on small
+ * templates: each placeholder gets the escaping for where it sits, partials are inlined, and a placeholder that
+ * could not be escaped safely fails the build with the file and line.
+ */
+class TemplateCompilerTest {
+
+    @TempDir
+    Path directory;
+
+    private record Result(int exitCode, String output, Path generated) { }
+
+    private Result compile(String... files) throws IOException, InterruptedException {
+        Path templates = Files.createDirectories(directory.resolve("templates"));
+        for (int i = 0; i < files.length; i += 2) {
+            Files.writeString(templates.resolve(files[i]), files[i + 1], StandardCharsets.UTF_8);
+        }
+        Path output = directory.resolve("out");
+        Process process = new ProcessBuilder(Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                Path.of("src", "build", "java", "TemplateCompiler.java").toAbsolutePath().toString(),
+                templates.toString(), output.toString())
+                .redirectErrorStream(true)
+                .start();
+        String text = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertTrue(process.waitFor(60, TimeUnit.SECONDS));
+        return new Result(process.exitValue(), text, output.resolve("template/generated"));
+    }
+
+    private static List<String> renderCalls(String source) {
+        return source.lines().map(String::trim)
+                .filter(line -> line.startsWith("out.write") || line.endsWith(".writeTo(out);"))
+                .toList();
+    }
+
+    @Test
+    void eachPlaceholderIsEscapedForWhereItSits() throws Exception {
+        Result result = compile("card-page.html",
+                "<div class=\"{{kind}}\" title='{{title}}'>{{title}} <b>{{{body}}}</b></div>\n"
+                        + "{{> footer}}\n",
+                "_footer.html", "<p data-x=\"a > b\">{{note}} \"quoted\" \\ é</p>\n");
+
+        assertEquals(0, result.exitCode(), result.output());
+        String source = Files.readString(result.generated().resolve("CardPageTemplate.java"));
+        assertTrue(source.contains("public static void render(TemplateOutput out, String kind, String title, "
+                + "Fragment body, String note) {"), source);
+        assertEquals(List.of(
+                "out.write(S0);", "out.writeAttribute(kind);",
+                "out.write(S1);", "out.writeAttribute(title);",
+                "out.write(S2);", "out.writeText(title);",
+                "out.write(S3);", "body.writeTo(out);",
+                // A '>' inside a quoted attribute does not end the tag, so note is text after the tag closes
+                "out.write(S4);", "out.writeText(note);",
+                "out.write(S5);"), renderCalls(source));
+        assertTrue(source.contains("S0 = \"<div class=\\\"\""), source);
+        assertTrue(source.contains("S5 = \" \\\"quoted\\\" \\\\ \\u00e9</p>\\n\""), source);
+        // Partials are inlined, not compiled on their own
+        assertFalse(Files.exists(result.generated().resolve("FooterTemplate.java")));
+    }
+
+    @Test
+    void aPlaceholderInAnUnquotedAttributeFailsTheBuild() throws Exception {
+        Result result = compile("bad.html", "<p>\n<a href={{url}}>x</a>\n</p>\n");
+        assertEquals(1, result.exitCode());
+        assertTrue(result.output().contains("bad.html:2: placeholder {{url}} must be inside a quoted attribute"),
+                result.output());
+    }
+
+    @Test
+    void rawMarkupInsideATagFailsTheBuild() throws Exception {
+        Result result = compile("bad.html", "<div {{{attributes}}}></div>\n");
+        assertEquals(1, result.exitCode());
+        assertTrue(result.output().contains("bad.html:1: raw placeholder {{{attributes}}} cannot appear inside a tag"),
+                result.output());
+    }
+
+    @Test
+    void otherMistakesAreReportedWithTheirLine() throws Exception {
+        Result result = compile(
+                "a.html", "<p>{{name</p>\n",
+                "b.html", "<p>\n\n{{not-valid}}</p>\n",
+                "c.html", "<p>{{x}} {{{x}}}</p>\n",
+                "d.html", "<p>{{> missing}}</p>\n",
+                "e.html", "<p>{{out}}</p>\n",
+                "f.html", "<p title=\"{{t}}\"\n");
+        assertEquals(1, result.exitCode());
+        for (String expected : List.of(
+                "a.html:1: unterminated placeholder",
+                "b.html:3: invalid placeholder name 'not-valid'",
+                "c.html:1: 'x' is used both as a raw and an escaped placeholder",
+                "d.html:1: partial '_missing.html' not found",
+                "e.html:1: invalid placeholder name 'out'",
+                "f.html:0: template ends inside a tag")) {
+            assertTrue(result.output().contains(expected), "missing " + expected + " in\n" + result.output());
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package template;
+
+import model.Person;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Hostile registrations rendered through the compiled templates: names and emails never become markup, and the
+ * name in the delete button's confirm('...') stays one JavaScript string however it is quoted or backslashed.
+ */
+class TemplateEngineTest {
+
+    private static final List<String> HOSTILE = List.of(
+            "<script>alert(1)</script>",
+            "\" onmouseover=\"alert(1)",
+            "O'Brien",
+            "\\';alert(1);//",
+            "back\\slash\\",
+            "line\nbreak\r\u2028",
+            "&quot;'); alert(1); ('",
+            "Zoë 😀 \uD83D");
+
+    private static String render(List<Person> people) throws IOException {
+        Utf8HtmlWriter writer = Utf8HtmlWriter.acquire();
+        try {
+            new TemplateEngine().renderPersonListPage(writer, people, "<b>error</b>", null);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            writer.writeTo(out);
+            return out.toString(StandardCharsets.UTF_8);
+        } finally {
+            writer.release();
+        }
+    }
+
+    private static List<Person> people() {
+        return IntStream.range(0, HOSTILE.size())
+                .mapToObj(i -> new Person.PersonBuilder(i + 1, HOSTILE.get(i))
+                        .email(HOSTILE.get(i) + "@x.com").age(30).version(1).build())
+                .toList();
+    }
+
+    @Test
+    void valuesNeverBecomeMarkup() throws IOException {
+        String page = render(people());
+        assertFalse(page.contains("<script>alert(1)"), "raw script tag in the page");
+        assertFalse(page.contains("<b>error</b>"), "raw markup from the message");
+        assertTrue(page.contains("<td>&lt;script&gt;alert(1)&lt;/script&gt;</td>"));
+        assertTrue(page.contains("&lt;b&gt;error&lt;/b&gt;"));
+        // Quotes are harmless in element text, but no value may close an attribute and open a new one in a tag
+        assertTrue(page.contains("<td>\" onmouseover=\"alert(1)</td>"));
+        Set<String> attributes = attributeNames(page);
+        assertTrue(attributes.containsAll(List.of("class", "onclick", "action")), attributes.toString());
+        assertFalse(attributes.contains("onmouseover"), attributes.toString());
+    }
+
+    @Test
+    void theDeleteConfirmationIsOneStringLiteral() throws IOException {
+        String page = render(people());
+        Matcher onclick = Pattern.compile("onclick=\"([^\"]*)\"").matcher(page);
+        int rows = 0;
+        while (onclick.find()) {
+            String script = decodeAttribute(onclick.group(1));
+            String prefix = "return confirm('Are you sure you want to delete ";
+            assertTrue(script.startsWith(prefix), script);
+            int end = endOfSingleQuotedLiteral(script, prefix.length());
+            assertEquals("')", script.substring(end), "the literal closed early in: " + script);
+            // Round-tripped through UTF-8, as the page was: an unpaired surrogate comes back as '?'
+            String expected = new String((HOSTILE.get(rows) + "?").getBytes(StandardCharsets.UTF_8),
+                    StandardCharsets.UTF_8);
+            assertEquals(expected, unescape(script.substring(prefix.length(), end)));
+            rows++;
+        }
+        assertEquals(HOSTILE.size(), rows);
+    }
+
+    @Test
+    void javaScriptStringEscapesBackslashesBeforeQuotes() {
+        assertEquals("\\\\\\';alert(1);//", TemplateEngine.javaScriptString("\\';alert(1);//"));
+        assertEquals("a\\\"b\\nc\\u2028", TemplateEngine.javaScriptString("a\"b\nc\u2028"));
+        assertEquals("plain Zoë", TemplateEngine.javaScriptString("plain Zoë"));
+    }
+
+    // Names of all attributes in all tags, read the way a browser tokenizes them (quoted values skipped whole)
+    private static Set<String> attributeNames(String page) {
+        Set<String> names = new TreeSet<>();
+        int i = 0;
+        while ((i = page.indexOf('<', i)) >= 0) {
+            i++;
+            while (i < page.length() && page.charAt(i) != '>' && !Character.isWhitespace(page.charAt(i))) {
+                i++;
+            }
+            while (i < page.length() && page.charAt(i) != '>') {
+                char c = page.charAt(i);
+                if (Character.isWhitespace(c) || c == '/') {
+                    i++;
+                } else if (c == '"' || c == '\'') {
+                    i = page.indexOf(c, i + 1) + 1;
+                } else if (c == '=') {
+                    i++;
+                    char quote = page.charAt(i);
+                    i = quote == '"' || quote == '\'' ? page.indexOf(quote, i + 1) + 1 : i;
+                } else {
+                    int start = i;
+                    while (i < page.length() && "= \t\n/>".indexOf(page.charAt(i)) < 0) {
+                        i++;
+                    }
+                    names.add(page.substring(start, i).toLowerCase());
+                }
+            }
+        }
+        return names;
+    }
+
+    // Undo the HTML escaping a browser undoes before running an attribute as script
+    private static String decodeAttribute(String value) {
+        return value.replace("&quot;", "\"").replace("&#x27;", "'").replace("&lt;", "<").replace("&gt;", ">")
+                .replace("&amp;", "&");
+    }
+
+    // Index of the quote that closes a '...' literal starting at start, honouring backslash escapes
+    private static int endOfSingleQuotedLiteral(String script, int start) {
+        for (int i = start; i < script.length(); i++) {
+            char c = script.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '\'') {
+                return i;
+            } else {
+                assertFalse(c == '\n' || c == '\r' || c == '\u2028' || c == '\u2029', "line break in the literal");
+            }
+        }
+        throw new AssertionError("unterminated literal in " + script);
+    }
+
+    private static String unescape(String literal) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < literal.length(); i++) {
+            char c = literal.charAt(i);
+            if (c != '\\') {
+                text.append(c);
+                continue;
+            }
+            char next = literal.charAt(++i);
+            switch (next) {
+                case 'n' -> text.append('\n');
+                case 'r' -> text.append('\r');
+                case 'u' -> {
+                    text.append((char) Integer.parseInt(literal.substring(i + 1, i + 5), 16));
+                    i += 4;
+                }
+                default -> text.append(next);
+            }
+        }
+        return text.toString();
+    }
+}
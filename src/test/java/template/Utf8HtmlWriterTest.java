@@ -0,0 +1,120 @@
+package template;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * The writer is where model values become HTML, so it is the XSS boundary: element text escapes the characters that
+ * can open a tag or an entity, attribute values additionally escape both quotes, and everything else comes out as
+ * exactly the UTF-8 String.getBytes() would produce, including characters outside the BMP.
+ */
+class Utf8HtmlWriterTest {
+
+    private Utf8HtmlWriter writer = Utf8HtmlWriter.acquire();
+
+    @AfterEach
+    void release() {
+        writer.release();
+    }
+
+    private String contents() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.writeTo(out);
+        assertEquals(out.size(), writer.size());
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private byte[] bytes() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.writeTo(out);
+        return out.toByteArray();
+    }
+
+    @Test
+    void textEscapesMarkupButNotQuotes() throws IOException {
+        writer.writeText("<script>alert(\"x\" & 'y')</script>");
+        assertEquals("&lt;script&gt;alert(\"x\" &amp; 'y')&lt;/script&gt;", contents());
+    }
+
+    @Test
+    void attributesEscapeBothQuotes() throws IOException {
+        writer.write("<input value=\"");
+        writer.writeAttribute("\" onfocus=\"alert(1)\" x='<&>'");
+        writer.write("\">");
+        assertEquals("<input value=\"&quot; onfocus=&quot;alert(1)&quot; x=&#x27;&lt;&amp;&gt;&#x27;\">",
+                contents());
+    }
+
+    @Test
+    void entitiesInValuesAreNotTrusted() throws IOException {
+        // An already-escaped value is escaped again, so it shows literally instead of being decoded
+        writer.writeText("&lt;b&gt; &#60;");
+        assertEquals("&amp;lt;b&amp;gt; &amp;#60;", contents());
+    }
+
+    @Test
+    void markupIsWrittenAsIs() throws IOException {
+        writer.write("<p class=\"a\">'&'</p>");
+        writer.write("<b>".getBytes(StandardCharsets.UTF_8));
+        writer.write((String) null);
+        writer.writeText(null);
+        writer.writeAttribute(null);
+        assertEquals("<p class=\"a\">'&'</p><b>", contents());
+    }
+
+    @Test
+    void nonAsciiIsEncodedLikeStringGetBytes() throws IOException {
+        // 2-byte, 3-byte and 4-byte (surrogate pair) sequences, in every write path
+        String text = "Zoë Ünal – 東京 😀 𝄞 end";
+        writer.write(text);
+        writer.writeText(text);
+        writer.writeAttribute(text);
+        assertArrayEquals((text + text + text).getBytes(StandardCharsets.UTF_8), bytes());
+    }
+
+    @Test
+    void aSurrogatePairNextToAnEscapedCharacterStaysWhole() throws IOException {
+        writer.writeText("<😀>&😀");
+        writer.writeAttribute("\"😀'");
+        assertEquals("&lt;😀&gt;&amp;😀&quot;😀&#x27;", contents());
+    }
+
+    @Test
+    void unpairedSurrogatesBecomeQuestionMarksLikeStringGetBytes() throws IOException {
+        String broken = "a\uD83Db \uDE00c \uD83D";
+        writer.writeText(broken);
+        writer.write(broken);
+        assertArrayEquals((broken + broken).getBytes(StandardCharsets.UTF_8), bytes());
+        assertEquals("a?b ?c ?a?b ?c ?", contents());
+    }
+
+    @Test
+    void growsPastItsInitialBuffer() throws IOException {
+        String chunk = "<é😀>".repeat(20_000);
+        writer.writeText(chunk);
+        assertEquals("&lt;é😀&gt;".repeat(20_000), contents());
+    }
+
+    @Test
+    void aReleasedWriterIsReusedEmptyOnTheSameThread() throws IOException {
+        writer.write("first");
+        Utf8HtmlWriter second = Utf8HtmlWriter.acquire();
+        assertNotSame(writer, second);
+        second.release();
+
+        writer.release();
+        Utf8HtmlWriter again = Utf8HtmlWriter.acquire();
+        assertSame(writer, again);
+        assertEquals("", contents());
+        writer = again;
+    }
+}
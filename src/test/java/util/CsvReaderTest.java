@@ -0,0 +1,105 @@
+package util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * RFC 4180 records read one at a time: quotes, escaped quotes, commas and line breaks inside quotes, LF and CRLF
+ * endings, blank lines, the line each record started on, and the limits that keep a bad upload from being buffered.
+ */
+class CsvReaderTest {
+
+    private static List<List<String>> readAll(CsvReader csv) throws IOException {
+        List<List<String>> records = new ArrayList<>();
+        for (List<String> record = csv.next(); record != null; record = csv.next()) {
+            records.add(record);
+        }
+        return records;
+    }
+
+    @Test
+    void plainAndQuotedFields() throws IOException {
+        CsvReader csv = new CsvReader(new StringReader(
+                "name,email,age\n"
+                        + "\"Smith, John\",john@x.com,30\n"
+                        + "\"She said \"\"hi\"\"\",,\"\"\n"
+                        + "a\"b,c\n"));
+        assertEquals(List.of(
+                List.of("name", "email", "age"),
+                List.of("Smith, John", "john@x.com", "30"),
+                List.of("She said \"hi\"", "", ""),
+                List.of("a\"b", "c")), readAll(csv));
+    }
+
+    @Test
+    void lineBreaksInsideQuotesBelongToTheField() throws IOException {
+        CsvReader csv = new CsvReader(new StringReader(
+                "\"two\nlines\",a@x.com,20\r\n"
+                        + "\"crlf\r\ninside\",b@x.com,21\r\n"
+                        + "after,c@x.com,22"));
+        assertEquals(List.of("two\nlines", "a@x.com", "20"), csv.next());
+        assertEquals(1, csv.getRecordLine());
+        assertEquals(List.of("crlf\r\ninside", "b@x.com", "21"), csv.next());
+        assertEquals(3, csv.getRecordLine());
+        // The last record has no line break after it
+        assertEquals(List.of("after", "c@x.com", "22"), csv.next());
+        assertEquals(5, csv.getRecordLine());
+        assertNull(csv.next());
+    }
+
+    @Test
+    void blankLinesAreSkippedButCounted() throws IOException {
+        CsvReader csv = new CsvReader(new StringReader("\n\r\na,b\n\n\nc,d\n\n"));
+        assertEquals(List.of("a", "b"), csv.next());
+        assertEquals(3, csv.getRecordLine());
+        assertEquals(List.of("c", "d"), csv.next());
+        assertEquals(6, csv.getRecordLine());
+        assertNull(csv.next());
+    }
+
+    @Test
+    void recordsSpanningManyBufferFillsAreReadWhole() throws IOException {
+        // A reader that hands out one character per read, so every field crosses buffer refills
+        String text = "\"x,\"\"y\"\"\nz\",2\n".repeat(1000);
+        Reader trickle = new StringReader(text) {
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                return super.read(buffer, offset, Math.min(length, 1));
+            }
+        };
+        List<List<String>> records = readAll(new CsvReader(trickle));
+        assertEquals(1000, records.size());
+        assertTrue(records.stream().allMatch(record -> record.equals(List.of("x,\"y\"\nz", "2"))));
+    }
+
+    @Test
+    void anUnterminatedQuoteIsRejectedWithItsLine() throws IOException {
+        CsvReader csv = new CsvReader(new StringReader("ok,1\n\"never closed,2\nmore\n"));
+        assertEquals(List.of("ok", "1"), csv.next());
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class, csv::next);
+        assertEquals("Line 2: unterminated quoted field", error.getMessage());
+    }
+
+    @Test
+    void aRecordOverTheLimitIsRejectedInsteadOfBuffered() throws IOException {
+        String huge = "\"" + "x".repeat(CsvReader.MAX_RECORD_LENGTH + 1) + "\"\n";
+        CsvReader csv = new CsvReader(new StringReader("a,b\n" + huge));
+        assertEquals(List.of("a", "b"), csv.next());
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class, csv::next);
+        assertTrue(error.getMessage().startsWith("Line 2: record is longer than"), error.getMessage());
+
+        // Exactly at the limit is fine
+        String longest = "y".repeat(CsvReader.MAX_RECORD_LENGTH);
+        assertEquals(List.of(longest), new CsvReader(new StringReader(longest + "\n")).next());
+    }
+}
@@ -0,0 +1,61 @@
+package util;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Bytes allocated and time per decoded form, FormParser against PersonFormDecoder. Not run by the build; after
+ * mvn test-compile:
+ *
+ *   java --enable-preview -cp target/classes:target/test-classes util.PersonFormDecoderBenchmark [forms]
+ *
+ * Allocation is read from the current thread's allocation counter (com.sun.management.ThreadMXBean), so it counts
+ * everything a decode allocates, including garbage that never leaves the young generation. Each of the three rounds
+ * decodes forms (default 2,000,000) bodies with both; the first round includes the warm-up.
+ */
+public class PersonFormDecoderBenchmark {
+
+    private static final String[] BODIES = {
+            "name=Jane+Doe&email=jane.doe%40baylor.edu&age=21",
+            "name=Jane+Doe&email=jane.doe%40baylor.edu&age=21&version=3",
+            "name=Jos%C3%A9+%C3%81lvarez&email=jose%40example.com&age=45&version=12",
+            "name=&email=not-an-email&age=abc"};
+
+    public static void main(String[] args) {
+        int forms = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long blackhole = 0;
+        for (String text : BODIES) {
+            byte[] body = text.getBytes(StandardCharsets.UTF_8);
+            System.out.println(text);
+            for (int round = 0; round < 3; round++) {
+                long bytes = threads.getCurrentThreadAllocatedBytes();
+                long start = System.nanoTime();
+                for (int i = 0; i < forms; i++) {
+                    try {
+                        blackhole += FormParser.createPersonDTOFromForm(
+                                FormParser.parseFormData(new String(body, StandardCharsets.UTF_8))).getAge();
+                    } catch (IllegalArgumentException e) {
+                        blackhole += e.getMessage().length();
+                    }
+                }
+                long parserBytes = threads.getCurrentThreadAllocatedBytes() - bytes;
+                long parserNanos = System.nanoTime() - start;
+
+                bytes = threads.getCurrentThreadAllocatedBytes();
+                start = System.nanoTime();
+                for (int i = 0; i < forms; i++) {
+                    PersonFormDecoder.Result result = PersonFormDecoder.decode(body);
+                    blackhole += result.isValid() ? result.getPersonDTO().getAge() : result.getErrorMessage().length();
+                }
+                long decoderBytes = threads.getCurrentThreadAllocatedBytes() - bytes;
+                long decoderNanos = System.nanoTime() - start;
+
+                System.out.printf("  FormParser %5d B/op %5d ns/op   PersonFormDecoder %5d B/op %5d ns/op%n",
+                        parserBytes / forms, parserNanos / forms, decoderBytes / forms, decoderNanos / forms);
+            }
+        }
+        System.out.println("(" + blackhole + ")");
+    }
+}
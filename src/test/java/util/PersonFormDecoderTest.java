@@ -0,0 +1,136 @@
+package util;
+
+import dto.PersonDTO;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * PersonFormDecoder must accept and reject exactly what FormParser.createPersonDTOFromForm(parseFormData(...)) does,
+ * with the same DTO or the same message. Random forms are built from the pieces where the two could disagree:
+ * escapes (valid, truncated, signed, multi-byte, broken UTF-8), raw non-ASCII, '+', blanks, repeated and encoded
+ * field names, and numbers at the edges of the accepted ranges.
+ */
+class PersonFormDecoderTest {
+
+    private static final String[] KEYS = {"name", "email", "age", "version", "na%6De", "e%6dail", "a+ge", "age%", "x",
+            "", "%2B", "ver%73ion", "n%ZZame", "name "};
+    private static final String[] PIECES = {"a", "B", "@", ".", "+", "%", "%2", "%41", "%+4", "%-0", "%-1", "%C3%A9",
+            "%C3", "%A9", "é", "٣", "%D9%A3", " ", "\t", "=", "&", "1", "0", "-", "+", "2147483648", "150",
+            "151", "00042", "%zz", "x.com", "%E2%82%AC", "�", "%20", "%0A", "%%"};
+    private static final String RAW = "name=&email%@.+1";
+
+    private static final int INPUTS = 200_000;
+
+    @Test
+    void agreesWithFormParserOnRandomForms() {
+        Random random = new Random(42);
+        int valid = 0;
+        for (int i = 0; i < INPUTS; i++) {
+            byte[] body = randomForm(random);
+            String expected = viaFormParser(body);
+            assertEquals(expected, viaDecoder(body), () -> "body " + Arrays.toString(body) + " ("
+                    + new String(body, StandardCharsets.UTF_8) + ")");
+            if (expected.startsWith("OK")) {
+                valid++;
+            }
+        }
+        // Make sure the generator reaches the accepting path often enough to matter
+        assertTrue(valid > INPUTS / 20, "only " + valid + " valid forms");
+    }
+
+    @Test
+    void decodesOnlyTheGivenRange() {
+        byte[] form = "name=Jane+Doe&email=jane%40x.com&age=21".getBytes(StandardCharsets.UTF_8);
+        byte[] body = new byte[form.length + 20];
+        Arrays.fill(body, (byte) '&');
+        body[3] = 'x';
+        System.arraycopy(form, 0, body, 10, form.length);
+
+        PersonFormDecoder.Result result = PersonFormDecoder.decode(body, 10, form.length);
+
+        assertEquals(viaFormParser(form), describe(result));
+        assertEquals("Jane Doe", result.getPersonDTO().getName());
+    }
+
+    @Test
+    void rejectsAMissingBodyLikeAnEmptyForm() {
+        assertEquals(viaFormParser(new byte[0]), describe(PersonFormDecoder.decode(null)));
+    }
+
+    private static byte[] randomForm(Random random) {
+        if (random.nextInt(10) == 0) {
+            // Arbitrary bytes, half of them form syntax
+            byte[] body = new byte[random.nextInt(40)];
+            random.nextBytes(body);
+            for (int i = 0; i < body.length; i++) {
+                if (random.nextBoolean()) {
+                    body[i] = (byte) RAW.charAt(random.nextInt(RAW.length()));
+                }
+            }
+            return body;
+        }
+        StringBuilder form = new StringBuilder();
+        if (random.nextInt(3) == 0) {
+            // Shaped like a real submission, so many of these get past validation
+            form.append("name=J").append(piece(random))
+                    .append("&email=a").append(piece(random)).append("@x.com")
+                    .append("&age=").append(random.nextBoolean() ? piece(random) + piece(random) : random.nextInt(160));
+            if (random.nextBoolean()) {
+                form.append("&version=").append(piece(random));
+            }
+        } else {
+            int pairs = random.nextInt(7);
+            for (int p = 0; p < pairs; p++) {
+                if (p > 0) {
+                    form.append('&');
+                }
+                form.append(KEYS[random.nextInt(KEYS.length)]);
+                if (random.nextInt(8) != 0) {
+                    form.append('=');
+                }
+                int pieces = random.nextInt(6);
+                for (int i = 0; i < pieces; i++) {
+                    form.append(piece(random));
+                }
+            }
+        }
+        byte[] body = form.toString().getBytes(StandardCharsets.UTF_8);
+        if (random.nextInt(20) == 0 && body.length > 0) {
+            // A stray byte that is not valid UTF-8 on its own
+            body[random.nextInt(body.length)] = (byte) (0x80 + random.nextInt(128));
+        }
+        return body;
+    }
+
+    private static String piece(Random random) {
+        return PIECES[random.nextInt(PIECES.length)];
+    }
+
+    private static String viaFormParser(byte[] body) {
+        try {
+            return describe(FormParser.createPersonDTOFromForm(
+                    FormParser.parseFormData(new String(body, StandardCharsets.UTF_8))));
+        } catch (IllegalArgumentException e) {
+            return "rejected: " + e.getMessage();
+        }
+    }
+
+    private static String viaDecoder(byte[] body) {
+        return describe(PersonFormDecoder.decode(body));
+    }
+
+    private static String describe(PersonFormDecoder.Result result) {
+        return result.isValid() ? describe(result.getPersonDTO()) : "rejected: " + result.getErrorMessage();
+    }
+
+    private static String describe(PersonDTO dto) {
+        return "OK name=" + dto.getName() + " email=" + dto.getEmail() + " age=" + dto.getAge()
+                + " version=" + dto.getVersion();
+    }
+}
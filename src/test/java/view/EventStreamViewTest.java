@@ -0,0 +1,82 @@
+package view;
+
+import http.HttpResponse;
+import org.junit.jupiter.api.Test;
+import service.ChangeFeed;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * A subscriber beyond the feed's limit is told to come back later (503 with Retry-After) instead of getting an error
+ * page, and a slot is free again once a subscription is closed, or once its response is released even if the client
+ * went away before the stream started.
+ */
+class EventStreamViewTest {
+
+    private static HttpResponse render(ChangeFeed feed, ChangeFeed.Subscription subscription) {
+        Map<String, Object> model = new HashMap<>();
+        model.put("changeFeed", feed);
+        model.put("subscription", subscription);
+        return new EventStreamView().render(model);
+    }
+
+    @Test
+    void aFullFeedAnswersServiceUnavailable() {
+        ChangeFeed feed = new ChangeFeed(16, 2);
+        ChangeFeed.Subscription first = feed.subscribe(null);
+        ChangeFeed.Subscription second = feed.subscribe(null);
+        assertNotNull(first);
+        assertNotNull(second);
+
+        ChangeFeed.Subscription third = feed.subscribe(null);
+        assertNull(third);
+        HttpResponse busy = render(feed, third);
+        assertEquals(503, busy.getStatusCode());
+        assertEquals("30", busy.getHeaders().get("Retry-After"));
+
+        first.close();
+        ChangeFeed.Subscription again = feed.subscribe(null);
+        assertNotNull(again);
+        HttpResponse stream = render(feed, again);
+        assertEquals(200, stream.getStatusCode());
+        assertEquals("text/event-stream; charset=UTF-8", stream.getHeaders().get("Content-Type"));
+        again.close();
+        second.close();
+        assertEquals(0, feed.getSubscriberCount());
+    }
+
+    @Test
+    void aResponseThatFailsBeforeItsBodyStillFreesTheSlot() {
+        ChangeFeed feed = new ChangeFeed(16, 1);
+        HttpResponse stream = render(feed, feed.subscribe(null));
+        assertEquals(1, feed.getSubscriberCount());
+
+        // The client is gone by the time the head is written, so the streaming body never runs
+        OutputStream disconnected = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+        try {
+            assertThrows(IOException.class, () -> stream.writeTo(disconnected));
+        } finally {
+            stream.release();
+        }
+        assertEquals(0, feed.getSubscriberCount());
+        assertNotNull(feed.subscribe(null));
+    }
+}